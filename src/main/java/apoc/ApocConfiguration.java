@@ -35,7 +35,6 @@ public class ApocConfiguration {
     }
 
     public static void initialize(GraphDatabaseAPI db) {
-        Static.clear();
         Config neo4jConfig = db.getDependencyResolver().resolveDependency(Config.class);
         Map<String, String> params = neo4jConfig.getRaw();
         apocConfig.clear();
@@ -49,6 +48,7 @@ public class ApocConfiguration {
         });
         config.clear();
         params.forEach((k, v) -> { if (!SKIP.matcher(k).find()) {config.put(k, v);} });
+        Static.clear();
     }
 
     private static void mergeDefaults() {
@@ -1,8 +1,10 @@
 package apoc;
 
+import apoc.algo.GraphProjections;
 import apoc.custom.CypherProcedures;
 import apoc.cypher.CypherInitializer;
 import apoc.index.IndexUpdateTransactionEventHandler;
+import apoc.meta.MetaCache;
 import apoc.trigger.Trigger;
 import apoc.ttl.TTLLifeCycle;
 import apoc.util.ApocUrlStreamHandlerFactory;
@@ -62,6 +64,7 @@ public class ApocKernelExtensionFactory extends KernelExtensionFactory<ApocKerne
         private Log userLog;
         private TTLLifeCycle ttlLifeCycle;
         private Uuid.UuidLifeCycle uuidLifeCycle;
+        private MetaCache.LifeCycle metaCacheLifeCycle;
 
         private IndexUpdateTransactionEventHandler.LifeCycle indexUpdateLifeCycle;
         private CypherProcedures.CustomProcedureStorage customProcedureStorage;
@@ -88,6 +91,9 @@ public class ApocKernelExtensionFactory extends KernelExtensionFactory<ApocKerne
             uuidLifeCycle = new Uuid.UuidLifeCycle(db, log.getUserLog(Uuid.class));
             uuidLifeCycle.start();
 
+            metaCacheLifeCycle = new MetaCache.LifeCycle(db, log.getUserLog(MetaCache.class));
+            metaCacheLifeCycle.start();
+
             triggerLifeCycle = new Trigger.LifeCycle(db, log.getUserLog(Trigger.class));
             triggerLifeCycle.start();
             indexUpdateLifeCycle = new IndexUpdateTransactionEventHandler.LifeCycle(db, log.getUserLog(Procedures.class));
@@ -135,6 +141,20 @@ public class ApocKernelExtensionFactory extends KernelExtensionFactory<ApocKerne
                 }
             }
 
+            if (metaCacheLifeCycle !=null) {
+                try {
+                    metaCacheLifeCycle.stop();
+                } catch (Exception e) {
+                    userLog.warn("Error stopping meta data cache", e);
+                }
+            }
+
+            try {
+                GraphProjections.dropAll(db);
+            } catch (Exception e) {
+                userLog.warn("Error dropping graph projections", e);
+            }
+
         }
 
     }
@@ -1,31 +1,56 @@
 package apoc;
 
+import apoc.result.PoolInfoResult;
 import apoc.util.Util;
 import org.neo4j.graphdb.GraphDatabaseService;
 import org.neo4j.graphdb.Transaction;
 import org.neo4j.scheduler.JobScheduler;
 
 import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.RejectedExecutionHandler;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 public class Pools {
 
     static final String CONFIG_JOBS_SCHEDULED_NUM_THREADS = "jobs.scheduled.num_threads";
     static final String CONFIG_JOBS_POOL_NUM_THREADS = "jobs.pool.num_threads";
+    static final String CONFIG_JOBS_POOL_PREFIX = "jobs.pool.";
+
+    /**
+     * Names of the dedicated pools, each can be sized with <code>apoc.jobs.pool.&lt;name&gt;.num_threads</code>
+     * and <code>apoc.jobs.pool.&lt;name&gt;.queue_size</code>.
+     */
+    public static final String PERIODIC = "periodic";
+    public static final String CYPHER = "cypher";
+    public static final String SEARCH = "search";
+    public static final String WARMUP = "warmup";
+    public static final String ALGO = "algo";
+    public static final String EXPORT = "export";
+    public static final String TTL = "ttl";
+    public static final String IMPORT = "import";
+    public static final String META = "meta";
+    public static final String NEIGHBORS = "neighbors";
+    public static final String ELASTICSEARCH = "elasticsearch";
 
     public final static int DEFAULT_SCHEDULED_THREADS = Runtime.getRuntime().availableProcessors() / 4;
     public final static int DEFAULT_POOL_THREADS = Runtime.getRuntime().availableProcessors() * 2;
@@ -35,6 +60,8 @@ public class Pools {
     public final static ScheduledExecutorService SCHEDULED = createScheduledPool();
     public static JobScheduler NEO4J_SCHEDULER = null;
 
+    private final static Map<String, ThreadPoolExecutor> NAMED = new ConcurrentHashMap<>();
+
     static {
         for (ExecutorService service : Arrays.asList(SINGLE, DEFAULT, SCHEDULED)) {
             Runtime.getRuntime().addShutdownHook(new Thread(() -> {
@@ -58,9 +85,73 @@ public class Pools {
                 new CallerBlocksPolicy());
     }
 
+    /**
+     * Returns the dedicated pool for the given workload, created on first use so that it picks up the apoc configuration.
+     * Idle threads of dedicated pools time out, so pools that are not used don't hold on to threads.
+     */
+    public static ExecutorService pool(String name) {
+        return NAMED.computeIfAbsent(name, Pools::createNamedPool);
+    }
+
+    private static ThreadPoolExecutor createNamedPool(String name) {
+        int threads = getNoThreadsInPool(name);
+        int queueSize = Math.max(1, Util.toInteger(ApocConfiguration.get(CONFIG_JOBS_POOL_PREFIX + name + ".queue_size", threads * 25)));
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 30L, TimeUnit.SECONDS, new ArrayBlockingQueue<>(queueSize),
+                new CallerBlocksPolicy());
+        pool.allowCoreThreadTimeOut(true);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                pool.shutdown();
+                pool.awaitTermination(10,TimeUnit.SECONDS);
+            } catch(Exception ignore) {
+                //
+            }
+        }));
+        return pool;
+    }
+
+    public static int getNoThreadsInPool(String name) {
+        Integer maxThreads = Util.toInteger(ApocConfiguration.get(CONFIG_JOBS_POOL_PREFIX + name + ".num_threads", getNoThreadsInDefaultPool()));
+        return Math.max(1, maxThreads == null ? getNoThreadsInDefaultPool() : maxThreads);
+    }
+
+    /**
+     * @return the built-in pools followed by the dedicated pools created so far, by name
+     */
+    public static Map<String, ExecutorService> list() {
+        Map<String, ExecutorService> pools = new LinkedHashMap<>();
+        pools.put("default", DEFAULT);
+        pools.put("single", SINGLE);
+        pools.put("scheduled", SCHEDULED);
+        new TreeMap<>(NAMED).forEach(pools::put);
+        return pools;
+    }
+
+    public static Stream<PoolInfoResult> info() {
+        return list().entrySet().stream().map(e -> {
+            ExecutorService service = e.getValue();
+            if (!(service instanceof ThreadPoolExecutor)) {
+                return new PoolInfoResult(e.getKey(), 0, 0, 0, 0, 0, 0, 0, 0, 0, service.isShutdown());
+            }
+            ThreadPoolExecutor pool = (ThreadPoolExecutor) service;
+            RejectedExecutionHandler handler = pool.getRejectedExecutionHandler();
+            long callerBlocked = handler instanceof CallerBlocksPolicy ? ((CallerBlocksPolicy) handler).getCallerBlocked() : 0;
+            return new PoolInfoResult(e.getKey(), pool.getPoolSize(), pool.getMaximumPoolSize(), pool.getActiveCount(), pool.getLargestPoolSize(),
+                    pool.getQueue().size(), pool.getQueue().remainingCapacity(), pool.getTaskCount(), pool.getCompletedTaskCount(),
+                    callerBlocked, pool.isShutdown());
+        });
+    }
+
     static class CallerBlocksPolicy implements RejectedExecutionHandler {
+        private final AtomicLong callerBlocked = new AtomicLong();
+
+        public long getCallerBlocked() {
+            return callerBlocked.get();
+        }
+
         @Override
         public void rejectedExecution(Runnable r, ThreadPoolExecutor executor) {
+            callerBlocked.incrementAndGet();
             // Submit again by directly injecting the task into the work queue, waiting if necessary, but also periodically checking if the pool has been
             // shut down.
             FutureTask<Void> task = new FutureTask<>( r, null );
@@ -99,7 +190,8 @@ public class Pools {
     }
 
     private static ExecutorService createSinglePool() {
-        return Executors.newSingleThreadExecutor();
+        // a plain ThreadPoolExecutor rather than Executors.newSingleThreadExecutor() so its statistics can be reported
+        return new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>());
     }
 
     private static ScheduledExecutorService createScheduledPool() {
@@ -107,7 +199,11 @@ public class Pools {
     }
 
     public static <T> Future<Void> processBatch(List<T> batch, GraphDatabaseService db, Consumer<T> action) {
-        return DEFAULT.submit((Callable<Void>) () -> {
+        return processBatch(DEFAULT, batch, db, action);
+    }
+
+    public static <T> Future<Void> processBatch(ExecutorService pool, List<T> batch, GraphDatabaseService db, Consumer<T> action) {
+        return pool.submit((Callable<Void>) () -> {
                 try (Transaction tx = db.beginTx()) {
                     batch.forEach(action);
                     tx.success();
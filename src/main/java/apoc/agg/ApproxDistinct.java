@@ -0,0 +1,45 @@
+package apoc.agg;
+
+import apoc.util.Util;
+import org.neo4j.procedure.*;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * An approximate count(DISTINCT value) that needs 2^precision bytes instead of a set of all distinct values.
+ *
+ * With {sketch:true} the function returns its serialized HyperLogLog registers instead, which can be merged
+ * by the same function with {merge:true}, e.g. to combine the results of several partitions.
+ */
+public class ApproxDistinct {
+
+    @UserAggregationFunction("apoc.agg.approxDistinct")
+    @Description("apoc.agg.approxDistinct(value, {precision:14, sketch:false, merge:false}) - returns the approximate number of distinct non-null values from a HyperLogLog of 2^precision registers, or the registers with sketch:true, merge:true aggregates such registers")
+    public ApproxDistinctFunction approxDistinct() {
+        return new ApproxDistinctFunction();
+    }
+
+    public static class ApproxDistinctFunction {
+        private HyperLogLog sketch;
+        private boolean merge;
+        private boolean returnSketch;
+
+        @UserAggregationUpdate
+        public void aggregate(@Name("value") Object value, @Name(value = "config", defaultValue = "{}") Map<String, Object> config) {
+            if (sketch == null) {
+                if (config == null) config = Collections.emptyMap();
+                sketch = HyperLogLog.create(config);
+                merge = Util.toBoolean(config.get("merge"));
+                returnSketch = Util.toBoolean(config.get("sketch"));
+            }
+            if (value != null) sketch.update(value, merge);
+        }
+
+        @UserAggregationResult
+        public Object result() {
+            if (sketch == null) return 0L;
+            return returnSketch ? sketch.toBytes() : sketch.cardinality();
+        }
+    }
+}
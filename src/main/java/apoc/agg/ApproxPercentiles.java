@@ -0,0 +1,86 @@
+package apoc.agg;
+
+import apoc.util.Util;
+import org.neo4j.procedure.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static java.util.Arrays.asList;
+
+/**
+ * Approximate median and percentiles in bounded memory, unlike apoc.agg.median and apoc.agg.percentiles
+ * which keep all values or a histogram of them.
+ *
+ * With {sketch:true} the functions return their serialized t-digest instead, which can be merged
+ * by the same function with {merge:true}, e.g. to combine the results of several partitions.
+ */
+public class ApproxPercentiles {
+
+    @UserAggregationFunction("apoc.agg.approxMedian")
+    @Description("apoc.agg.approxMedian(value, {compression:100, sketch:false, merge:false}) - returns the approximate median of the numeric values from a t-digest of bounded size, or the digest itself with sketch:true, merge:true aggregates such digests")
+    public ApproxMedianFunction approxMedian() {
+        return new ApproxMedianFunction();
+    }
+
+    @UserAggregationFunction("apoc.agg.approxPercentiles")
+    @Description("apoc.agg.approxPercentiles(value, [percentiles = 0.5,0.75,0.9,0.95,0.99], {compression:100, sketch:false, merge:false}) - returns the approximate percentiles of the numeric values from a t-digest of bounded size, or the digest itself with sketch:true, merge:true aggregates such digests")
+    public ApproxPercentilesFunction approxPercentiles() {
+        return new ApproxPercentilesFunction();
+    }
+
+    public static class ApproxMedianFunction {
+        private QuantileSketch sketch;
+        private boolean merge;
+        private boolean returnSketch;
+
+        @UserAggregationUpdate
+        public void aggregate(@Name("value") Object value, @Name(value = "config", defaultValue = "{}") Map<String, Object> config) {
+            if (sketch == null) {
+                if (config == null) config = Collections.emptyMap();
+                sketch = QuantileSketch.create(config);
+                merge = Util.toBoolean(config.get("merge"));
+                returnSketch = Util.toBoolean(config.get("sketch"));
+            }
+            if (value != null) sketch.update(value, merge);
+        }
+
+        @UserAggregationResult
+        public Object result() {
+            if (sketch == null) return null;
+            return returnSketch ? sketch.toBytes() : sketch.quantile(0.5D);
+        }
+    }
+
+    public static class ApproxPercentilesFunction {
+        private QuantileSketch sketch;
+        private boolean merge;
+        private boolean returnSketch;
+        private List<Double> percentiles = asList(0.5D, 0.75D, 0.9D, 0.95D, 0.99D);
+
+        @UserAggregationUpdate
+        public void aggregate(@Name("value") Object value, @Name(value = "percentiles", defaultValue = "[0.5,0.75,0.9,0.95,0.99]") List<Double> percentiles,
+                              @Name(value = "config", defaultValue = "{}") Map<String, Object> config) {
+            if (sketch == null) {
+                if (config == null) config = Collections.emptyMap();
+                sketch = QuantileSketch.create(config);
+                merge = Util.toBoolean(config.get("merge"));
+                returnSketch = Util.toBoolean(config.get("sketch"));
+                if (percentiles != null) this.percentiles = percentiles;
+            }
+            if (value != null) sketch.update(value, merge);
+        }
+
+        @UserAggregationResult
+        public Object result() {
+            if (returnSketch) return sketch.toBytes();
+            List<Double> result = new ArrayList<>(percentiles.size());
+            for (Double percentile : percentiles) {
+                result.add(percentile == null || sketch == null ? null : sketch.quantile(percentile));
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package apoc.agg;
+
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Relationship;
+
+import java.lang.reflect.Array;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The HyperLogLog registers of apoc.agg.approxDistinct.
+ *
+ * There are 2^precision registers of one byte each, the standard error of the count is about 1.04 / sqrt(2^precision),
+ * e.g. 0.8% with 16KB for the default precision of 14. Small counts are estimated with linear counting.
+ */
+class HyperLogLog {
+
+    private static final byte FORMAT = 'H';
+    static final int DEFAULT_PRECISION = 14;
+    private static final int MIN_PRECISION = 4;
+    private static final int MAX_PRECISION = 18;
+
+    // different seeds for the kinds of values, so that e.g. a node and its id are counted as different values
+    private static final long NODE = 0x9E3779B97F4A7C15L;
+    private static final long RELATIONSHIP = 0xC2B2AE3D27D4EB4FL;
+    private static final long NUMBER = 0x165667B19E3779F9L;
+    private static final long STRING = 0xCBF29CE484222325L;
+    private static final long LIST = 0x27D4EB2F165667C5L;
+
+    private final int precision;
+    private final byte[] registers;
+
+    private HyperLogLog(int precision, byte[] registers) {
+        this.precision = precision;
+        this.registers = registers;
+    }
+
+    static HyperLogLog create(Map<String, Object> config) {
+        int precision = ((Number) config.getOrDefault("precision", DEFAULT_PRECISION)).intValue();
+        if (precision < MIN_PRECISION || precision > MAX_PRECISION) {
+            throw new IllegalArgumentException("The precision of apoc.agg.approxDistinct must be between " + MIN_PRECISION + " and " + MAX_PRECISION + ", got: " + precision);
+        }
+        return new HyperLogLog(precision, new byte[1 << precision]);
+    }
+
+    /**
+     * adds a value or, when merging, the registers of a serialized sketch
+     */
+    void update(Object value, boolean merge) {
+        if (merge) {
+            merge(fromBytes(value));
+        } else {
+            add(hash(value));
+        }
+    }
+
+    private void add(long hash) {
+        int index = (int) (hash >>> (64 - precision));
+        int rank = Math.min(Long.numberOfLeadingZeros(hash << precision), 64 - precision) + 1;
+        if (rank > registers[index]) registers[index] = (byte) rank;
+    }
+
+    private void merge(HyperLogLog other) {
+        if (other.precision != precision) {
+            throw new IllegalArgumentException("Can't merge sketches of apoc.agg.approxDistinct with precision " + other.precision + " into one with precision " + precision);
+        }
+        for (int i = 0; i < registers.length; i++) {
+            if (other.registers[i] > registers[i]) registers[i] = other.registers[i];
+        }
+    }
+
+    long cardinality() {
+        int m = registers.length;
+        double sum = 0;
+        int zeros = 0;
+        for (byte register : registers) {
+            sum += 1D / (1L << register);
+            if (register == 0) zeros++;
+        }
+        double estimate = alpha(m) * m * m / sum;
+        if (estimate <= 2.5 * m && zeros > 0) {
+            estimate = m * Math.log((double) m / zeros);
+        }
+        return Math.round(estimate);
+    }
+
+    private static double alpha(int m) {
+        switch (m) {
+            case 16: return 0.673;
+            case 32: return 0.697;
+            case 64: return 0.709;
+            default: return 0.7213 / (1 + 1.079 / m);
+        }
+    }
+
+    byte[] toBytes() {
+        byte[] bytes = new byte[2 + registers.length];
+        bytes[0] = FORMAT;
+        bytes[1] = (byte) precision;
+        System.arraycopy(registers, 0, bytes, 2, registers.length);
+        return bytes;
+    }
+
+    private static HyperLogLog fromBytes(Object value) {
+        if (!(value instanceof byte[]) || ((byte[]) value).length < 2 || ((byte[]) value)[0] != FORMAT
+                || ((byte[]) value).length != 2 + (1 << ((byte[]) value)[1])) {
+            throw new IllegalArgumentException("Can only merge the sketches returned by apoc.agg.approxDistinct with {sketch:true}, got: " + value);
+        }
+        byte[] bytes = (byte[]) value;
+        return new HyperLogLog(bytes[1], Arrays.copyOfRange(bytes, 2, bytes.length));
+    }
+
+    /**
+     * a 64 bit hash of the value, integral numbers hash the same whether they are integers or floats, like they compare in cypher
+     */
+    static long hash(Object value) {
+        if (value instanceof Node) return mix(((Node) value).getId() ^ NODE);
+        if (value instanceof Relationship) return mix(((Relationship) value).getId() ^ RELATIONSHIP);
+        if (value instanceof Double || value instanceof Float) {
+            double number = ((Number) value).doubleValue();
+            if (number != Math.rint(number) || Double.isInfinite(number)) return mix(Double.doubleToLongBits(number));
+        }
+        if (value instanceof Number) return mix(((Number) value).longValue() ^ NUMBER);
+        if (value instanceof List) {
+            long hash = LIST;
+            for (Object element : (List<?>) value) {
+                hash = hash * 31 + hash(element);
+            }
+            return mix(hash);
+        }
+        if (value != null && value.getClass().isArray()) {
+            long hash = LIST;
+            for (int i = 0; i < Array.getLength(value); i++) {
+                hash = hash * 31 + hash(Array.get(value, i));
+            }
+            return mix(hash);
+        }
+        String string = value instanceof String ? (String) value : String.valueOf(value);
+        // FNV-1a over the chars, finished with the murmur3 mix for the high bits the registers are chosen by
+        long hash = STRING;
+        for (int i = 0; i < string.length(); i++) {
+            hash ^= string.charAt(i);
+            hash *= 0x100000001B3L;
+        }
+        return mix(hash);
+    }
+
+    private static long mix(long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xFF51AFD7ED558CCDL;
+        hash ^= hash >>> 33;
+        hash *= 0xC4CEB9FE1A85EC53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
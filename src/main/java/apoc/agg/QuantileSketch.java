@@ -0,0 +1,62 @@
+package apoc.agg;
+
+import com.tdunning.math.stats.MergingDigest;
+import com.tdunning.math.stats.TDigest;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * A t-digest of the values of apoc.agg.approxMedian and apoc.agg.approxPercentiles.
+ *
+ * It keeps at most a few times <code>compression</code> centroids however many values are added,
+ * the error of the quantiles is smallest at the tails and about 1/compression around the median.
+ */
+class QuantileSketch {
+
+    private static final byte FORMAT = 'Q';
+    static final double DEFAULT_COMPRESSION = 100;
+
+    private final TDigest digest;
+
+    private QuantileSketch(TDigest digest) {
+        this.digest = digest;
+    }
+
+    static QuantileSketch create(Map<String, Object> config) {
+        Object compression = config.getOrDefault("compression", DEFAULT_COMPRESSION);
+        return new QuantileSketch(TDigest.createMergingDigest(((Number) compression).doubleValue()));
+    }
+
+    /**
+     * adds a numeric value or, when merging, the values of a serialized sketch, other values are ignored
+     */
+    void update(Object value, boolean merge) {
+        if (merge) {
+            digest.add(fromBytes(value).digest);
+        } else if (value instanceof Number) {
+            double number = ((Number) value).doubleValue();
+            if (!Double.isNaN(number)) digest.add(number);
+        }
+    }
+
+    Double quantile(double quantile) {
+        return digest.size() == 0 ? null : digest.quantile(quantile);
+    }
+
+    byte[] toBytes() {
+        ByteBuffer buffer = ByteBuffer.allocate(1 + digest.byteSize());
+        buffer.put(FORMAT);
+        digest.asBytes(buffer);
+        return Arrays.copyOf(buffer.array(), buffer.position());
+    }
+
+    private static QuantileSketch fromBytes(Object value) {
+        if (!(value instanceof byte[]) || ((byte[]) value).length == 0 || ((byte[]) value)[0] != FORMAT) {
+            throw new IllegalArgumentException("Can only merge the sketches returned by apoc.agg.approxMedian or apoc.agg.approxPercentiles with {sketch:true}, got: " + value);
+        }
+        byte[] bytes = (byte[]) value;
+        return new QuantileSketch(MergingDigest.fromBytes(ByteBuffer.wrap(bytes, 1, bytes.length - 1)));
+    }
+}
@@ -0,0 +1,231 @@
+package apoc.agg;
+
+import apoc.util.JsonUtil;
+import apoc.util.Util;
+import org.neo4j.graphdb.Path;
+import org.neo4j.graphdb.PropertyContainer;
+
+import java.io.*;
+import java.lang.reflect.Array;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * The space saving counters of apoc.agg.topK.
+ *
+ * At most <code>capacity</code> items are counted, a new item replaces the one with the smallest count and inherits
+ * its count as error. So a count is overestimated by at most its error, which is at most the number of values / capacity,
+ * and every item that occurs more often than that is counted.
+ * The counters are kept in a min-heap by count, so an update costs O(log capacity).
+ */
+class SpaceSaving {
+
+    private static final byte FORMAT = 'K';
+
+    private static class Counter {
+        final Object item;
+        long count;
+        long error;
+        int index;
+
+        Counter(Object item, long count, long error) {
+            this.item = item;
+            this.count = count;
+            this.error = error;
+        }
+    }
+
+    private final int capacity;
+    private final Map<Object, Counter> counters;
+    private final Counter[] heap;
+    private int size;
+
+    private SpaceSaving(int capacity) {
+        if (capacity < 1) throw new IllegalArgumentException("The capacity of apoc.agg.topK must be positive, got: " + capacity);
+        this.capacity = capacity;
+        this.counters = new HashMap<>(capacity * 2);
+        this.heap = new Counter[capacity];
+    }
+
+    static SpaceSaving create(long k, Map<String, Object> config) {
+        return new SpaceSaving(Util.toLong(config.getOrDefault("capacity", Math.max(k, 1) * 10)).intValue());
+    }
+
+    /**
+     * counts a value or, when merging, adds the counters of a serialized sketch
+     */
+    void update(Object value, boolean merge) {
+        if (merge) {
+            merge(fromBytes(value));
+        } else {
+            offer(normalize(value), 1, 0);
+        }
+    }
+
+    private void offer(Object item, long count, long error) {
+        Counter counter = counters.get(item);
+        if (counter != null) {
+            counter.count += count;
+            counter.error += error;
+            siftDown(counter.index);
+        } else if (size < capacity) {
+            counter = new Counter(item, count, error);
+            counter.index = size;
+            heap[size++] = counter;
+            counters.put(item, counter);
+            siftUp(counter.index);
+        } else {
+            Counter min = heap[0];
+            counters.remove(min.item);
+            counter = new Counter(item, min.count + count, min.count + error);
+            counter.index = 0;
+            heap[0] = counter;
+            counters.put(item, counter);
+            siftDown(0);
+        }
+    }
+
+    /**
+     * Merges like the mergeable summaries of Agarwal et al.: an item that is missing in a full summary may have
+     * occurred up to its smallest count there, so that is added to the count and error of the item.
+     */
+    private void merge(SpaceSaving other) {
+        long minThis = size == capacity ? heap[0].count : 0;
+        long minOther = other.size == other.capacity ? other.heap[0].count : 0;
+        List<Counter> merged = new ArrayList<>(size + other.size);
+        for (int i = 0; i < size; i++) {
+            Counter counter = heap[i];
+            Counter match = other.counters.get(counter.item);
+            merged.add(match == null
+                    ? new Counter(counter.item, counter.count + minOther, counter.error + minOther)
+                    : new Counter(counter.item, counter.count + match.count, counter.error + match.error));
+        }
+        for (int i = 0; i < other.size; i++) {
+            Counter counter = other.heap[i];
+            if (!counters.containsKey(counter.item)) {
+                merged.add(new Counter(counter.item, counter.count + minThis, counter.error + minThis));
+            }
+        }
+        merged.sort(Comparator.comparingLong((Counter c) -> c.count).reversed());
+        counters.clear();
+        Arrays.fill(heap, null);
+        size = 0;
+        for (Counter counter : merged.subList(0, Math.min(capacity, merged.size()))) {
+            offer(counter.item, counter.count, counter.error);
+        }
+    }
+
+    /**
+     * the k items with the highest counts, as maps of item, count and error
+     */
+    List<Map<String, Object>> top(long k) {
+        return Arrays.stream(heap, 0, size)
+                .sorted(Comparator.comparingLong((Counter c) -> c.count).reversed())
+                .limit(k)
+                .map(c -> Util.map("item", c.item, "count", c.count, "error", c.error))
+                .collect(Collectors.toList());
+    }
+
+    private void siftUp(int index) {
+        Counter counter = heap[index];
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (heap[parent].count <= counter.count) break;
+            place(heap[parent], index);
+            index = parent;
+        }
+        place(counter, index);
+    }
+
+    private void siftDown(int index) {
+        Counter counter = heap[index];
+        int half = size >>> 1;
+        while (index < half) {
+            int child = 2 * index + 1;
+            if (child + 1 < size && heap[child + 1].count < heap[child].count) child++;
+            if (counter.count <= heap[child].count) break;
+            place(heap[child], index);
+            index = child;
+        }
+        place(counter, index);
+    }
+
+    private void place(Counter counter, int index) {
+        heap[index] = counter;
+        counter.index = index;
+    }
+
+    /**
+     * The items are stored as json, so sketches can only hold values without nodes, relationships and paths.
+     */
+    byte[] toBytes() {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeByte(FORMAT);
+            out.writeInt(capacity);
+            out.writeInt(size);
+            for (int i = 0; i < size; i++) {
+                Counter counter = heap[i];
+                if (counter.item instanceof PropertyContainer || counter.item instanceof Path) {
+                    throw new IllegalArgumentException("The sketches of apoc.agg.topK can't hold nodes, relationships or paths, count their ids instead, got: " + counter.item);
+                }
+                byte[] item = JsonUtil.OBJECT_MAPPER.writeValueAsBytes(counter.item);
+                out.writeInt(item.length);
+                out.write(item);
+                out.writeLong(counter.count);
+                out.writeLong(counter.error);
+            }
+            out.flush();
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new RuntimeException("Can't serialize the sketch of apoc.agg.topK: " + e.getMessage(), e);
+        }
+    }
+
+    private static SpaceSaving fromBytes(Object value) {
+        if (!(value instanceof byte[]) || ((byte[]) value).length < 9 || ((byte[]) value)[0] != FORMAT) {
+            throw new IllegalArgumentException("Can only merge the sketches returned by apoc.agg.topK with {sketch:true}, got: " + value);
+        }
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream((byte[]) value))) {
+            in.readByte();
+            SpaceSaving sketch = new SpaceSaving(in.readInt());
+            int size = in.readInt();
+            for (int i = 0; i < size; i++) {
+                byte[] item = new byte[in.readInt()];
+                in.readFully(item);
+                sketch.offer(normalize(JsonUtil.OBJECT_MAPPER.readValue(item, Object.class)), in.readLong(), in.readLong());
+            }
+            return sketch;
+        } catch (IOException e) {
+            throw new RuntimeException("Can't read the sketch of apoc.agg.topK: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * The counters are keyed by value, so values that are equal in cypher need equal keys: arrays become lists,
+     * integral floats and the smaller integer types become longs, like they hash in HyperLogLog. This also covers json
+     * integers, which are read as the smallest fitting type.
+     */
+    static Object normalize(Object value) {
+        if (value instanceof Double || value instanceof Float) {
+            double number = ((Number) value).doubleValue();
+            return number == Math.rint(number) && Math.abs(number) < 0x1p63 ? (Object) (long) number : (Object) number;
+        }
+        if (value instanceof Integer || value instanceof Short || value instanceof Byte) return ((Number) value).longValue();
+        if (value instanceof List) return ((List<?>) value).stream().map(SpaceSaving::normalize).collect(Collectors.toList());
+        if (value != null && value.getClass().isArray()) {
+            List<Object> list = new ArrayList<>(Array.getLength(value));
+            for (int i = 0; i < Array.getLength(value); i++) {
+                list.add(normalize(Array.get(value, i)));
+            }
+            return list;
+        }
+        if (value instanceof Map) {
+            Map<String, Object> map = new LinkedHashMap<>();
+            ((Map<String, Object>) value).forEach((k, v) -> map.put(k, normalize(v)));
+            return map;
+        }
+        return value;
+    }
+}
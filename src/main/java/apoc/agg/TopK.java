@@ -0,0 +1,49 @@
+package apoc.agg;
+
+import apoc.util.Util;
+import org.neo4j.procedure.*;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * The most frequent values with approximate counts, counting at most <code>capacity</code> distinct values at a time
+ * instead of all of them like <code>WITH value, count(*) AS count ORDER BY count DESC LIMIT k</code>.
+ *
+ * With {sketch:true} the function returns its serialized counters instead, which can be merged
+ * by the same function with {merge:true}, e.g. to combine the results of several partitions.
+ */
+public class TopK {
+
+    @UserAggregationFunction("apoc.agg.topK")
+    @Description("apoc.agg.topK(value, k = 10, {capacity:10*k, sketch:false, merge:false}) - returns the k most frequent non-null values as [{item, count, error}] from capacity space saving counters, a count is at most error too high, or the counters with sketch:true, merge:true aggregates such counters")
+    public TopKFunction topK() {
+        return new TopKFunction();
+    }
+
+    public static class TopKFunction {
+        private SpaceSaving sketch;
+        private long k = 10;
+        private boolean merge;
+        private boolean returnSketch;
+
+        @UserAggregationUpdate
+        public void aggregate(@Name("value") Object value, @Name(value = "k", defaultValue = "10") Long k,
+                              @Name(value = "config", defaultValue = "{}") Map<String, Object> config) {
+            if (sketch == null) {
+                if (config == null) config = Collections.emptyMap();
+                if (k != null) this.k = k;
+                sketch = SpaceSaving.create(this.k, config);
+                merge = Util.toBoolean(config.get("merge"));
+                returnSketch = Util.toBoolean(config.get("sketch"));
+            }
+            if (value != null) sketch.update(value, merge);
+        }
+
+        @UserAggregationResult
+        public Object result() {
+            if (sketch == null) return Collections.emptyList();
+            return returnSketch ? sketch.toBytes() : sketch.top(k);
+        }
+    }
+}
@@ -1,13 +1,29 @@
 package apoc.algo;
 
+import apoc.Pools;
+import apoc.algo.algorithms.HugeFloatArray;
+import apoc.algo.algorithms.HugeIntArray;
+import apoc.algo.algorithms.NodeIdMap;
 import apoc.stats.DegreeUtil;
+import apoc.util.kernel.MultiThreadedGlobalGraphOperations;
 import org.neo4j.graphdb.Direction;
+import org.neo4j.graphdb.Transaction;
 import org.neo4j.internal.kernel.api.*;
 import org.neo4j.internal.kernel.api.helpers.RelationshipSelectionCursor;
 import org.neo4j.internal.kernel.api.helpers.RelationshipSelections;
 import org.neo4j.kernel.api.KernelTransaction;
+import org.neo4j.kernel.impl.core.ThreadToStatementContextBridge;
+import org.neo4j.kernel.internal.GraphDatabaseAPI;
+import org.neo4j.values.storable.NumberValue;
+import org.neo4j.values.storable.Value;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.stream.IntStream;
 
 import static org.neo4j.graphdb.Direction.OUTGOING;
 import static org.neo4j.internal.kernel.api.Read.ANY_LABEL;
@@ -23,13 +39,20 @@ import static org.neo4j.internal.kernel.api.Read.ANY_RELATIONSHIP_TYPE;
  * http://stackoverflow.com/questions/106237/calculate-the-hilbert-value-of-a-point-for-use-in-a-hilbert-r-tree/106277
  */
 public class CoreGraphAlgorithms {
+    public static final int PARTITION_SIZE = 1 << 16;
     private final KernelTransaction ktx;
     private final Read read;
     private final CursorFactory cursors;
+    private final GraphDatabaseAPI db;
+    private final ExecutorService pool;
     private int nodeCount;
-    private int relCount;
-    private int[] nodeRelOffsets;
-    private int[] rels;
+    private long relCount;
+    private NodeIdMap idMap;
+    private long[] nodeRelOffsets;
+    private HugeIntArray rels;
+    private HugeFloatArray weights;
+    private int weightKeyId = TokenRead.NO_TOKEN;
+    private List<Partition> partitions;
     public static final float ALPHA = 0.15f;
     private int labelId;
     private int relTypeId;
@@ -160,14 +183,6 @@ public class CoreGraphAlgorithms {
 
     JMH tests
 
-    sparse node-id -> incremental id int[] = nodeId write as they come in
-    alternatively insertion sort ?
-    write out reverse by iterating over array
-    quick lookup ?
-    or parallel buckets
-
-    methods to load page-cache into datastructure in parallel
-
     all nodes / nodes by label (LSS or filter depending on percentage -> measure) / label/property / index lookup
     all rels / rels by type / by type & property
 
@@ -187,43 +202,206 @@ public class CoreGraphAlgorithms {
         return value / 100_000.0;
     }
 
-    // todo parallel, see if java8 streams are performing
-    // pass in array, use array batches (pass in batch-no)
-    private int[] loadNodes(int size, int relType, Direction direction) {
-        final CursorFactory cursors = ktx.cursors();
+
+    /**
+     * nodes of one id-range (or the whole store when loading single threaded), in ascending id order
+     * together with their outgoing degree, later the position of their relationships in the rels array
+     */
+    private static class Partition {
+        final long fromId, toId;
+        long[] ids = new long[64];
+        int[] degrees = new int[64];
+        int count;
+        int firstMappedId;
+
+        Partition(long fromId, long toId) {
+            this.fromId = fromId;
+            this.toId = toId;
+        }
+
+        // scans return ascending ids, except for nodes added in the current transaction
+        void sort() {
+            boolean sorted = true;
+            for (int i = 1; i < count && sorted; i++) {
+                sorted = ids[i - 1] < ids[i];
+            }
+            if (sorted) return;
+            long[] unsortedIds = ids;
+            int[] unsortedDegrees = degrees;
+            int[] order = IntStream.range(0, count).boxed()
+                    .sorted(Comparator.comparingLong(i -> unsortedIds[i]))
+                    .mapToInt(Integer::intValue).toArray();
+            ids = new long[count];
+            degrees = new int[count];
+            for (int i = 0; i < count; i++) {
+                ids[i] = unsortedIds[order[i]];
+                degrees[i] = unsortedDegrees[order[i]];
+            }
+        }
+
+        void add(long id, int degree) {
+            if (count == ids.length) {
+                ids = Arrays.copyOf(ids, count * 2);
+                degrees = Arrays.copyOf(degrees, count * 2);
+            }
+            ids[count] = id;
+            degrees[count++] = degree;
+        }
+    }
+
+    interface PartitionTask {
+        void run(Read read, CursorFactory cursors, Partition partition);
+    }
+
+    // runs the task for every partition, in separate transactions on the pool if there is one, otherwise on the callers transaction
+    private void forEachPartition(List<Partition> partitions, PartitionTask task) {
+        if (pool == null) {
+            for (Partition partition : partitions) {
+                task.run(read, cursors, partition);
+            }
+            return;
+        }
+        ThreadToStatementContextBridge ctx = db.getDependencyResolver().resolveDependency(ThreadToStatementContextBridge.class);
+        List<Future<Void>> futures = new ArrayList<>(partitions.size());
+        for (Partition partition : partitions) {
+            futures.add(pool.submit(() -> {
+                try (Transaction tx = db.beginTx()) {
+                    KernelTransaction workerKtx = ctx.getKernelTransactionBoundToThisThread(true);
+                    task.run(workerKtx.dataRead(), workerKtx.cursors(), partition);
+                    tx.success();
+                }
+                return null;
+            }));
+        }
+        for (Future<Void> future : futures) {
+            Pools.forceSilently(future);
+        }
+    }
+
+    private List<Partition> partitions() {
+        List<Partition> partitions = new ArrayList<>();
+        if (pool == null) {
+            partitions.add(new Partition(-1, -1));
+        } else {
+            long highId = MultiThreadedGlobalGraphOperations.getHighestIdInUseForStore(db.getDependencyResolver(), MultiThreadedGlobalGraphOperations.GlobalOperationsTypes.NODES);
+            for (long from = 0; from < highId; from += PARTITION_SIZE) {
+                partitions.add(new Partition(from, Math.min(highId, from + PARTITION_SIZE)));
+            }
+        }
+        return partitions;
+    }
+
+    // the single threaded partition uses the scans, id-range partitions look up each node of the range
+    private void scanNodes(Read read, CursorFactory cursors, Partition partition, int labelId, NodeConsumer consumer) {
         try (NodeCursor node = cursors.allocateNodeCursor()) {
-            // todo reuse array
-            int[] offsets = new int[size];
-            Arrays.fill(offsets,-1);
-            int offset = 0;
-            int maxIdx = 0;
-
-            ktx.dataRead().allNodesScan(node);
-
-            while (node.next()) {
-                int degree = DegreeUtil.degree(node, cursors, relType, direction);
-                int idx = mapId(node.nodeReference());
-//                offsets[idx] = degree;
-                offsets[idx] = offset;
-                offset += degree;
-                if (idx > maxIdx) maxIdx = idx;
+            if (partition.fromId == -1) {
+                if (labelId == ANY_LABEL) {
+                    read.allNodesScan(node);
+                    while (node.next()) consumer.accept(node);
+                } else {
+                    try (NodeLabelIndexCursor nodeIndex = cursors.allocateNodeLabelIndexCursor()) {
+                        read.nodeLabelScan(labelId, nodeIndex);
+                        while (nodeIndex.next()) {
+                            nodeIndex.node(node);
+                            if (node.next()) consumer.accept(node);
+                        }
+                    }
+                }
+            } else {
+                for (long id = partition.fromId; id < partition.toId; id++) {
+                    read.singleNode(id, node);
+                    if (node.next() && (labelId == ANY_LABEL || node.hasLabel(labelId))) consumer.accept(node);
+                }
             }
+        }
+    }
 
-            return maxIdx < offsets.length -1 ? Arrays.copyOf(offsets,maxIdx+1) : offsets;
+    interface NodeConsumer {
+        void accept(NodeCursor node);
+    }
+
+    private void loadNodes(int labelId, int relTypeId)  {
+        this.labelId = labelId;
+        this.relTypeId = relTypeId;
+
+        List<Partition> partitions = partitions();
+        forEachPartition(partitions, (read, cursors, partition) ->
+            scanNodes(read, cursors, partition, labelId, (node) ->
+                partition.add(node.nodeReference(), DegreeUtil.degree(node, cursors, relTypeId, OUTGOING))));
+
+        long count = 0;
+        for (Partition partition : partitions) {
+            partition.sort();
+            count += partition.count;
+        }
+        if (count > Integer.MAX_VALUE - 8) {
+            throw new IllegalStateException("Can't load more than " + Integer.MAX_VALUE + " nodes, found " + count);
+        }
+        this.nodeCount = (int) count;
+
+        long[] ids = new long[nodeCount];
+        this.nodeRelOffsets = new long[nodeCount + 1];
+        int mapped = 0;
+        long offset = 0;
+        for (Partition partition : partitions) {
+            partition.firstMappedId = mapped;
+            System.arraycopy(partition.ids, 0, ids, mapped, partition.count);
+            for (int i = 0; i < partition.count; i++) {
+                nodeRelOffsets[mapped++] = offset;
+                offset += partition.degrees[i];
+            }
+            partition.degrees = null;
         }
+        nodeRelOffsets[nodeCount] = offset;
+        this.idMap = new NodeIdMap(ids, nodeCount);
+        this.relCount = offset;
+        this.partitions = partitions;
     }
 
-/*
-    private int[] loadDegrees(ReadOperations ops, PrimitiveLongIterator nodeIds, int size, int relType, Direction direction) {
-        int[] degrees = new int[size];
-        Arrays.fill(degrees,-1);
-        while (nodeIds.hasNext()) {
-            long nodeId = nodeIds.next();
+    private void loadRels(int labelId, int relTypeId) {
+        this.rels = new HugeIntArray(relCount);
+        boolean weighted = weightKeyId != TokenRead.NO_TOKEN;
+        this.weights = weighted ? new HugeFloatArray(relCount) : null;
+        int[] relTypes = relTypeId == ANY_RELATIONSHIP_TYPE ? null : new int[]{relTypeId};
+        boolean allNodes = labelId == ANY_LABEL;
+        forEachPartition(partitions, (read, cursors, partition) -> {
+            try (NodeCursor node = cursors.allocateNodeCursor();
+                 PropertyCursor property = cursors.allocatePropertyCursor()) {
+                for (int i = 0; i < partition.count; i++) {
+                    int mappedId = partition.firstMappedId + i;
+                    long offset = nodeRelOffsets[mappedId];
+                    long end = nodeRelOffsets[mappedId + 1];
+                    read.singleNode(partition.ids[i], node);
+                    if (node.next()) {
+                        RelationshipSelectionCursor relationships = RelationshipSelections.outgoingCursor(cursors, node, relTypes);
+                        while (offset < end && relationships.next()) {
+                            long target = relationships.otherNodeReference();
+                            if (weighted) {
+                                weights.set(offset, (float) weight(read, relationships, property));
+                            }
+                            rels.set(offset++, allNodes ? idMap.toMapped(target) : idMap.getOrAdd(target));
+                        }
+                        relationships.close();
+                    }
+                    // relationships removed since the degrees were taken
+                    rels.fill(offset, end, -1);
+                }
+            }
+        });
+        this.partitions = null;
+    }
 
-            degrees[mapId(nodeId)] = relType == ANY_RELATIONSHIP_TYPE ? ops.nodeGetDegree(nodeId, direction) : ops.nodeGetDegree(nodeId, direction, relType);
+    // relationships without the property get a weight of 1
+    private double weight(Read read, RelationshipSelectionCursor relationship, PropertyCursor property) {
+        read.relationshipProperties(relationship.relationshipReference(), relationship.propertiesReference(), property);
+        while (property.next()) {
+            if (property.propertyKey() == weightKeyId) {
+                Value value = property.propertyValue();
+                return value instanceof NumberValue ? ((NumberValue) value).doubleValue() : 1d;
+            }
         }
-        return degrees;
-    }*/
+        return 1d;
+    }
 
     public int[] loadDegrees(String relName, Direction direction) {
         int relType = relName == null ? ANY_RELATIONSHIP_TYPE : ktx.tokenRead().relationshipType(relName);
@@ -233,9 +411,10 @@ public class CoreGraphAlgorithms {
     private int[] loadDegrees(int relType, Direction direction) {
 
         try (NodeCursor nodeCursor = cursors.allocateNodeCursor()) {
-            int[] degrees = new int[nodeCount];
-            for (int nodeIdx = 0; nodeIdx < nodeCount; nodeIdx++) {
-                long nodeId = unMapId(nodeIdx);
+            int mappedCount = idMap.size();
+            int[] degrees = new int[mappedCount];
+            for (int nodeIdx = 0; nodeIdx < mappedCount; nodeIdx++) {
+                long nodeId = idMap.toOriginal(nodeIdx);
                 read.singleNode(nodeId, nodeCursor);
                 degrees[nodeIdx] = nodeCursor.next() ? DegreeUtil.degree(nodeCursor, cursors, relType, direction) : -1;
             }
@@ -243,43 +422,41 @@ public class CoreGraphAlgorithms {
         }
     }
 
-    private int[] loadNodesForLabel(int labelId, int nodeCount, int relTypeId, Direction direction) {
-        try (NodeLabelIndexCursor nodeIndex = cursors.allocateNodeLabelIndexCursor();
-            NodeCursor node = cursors.allocateNodeCursor()
-            ) {
-            // todo reuse array
-            int[] degrees = new int[nodeCount];
+    interface RelationshipProgram {
+        void accept(int start, int end);
+    }
 
-            read.nodeLabelScan(labelId, nodeIndex);
-            while (nodeIndex.next()) {
+    interface WeightedRelationshipProgram {
+        void accept(int start, int end, float weight);
+    }
 
-                nodeIndex.node(node);
-                node.next();
-                degrees[mapId(nodeIndex.nodeReference())] = DegreeUtil.degree(node, cursors, relTypeId, direction);
+    private void runProgram(WeightedRelationshipProgram consumer) {
+        for (int start = 0; start < nodeCount ; start++) {
+            long offset = nodeRelOffsets[start];
+            long nextOffset = nodeRelOffsets[start+1];
+            while (offset != nextOffset) {
+                int end = rels.get(offset);
+                float weight = weights == null ? 1f : weights.get(offset);
+                offset++;
+                if (end == -1) continue;
+                consumer.accept(start, end, weight);
             }
-            return degrees;
         }
     }
 
-    interface RelationshipProgram {
-        void accept(int start, int end);
-    }
-
     private void runProgram(RelationshipProgram consumer) {
         runProgram(nodeCount, nodeRelOffsets,rels,consumer);
     }
 
-    private static void runProgram(int nodeCount, int[] offsets, int[] rels, RelationshipProgram consumer) {
+    private static void runProgram(int nodeCount, long[] offsets, HugeIntArray rels, RelationshipProgram consumer) {
         int start;
         for (start = 0; start < nodeCount ; start++) {
-            int offset = offsets[start];
-            if (offset == -1) continue;
-            int nextOffset = start+1 == nodeCount ? rels.length : offsets[start+1];
+            long offset = offsets[start];
+            long nextOffset = offsets[start+1];
             while (offset != nextOffset) {
-                int end = rels[offset];
-                if (end == -1) break;
+                int end = rels.get(offset++);
+                if (end == -1) continue;
                 consumer.accept(start, end);
-                offset++;
             }
         }
     }
@@ -302,21 +479,44 @@ public class CoreGraphAlgorithms {
     public float[] pageRank(int iterations) {
         float oneMinusAlpha = 1 - ALPHA;
         int[] degrees = loadDegrees(relTypeId , OUTGOING);
-        float[] dst = new float[nodeCount]; float[] src = new float[nodeCount];
+        int mappedCount = idMap.size();
+        float[] dst = new float[mappedCount]; float[] src = new float[mappedCount];
 
         for (int it = 0; it < iterations; it++) {
-            for (int node = 0; node < nodeCount; node++) {
+            for (int node = 0; node < mappedCount; node++) {
                 src[node] = ALPHA * dst[node] / (float) degrees[node];
                 dst[node] = oneMinusAlpha;
             }
             runProgram((start, end) -> dst[end] += src[start]);
         }
-        for (int node = 0; node < nodeCount; node++) {
+        for (int node = 0; node < mappedCount; node++) {
             if (degrees[node] == 0 && dst[node] == oneMinusAlpha) dst[node] = 0;
         }
         return dst;
     }
 
+    /**
+     * page rank that distributes the rank of a node proportionally to the weights of its relationships,
+     * falls back to {@link #pageRank(int)} if no weights were loaded
+     */
+    public float[] weightedPageRank(int iterations) {
+        if (weights == null) return pageRank(iterations);
+        float oneMinusAlpha = 1 - ALPHA;
+        int mappedCount = idMap.size();
+        float[] weightSums = new float[mappedCount];
+        runProgram((start, end, weight) -> weightSums[start] += weight);
+        float[] dst = new float[mappedCount]; float[] src = new float[mappedCount];
+
+        for (int it = 0; it < iterations; it++) {
+            for (int node = 0; node < mappedCount; node++) {
+                src[node] = weightSums[node] == 0 ? 0 : ALPHA * dst[node] / weightSums[node];
+                dst[node] = oneMinusAlpha;
+            }
+            runProgram((start, end, weight) -> dst[end] += src[start] * weight);
+        }
+        return dst;
+    }
+
     interface SuperStep {
         boolean run();
     }
@@ -332,7 +532,8 @@ public class CoreGraphAlgorithms {
         class PageRank implements SuperStep, RelationshipProgram {
             private int iterations;
             float alpha = 0.15f; float oneMinusAlpha = 1 - alpha;
-            float[] dst = new float[nodeCount]; float[] src = new float[nodeCount];
+            int mappedCount = idMap.size();
+            float[] dst = new float[mappedCount]; float[] src = new float[mappedCount];
 
             public PageRank(int iterations) {
                 this.iterations = iterations;
@@ -346,7 +547,7 @@ public class CoreGraphAlgorithms {
             @Override
             public boolean run() {
                 for (int node = 0; node < nodeCount; node++) {
-                    src[node] = alpha * dst[node] / (float) nodeRelOffsets[node];
+                    src[node] = alpha * dst[node] / (float) (nodeRelOffsets[node + 1] - nodeRelOffsets[node]);
                     dst[node] = oneMinusAlpha;
                 }
                 return iterations-- > 0;
@@ -376,8 +577,9 @@ public class CoreGraphAlgorithms {
      */
 
     public int[] labelPropagation() {
-        int[] labels = new int[nodeCount];
-        for (int nodeId = 0; nodeId < nodeCount; nodeId++) labels[nodeId] = nodeId;
+        int mappedCount = idMap.size();
+        int[] labels = new int[mappedCount];
+        for (int nodeId = 0; nodeId < mappedCount; nodeId++) labels[nodeId] = nodeId;
 
         boolean[] done = {false};
         while (!done[0]) {
@@ -411,9 +613,10 @@ public class CoreGraphAlgorithms {
      */
 
     public int[] unionFind() {
-        byte[] rank = new byte[nodeCount];
-        int[] root = new int[nodeCount];
-        for (int nodeId = 0; nodeId < nodeCount; nodeId++) root[nodeId] = nodeId;
+        int mappedCount = idMap.size();
+        byte[] rank = new byte[mappedCount];
+        int[] root = new int[mappedCount];
+        for (int nodeId = 0; nodeId < mappedCount; nodeId++) root[nodeId] = nodeId;
 
         runProgram((x, y) -> {
             while (x != root[x]) x = root[x];
@@ -430,97 +633,20 @@ public class CoreGraphAlgorithms {
         return root;
     }
 
-/*    private int loadRels(ReadOperations ops, PrimitiveLongIterator relIds, int size, int relType, int[] rels) throws EntityNotFoundException {
-        // todo reuse array
-        int idx = 0, count = 0;
-        while (relIds.hasNext()) {
-            long relId = relIds.next();
-            Cursor<RelationshipItem> c = ops.relationshipCursorById(relId);
-            if (c.next()) {
-                if (relType == -1 || c.get().type() == relType) {
-                    rels[idx] = mapId(c.get().endNode());
-                    count ++;
-                }
-            }
-            idx++;
-        }
-        return count;
-    }*/
-
-
-    private static int mapId(long id) {
-        return (int) id; // TODO proper mapping to smaller array
-    }
-    private static long unMapId(int id) {
-        return (long) id; // TODO proper mapping to smaller array
+    public CoreGraphAlgorithms(KernelTransaction ktx) {
+        this(ktx, null, null);
     }
 
-    public CoreGraphAlgorithms(KernelTransaction ktx) {
+    /**
+     * with a pool the graph is loaded in parallel by id-ranges, each in its own transaction,
+     * so changes of the callers transaction are not visible to the loader
+     */
+    public CoreGraphAlgorithms(KernelTransaction ktx, GraphDatabaseAPI db, ExecutorService pool) {
         this.ktx = ktx;
         this.read = ktx.dataRead();
         this.cursors = ktx.cursors();
-    }
-
-    private void loadRels(int labelId, int relTypeId) {
-        this.relCount = (int) read.countsForRelationshipWithoutTxState(labelId, relTypeId, ANY_LABEL);
-        this.rels = new int[relCount];
-//        float percentage = (float) relCount / (float) allRelCount;
-//        if (percentage > 0.5) {
-//            this.relCount = loadRels(ops, ops.relationshipsGetAll(), relCount, relTypeId,rels);
-//        }
-//        else {
-//            PrimitiveLongIterator nodeIds = labelId == -1 ? ops.nodesGetAll() : ops.nodesGetForLabel(labelId);
-//            this.relCount = loadNodeRels(ops, nodeIds, relTypeId, rels);
-//        }
-
-        try (NodeLabelIndexCursor nodeLabelIndexCursor = cursors.allocateNodeLabelIndexCursor();
-             NodeCursor nodeCursor = cursors.allocateNodeCursor()
-            ) {
-
-            int idx = 0;
-            int[] relTypes = relTypeId == ANY_RELATIONSHIP_TYPE ? null : new int[]{relTypeId};
-            if (labelId == ANY_LABEL) {
-                read.allNodesScan(nodeCursor);
-                while (nodeCursor.next()) {
-                    idx = loadRelsForNode(nodeCursor, idx, relTypes);
-                }
-            } else {
-                read.nodeLabelScan(labelId, nodeLabelIndexCursor);
-                while (nodeLabelIndexCursor.next()) {
-                    nodeLabelIndexCursor.node(nodeCursor);
-                    if (!nodeCursor.next()) {
-                        throw new IllegalArgumentException("could not position cursor");
-                    }
-                    idx = loadRelsForNode(nodeCursor, idx, relTypes);
-                }
-            }
-        }
-    }
-
-    private int loadRelsForNode(NodeCursor nodeCursor, int idx, int[] relTypes) {
-        RelationshipSelectionCursor relationshipSelectionCursor = RelationshipSelections.outgoingCursor(cursors, nodeCursor, relTypes);
-        while (relationshipSelectionCursor.next()) {
-            rels[idx++] = mapId(relationshipSelectionCursor.otherNodeReference());
-        }
-        return idx;
-    }
-
-    private void loadNodes(int labelId, int relTypeId)  {
-        this.labelId = labelId;
-        this.relTypeId = relTypeId;
-
-        int allNodeCount = (int) ktx.dataRead().nodesGetCount();
-        if (labelId == ANY_LABEL) {
-            this.nodeRelOffsets = loadNodes(allNodeCount, relTypeId, OUTGOING);
-            this.nodeCount = nodeRelOffsets.length;
-        } else {
-            this.nodeCount = (int) ktx.dataRead().countsForNodeWithoutTxState(labelId);
-            float percentage = (float)nodeCount / (float)allNodeCount;
-
-            this.nodeRelOffsets = (percentage > 0.5f) ?
-                    loadNodesForLabel(labelId,    nodeCount, relTypeId, OUTGOING) :
-                    loadNodes( allNodeCount, relTypeId, OUTGOING);
-        }
+        this.db = db;
+        this.pool = db == null ? null : pool;
     }
 
     public CoreGraphAlgorithms init(String label) {
@@ -530,14 +656,8 @@ public class CoreGraphAlgorithms {
         return this;
     }
 
-    // todo fix offset in node array while iterating over rels
-    // only provide source label, no entries for dst node with diffent label in node array ?
-    // store offsets in node, array (initialize with summed degrees to know where to put rels, fill rest with -1), compact later
-    // degrees only for pageRank
+    // todo multiple rel-types
     // optionally check target node label?
-    // multiple rel-types
-    // parallel loading (parallel degrees + serial offsets + parallel rels + serial compaction (flag if need to)
-    // keep threads with open worker-tx for reads
     public CoreGraphAlgorithms init(String label, String rel)  {
         TokenRead token = ktx.tokenRead();
         int labelId = token.nodeLabel(label);
@@ -547,26 +667,89 @@ public class CoreGraphAlgorithms {
         return this;
     }
 
+    /**
+     * loads the relationships of the type between nodes with the label, both optional,
+     * together with the given numeric relationship property as weight if it is not null
+     */
+    public CoreGraphAlgorithms init(String label, String rel, String weightProperty)  {
+        TokenRead token = ktx.tokenRead();
+        int labelId = label == null ? ANY_LABEL : token.nodeLabel(label);
+        int relTypeId = rel == null ? ANY_RELATIONSHIP_TYPE : token.relationshipType(rel);
+        this.weightKeyId = weightProperty == null ? TokenRead.NO_TOKEN : token.propertyKey(weightProperty);
+        if (weightProperty != null && weightKeyId == TokenRead.NO_TOKEN) {
+            // unknown property, all relationships get the default weight
+            this.weightKeyId = Integer.MIN_VALUE;
+        }
+        loadNodes(labelId, relTypeId);
+        loadRels(labelId, relTypeId);
+        return this;
+    }
+
     public CoreGraphAlgorithms init() {
         loadNodes(ANY_LABEL, ANY_RELATIONSHIP_TYPE);
         loadRels(ANY_LABEL, ANY_RELATIONSHIP_TYPE);
         return this;
     }
 
+    /**
+     * @return number of loaded nodes, these have the dense ids <code>0 .. nodeCount-1</code>
+     */
     public int getNodeCount() {
         return nodeCount;
     }
 
-    public int getRelCount() {
+    /**
+     * @return number of loaded nodes plus the nodes outside of the label that are targets of loaded relationships
+     */
+    public int getMappedNodeCount() {
+        return idMap.size();
+    }
+
+    public long getRelCount() {
         return relCount;
     }
 
-    public int[] getNodeRelOffsets() {
+    /**
+     * @return offsets into {@link #getRels()} by dense node id, with <code>nodeCount+1</code> entries so the last one is the end
+     */
+    public long[] getNodeRelOffsets() {
         return nodeRelOffsets;
     }
 
-    public int[] getRels() {
+    /**
+     * @return dense target node ids of the outgoing relationships, grouped by start node
+     */
+    public HugeIntArray getRels() {
         return rels;
     }
-}
 
+    public NodeIdMap getIdMap() {
+        return idMap;
+    }
+
+    /**
+     * @return the relationship weights in the same order as {@link #getRels()}, or null
+     */
+    public HugeFloatArray getWeights() {
+        return weights;
+    }
+
+    /**
+     * @return approximate memory used by the loaded graph in bytes
+     */
+    public long sizeInBytes() {
+        long size = idMap == null ? 0 : idMap.sizeInBytes();
+        if (nodeRelOffsets != null) size += (long) nodeRelOffsets.length * Long.BYTES;
+        if (rels != null) size += rels.sizeInBytes();
+        if (weights != null) size += weights.sizeInBytes();
+        return size;
+    }
+
+    public int mapId(long nodeId) {
+        return idMap.toMapped(nodeId);
+    }
+
+    public long unMapId(int mappedId) {
+        return idMap.toOriginal(mappedId);
+    }
+}
@@ -0,0 +1,284 @@
+package apoc.algo;
+
+import apoc.Pools;
+import apoc.result.NodeScore;
+import apoc.util.Util;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Label;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.NotFoundException;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.RelationshipType;
+import org.neo4j.graphdb.event.LabelEntry;
+import org.neo4j.graphdb.event.PropertyEntry;
+import org.neo4j.graphdb.event.TransactionData;
+import org.neo4j.graphdb.event.TransactionEventHandler;
+import org.neo4j.internal.kernel.api.TokenRead;
+import org.neo4j.kernel.api.KernelTransaction;
+import org.neo4j.kernel.internal.GraphDatabaseAPI;
+import org.neo4j.logging.Log;
+import org.neo4j.procedure.Context;
+import org.neo4j.procedure.Description;
+import org.neo4j.procedure.Name;
+import org.neo4j.procedure.Procedure;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Named in-memory projections of the graph (see {@link CoreGraphAlgorithms}) that are loaded once and reused by the
+ * apoc.algo.graph.* algorithms until they are dropped or invalidated by a change to the projected labels or types.
+ */
+public class GraphProjections {
+
+    static final Map<String, Projection> projections = new ConcurrentHashMap<>();
+
+    @Context
+    public GraphDatabaseAPI db;
+
+    @Context
+    public KernelTransaction ktx;
+
+    @Context
+    public Log log;
+
+    @Procedure
+    @Description("apoc.algo.graph.load(name, {label, relType, weightProperty, parallel:true, invalidateOnChange:false}) - loads the nodes with the label and their outgoing relationships of the type into a named in-memory projection, replacing an existing one")
+    public Stream<ProjectionInfo> load(@Name("name") String name, @Name(value = "config", defaultValue = "{}") Map<String, Object> config) {
+        String label = (String) config.get("label");
+        String relType = (String) config.get("relType");
+        String weightProperty = (String) config.get("weightProperty");
+        boolean parallel = Util.toBoolean(config.getOrDefault("parallel", true));
+        boolean invalidateOnChange = Util.toBoolean(config.getOrDefault("invalidateOnChange", false));
+
+        TokenRead token = ktx.tokenRead();
+        if (label != null && token.nodeLabel(label) == TokenRead.NO_TOKEN) {
+            throw new IllegalArgumentException("Unknown label " + label);
+        }
+        if (relType != null && token.relationshipType(relType) == TokenRead.NO_TOKEN) {
+            throw new IllegalArgumentException("Unknown relationship type " + relType);
+        }
+
+        long start = System.currentTimeMillis();
+        CoreGraphAlgorithms algos = parallel ? new CoreGraphAlgorithms(ktx, db, Pools.pool(Pools.ALGO)) : new CoreGraphAlgorithms(ktx);
+        algos.init(label, relType, weightProperty);
+        Projection projection = new Projection(name, db, algos, label, relType, weightProperty, System.currentTimeMillis() - start);
+        if (invalidateOnChange) {
+            projection.registerInvalidation(log);
+        }
+        Projection previous = projections.put(name, projection);
+        if (previous != null) previous.close();
+        return Stream.of(projection.info());
+    }
+
+    @Procedure
+    @Description("apoc.algo.graph.list() - lists the loaded projections with their size and memory usage")
+    public Stream<ProjectionInfo> list() {
+        return projections.values().stream().map(Projection::info);
+    }
+
+    @Procedure
+    @Description("apoc.algo.graph.drop(name) - drops the projection and frees its memory")
+    public Stream<ProjectionInfo> drop(@Name("name") String name) {
+        Projection projection = projections.remove(name);
+        if (projection == null) return Stream.empty();
+        projection.close();
+        return Stream.of(projection.info());
+    }
+
+    @Procedure
+    @Description("apoc.algo.graph.pageRank(name, {iterations:20}) YIELD node, score - computes page rank on the projection, weighted if it was loaded with a weightProperty")
+    public Stream<NodeScore> pageRank(@Name("name") String name, @Name(value = "config", defaultValue = "{}") Map<String, Object> config) {
+        int iterations = Util.toInteger(config.getOrDefault("iterations", 20));
+        Projection projection = get(name);
+        float[] ranks = projection.algos.weightedPageRank(iterations);
+        return IntStream.range(0, projection.algos.getNodeCount())
+                .mapToObj(id -> new NodeScore(projection.node(id), (double) ranks[id]))
+                .filter(score -> score.node != null);
+    }
+
+    @Procedure
+    @Description("apoc.algo.graph.unionFind(name) YIELD node, component - computes the weakly connected components of the projection")
+    public Stream<NodeComponent> unionFind(@Name("name") String name) {
+        Projection projection = get(name);
+        int[] roots = projection.algos.unionFind();
+        return components(projection, roots, true);
+    }
+
+    @Procedure
+    @Description("apoc.algo.graph.labelPropagation(name) YIELD node, component - assigns each node of the projection the smallest node id of its component by label propagation")
+    public Stream<NodeComponent> labelPropagation(@Name("name") String name) {
+        Projection projection = get(name);
+        int[] labels = projection.algos.labelPropagation();
+        return components(projection, labels, false);
+    }
+
+    private Stream<NodeComponent> components(Projection projection, int[] roots, boolean findRoot) {
+        return IntStream.range(0, projection.algos.getNodeCount()).mapToObj(id -> {
+            int root = id;
+            if (findRoot) {
+                while (root != roots[root]) root = roots[root];
+            } else {
+                root = roots[id];
+            }
+            return new NodeComponent(projection.node(id), projection.algos.unMapId(root));
+        }).filter(component -> component.node != null);
+    }
+
+    private Projection get(String name) {
+        Projection projection = projections.get(name);
+        if (projection == null) {
+            throw new IllegalArgumentException("No projection named " + name + ", load it with apoc.algo.graph.load");
+        }
+        projection.uses.increment();
+        return projection;
+    }
+
+    public static void dropAll() {
+        projections.values().forEach(Projection::close);
+        projections.clear();
+    }
+
+    /**
+     * drops the projections of the database, called when it is stopped
+     */
+    public static void dropAll(GraphDatabaseService db) {
+        projections.forEach((name, projection) -> {
+            if (projection.db == db && projections.remove(name, projection)) projection.close();
+        });
+    }
+
+    public static class NodeComponent {
+        public final Node node;
+        public final long component;
+
+        public NodeComponent(Node node, long component) {
+            this.node = node;
+            this.component = component;
+        }
+    }
+
+    public static class ProjectionInfo {
+        public final String name;
+        public final String label;
+        public final String relType;
+        public final String weightProperty;
+        public final long nodes;
+        public final long mappedNodes;
+        public final long relationships;
+        public final long sizeInBytes;
+        public final long loadMillis;
+        public final long uses;
+        public final boolean invalidateOnChange;
+
+        public ProjectionInfo(String name, String label, String relType, String weightProperty, long nodes, long mappedNodes, long relationships, long sizeInBytes, long loadMillis, long uses, boolean invalidateOnChange) {
+            this.name = name;
+            this.label = label;
+            this.relType = relType;
+            this.weightProperty = weightProperty;
+            this.nodes = nodes;
+            this.mappedNodes = mappedNodes;
+            this.relationships = relationships;
+            this.sizeInBytes = sizeInBytes;
+            this.loadMillis = loadMillis;
+            this.uses = uses;
+            this.invalidateOnChange = invalidateOnChange;
+        }
+    }
+
+    static class Projection {
+        final String name;
+        final GraphDatabaseService db;
+        final CoreGraphAlgorithms algos;
+        final String label, relType, weightProperty;
+        final long loadMillis;
+        final LongAdder uses = new LongAdder();
+        private TransactionEventHandler<Boolean> invalidation;
+
+        Projection(String name, GraphDatabaseService db, CoreGraphAlgorithms algos, String label, String relType, String weightProperty, long loadMillis) {
+            this.name = name;
+            this.db = db;
+            this.algos = algos;
+            this.label = label;
+            this.relType = relType;
+            this.weightProperty = weightProperty;
+            this.loadMillis = loadMillis;
+        }
+
+        /**
+         * @return the node, or null if it was deleted after the projection was loaded
+         */
+        Node node(int mappedId) {
+            try {
+                return db.getNodeById(algos.unMapId(mappedId));
+            } catch (NotFoundException e) {
+                return null;
+            }
+        }
+
+        ProjectionInfo info() {
+            return new ProjectionInfo(name, label, relType, weightProperty, algos.getNodeCount(), algos.getMappedNodeCount(),
+                    algos.getRelCount(), algos.sizeInBytes(), loadMillis, uses.sum(), invalidation != null);
+        }
+
+        void registerInvalidation(Log log) {
+            invalidation = new TransactionEventHandler.Adapter<Boolean>() {
+                // checked before the commit, the types and labels of deleted entities are not accessible after it
+                @Override
+                public Boolean beforeCommit(TransactionData data) {
+                    return affects(data);
+                }
+
+                @Override
+                public void afterCommit(TransactionData data, Boolean affected) {
+                    if (Boolean.TRUE.equals(affected) && projections.remove(name, Projection.this)) {
+                        log.info("Dropping projection %s after a change to its labels or relationship types", name);
+                        close();
+                    }
+                }
+            };
+            db.registerTransactionEventHandler(invalidation);
+        }
+
+        boolean affects(TransactionData data) {
+            if (label == null) {
+                if (data.createdNodes().iterator().hasNext() || data.deletedNodes().iterator().hasNext()) return true;
+            } else {
+                if (hasLabel(data.assignedLabels()) || hasLabel(data.removedLabels())) return true;
+            }
+            if (hasType(data.createdRelationships()) || hasType(data.deletedRelationships())) return true;
+            if (weightProperty != null) {
+                return hasWeight(data.assignedRelationshipProperties()) || hasWeight(data.removedRelationshipProperties());
+            }
+            return false;
+        }
+
+        private boolean hasLabel(Iterable<LabelEntry> entries) {
+            Label projected = Label.label(label);
+            return StreamSupport.stream(entries.spliterator(), false).anyMatch(e -> e.label().equals(projected));
+        }
+
+        private boolean hasType(Iterable<Relationship> rels) {
+            return StreamSupport.stream(rels.spliterator(), false).anyMatch(r -> relType == null || r.isType(RelationshipType.withName(relType)));
+        }
+
+        private boolean hasWeight(Iterable<PropertyEntry<Relationship>> entries) {
+            return StreamSupport.stream(entries.spliterator(), false)
+                    .anyMatch(e -> e.key().equals(weightProperty) && (relType == null || e.entity().isType(RelationshipType.withName(relType))));
+        }
+
+        void close() {
+            if (invalidation != null) {
+                try {
+                    db.unregisterTransactionEventHandler(invalidation);
+                } catch (Exception ignore) {
+                    // database already shut down
+                }
+            }
+        }
+    }
+}
@@ -84,7 +84,7 @@ public class LabelPropagation {
     }
 
     private Future<Void> clusterBatch(List<Node> batch, String partitionKey, RelationshipType relationshipType, Direction direction, String weightKey) {
-        return Pools.processBatch(batch, db, (node) -> {
+        return Pools.processBatch(Pools.pool(Pools.ALGO), batch, db, (node) -> {
             Map<Object, Double> votes = new HashMap<>();
             for (Relationship rel :
                     relationshipType == null
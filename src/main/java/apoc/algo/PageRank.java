@@ -16,7 +16,6 @@ import org.neo4j.logging.Log;
 
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ExecutorService;
 import java.util.stream.Stream;
 
 import static apoc.algo.algorithms.AlgoUtils.*;
@@ -26,7 +25,6 @@ public class PageRank {
     private static final String SETTING_PAGE_RANK_ITERATIONS = "iterations";
     private static final String SETTING_PAGE_RANK_TYPES = "types";
 
-    static final ExecutorService pool = Pools.DEFAULT;
     static final Long DEFAULT_PAGE_RANK_ITERATIONS = 20L;
 
     @Context
@@ -87,12 +85,12 @@ public class PageRank {
         boolean shouldWrite = (boolean)config.getOrDefault(SETTING_WRITE, DEFAULT_PAGE_RANK_WRITE);
         Number weight = (Number) config.get(SETTING_WEIGHTED);
         Number batchSize = (Number) config.get(SETTING_BATCH_SIZE);
-        int concurrency = ((Number) config.getOrDefault("concurrency",Pools.getNoThreadsInDefaultPool())).intValue();
+        int concurrency = ((Number) config.getOrDefault("concurrency",Pools.getNoThreadsInPool(Pools.ALGO))).intValue();
         String property = (String) config.getOrDefault("property","pagerank");
 
         long beforeReading = System.currentTimeMillis();
         log.info("Pagerank: Reading data into local ds");
-        PageRankArrayStorageParallelCypher pageRank = new PageRankArrayStorageParallelCypher(db, guard, pool, log);
+        PageRankArrayStorageParallelCypher pageRank = new PageRankArrayStorageParallelCypher(db, guard, Pools.pool(Pools.ALGO), log);
         boolean success = pageRank.readNodeAndRelCypherData(
                 relCypher, nodeCypher,weight, batchSize, concurrency);
         if (!success) {
@@ -121,7 +119,7 @@ public class PageRank {
 
     private Stream<NodeScore> innerPageRank(Long iterations, List<Node> nodes, RelationshipType... types) {
         try {
-            PageRankArrayStorageParallelSPI pageRank = new PageRankArrayStorageParallelSPI(db, ktx, guard, pool);
+            PageRankArrayStorageParallelSPI pageRank = new PageRankArrayStorageParallelSPI(db, ktx, guard, Pools.pool(Pools.ALGO));
             pageRank.compute(iterations.intValue(), types);
             return nodes.stream().map(node -> new NodeScore(node, pageRank.getResult(node.getId())));
         } catch (Exception e) {
@@ -132,7 +130,7 @@ public class PageRank {
     }
     private Stream<PageRankStatistics> innerPageRankStats(int iterations, Map<String,Object> config, RelationshipType... types) {
         try {
-            PageRankArrayStorageParallelSPI pageRank = new PageRankArrayStorageParallelSPI(db, ktx, guard, pool);
+            PageRankArrayStorageParallelSPI pageRank = new PageRankArrayStorageParallelSPI(db, ktx, guard, Pools.pool(Pools.ALGO));
             pageRank.compute(iterations, types);
             if ((boolean)config.getOrDefault(SETTING_WRITE, DEFAULT_PAGE_RANK_WRITE)) {
                 pageRank.writeResultsToDB();
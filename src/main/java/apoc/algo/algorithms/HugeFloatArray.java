@@ -0,0 +1,44 @@
+package apoc.algo.algorithms;
+
+/**
+ * a fixed size float-array addressed by long indexes, split into pages like {@link HugeIntArray},
+ * pages are allocated up front so distinct indexes can be written from different threads
+ */
+public class HugeFloatArray {
+    private static final int PAGE_BITS = HugeIntArray.PAGE_BITS;
+    private static final int PAGE_SIZE = 1 << PAGE_BITS;
+    private static final long PAGE_MASK = PAGE_SIZE - 1;
+
+    private final float[][] pages;
+    private final long size;
+
+    public HugeFloatArray(long size) {
+        if (size < 0) throw new IllegalArgumentException("negative size " + size);
+        this.size = size;
+        int numPages = (int) ((size + PAGE_MASK) >>> PAGE_BITS);
+        this.pages = new float[numPages][];
+        for (int i = 0; i < numPages; i++) {
+            long remaining = size - ((long) i << PAGE_BITS);
+            pages[i] = new float[(int) Math.min(PAGE_SIZE, remaining)];
+        }
+    }
+
+    public float get(long index) {
+        return pages[(int) (index >>> PAGE_BITS)][(int) (index & PAGE_MASK)];
+    }
+
+    public void set(long index, float value) {
+        pages[(int) (index >>> PAGE_BITS)][(int) (index & PAGE_MASK)] = value;
+    }
+
+    public long size() {
+        return size;
+    }
+
+    /**
+     * @return the memory used by the pages in bytes
+     */
+    public long sizeInBytes() {
+        return size * Float.BYTES;
+    }
+}
@@ -0,0 +1,71 @@
+package apoc.algo.algorithms;
+
+import java.util.Arrays;
+
+/**
+ * a fixed size int-array addressed by long indexes, split into pages so it can hold more than 2^31 entries,
+ * pages are allocated up front so distinct indexes can be written from different threads
+ */
+public class HugeIntArray {
+    public static final int PAGE_BITS = 20;
+    private static final int PAGE_SIZE = 1 << PAGE_BITS;
+    private static final long PAGE_MASK = PAGE_SIZE - 1;
+
+    private final int[][] pages;
+    private final long size;
+
+    public HugeIntArray(long size) {
+        if (size < 0) throw new IllegalArgumentException("negative size " + size);
+        this.size = size;
+        int numPages = (int) ((size + PAGE_MASK) >>> PAGE_BITS);
+        this.pages = new int[numPages][];
+        for (int i = 0; i < numPages; i++) {
+            long remaining = size - ((long) i << PAGE_BITS);
+            pages[i] = new int[(int) Math.min(PAGE_SIZE, remaining)];
+        }
+    }
+
+    public int get(long index) {
+        return pages[(int) (index >>> PAGE_BITS)][(int) (index & PAGE_MASK)];
+    }
+
+    public void set(long index, int value) {
+        pages[(int) (index >>> PAGE_BITS)][(int) (index & PAGE_MASK)] = value;
+    }
+
+    public void fill(long from, long to, int value) {
+        for (long i = from; i < to; i++) {
+            set(i, value);
+        }
+    }
+
+    public long size() {
+        return size;
+    }
+
+    /**
+     * @return the memory used by the pages in bytes
+     */
+    public long sizeInBytes() {
+        return size * Integer.BYTES;
+    }
+
+    /**
+     * turn this array into a regular int-array, mostly for compatibility, fails if it has more than 2^31 entries
+     */
+    public int[] toArray() {
+        if (size > Integer.MAX_VALUE - 8) {
+            throw new IllegalStateException("Can't turn an array of " + size + " entries into an int[]");
+        }
+        int[] result = new int[(int) size];
+        for (int i = 0; i < pages.length; i++) {
+            System.arraycopy(pages[i], 0, result, i << PAGE_BITS, pages[i].length);
+        }
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return size <= 100 ? Arrays.toString(toArray()) : "HugeIntArray{size=" + size + "}";
+    }
+}
@@ -0,0 +1,91 @@
+package apoc.algo.algorithms;
+
+import org.neo4j.collection.primitive.Primitive;
+import org.neo4j.collection.primitive.PrimitiveLongIntMap;
+import org.neo4j.collection.primitive.hopscotch.LongKeyIntValueTable;
+
+import java.util.Arrays;
+
+/**
+ * maps sparse (long) node-ids to dense int ids in <code>0 .. size()-1</code>
+ *
+ * the loaded nodes are kept as a sorted long[] so their dense id is their position in it,
+ * nodes that are only reached as targets of relationships (e.g. with a label filter) are added after them on demand
+ */
+public class NodeIdMap {
+    public static final int NOT_MAPPED = -1;
+
+    private final long[] ids;
+    private final int nodeCount;
+    private final PrimitiveLongIntMap additional = Primitive.longIntMap();
+    private long[] additionalIds = new long[16];
+    private int additionalCount;
+
+    /**
+     * @param sortedIds ascending node-ids, only the first <code>nodeCount</code> entries are used
+     */
+    public NodeIdMap(long[] sortedIds, int nodeCount) {
+        this.ids = sortedIds;
+        this.nodeCount = nodeCount;
+    }
+
+    /**
+     * @return the number of nodes the map was created with
+     */
+    public int nodeCount() {
+        return nodeCount;
+    }
+
+    /**
+     * @return the number of mapped nodes including the ones added later
+     */
+    public int size() {
+        synchronized (additional) {
+            return nodeCount + additionalCount;
+        }
+    }
+
+    public int toMapped(long nodeId) {
+        int idx = Arrays.binarySearch(ids, 0, nodeCount, nodeId);
+        if (idx >= 0) return idx;
+        synchronized (additional) {
+            int id = additional.get(nodeId);
+            return id == LongKeyIntValueTable.NULL ? NOT_MAPPED : id;
+        }
+    }
+
+    public int getOrAdd(long nodeId) {
+        int idx = Arrays.binarySearch(ids, 0, nodeCount, nodeId);
+        if (idx >= 0) return idx;
+        synchronized (additional) {
+            int id = additional.get(nodeId);
+            if (id != LongKeyIntValueTable.NULL) return id;
+            if (nodeCount + additionalCount == Integer.MAX_VALUE) {
+                throw new IllegalStateException("Can't map more than " + Integer.MAX_VALUE + " nodes");
+            }
+            if (additionalCount == additionalIds.length) {
+                additionalIds = Arrays.copyOf(additionalIds, additionalIds.length * 2);
+            }
+            additionalIds[additionalCount] = nodeId;
+            id = nodeCount + additionalCount++;
+            additional.put(nodeId, id);
+            return id;
+        }
+    }
+
+    public long toOriginal(int mappedId) {
+        if (mappedId < nodeCount) return ids[mappedId];
+        synchronized (additional) {
+            return additionalIds[mappedId - nodeCount];
+        }
+    }
+
+    /**
+     * @return approximate memory used by the mapping in bytes
+     */
+    public long sizeInBytes() {
+        synchronized (additional) {
+            return (long) ids.length * Long.BYTES + (long) additionalIds.length * Long.BYTES * 3;
+        }
+    }
+}
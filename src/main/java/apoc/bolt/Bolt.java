@@ -7,10 +7,6 @@ import apoc.result.VirtualRelationship;
 import apoc.util.UriResolver;
 import apoc.util.Util;
 import org.neo4j.driver.internal.InternalEntity;
-import org.neo4j.driver.internal.logging.JULogging;
-import org.neo4j.driver.v1.Config;
-import org.neo4j.driver.v1.Driver;
-import org.neo4j.driver.v1.GraphDatabase;
 import org.neo4j.driver.v1.Session;
 import org.neo4j.driver.v1.StatementResult;
 import org.neo4j.driver.v1.Transaction;
@@ -26,7 +22,6 @@ import org.neo4j.procedure.Context;
 import org.neo4j.procedure.Name;
 import org.neo4j.procedure.Procedure;
 
-import java.io.File;
 import java.net.URISyntaxException;
 import java.util.AbstractMap;
 import java.util.Collection;
@@ -35,12 +30,12 @@ import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Spliterator;
 import java.util.Spliterators;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
-import java.util.logging.Level;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
 
@@ -58,39 +53,59 @@ public class Bolt {
     @Procedure()
     @Description("apoc.bolt.load(url-or-key, statement, params, config) - access to other databases via bolt for read/write")
     public Stream<RowResult> load(@Name("url") String url, @Name("statement") String statement, @Name(value = "params", defaultValue = "{}") Map<String, Object> params, @Name(value = "config", defaultValue = "{}") Map<String, Object> config) throws URISyntaxException {
-        if (params == null) params = Collections.emptyMap();
+        final Map<String, Object> finalParams = params == null ? Collections.emptyMap() : params;
         BoltConfig boltConfig = new BoltConfig(config);
+        return withSession(url, config, session -> boltConfig.isAddStatistics()
+                ? Stream.of(new RowResult(toMap(runStatement(statement, session, finalParams, boltConfig).summary().counters())))
+                : getRowResultStream(session, finalParams, statement, boltConfig));
+    }
 
+    @Procedure()
+    @Description("apoc.bolt.execute(url-or-key, statement, params, config) - access to other databases via bolt for read")
+    public Stream<RowResult> execute(@Name("url") String url, @Name("statement") String statement, @Name(value = "params", defaultValue = "{}") Map<String, Object> params, @Name(value = "config", defaultValue = "{}") Map<String, Object> config) throws URISyntaxException {
+        Map<String, Object> configuration = new HashMap<>(config);
+        configuration.put("readOnly", false);
+        return load(url, statement, params, configuration);
+    }
+
+    @Procedure()
+    @Description("apoc.bolt.batch(url-or-key, statement, batch, config) - runs the statement for each map of the batch via bolt as 'UNWIND $batch AS row statement', sending batchSize maps per round trip")
+    public Stream<RowResult> batch(@Name("url") String url, @Name("statement") String statement, @Name("batch") List<Map<String, Object>> batch, @Name(value = "config", defaultValue = "{}") Map<String, Object> config) throws URISyntaxException {
+        if (batch == null || batch.isEmpty()) return Stream.empty();
+        Map<String, Object> configuration = new HashMap<>(config);
+        configuration.putIfAbsent("readOnly", false);
+        BoltConfig boltConfig = new BoltConfig(configuration);
+        int batchSize = Math.max(1, Util.toLong(configuration.getOrDefault("batchSize", 1000L)).intValue());
+        String unwindStatement = "UNWIND $batch AS row " + statement;
+        return withSession(url, configuration, session -> IntStream.range(0, (batch.size() + batchSize - 1) / batchSize)
+                .mapToObj(i -> Collections.<String, Object>singletonMap("batch", batch.subList(i * batchSize, Math.min(batch.size(), (i + 1) * batchSize))))
+                .flatMap(params -> boltConfig.isAddStatistics()
+                        ? Stream.of(new RowResult(toMap(runStatement(unwindStatement, session, params, boltConfig).summary().counters())))
+                        : getRowResultStream(session, params, unwindStatement, boltConfig)));
+    }
 
-        Config driverConfig = toDriverConfig(config.getOrDefault("driverConfig", map()));
+    private Stream<RowResult> withSession(String url, Map<String, Object> config, Function<Session, Stream<RowResult>> action) throws URISyntaxException {
         UriResolver uri = new UriResolver(url, "bolt");
         uri.initialize();
+        Map<String, Object> driverConfig = (Map<String, Object>) config.getOrDefault("driverConfig", map());
+        BoltDrivers.Lease lease = null;
+        Session session = null;
         try {
-            final Driver driver = GraphDatabase.driver(uri.getConfiguredUri(), uri.getToken(), driverConfig);
-            final Session session = driver.session();
-            final Stream<RowResult> result;
-            if (boltConfig.isAddStatistics()) {
-                result = Stream.of(new RowResult(toMap(runStatement(statement, session, params, boltConfig).summary().counters())));
-            } else {
-                result = getRowResultStream(session, params, statement, boltConfig);
-            }
-            return result.onClose(() -> {
-                session.close();
-                driver.close();
+            lease = BoltDrivers.acquire(uri.getConfiguredUri(), uri.getToken(), driverConfig);
+            session = lease.driver().session();
+            final Session finalSession = session;
+            final BoltDrivers.Lease finalLease = lease;
+            return action.apply(session).onClose(() -> {
+                finalSession.close();
+                finalLease.close();
             });
         } catch (Exception e) {
+            if (session != null) session.close();
+            if (lease != null) lease.close();
             throw new RuntimeException("It's not possible to create a connection due to: " + e.getMessage());
         }
     }
 
-    @Procedure()
-    @Description("apoc.bolt.execute(url-or-key, statement, params, config) - access to other databases via bolt for read")
-    public Stream<RowResult> execute(@Name("url") String url, @Name("statement") String statement, @Name(value = "params", defaultValue = "{}") Map<String, Object> params, @Name(value = "config", defaultValue = "{}") Map<String, Object> config) throws URISyntaxException {
-        Map<String, Object> configuration = new HashMap<>(config);
-        configuration.put("readOnly", false);
-        return load(url, statement, params, configuration);
-    }
-
     private StatementResult runStatement(@Name("statement") String statement, Session session, Map<String, Object> finalParams, BoltConfig boltConfig) {
         return boltConfig.isReadOnly()
                 ? session.readTransaction((Transaction tx) -> tx.run(statement, finalParams))
@@ -99,7 +114,7 @@ public class Bolt {
 
     private Stream<RowResult> getRowResultStream(Session session, Map<String, Object> params, String statement, BoltConfig boltConfig) {
         Map<Long, org.neo4j.graphdb.Node> nodesCache = new ConcurrentHashMap<>();
-        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(runStatement(statement, session, params, boltConfig), 0), true)
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(runStatement(statement, session, params, boltConfig), Spliterator.ORDERED), false)
                 .map(record -> new RowResult(record.asMap(value -> convert(session, value, boltConfig, nodesCache))));
     }
 
@@ -220,36 +235,4 @@ public class Bolt {
                 "indexesRemoved", resultSummary.indexesRemoved()
         );
     }
-
-    private Config toDriverConfig(Object driverConfig) {
-        Map<String, Object> driverConfMap = (Map<String, Object>) driverConfig;
-        String logging = (String) driverConfMap.getOrDefault("logging", "INFO");
-        boolean encryption = (boolean) driverConfMap.getOrDefault("encryption", true);
-        boolean logLeakedSessions = (boolean) driverConfMap.getOrDefault("logLeakedSessions", true);
-        Long maxIdleConnectionPoolSize = (Long) driverConfMap.getOrDefault("maxIdleConnectionPoolSize", 10L);
-        Long idleTimeBeforeConnectionTest = (Long) driverConfMap.getOrDefault("idleTimeBeforeConnectionTest", -1L);
-        String trustStrategy = (String) driverConfMap.getOrDefault("trustStrategy", "TRUST_ALL_CERTIFICATES");
-        Long routingFailureLimit = (Long) driverConfMap.getOrDefault("routingFailureLimit", 1L);
-        Long routingRetryDelayMillis = (Long) driverConfMap.getOrDefault("routingRetryDelayMillis", 5000L);
-        Long connectionTimeoutMillis = (Long) driverConfMap.getOrDefault("connectionTimeoutMillis", 5000L);
-        Long maxRetryTimeMs = (Long) driverConfMap.getOrDefault("maxRetryTimeMs", 30000L);
-        Config.ConfigBuilder config = Config.build();
-        config.withLogging(new JULogging(Level.parse(logging)));
-        if(!encryption) config.withoutEncryption();
-        config.withTrustStrategy(Config.TrustStrategy.trustAllCertificates());
-        if(!logLeakedSessions) config.withoutEncryption();
-        config.withMaxIdleSessions(maxIdleConnectionPoolSize.intValue());
-        config.withConnectionLivenessCheckTimeout(idleTimeBeforeConnectionTest, TimeUnit.MILLISECONDS);
-        config.withRoutingFailureLimit(routingFailureLimit.intValue());
-        config.withConnectionTimeout(connectionTimeoutMillis, TimeUnit.MILLISECONDS);
-        config.withRoutingRetryDelay(routingRetryDelayMillis,TimeUnit.MILLISECONDS);
-        config.withMaxTransactionRetryTime(maxRetryTimeMs, TimeUnit.MILLISECONDS);
-        if(trustStrategy.equals("TRUST_ALL_CERTIFICATES")) config.withTrustStrategy(Config.TrustStrategy.trustAllCertificates());
-        else if(trustStrategy.equals("TRUST_SYSTEM_CA_SIGNED_CERTIFICATES")) config.withTrustStrategy(Config.TrustStrategy.trustSystemCertificates());
-        else {
-            File file = new File(trustStrategy);
-            config.withTrustStrategy(Config.TrustStrategy.trustCustomCertificateSignedBy(file));
-        }
-        return config.toConfig();
-    }
 }
@@ -0,0 +1,167 @@
+package apoc.bolt;
+
+import apoc.ApocConfiguration;
+import apoc.Pools;
+import apoc.util.Util;
+import org.neo4j.driver.internal.logging.JULogging;
+import org.neo4j.driver.v1.AuthToken;
+import org.neo4j.driver.v1.Config;
+import org.neo4j.driver.v1.Driver;
+import org.neo4j.driver.v1.GraphDatabase;
+
+import java.io.File;
+import java.net.URI;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+
+/**
+ * The drivers of apoc.bolt.*, shared by the calls with the same url, credentials and driver config.
+ *
+ * Each driver keeps a bounded pool of connections that are tested before they are reused after being idle,
+ * so the calls don't connect and authenticate every time. Drivers that haven't been used for
+ * <code>apoc.bolt.driver.idleTimeout</code> milliseconds are closed.
+ */
+class BoltDrivers {
+
+    static final String CONFIG_IDLE_TIMEOUT = "bolt.driver.idleTimeout";
+    static final long DEFAULT_IDLE_TIMEOUT = TimeUnit.MINUTES.toMillis(5);
+
+    private static final Map<List<Object>, PooledDriver> drivers = new ConcurrentHashMap<>();
+
+    static {
+        long idleTimeout = idleTimeout();
+        long period = Math.max(1000, idleTimeout / 4);
+        Pools.SCHEDULED.scheduleWithFixedDelay(() -> evictIdle(idleTimeout()), period, period, TimeUnit.MILLISECONDS);
+        Runtime.getRuntime().addShutdownHook(new Thread(BoltDrivers::closeAll));
+    }
+
+    private BoltDrivers() {
+    }
+
+    private static class PooledDriver {
+        final Driver driver;
+        // both are only changed within the compute functions of the registry
+        int users;
+        long lastUsed = System.currentTimeMillis();
+
+        PooledDriver(Driver driver) {
+            this.driver = driver;
+        }
+    }
+
+    /**
+     * A driver borrowed from the registry, closing it hands the driver back without closing it.
+     */
+    static class Lease implements AutoCloseable {
+        private final List<Object> key;
+        private final Driver driver;
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        private Lease(List<Object> key, Driver driver) {
+            this.key = key;
+            this.driver = driver;
+        }
+
+        Driver driver() {
+            return driver;
+        }
+
+        @Override
+        public void close() {
+            if (closed.compareAndSet(false, true)) {
+                drivers.computeIfPresent(key, (k, pooled) -> {
+                    pooled.users--;
+                    pooled.lastUsed = System.currentTimeMillis();
+                    return pooled;
+                });
+            }
+        }
+    }
+
+    static Lease acquire(URI uri, AuthToken token, Map<String, Object> driverConfig) {
+        List<Object> key = Arrays.asList(uri, token, driverConfig);
+        PooledDriver pooled = drivers.compute(key, (k, existing) -> {
+            PooledDriver driver = existing != null ? existing : new PooledDriver(GraphDatabase.driver(uri, token, toDriverConfig(driverConfig)));
+            driver.users++;
+            return driver;
+        });
+        return new Lease(key, pooled.driver);
+    }
+
+    static long idleTimeout() {
+        return Util.toLong(ApocConfiguration.get(CONFIG_IDLE_TIMEOUT, DEFAULT_IDLE_TIMEOUT));
+    }
+
+    /**
+     * closes the drivers that nobody uses and that have been idle for longer than the timeout
+     */
+    static void evictIdle(long idleTimeout) {
+        long now = System.currentTimeMillis();
+        for (List<Object> key : drivers.keySet()) {
+            drivers.computeIfPresent(key, (k, pooled) -> {
+                if (pooled.users > 0 || now - pooled.lastUsed < idleTimeout) return pooled;
+                closeQuietly(pooled.driver);
+                return null;
+            });
+        }
+    }
+
+    static void closeAll() {
+        for (List<Object> key : drivers.keySet()) {
+            drivers.computeIfPresent(key, (k, pooled) -> {
+                closeQuietly(pooled.driver);
+                return null;
+            });
+        }
+    }
+
+    private static void closeQuietly(Driver driver) {
+        try {
+            driver.close();
+        } catch (Exception ignore) {
+            //
+        }
+    }
+
+    private static Config toDriverConfig(Map<String, Object> driverConfMap) {
+        String logging = (String) driverConfMap.getOrDefault("logging", "INFO");
+        boolean encryption = (boolean) driverConfMap.getOrDefault("encryption", true);
+        boolean logLeakedSessions = (boolean) driverConfMap.getOrDefault("logLeakedSessions", false);
+        Long maxIdleConnectionPoolSize = (Long) driverConfMap.getOrDefault("maxIdleConnectionPoolSize", 10L);
+        Long maxConnectionPoolSize = (Long) driverConfMap.getOrDefault("maxConnectionPoolSize", 100L);
+        Long connectionAcquisitionTimeoutMillis = (Long) driverConfMap.getOrDefault("connectionAcquisitionTimeoutMillis", 60000L);
+        Long maxConnectionLifetimeMillis = (Long) driverConfMap.getOrDefault("maxConnectionLifetimeMillis", 3600000L);
+        Long idleTimeBeforeConnectionTest = (Long) driverConfMap.getOrDefault("idleTimeBeforeConnectionTest", 30000L);
+        String trustStrategy = (String) driverConfMap.getOrDefault("trustStrategy", "TRUST_ALL_CERTIFICATES");
+        Long routingFailureLimit = (Long) driverConfMap.getOrDefault("routingFailureLimit", 1L);
+        Long routingRetryDelayMillis = (Long) driverConfMap.getOrDefault("routingRetryDelayMillis", 5000L);
+        Long connectionTimeoutMillis = (Long) driverConfMap.getOrDefault("connectionTimeoutMillis", 5000L);
+        Long maxRetryTimeMs = (Long) driverConfMap.getOrDefault("maxRetryTimeMs", 30000L);
+        Config.ConfigBuilder config = Config.build();
+        config.withLogging(new JULogging(Level.parse(logging)));
+        if(!encryption) config.withoutEncryption();
+        config.withTrustStrategy(Config.TrustStrategy.trustAllCertificates());
+        if(logLeakedSessions) config.withLeakedSessionsLogging();
+        config.withMaxIdleSessions(maxIdleConnectionPoolSize.intValue());
+        config.withMaxConnectionPoolSize(maxConnectionPoolSize.intValue());
+        config.withConnectionAcquisitionTimeout(connectionAcquisitionTimeoutMillis, TimeUnit.MILLISECONDS);
+        config.withMaxConnectionLifetime(maxConnectionLifetimeMillis, TimeUnit.MILLISECONDS);
+        config.withConnectionLivenessCheckTimeout(idleTimeBeforeConnectionTest, TimeUnit.MILLISECONDS);
+        config.withRoutingFailureLimit(routingFailureLimit.intValue());
+        config.withConnectionTimeout(connectionTimeoutMillis, TimeUnit.MILLISECONDS);
+        config.withRoutingRetryDelay(routingRetryDelayMillis,TimeUnit.MILLISECONDS);
+        config.withMaxTransactionRetryTime(maxRetryTimeMs, TimeUnit.MILLISECONDS);
+        if(trustStrategy.equals("TRUST_ALL_CERTIFICATES")) config.withTrustStrategy(Config.TrustStrategy.trustAllCertificates());
+        else if(trustStrategy.equals("TRUST_SYSTEM_CA_SIGNED_CERTIFICATES")) config.withTrustStrategy(Config.TrustStrategy.trustSystemCertificates());
+        else {
+            File file = new File(trustStrategy);
+            config.withTrustStrategy(Config.TrustStrategy.trustCustomCertificateSignedBy(file));
+        }
+        return config.toConfig();
+    }
+}
@@ -21,19 +21,20 @@ public class Static {
     @Context
     public GraphDatabaseAPI db;
 
-    private static Map<String,Object> storage = new HashMap<>();
+    private static volatile StaticCache storage = new StaticCache(StaticCache.DEFAULT_MAX_SIZE, StaticCache.Policy.LRU, StaticCache.DEFAULT_SEGMENTS);
 
     @Procedure("apoc.static.get")
     @Deprecated
     @Description("apoc.static.get(name) - returns statically stored value from config (apoc.static.<key>) or server lifetime storage")
     public Stream<ObjectResult> getProcedure(@Name("key") String key) {
-        return Stream.of(new ObjectResult(storage.getOrDefault(key, fromConfig(key))));
+        return Stream.of(new ObjectResult(get(key)));
     }
 
     @UserFunction("apoc.static.get")
     @Description("apoc.static.get(name) - returns statically stored value from config (apoc.static.<key>) or server lifetime storage")
     public Object get(@Name("key") String key) {
-        return storage.getOrDefault(key, fromConfig(key));
+        Object value = storage.get(key);
+        return value == null ? fromConfig(key) : value;
     }
 
     @Deprecated
@@ -52,7 +53,7 @@ public class Static {
     private HashMap<String, Object> getFromConfigAndStorage(@Name("prefix") String prefix) {
         Map<String,Object> config = ApocConfiguration.get("static." + prefix);
         HashMap<String, Object> result = new HashMap<>(config);
-        result.putAll(Util.subMap(storage, prefix));
+        result.putAll(Util.subMap(storage.prefixed(prefix), prefix));
         return result;
     }
 
@@ -68,13 +69,22 @@ public class Static {
     }
 
     @Procedure("apoc.static.set")
-    @Description("apoc.static.set(name, value) - stores value under key for server livetime storage, returns previously stored or configured value")
-    public Stream<ObjectResult> set(@Name("key") String key, @Name("value") Object value) {
-        Object previous = value == null ? storage.remove(key) : storage.put(key, value);
+    @Description("apoc.static.set(name, value, ttlMillis=0) - stores value under key for server livetime storage, optionally expiring after ttlMillis, returns previously stored or configured value")
+    public Stream<ObjectResult> set(@Name("key") String key, @Name("value") Object value, @Name(value = "ttlMillis", defaultValue = "0") long ttlMillis) {
+        Object previous = value == null ? storage.remove(key) : storage.put(key, value, ttlMillis);
         return Stream.of(new ObjectResult(previous==null ? fromConfig(key) : previous));
     }
 
+    @Procedure("apoc.static.stats")
+    @Description("apoc.static.stats() - returns size, hits, misses, evictions and expirations of the server lifetime storage")
+    public Stream<MapResult> stats() {
+        return Stream.of(new MapResult(storage.stats()));
+    }
+
+    /**
+     * drops all stored values and applies the apoc.cache.static.(max_size|policy|segments) settings
+     */
     public static void clear() {
-        storage.clear();
+        storage = StaticCache.from(ApocConfiguration.get("cache.static"));
     }
 }
@@ -0,0 +1,222 @@
+package apoc.cache;
+
+import apoc.util.Util;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Server lifetime storage behind apoc.static.*.
+ *
+ * Keys are spread over lock-striped segments, so concurrent sessions only contend when they touch the same segment.
+ * Each segment is a {@link LinkedHashMap} kept in least recently used order that holds at most
+ * <code>maxSize / segments</code> entries, when it is full either the least recently used entry (LRU) or, among the {@link #LFU_WINDOW} least recently used ones,
+ * the least frequently used entry (LFU) is evicted. Entries may carry a time to live and are dropped lazily once expired.
+ *
+ * A sorted key index serves prefix lookups without scanning all entries.
+ */
+class StaticCache {
+    enum Policy {LRU, LFU}
+
+    static final int DEFAULT_MAX_SIZE = 100_000;
+    static final int DEFAULT_SEGMENTS = 16;
+    static final int LFU_WINDOW = 8;
+
+    private final Segment[] segments;
+    private final int maxSize;
+    private final Policy policy;
+    private final NavigableSet<String> keys = new ConcurrentSkipListSet<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder expirations = new LongAdder();
+
+    StaticCache(int maxSize, Policy policy, int segments) {
+        this.maxSize = maxSize <= 0 ? Integer.MAX_VALUE : maxSize;
+        this.policy = policy;
+        int count = Math.max(1, Math.min(segments, this.maxSize));
+        int capacity = (int) Math.ceil(this.maxSize / (double) count);
+        this.segments = new Segment[count];
+        for (int i = 0; i < count; i++) {
+            this.segments[i] = new Segment(capacity);
+        }
+    }
+
+    static StaticCache from(Map<String, Object> config) {
+        int maxSize = Util.toInteger(config.getOrDefault("max_size", DEFAULT_MAX_SIZE));
+        Policy policy = Policy.valueOf(config.getOrDefault("policy", Policy.LRU.name()).toString().toUpperCase());
+        int segments = Util.toInteger(config.getOrDefault("segments", DEFAULT_SEGMENTS));
+        return new StaticCache(maxSize, policy, segments);
+    }
+
+    private Segment segment(String key) {
+        int h = key.hashCode();
+        h ^= h >>> 16;
+        return segments[Math.floorMod(h, segments.length)];
+    }
+
+    Object get(String key) {
+        Object value = segment(key).get(key, true);
+        if (value == null) misses.increment(); else hits.increment();
+        return value;
+    }
+
+    /**
+     * @param ttlMillis time to live of the entry, 0 or less means it never expires
+     * @return the previous value, null if there was none or it had expired
+     */
+    Object put(String key, Object value, long ttlMillis) {
+        long expiresAt = ttlMillis > 0 ? System.currentTimeMillis() + ttlMillis : 0;
+        return segment(key).put(key, value, expiresAt);
+    }
+
+    Object remove(String key) {
+        return segment(key).remove(key);
+    }
+
+    /**
+     * @return the unexpired entries whose keys start with the prefix, read without changing their recency or frequency
+     */
+    Map<String, Object> prefixed(String prefix) {
+        Map<String, Object> result = new HashMap<>();
+        for (String key : keys.subSet(prefix, true, prefix + Character.MAX_VALUE, true)) {
+            Object value = segment(key).get(key, false);
+            if (value != null) result.put(key, value);
+        }
+        return result;
+    }
+
+    void clear() {
+        for (Segment segment : segments) {
+            segment.clear();
+        }
+    }
+
+    long size() {
+        long size = 0;
+        for (Segment segment : segments) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    Map<String, Object> stats() {
+        long hits = this.hits.sum(), misses = this.misses.sum();
+        return Util.map("size", size(),
+                "maxSize", maxSize == Integer.MAX_VALUE ? -1L : (long) maxSize,
+                "policy", policy.name(),
+                "segments", (long) segments.length,
+                "hits", hits,
+                "misses", misses,
+                "hitRatio", hits + misses == 0 ? 0d : (double) hits / (hits + misses),
+                "evictions", evictions.sum(),
+                "expirations", expirations.sum());
+    }
+
+    private static class Entry {
+        final Object value;
+        final long expiresAt;
+        long frequency;
+
+        Entry(Object value, long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+
+        boolean isExpired(long now) {
+            return expiresAt != 0 && expiresAt <= now;
+        }
+    }
+
+    private class Segment {
+        private final int capacity;
+        private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>();
+
+        Segment(int capacity) {
+            this.capacity = capacity;
+        }
+
+        synchronized Object get(String key, boolean touch) {
+            Entry entry = entries.get(key);
+            if (entry == null) return null;
+            if (entry.isExpired(System.currentTimeMillis())) {
+                expire(key);
+                return null;
+            }
+            if (touch) {
+                // re-inserting moves the entry to the most recently used end
+                entries.remove(key);
+                entries.put(key, entry);
+                entry.frequency++;
+            }
+            return entry.value;
+        }
+
+        synchronized Object put(String key, Object value, long expiresAt) {
+            Entry previous = entries.remove(key);
+            entries.put(key, new Entry(value, expiresAt));
+            if (previous == null) {
+                keys.add(key);
+                if (entries.size() > capacity) evict();
+                return null;
+            }
+            return previous.isExpired(System.currentTimeMillis()) ? null : previous.value;
+        }
+
+        synchronized Object remove(String key) {
+            Entry previous = entries.remove(key);
+            if (previous == null) return null;
+            keys.remove(key);
+            return previous.isExpired(System.currentTimeMillis()) ? null : previous.value;
+        }
+
+        private void expire(String key) {
+            entries.remove(key);
+            keys.remove(key);
+            expirations.increment();
+        }
+
+        // the entry just added is the most recently used one and is never picked
+        private void evict() {
+            long now = System.currentTimeMillis();
+            Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+            String victim = null;
+            long lowest = Long.MAX_VALUE;
+            for (int i = 0; i < LFU_WINDOW && it.hasNext() && i < entries.size() - 1; i++) {
+                Map.Entry<String, Entry> candidate = it.next();
+                if (candidate.getValue().isExpired(now)) {
+                    expire(candidate.getKey());
+                    return;
+                }
+                if (policy == Policy.LRU) {
+                    victim = candidate.getKey();
+                    break;
+                }
+                if (candidate.getValue().frequency < lowest) {
+                    lowest = candidate.getValue().frequency;
+                    victim = candidate.getKey();
+                }
+            }
+            if (victim != null) {
+                entries.remove(victim);
+                keys.remove(victim);
+                evictions.increment();
+            }
+        }
+
+        synchronized void clear() {
+            keys.removeAll(entries.keySet());
+            entries.clear();
+        }
+
+        synchronized int size() {
+            return entries.size();
+        }
+    }
+}
@@ -41,7 +41,7 @@ public class Timeboxed {
 
         // run query to be timeboxed in a separate thread to enable proper tx termination
         // if we'd run this in current thread, a tx.terminate would kill the transaction the procedure call uses itself.
-        Pools.DEFAULT.submit(() -> {
+        Pools.pool(Pools.CYPHER).submit(() -> {
             try (Transaction tx = db.beginTx()) {
                 txAtomic.set(tx);
                 Result result = db.execute(cypher, params == null ? Collections.EMPTY_MAP : params);
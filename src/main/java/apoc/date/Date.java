@@ -1,9 +1,12 @@
 package apoc.date;
 
+import apoc.ttl.TTLLifeCycle;
 import apoc.util.DateFormatUtil;
 import apoc.util.Util;
 import org.neo4j.graphdb.Label;
+import org.neo4j.graphdb.GraphDatabaseService;
 import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Relationship;
 import org.neo4j.procedure.*;
 
 import java.text.DateFormat;
@@ -30,6 +33,9 @@ import static java.time.temporal.ChronoField.*;
  * @since 9.04.2016
  */
 public class Date {
+	@Context
+	public GraphDatabaseService db;
+
 	public static final String DEFAULT_FORMAT = "yyyy-MM-dd HH:mm:ss";
 	private static final int MILLIS_IN_SECOND = 1000;
 	private static final String UTC_ZONE_ID = "UTC";
@@ -77,6 +83,18 @@ public class Date {
 		node.setProperty("ttl",System.currentTimeMillis() + unit(timeUnit).toMillis(time));
 	}
 
+	@Procedure(mode = Mode.WRITE)
+	@Description("CALL apoc.date.expireRelationship(rel,time,'time-unit') - expire relationship at given time by setting the `ttl` property and adding it to the `ttl` relationship index")
+	public void expireRelationship(@Name("rel") Relationship rel, @Name("time") long time, @Name("timeUnit") String timeUnit) {
+		TTLLifeCycle.expire(db, rel, unit(timeUnit).toMillis(time));
+	}
+
+	@Procedure(mode = Mode.WRITE)
+	@Description("CALL apoc.date.expireRelationshipIn(rel,time,'time-unit') - expire relationship in given time-delta by setting the `ttl` property and adding it to the `ttl` relationship index")
+	public void expireRelationshipIn(@Name("rel") Relationship rel, @Name("timeDelta") long time, @Name("timeUnit") String timeUnit) {
+		TTLLifeCycle.expire(db, rel, System.currentTimeMillis() + unit(timeUnit).toMillis(time));
+	}
+
 	@UserFunction
 	@Description("apoc.date.fields('2012-12-23',('yyyy-MM-dd')) - return columns and a map representation of date parsed with the given format with entries for years,months,weekdays,days,hours,minutes,seconds,zoneid")
 	public Map<String,Object> fields(final @Name("date") String date, final @Name(value = "pattern", defaultValue = DEFAULT_FORMAT) String pattern) {
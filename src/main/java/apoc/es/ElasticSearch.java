@@ -1,5 +1,6 @@
 package apoc.es;
 
+import apoc.Pools;
 import apoc.load.LoadJson;
 import apoc.result.MapResult;
 import apoc.util.UrlResolver;
@@ -8,12 +9,16 @@ import org.neo4j.procedure.Description;
 import org.neo4j.procedure.Name;
 import org.neo4j.procedure.Procedure;
 
-import java.util.Collections;
-import java.util.Map;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import static apoc.util.MapUtil.map;
 
@@ -33,6 +38,11 @@ public class ElasticSearch {
      */
     private final static Pattern KEY_VALUE = Pattern.compile("(.*)(:|=)(.*)");
 
+    /**
+     * How many failure reasons of the bulk items are returned by apoc.es.bulk
+     */
+    private final static int MAX_BULK_ERRORS = 10;
+
     protected String getElasticSearchUrl(String hostOrKey) {
         return new UrlResolver("http", "localhost", 9200).getUrl("es", hostOrKey);
     }
@@ -184,4 +194,173 @@ public class ElasticSearch {
         }
         return LoadJson.loadJsonStream(getQueryUrl(hostOrKey, index, type, id, query), map("method", "PUT","content-type",contentType(payload)), toPayload(payload));
     }
+
+    @Procedure
+    @Description("apoc.es.bulk(host-or-key,index,documents,{type,batchSize:1000,concurrency:2}) yield value - index the documents with the _bulk api, batchSize of them per request and up to concurrency requests at a time, the _id of a document is used as its id")
+    public Stream<MapResult> bulk(@Name("host") String hostOrKey, @Name("index") String index, @Name("documents") List<Map<String, Object>> documents, @Name(value = "config", defaultValue = "{}") Map<String, Object> config) {
+        if (index == null || index.isEmpty()) throw new RuntimeException("apoc.es.bulk needs an index");
+        if (documents == null || documents.isEmpty()) return Stream.empty();
+        if (config == null) config = Collections.emptyMap();
+        String type = (String) config.get("type");
+        int batchSize = Math.max(1, Util.toLong(config.getOrDefault("batchSize", 1000L)).intValue());
+        int concurrency = Math.max(1, Util.toLong(config.getOrDefault("concurrency", 2L)).intValue());
+        String url = getElasticSearchUrl(hostOrKey) + "/" + index + (type == null ? "" : "/" + type) + "/_bulk";
+
+        Map<String, Object> result = new LinkedHashMap<>(map("batches", 0L, "documents", 0L, "failed", 0L, "took", 0L, "errors", new ArrayList<String>()));
+        Deque<Future<Map<String, Object>>> inFlight = new ArrayDeque<>(concurrency);
+        try {
+            for (int from = 0; from < documents.size(); from += batchSize) {
+                String body = toBulkBody(documents.subList(from, Math.min(documents.size(), from + batchSize)));
+                if (inFlight.size() == concurrency) {
+                    addBulkResponse(result, inFlight.removeFirst().get());
+                }
+                inFlight.addLast(Pools.pool(Pools.ELASTICSEARCH).submit(() -> ElasticSearchClient.request("POST", url, ElasticSearchClient.NDJSON, body)));
+                result.put("batches", (long) result.get("batches") + 1);
+            }
+            while (!inFlight.isEmpty()) {
+                addBulkResponse(result, inFlight.removeFirst().get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("apoc.es.bulk was interrupted", e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause().getMessage(), e.getCause());
+        } finally {
+            inFlight.forEach(future -> future.cancel(false));
+        }
+        result.put("documents", (long) documents.size());
+        return Stream.of(new MapResult(result));
+    }
+
+    /**
+     * one action line and one source line per document, the _id of the document goes into the action
+     */
+    private String toBulkBody(List<Map<String, Object>> documents) {
+        StringBuilder body = new StringBuilder();
+        for (Map<String, Object> document : documents) {
+            Object id = document.get("_id");
+            Map<String, Object> source = document;
+            if (id != null) {
+                source = new LinkedHashMap<>(document);
+                source.remove("_id");
+            }
+            body.append(Util.toJson(map("index", id == null ? Collections.emptyMap() : map("_id", id.toString())))).append('\n');
+            body.append(Util.toJson(source)).append('\n');
+        }
+        return body.toString();
+    }
+
+    private void addBulkResponse(Map<String, Object> result, Map<String, Object> response) {
+        result.put("took", (long) result.get("took") + Util.toLong(response.getOrDefault("took", 0L)));
+        if (!Util.toBoolean(response.get("errors"))) return;
+        List<String> errors = (List<String>) result.get("errors");
+        for (Map<String, Object> item : (List<Map<String, Object>>) response.getOrDefault("items", Collections.emptyList())) {
+            for (Object value : item.values()) {
+                Map<String, Object> action = (Map<String, Object>) value;
+                Object error = action.get("error");
+                if (error == null) continue;
+                result.put("failed", (long) result.get("failed") + 1);
+                if (errors.size() < MAX_BULK_ERRORS) {
+                    errors.add(error instanceof Map ? String.valueOf(((Map) error).get("reason")) : error.toString());
+                }
+            }
+        }
+    }
+
+    @Procedure
+    @Description("apoc.es.scroll(host-or-key,index-or-null,type-or-null,query-or-null,payload,{size:1000,scroll:'1m'}) yield value - stream all hits of the search with the scroll api, fetching the next page only when the current one is consumed")
+    public Stream<MapResult> scroll(@Name("host") String hostOrKey, @Name("index") String index, @Name("type") String type, @Name("query") Object query, @Name(value = "payload", defaultValue = "{}") Map<String, Object> payload, @Name(value = "config", defaultValue = "{}") Map<String, Object> config) {
+        if (config == null) config = Collections.emptyMap();
+        String scroll = config.getOrDefault("scroll", "1m").toString();
+        Map<String, Object> search = withSize(payload, config);
+        String baseUrl = getElasticSearchUrl(hostOrKey);
+        String url = getSearchQueryUrl(hostOrKey, index, type, withParam(query, "scroll", scroll));
+
+        AtomicReference<Object> scrollId = new AtomicReference<>();
+        Function<Map<String, Object>, Map<String, Object>> keepScrollId = response -> {
+            scrollId.set(response.get("_scroll_id"));
+            return response;
+        };
+        Map<String, Object> first = keepScrollId.apply(ElasticSearchClient.request("POST", url, ElasticSearchClient.JSON, Util.toJson(search)));
+        return hits(first, (int) search.get("size"),
+                previous -> keepScrollId.apply(ElasticSearchClient.request("POST", baseUrl + "/_search/scroll", ElasticSearchClient.JSON,
+                        Util.toJson(map("scroll", scroll, "scroll_id", scrollId.get())))))
+                .onClose(() -> {
+                    if (scrollId.get() == null) return;
+                    try {
+                        ElasticSearchClient.request("DELETE", baseUrl + "/_search/scroll", ElasticSearchClient.JSON,
+                                Util.toJson(map("scroll_id", Collections.singletonList(scrollId.get()))));
+                    } catch (RuntimeException e) {
+                        // the scroll expires after its keep alive anyway
+                    }
+                });
+    }
+
+    @Procedure
+    @Description("apoc.es.searchAfter(host-or-key,index-or-null,type-or-null,payload,{size:1000}) yield value - stream all hits of the search, the payload needs a sort, each page continues with search_after from the sort values of the last hit")
+    public Stream<MapResult> searchAfter(@Name("host") String hostOrKey, @Name("index") String index, @Name("type") String type, @Name(value = "payload", defaultValue = "{}") Map<String, Object> payload, @Name(value = "config", defaultValue = "{}") Map<String, Object> config) {
+        if (payload == null || payload.get("sort") == null) throw new RuntimeException("apoc.es.searchAfter needs a sort in the payload, ideally ending with a unique field");
+        Map<String, Object> search = withSize(payload, config == null ? Collections.emptyMap() : config);
+        String url = getSearchQueryUrl(hostOrKey, index, type, null);
+
+        Map<String, Object> first = ElasticSearchClient.request("POST", url, ElasticSearchClient.JSON, Util.toJson(search));
+        return hits(first, (int) search.get("size"), previous -> {
+            List<Map<String, Object>> hits = hitsOf(previous);
+            search.put("search_after", hits.get(hits.size() - 1).get("sort"));
+            return ElasticSearchClient.request("POST", url, ElasticSearchClient.JSON, Util.toJson(search));
+        });
+    }
+
+    private Map<String, Object> withSize(Map<String, Object> payload, Map<String, Object> config) {
+        Map<String, Object> search = payload == null ? new LinkedHashMap<>() : new LinkedHashMap<>(payload);
+        search.put("size", Math.max(1, Util.toLong(search.getOrDefault("size", config.getOrDefault("size", 1000L))).intValue()));
+        return search;
+    }
+
+    private Object withParam(Object query, String key, String value) {
+        if (query == null) return map(key, value);
+        if (query instanceof Map) {
+            Map<String, Object> params = new LinkedHashMap<>((Map<String, Object>) query);
+            params.put(key, value);
+            return params;
+        }
+        String params = query.toString();
+        return params.isEmpty() ? key + "=" + value : params + "&" + key + "=" + value;
+    }
+
+    private static List<Map<String, Object>> hitsOf(Map<String, Object> response) {
+        Map<String, Object> hits = (Map<String, Object>) response.get("hits");
+        if (hits == null) return Collections.emptyList();
+        return (List<Map<String, Object>>) hits.getOrDefault("hits", Collections.emptyList());
+    }
+
+    /**
+     * The hits of the first response followed by those of the next pages, only one page is held at a time.
+     * A page with less than size hits is the last one.
+     */
+    private Stream<MapResult> hits(Map<String, Object> first, int size, Function<Map<String, Object>, Map<String, Object>> nextPage) {
+        Iterator<MapResult> iterator = new Iterator<MapResult>() {
+            Map<String, Object> page = first;
+            Iterator<Map<String, Object>> hits = hitsOf(first).iterator();
+            boolean last = hitsOf(first).size() < size;
+
+            @Override
+            public boolean hasNext() {
+                while (!hits.hasNext() && !last) {
+                    page = nextPage.apply(page);
+                    List<Map<String, Object>> pageHits = hitsOf(page);
+                    hits = pageHits.iterator();
+                    last = pageHits.size() < size;
+                }
+                return hits.hasNext();
+            }
+
+            @Override
+            public MapResult next() {
+                if (!hasNext()) throw new NoSuchElementException();
+                return new MapResult(hits.next());
+            }
+        };
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED), false);
+    }
 }
@@ -0,0 +1,66 @@
+package apoc.es;
+
+import apoc.util.JsonUtil;
+import apoc.util.Util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+import static apoc.util.MapUtil.map;
+
+/**
+ * Sends the requests of apoc.es.bulk and apoc.es.scroll and reads their json responses.
+ *
+ * The responses are always read to their end and closed, also on errors, so the JVM keeps the connections
+ * alive and reuses them for the next requests to the same host, up to <code>http.maxConnections</code> of them.
+ */
+class ElasticSearchClient {
+
+    static final String JSON = "application/json";
+    static final String NDJSON = "application/x-ndjson";
+
+    private ElasticSearchClient() {
+    }
+
+    static Map<String, Object> request(String method, String url, String contentType, String payload) {
+        try {
+            HttpURLConnection con = (HttpURLConnection) Util.openUrlConnection(url, map("method", method, "content-type", contentType));
+            if (payload != null) {
+                con.setDoOutput(true);
+                try (OutputStream out = con.getOutputStream()) {
+                    out.write(payload.getBytes(StandardCharsets.UTF_8));
+                }
+            }
+            int status = con.getResponseCode();
+            if (status >= 400) {
+                String error = con.getErrorStream() == null ? "" : readFully(con.getErrorStream());
+                throw new RuntimeException(String.format("Elasticsearch request %s %s failed with status %d: %s", method, url, status, error));
+            }
+            try (InputStream in = con.getInputStream()) {
+                Map<String, Object> response = JsonUtil.OBJECT_MAPPER.readValue(in, Map.class);
+                // drain what the parser didn't read, otherwise the connection can't be reused
+                while (in.read() != -1) ;
+                return response;
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(String.format("Elasticsearch request %s %s failed: %s", method, url, e.getMessage()), e);
+        }
+    }
+
+    private static String readFully(InputStream in) throws IOException {
+        try (InputStream stream = in) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = stream.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return new String(out.toByteArray(), StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,643 @@
+package apoc.export.binary;
+
+import org.neo4j.graphdb.spatial.Point;
+import org.neo4j.values.storable.CoordinateReferenceSystem;
+import org.neo4j.values.storable.DurationValue;
+import org.neo4j.values.storable.PointValue;
+import org.neo4j.values.storable.Values;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Array;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.OffsetTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+import java.time.temporal.TemporalAmount;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * The binary snapshot format of apoc.export.binary and apoc.import.binary.
+ *
+ * A file starts with a header of the magic bytes, the version and the compression, followed by a sequence of blocks and an end tag.
+ * Each block is framed with its tag, its raw and its stored length, and is compressed on its own, so blocks are encoded,
+ * compressed and decoded independently on worker threads.
+ *
+ * A block holds up to <code>batchSize</code> nodes with the same labels, or relationships of the same type, stored by column:
+ * the node ids or the start and end node ids, then for each property key a presence bitmap and the values of the entities that have it.
+ * Labels, types, property keys and string values are replaced by indexes into the dictionary at the start of the block.
+ * All node blocks come before the relationship blocks.
+ */
+class BinaryFormat {
+    static final byte[] MAGIC = "APOCBIN".getBytes(StandardCharsets.US_ASCII);
+    static final int VERSION = 1;
+
+    static final int END = 0;
+    static final int NODES = 1;
+    static final int RELATIONSHIPS = 2;
+
+    /**
+     * the compression of the blocks, named like the compression of the other exports: <code>gzip</code> deflates each block,
+     * the algorithm of gzip without its file framing, <code>deflate</code> is accepted as well
+     */
+    enum Compression {
+        NONE, DEFLATE;
+
+        static Compression from(Object name) {
+            if (name == null) return DEFLATE;
+            switch (name.toString().trim().toLowerCase()) {
+                case "none": return NONE;
+                case "gzip":
+                case "deflate": return DEFLATE;
+                case "zstd": throw new IllegalArgumentException("Binary snapshots can't be compressed with zstd, use 'gzip' or 'none'");
+                default: throw new IllegalArgumentException("Unknown compression '" + name + "' for binary snapshots, use 'gzip' or 'none'");
+            }
+        }
+    }
+
+    // value tags, array values are ARRAY, the tag of the elements, the length and the untagged elements
+    private static final int BOOLEAN = 1;
+    private static final int BYTE = 2;
+    private static final int SHORT = 3;
+    private static final int INT = 4;
+    private static final int LONG = 5;
+    private static final int FLOAT = 6;
+    private static final int DOUBLE = 7;
+    private static final int CHAR = 8;
+    private static final int STRING = 9;
+    private static final int DATE = 10;
+    private static final int LOCAL_TIME = 11;
+    private static final int TIME = 12;
+    private static final int LOCAL_DATE_TIME = 13;
+    private static final int DATE_TIME = 14;
+    private static final int DURATION = 15;
+    private static final int POINT = 16;
+    private static final int ARRAY = 32;
+
+    private BinaryFormat() {
+    }
+
+    static void writeHeader(OutputStream out, Compression compression) throws IOException {
+        out.write(MAGIC);
+        out.write(VERSION);
+        out.write(compression.ordinal());
+    }
+
+    static Compression readHeader(InputStream in) throws IOException {
+        byte[] magic = new byte[MAGIC.length];
+        readFully(in, magic);
+        if (!Arrays.equals(magic, MAGIC)) throw new IOException("Not an APOC binary export");
+        int version = in.read();
+        if (version != VERSION) throw new IOException("Unsupported version " + version + " of the APOC binary export");
+        int compression = in.read();
+        if (compression < 0 || compression >= Compression.values().length) throw new IOException("Unknown compression " + compression);
+        return Compression.values()[compression];
+    }
+
+    /**
+     * A block read from or written to a file, the values of a property key are in <code>columns</code> with nulls for the
+     * entities without it.
+     */
+    static class Block {
+        final int kind;
+        // labels of a node block, the type of a relationship block
+        final String[] tokens;
+        // the exported node ids, or the start node ids of the relationships
+        final long[] ids;
+        // the end node ids of the relationships
+        final long[] ends;
+        final List<String> keys = new ArrayList<>();
+        final List<Object[]> columns = new ArrayList<>();
+
+        Block(int kind, String[] tokens, long[] ids, long[] ends) {
+            this.kind = kind;
+            this.tokens = tokens;
+            this.ids = ids;
+            this.ends = ends;
+        }
+
+        int size() {
+            return ids.length;
+        }
+
+        long properties() {
+            long properties = 0;
+            for (Object[] column : columns) {
+                for (Object value : column) {
+                    if (value != null) properties++;
+                }
+            }
+            return properties;
+        }
+
+        /**
+         * @return the framed and possibly compressed block
+         */
+        byte[] encode(Compression compression) {
+            Dictionary dictionary = new Dictionary();
+            Output body = new Output(64 + ids.length * 16);
+            body.writeVarLong(tokens.length);
+            for (String token : tokens) {
+                body.writeVarLong(dictionary.index(token));
+            }
+            body.writeVarLong(ids.length);
+            writeDeltas(body, ids);
+            if (kind == RELATIONSHIPS) writeDeltas(body, ends);
+            body.writeVarLong(keys.size());
+            for (int k = 0; k < keys.size(); k++) {
+                body.writeVarLong(dictionary.index(keys.get(k)));
+                Object[] column = columns.get(k);
+                byte[] present = new byte[(column.length + 7) / 8];
+                boolean all = true;
+                for (int i = 0; i < column.length; i++) {
+                    if (column[i] != null) present[i >> 3] |= 1 << (i & 7);
+                    else all = false;
+                }
+                body.writeByte(all ? 0 : 1);
+                if (!all) body.writeBytes(present, 0, present.length);
+                for (Object value : column) {
+                    if (value != null) writeValue(body, dictionary, value);
+                }
+            }
+            Output payload = new Output(body.size + dictionary.strings.size() * 8 + 8);
+            payload.writeVarLong(dictionary.strings.size());
+            for (String string : dictionary.strings) {
+                payload.writeString(string);
+            }
+            payload.writeBytes(body.bytes, 0, body.size);
+            return frame(kind, payload, compression);
+        }
+
+        static Block decode(int kind, byte[] payload) {
+            Input in = new Input(payload);
+            String[] dictionary = new String[(int) in.readVarLong()];
+            for (int i = 0; i < dictionary.length; i++) {
+                dictionary[i] = in.readString();
+            }
+            String[] tokens = new String[(int) in.readVarLong()];
+            for (int i = 0; i < tokens.length; i++) {
+                tokens[i] = dictionary[(int) in.readVarLong()];
+            }
+            int size = (int) in.readVarLong();
+            long[] ids = readDeltas(in, size);
+            long[] ends = kind == RELATIONSHIPS ? readDeltas(in, size) : null;
+            Block block = new Block(kind, tokens, ids, ends);
+            int keys = (int) in.readVarLong();
+            for (int k = 0; k < keys; k++) {
+                block.keys.add(dictionary[(int) in.readVarLong()]);
+                boolean all = in.readByte() == 0;
+                byte[] present = all ? null : in.readBytes((size + 7) / 8);
+                Object[] column = new Object[size];
+                for (int i = 0; i < size; i++) {
+                    if (all || (present[i >> 3] & (1 << (i & 7))) != 0) column[i] = readValue(in, dictionary);
+                }
+                block.columns.add(column);
+            }
+            return block;
+        }
+    }
+
+    private static void writeDeltas(Output out, long[] ids) {
+        long previous = 0;
+        for (long id : ids) {
+            out.writeZigZag(id - previous);
+            previous = id;
+        }
+    }
+
+    private static long[] readDeltas(Input in, int size) {
+        long[] ids = new long[size];
+        long previous = 0;
+        for (int i = 0; i < size; i++) {
+            previous += in.readZigZag();
+            ids[i] = previous;
+        }
+        return ids;
+    }
+
+    private static byte[] frame(int kind, Output payload, Compression compression) {
+        byte[] stored = payload.bytes;
+        int storedLength = payload.size;
+        if (compression == Compression.DEFLATE) {
+            Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+            try {
+                deflater.setInput(payload.bytes, 0, payload.size);
+                deflater.finish();
+                Output compressed = new Output(payload.size / 2 + 64);
+                while (!deflater.finished()) {
+                    compressed.ensure(4096);
+                    compressed.size += deflater.deflate(compressed.bytes, compressed.size, compressed.bytes.length - compressed.size);
+                }
+                stored = compressed.bytes;
+                storedLength = compressed.size;
+            } finally {
+                deflater.end();
+            }
+        }
+        Output framed = new Output(storedLength + 21);
+        framed.writeByte(kind);
+        framed.writeVarLong(payload.size);
+        framed.writeVarLong(storedLength);
+        framed.writeBytes(stored, 0, storedLength);
+        return Arrays.copyOf(framed.bytes, framed.size);
+    }
+
+    static byte[] endTag() {
+        return new byte[]{END};
+    }
+
+    /**
+     * the framing of a block read from the stream, the payload is still compressed
+     */
+    static class Frame {
+        final int kind;
+        final int rawLength;
+        final byte[] stored;
+
+        private Frame(int kind, int rawLength, byte[] stored) {
+            this.kind = kind;
+            this.rawLength = rawLength;
+            this.stored = stored;
+        }
+
+        /**
+         * @return the next frame or null at the end tag
+         */
+        static Frame read(InputStream in) throws IOException {
+            int kind = in.read();
+            if (kind == -1) throw new EOFException("The APOC binary export is truncated");
+            if (kind == END) return null;
+            if (kind != NODES && kind != RELATIONSHIPS) throw new IOException("Unknown block " + kind);
+            int rawLength = (int) readVarLong(in);
+            byte[] stored = new byte[(int) readVarLong(in)];
+            readFully(in, stored);
+            return new Frame(kind, rawLength, stored);
+        }
+
+        Block decode(Compression compression) {
+            if (compression == Compression.NONE) return Block.decode(kind, stored);
+            Inflater inflater = new Inflater();
+            try {
+                inflater.setInput(stored);
+                byte[] payload = new byte[rawLength];
+                int length = 0;
+                while (length < rawLength && !inflater.finished()) {
+                    int n = inflater.inflate(payload, length, rawLength - length);
+                    if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) break;
+                    length += n;
+                }
+                if (length != rawLength) throw new IllegalStateException("Corrupt block in the APOC binary export");
+                return Block.decode(kind, payload);
+            } catch (DataFormatException e) {
+                throw new IllegalStateException("Corrupt block in the APOC binary export", e);
+            } finally {
+                inflater.end();
+            }
+        }
+    }
+
+    private static void writeValue(Output out, Dictionary dictionary, Object value) {
+        Class<?> type = value.getClass();
+        if (type.isArray()) {
+            int tag = tagOf(type.getComponentType());
+            int length = Array.getLength(value);
+            out.writeByte(ARRAY);
+            out.writeByte(tag);
+            out.writeVarLong(length);
+            for (int i = 0; i < length; i++) {
+                writeScalar(out, dictionary, tag, Array.get(value, i));
+            }
+        } else {
+            int tag = tagOf(type);
+            out.writeByte(tag);
+            writeScalar(out, dictionary, tag, value);
+        }
+    }
+
+    private static int tagOf(Class<?> type) {
+        if (type == Boolean.class || type == boolean.class) return BOOLEAN;
+        if (type == Byte.class || type == byte.class) return BYTE;
+        if (type == Short.class || type == short.class) return SHORT;
+        if (type == Integer.class || type == int.class) return INT;
+        if (type == Long.class || type == long.class) return LONG;
+        if (type == Float.class || type == float.class) return FLOAT;
+        if (type == Double.class || type == double.class) return DOUBLE;
+        if (type == Character.class || type == char.class) return CHAR;
+        if (type == String.class) return STRING;
+        if (type == LocalDate.class) return DATE;
+        if (type == LocalTime.class) return LOCAL_TIME;
+        if (type == OffsetTime.class) return TIME;
+        if (type == LocalDateTime.class) return LOCAL_DATE_TIME;
+        if (type == ZonedDateTime.class) return DATE_TIME;
+        if (TemporalAmount.class.isAssignableFrom(type)) return DURATION;
+        if (Point.class.isAssignableFrom(type)) return POINT;
+        throw new IllegalArgumentException("Unsupported property type " + type.getName());
+    }
+
+    private static void writeScalar(Output out, Dictionary dictionary, int tag, Object value) {
+        switch (tag) {
+            case BOOLEAN:
+                out.writeByte((Boolean) value ? 1 : 0);
+                break;
+            case BYTE:
+            case SHORT:
+            case INT:
+            case LONG:
+                out.writeZigZag(((Number) value).longValue());
+                break;
+            case FLOAT:
+                out.writeFixed(Float.floatToRawIntBits((Float) value), 4);
+                break;
+            case DOUBLE:
+                out.writeFixed(Double.doubleToRawLongBits((Double) value), 8);
+                break;
+            case CHAR:
+                out.writeVarLong((Character) value);
+                break;
+            case STRING:
+                out.writeVarLong(dictionary.index((String) value));
+                break;
+            case DATE:
+                out.writeZigZag(((LocalDate) value).toEpochDay());
+                break;
+            case LOCAL_TIME:
+                out.writeVarLong(((LocalTime) value).toNanoOfDay());
+                break;
+            case TIME: {
+                OffsetTime time = (OffsetTime) value;
+                out.writeVarLong(time.toLocalTime().toNanoOfDay());
+                out.writeZigZag(time.getOffset().getTotalSeconds());
+                break;
+            }
+            case LOCAL_DATE_TIME: {
+                LocalDateTime dateTime = (LocalDateTime) value;
+                out.writeZigZag(dateTime.toEpochSecond(ZoneOffset.UTC));
+                out.writeVarLong(dateTime.getNano());
+                break;
+            }
+            case DATE_TIME: {
+                ZonedDateTime dateTime = (ZonedDateTime) value;
+                out.writeZigZag(dateTime.toEpochSecond());
+                out.writeVarLong(dateTime.getNano());
+                out.writeVarLong(dictionary.index(dateTime.getZone().getId()));
+                break;
+            }
+            case DURATION: {
+                TemporalAmount duration = (TemporalAmount) value;
+                out.writeZigZag(duration.get(ChronoUnit.MONTHS));
+                out.writeZigZag(duration.get(ChronoUnit.DAYS));
+                out.writeZigZag(duration.get(ChronoUnit.SECONDS));
+                out.writeZigZag(duration.get(ChronoUnit.NANOS));
+                break;
+            }
+            case POINT: {
+                Point point = (Point) value;
+                List<Double> coordinate = point.getCoordinate().getCoordinate();
+                out.writeVarLong(point.getCRS().getCode());
+                out.writeVarLong(coordinate.size());
+                for (Double c : coordinate) {
+                    out.writeFixed(Double.doubleToRawLongBits(c), 8);
+                }
+                break;
+            }
+            default:
+                throw new IllegalArgumentException("Unknown value tag " + tag);
+        }
+    }
+
+    private static Object readValue(Input in, String[] dictionary) {
+        int tag = in.readByte();
+        if (tag != ARRAY) return readScalar(in, dictionary, tag);
+        int component = in.readByte();
+        int length = (int) in.readVarLong();
+        Object array = Array.newInstance(componentType(component), length);
+        for (int i = 0; i < length; i++) {
+            Array.set(array, i, readScalar(in, dictionary, component));
+        }
+        return array;
+    }
+
+    private static Class<?> componentType(int tag) {
+        switch (tag) {
+            case BOOLEAN: return boolean.class;
+            case BYTE: return byte.class;
+            case SHORT: return short.class;
+            case INT: return int.class;
+            case LONG: return long.class;
+            case FLOAT: return float.class;
+            case DOUBLE: return double.class;
+            case CHAR: return char.class;
+            case STRING: return String.class;
+            case DATE: return LocalDate.class;
+            case LOCAL_TIME: return LocalTime.class;
+            case TIME: return OffsetTime.class;
+            case LOCAL_DATE_TIME: return LocalDateTime.class;
+            case DATE_TIME: return ZonedDateTime.class;
+            case DURATION: return DurationValue.class;
+            case POINT: return PointValue.class;
+            default: throw new IllegalArgumentException("Unknown value tag " + tag);
+        }
+    }
+
+    private static Object readScalar(Input in, String[] dictionary, int tag) {
+        switch (tag) {
+            case BOOLEAN:
+                return in.readByte() != 0;
+            case BYTE:
+                return (byte) in.readZigZag();
+            case SHORT:
+                return (short) in.readZigZag();
+            case INT:
+                return (int) in.readZigZag();
+            case LONG:
+                return in.readZigZag();
+            case FLOAT:
+                return Float.intBitsToFloat((int) in.readFixed(4));
+            case DOUBLE:
+                return Double.longBitsToDouble(in.readFixed(8));
+            case CHAR:
+                return (char) in.readVarLong();
+            case STRING:
+                return dictionary[(int) in.readVarLong()];
+            case DATE:
+                return LocalDate.ofEpochDay(in.readZigZag());
+            case LOCAL_TIME:
+                return LocalTime.ofNanoOfDay(in.readVarLong());
+            case TIME: {
+                LocalTime time = LocalTime.ofNanoOfDay(in.readVarLong());
+                return OffsetTime.of(time, ZoneOffset.ofTotalSeconds((int) in.readZigZag()));
+            }
+            case LOCAL_DATE_TIME: {
+                long seconds = in.readZigZag();
+                return LocalDateTime.ofEpochSecond(seconds, (int) in.readVarLong(), ZoneOffset.UTC);
+            }
+            case DATE_TIME: {
+                long seconds = in.readZigZag();
+                int nanos = (int) in.readVarLong();
+                ZoneId zone = ZoneId.of(dictionary[(int) in.readVarLong()]);
+                return ZonedDateTime.ofInstant(Instant.ofEpochSecond(seconds, nanos), zone);
+            }
+            case DURATION: {
+                long months = in.readZigZag(), days = in.readZigZag(), seconds = in.readZigZag(), nanos = in.readZigZag();
+                return DurationValue.duration(months, days, seconds, nanos);
+            }
+            case POINT: {
+                CoordinateReferenceSystem crs = CoordinateReferenceSystem.get((int) in.readVarLong());
+                double[] coordinate = new double[(int) in.readVarLong()];
+                for (int i = 0; i < coordinate.length; i++) {
+                    coordinate[i] = Double.longBitsToDouble(in.readFixed(8));
+                }
+                return Values.pointValue(crs, coordinate);
+            }
+            default:
+                throw new IllegalArgumentException("Unknown value tag " + tag);
+        }
+    }
+
+    private static class Dictionary {
+        final Map<String, Integer> indexes = new HashMap<>();
+        final List<String> strings = new ArrayList<>();
+
+        int index(String string) {
+            Integer index = indexes.get(string);
+            if (index == null) {
+                index = strings.size();
+                indexes.put(string, index);
+                strings.add(string);
+            }
+            return index;
+        }
+    }
+
+    private static class Output {
+        byte[] bytes;
+        int size;
+
+        Output(int capacity) {
+            bytes = new byte[Math.max(16, capacity)];
+        }
+
+        void ensure(int extra) {
+            if (size + extra > bytes.length) bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + extra));
+        }
+
+        void writeByte(int b) {
+            ensure(1);
+            bytes[size++] = (byte) b;
+        }
+
+        void writeBytes(byte[] b, int offset, int length) {
+            ensure(length);
+            System.arraycopy(b, offset, bytes, size, length);
+            size += length;
+        }
+
+        void writeVarLong(long value) {
+            ensure(10);
+            while ((value & ~0x7FL) != 0) {
+                bytes[size++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            bytes[size++] = (byte) value;
+        }
+
+        void writeZigZag(long value) {
+            writeVarLong((value << 1) ^ (value >> 63));
+        }
+
+        void writeFixed(long value, int length) {
+            ensure(length);
+            for (int i = 0; i < length; i++) {
+                bytes[size++] = (byte) (value >>> (8 * i));
+            }
+        }
+
+        void writeString(String string) {
+            byte[] utf8 = string.getBytes(StandardCharsets.UTF_8);
+            writeVarLong(utf8.length);
+            writeBytes(utf8, 0, utf8.length);
+        }
+    }
+
+    private static class Input {
+        private final byte[] bytes;
+        private int position;
+
+        Input(byte[] bytes) {
+            this.bytes = bytes;
+        }
+
+        int readByte() {
+            return bytes[position++] & 0xFF;
+        }
+
+        byte[] readBytes(int length) {
+            byte[] b = Arrays.copyOfRange(bytes, position, position + length);
+            position += length;
+            return b;
+        }
+
+        long readVarLong() {
+            long value = 0;
+            for (int shift = 0; ; shift += 7) {
+                int b = bytes[position++];
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) return value;
+            }
+        }
+
+        long readZigZag() {
+            long value = readVarLong();
+            return (value >>> 1) ^ -(value & 1);
+        }
+
+        long readFixed(int length) {
+            long value = 0;
+            for (int i = 0; i < length; i++) {
+                value |= (long) (bytes[position++] & 0xFF) << (8 * i);
+            }
+            return value;
+        }
+
+        String readString() {
+            int length = (int) readVarLong();
+            String string = new String(bytes, position, length, StandardCharsets.UTF_8);
+            position += length;
+            return string;
+        }
+    }
+
+    private static long readVarLong(InputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0; ; shift += 7) {
+            int b = in.read();
+            if (b == -1) throw new EOFException("The APOC binary export is truncated");
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return value;
+        }
+    }
+
+    private static void readFully(InputStream in, byte[] b) throws IOException {
+        int read = 0;
+        while (read < b.length) {
+            int n = in.read(b, read, b.length - read);
+            if (n == -1) throw new EOFException("The APOC binary export is truncated");
+            read += n;
+        }
+    }
+}
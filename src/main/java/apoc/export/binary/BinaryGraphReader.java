@@ -0,0 +1,200 @@
+package apoc.export.binary;
+
+import apoc.Pools;
+import apoc.export.csv.CsvIdMapping;
+import apoc.export.util.Reporter;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Label;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.PropertyContainer;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.RelationshipType;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.kernel.DeadlockDetectedException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.IntFunction;
+
+/**
+ * Imports a file in the {@link BinaryFormat}.
+ *
+ * The blocks are read from the stream on the calling thread, and decompressed, decoded and written each in its own transaction
+ * on the import pool, with a bounded number of blocks in flight. The ids of the created nodes are mapped on the calling thread
+ * as their blocks complete. The first relationship block waits for all node blocks, from then on the id mapping is only read,
+ * so the relationship blocks resolve their nodes concurrently.
+ */
+class BinaryGraphReader {
+    private static final String ID_SPACE = "binary";
+    private static final int DEADLOCK_RETRIES = 10;
+
+    private final GraphDatabaseService db;
+    private final Reporter reporter;
+    private final CsvIdMapping.Storage idMapping;
+    private final ExecutorService pool = Pools.pool(Pools.IMPORT);
+    private final int maxInFlight = Math.max(2, 2 * Pools.getNoThreadsInPool(Pools.IMPORT));
+    // set on a failure, the blocks that haven't started yet are skipped then
+    private volatile boolean aborted;
+
+    BinaryGraphReader(GraphDatabaseService db, Reporter reporter, CsvIdMapping.Storage idMapping) {
+        this.db = db;
+        this.reporter = reporter;
+        this.idMapping = idMapping;
+    }
+
+    void read(InputStream in) throws IOException {
+        BinaryFormat.Compression compression = BinaryFormat.readHeader(in);
+        Deque<Future<Written>> inFlight = new ArrayDeque<>(maxInFlight);
+        try (CsvIdMapping ids = new CsvIdMapping(idMapping)) {
+            try {
+                boolean relationships = false;
+                for (BinaryFormat.Frame frame; (frame = BinaryFormat.Frame.read(in)) != null; ) {
+                    if (frame.kind == BinaryFormat.RELATIONSHIPS && !relationships) {
+                        drain(inFlight, 0, ids);
+                        relationships = true;
+                    } else if (frame.kind == BinaryFormat.NODES && relationships) {
+                        throw new IOException("Node block after the relationship blocks of the APOC binary export");
+                    }
+                    drain(inFlight, maxInFlight - 1, ids);
+                    BinaryFormat.Frame block = frame;
+                    Callable<Written> write = relationships
+                            ? () -> writeRelationships(block.decode(compression), ids)
+                            : () -> writeNodes(block.decode(compression));
+                    inFlight.addLast(pool.submit(() -> aborted ? null : write.call()));
+                }
+                drain(inFlight, 0, ids);
+            } catch (Throwable t) {
+                // the blocks that already run still read the id mapping, so it's only closed once they are done
+                aborted = true;
+                await(inFlight, t);
+                throw t;
+            }
+        }
+    }
+
+    /**
+     * waits for all blocks in flight after a failure, their failures are added to it as suppressed
+     */
+    private static void await(Deque<Future<Written>> inFlight, Throwable failure) {
+        boolean interrupted = false;
+        while (!inFlight.isEmpty()) {
+            try {
+                inFlight.peekFirst().get();
+            } catch (InterruptedException e) {
+                interrupted = true;
+                continue;
+            } catch (ExecutionException e) {
+                failure.addSuppressed(e.getCause());
+            }
+            inFlight.pollFirst();
+        }
+        if (interrupted) Thread.currentThread().interrupt();
+    }
+
+    /**
+     * waits for the oldest blocks until at most <code>left</code> are in flight, mapping their nodes and reporting their counts on this thread
+     */
+    private void drain(Deque<Future<Written>> inFlight, int left, CsvIdMapping ids) {
+        while (inFlight.size() > left) {
+            try {
+                Written written = Pools.force(inFlight.pollFirst());
+                if (written.nodeIds != null) {
+                    for (int i = 0; i < written.nodeIds.length; i++) {
+                        ids.put(ID_SPACE, written.exportedIds[i], written.nodeIds[i]);
+                    }
+                }
+                reporter.update(written.nodes, written.relationships, written.properties);
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                throw cause instanceof RuntimeException ? (RuntimeException) cause : new RuntimeException(cause);
+            }
+        }
+    }
+
+    private Written writeNodes(BinaryFormat.Block block) {
+        Label[] labels = new Label[block.tokens.length];
+        for (int i = 0; i < labels.length; i++) {
+            labels[i] = Label.label(block.tokens[i]);
+        }
+        int size = block.size();
+        long[] nodeIds = new long[size];
+        long properties;
+        try (Transaction tx = db.beginTx()) {
+            Node[] nodes = new Node[size];
+            for (int i = 0; i < size; i++) {
+                nodes[i] = db.createNode(labels);
+                nodeIds[i] = nodes[i].getId();
+            }
+            properties = setProperties(block, i -> nodes[i]);
+            tx.success();
+        }
+        return new Written(block.ids, nodeIds, size, 0, properties);
+    }
+
+    private Written writeRelationships(BinaryFormat.Block block, CsvIdMapping ids) {
+        RelationshipType type = RelationshipType.withName(block.tokens[0]);
+        int size = block.size();
+        long[] starts = new long[size], ends = new long[size];
+        for (int i = 0; i < size; i++) {
+            starts[i] = node(ids, block.ids[i]);
+            ends[i] = node(ids, block.ends[i]);
+        }
+        for (int attempt = 0; ; attempt++) {
+            try (Transaction tx = db.beginTx()) {
+                Relationship[] rels = new Relationship[size];
+                for (int i = 0; i < size; i++) {
+                    rels[i] = db.getNodeById(starts[i]).createRelationshipTo(db.getNodeById(ends[i]), type);
+                }
+                long properties = setProperties(block, i -> rels[i]);
+                tx.success();
+                return new Written(null, null, 0, size, properties);
+            } catch (DeadlockDetectedException e) {
+                // blocks written in parallel may lock the same nodes in different order, the block is rolled back and written again
+                if (attempt >= DEADLOCK_RETRIES) throw e;
+            }
+        }
+    }
+
+    private long node(CsvIdMapping ids, long id) {
+        long nodeId = ids.get(ID_SPACE, id);
+        if (nodeId == CsvIdMapping.NOT_FOUND) {
+            throw new IllegalStateException("Node " + id + " of a relationship is not in the APOC binary export");
+        }
+        return nodeId;
+    }
+
+    private long setProperties(BinaryFormat.Block block, IntFunction<PropertyContainer> entities) {
+        long properties = 0;
+        for (int k = 0; k < block.keys.size(); k++) {
+            String key = block.keys.get(k);
+            Object[] column = block.columns.get(k);
+            for (int i = 0; i < column.length; i++) {
+                if (column[i] == null) continue;
+                entities.apply(i).setProperty(key, column[i]);
+                properties++;
+            }
+        }
+        return properties;
+    }
+
+    private static class Written {
+        // the ids of the exported nodes and of the nodes created for them
+        final long[] exportedIds;
+        final long[] nodeIds;
+        final long nodes, relationships, properties;
+
+        Written(long[] exportedIds, long[] nodeIds, long nodes, long relationships, long properties) {
+            this.exportedIds = exportedIds;
+            this.nodeIds = nodeIds;
+            this.nodes = nodes;
+            this.relationships = relationships;
+            this.properties = properties;
+        }
+    }
+}
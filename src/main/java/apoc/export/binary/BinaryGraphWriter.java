@@ -0,0 +1,190 @@
+package apoc.export.binary;
+
+import apoc.Pools;
+import apoc.export.util.ExportConfig;
+import apoc.export.util.Reporter;
+import apoc.util.Util;
+import apoc.util.kernel.MultiThreadedGlobalGraphOperations;
+import org.neo4j.cypher.export.DatabaseSubGraph;
+import org.neo4j.cypher.export.SubGraph;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Label;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.NotFoundException;
+import org.neo4j.graphdb.PropertyContainer;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.kernel.api.KernelTransaction;
+import org.neo4j.kernel.api.txstate.TxStateHolder;
+import org.neo4j.kernel.impl.core.ThreadToStatementContextBridge;
+import org.neo4j.kernel.internal.GraphDatabaseAPI;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.LongFunction;
+import java.util.stream.LongStream;
+
+import static apoc.export.util.EntityChunks.chunks;
+import static apoc.export.util.EntityChunks.idRanges;
+
+/**
+ * Writes a sub graph in the {@link BinaryFormat}.
+ *
+ * Nodes and relationships are read in chunks of <code>batchSize</code> ids on worker threads, whole database exports scan the
+ * stores by id range. Each chunk is grouped by labels or type and encoded and compressed into blocks on its worker thread,
+ * the blocks are appended to the file in chunk order. When the calling transaction has uncommitted changes, which the worker
+ * transactions can't see, the chunks are encoded on the calling thread in that transaction instead.
+ */
+class BinaryGraphWriter {
+    private final GraphDatabaseService db;
+    private final ExportConfig config;
+    private final Reporter reporter;
+    private final BinaryFormat.Compression compression;
+    // the export itself may run on the export pool, the chunks run elsewhere so they can't starve it
+    private final ExecutorService pool = Pools.DEFAULT;
+    private final int maxInFlight = Math.max(2, Pools.getNoThreadsInDefaultPool() * 2);
+
+    BinaryGraphWriter(GraphDatabaseService db, ExportConfig config, Reporter reporter, BinaryFormat.Compression compression) {
+        this.db = db;
+        this.config = config;
+        this.reporter = reporter;
+        this.compression = compression;
+    }
+
+    void write(SubGraph graph, OutputStream out) throws IOException {
+        boolean all = graph instanceof DatabaseSubGraph;
+        boolean inCallerTx = hasChanges();
+        int batchSize = config.getBatchSize();
+        BinaryFormat.writeHeader(out, compression);
+        write(out, all ? idRanges(db, MultiThreadedGlobalGraphOperations.GlobalOperationsTypes.NODES, batchSize).get() : chunks(graph.getNodes(), batchSize).get(),
+                BinaryFormat.NODES, this::node, inCallerTx);
+        write(out, all ? idRanges(db, MultiThreadedGlobalGraphOperations.GlobalOperationsTypes.RELATIONSHIPS, batchSize).get() : chunks(graph.getRelationships(), batchSize).get(),
+                BinaryFormat.RELATIONSHIPS, this::relationship, inCallerTx);
+        out.write(BinaryFormat.endTag());
+        out.flush();
+    }
+
+    /**
+     * encodes the chunks on the worker pool and appends their blocks in chunk order, with a bounded number of chunks in flight
+     */
+    private void write(OutputStream out, Iterator<LongStream> chunks, int kind, LongFunction<PropertyContainer> lookup, boolean inCallerTx) throws IOException {
+        if (inCallerTx) {
+            while (chunks.hasNext()) {
+                append(out, encode(kind, chunks.next(), lookup));
+            }
+            return;
+        }
+        Deque<Future<Chunk>> inFlight = new ArrayDeque<>(maxInFlight);
+        try {
+            while (chunks.hasNext()) {
+                LongStream ids = chunks.next();
+                inFlight.add(Util.inTxFuture(pool, db, () -> encode(kind, ids, lookup)));
+                if (inFlight.size() >= maxInFlight) append(out, Pools.force(inFlight.poll()));
+            }
+            while (!inFlight.isEmpty()) {
+                append(out, Pools.force(inFlight.poll()));
+            }
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Error exporting the binary file", e.getCause());
+        } finally {
+            inFlight.forEach(future -> future.cancel(false));
+        }
+    }
+
+    private boolean hasChanges() {
+        KernelTransaction ktx = ((GraphDatabaseAPI) db).getDependencyResolver().resolveDependency(ThreadToStatementContextBridge.class)
+                .getKernelTransactionBoundToThisThread(false);
+        return ktx != null && (!(ktx instanceof TxStateHolder) || ((TxStateHolder) ktx).hasTxStateWithChanges());
+    }
+
+    private void append(OutputStream out, Chunk chunk) throws IOException {
+        for (byte[] block : chunk.blocks) {
+            out.write(block);
+        }
+        reporter.update(chunk.nodes, chunk.relationships, chunk.properties);
+    }
+
+    private Chunk encode(int kind, LongStream ids, LongFunction<PropertyContainer> lookup) {
+        Map<List<String>, List<PropertyContainer>> groups = new LinkedHashMap<>();
+        ids.forEach(id -> {
+            PropertyContainer entity = lookup.apply(id);
+            if (entity == null) return;
+            groups.computeIfAbsent(tokens(entity), tokens -> new ArrayList<>()).add(entity);
+        });
+        Chunk chunk = new Chunk();
+        groups.forEach((tokens, entities) -> {
+            BinaryFormat.Block block = block(kind, tokens, entities);
+            chunk.blocks.add(block.encode(compression));
+            chunk.properties += block.properties();
+            if (kind == BinaryFormat.NODES) chunk.nodes += block.size(); else chunk.relationships += block.size();
+        });
+        return chunk;
+    }
+
+    private BinaryFormat.Block block(int kind, List<String> tokens, List<PropertyContainer> entities) {
+        int size = entities.size();
+        long[] ids = new long[size];
+        long[] ends = kind == BinaryFormat.RELATIONSHIPS ? new long[size] : null;
+        BinaryFormat.Block block = new BinaryFormat.Block(kind, tokens.toArray(new String[0]), ids, ends);
+        Map<String, Object[]> columns = new LinkedHashMap<>();
+        for (int i = 0; i < size; i++) {
+            PropertyContainer entity = entities.get(i);
+            if (entity instanceof Node) {
+                ids[i] = ((Node) entity).getId();
+            } else {
+                Relationship rel = (Relationship) entity;
+                ids[i] = rel.getStartNodeId();
+                ends[i] = rel.getEndNodeId();
+            }
+            int row = i;
+            entity.getAllProperties().forEach((key, value) -> columns.computeIfAbsent(key, k -> new Object[size])[row] = value);
+        }
+        columns.forEach((key, column) -> {
+            block.keys.add(key);
+            block.columns.add(column);
+        });
+        return block;
+    }
+
+    private List<String> tokens(PropertyContainer entity) {
+        List<String> tokens = new ArrayList<>();
+        if (entity instanceof Node) {
+            for (Label label : ((Node) entity).getLabels()) {
+                tokens.add(label.name());
+            }
+        } else {
+            tokens.add(((Relationship) entity).getType().name());
+        }
+        return tokens;
+    }
+
+    private PropertyContainer node(long id) {
+        try {
+            return db.getNodeById(id);
+        } catch (NotFoundException e) {
+            return null;
+        }
+    }
+
+    private PropertyContainer relationship(long id) {
+        try {
+            return db.getRelationshipById(id);
+        } catch (NotFoundException e) {
+            return null;
+        }
+    }
+
+    private static class Chunk {
+        final List<byte[]> blocks = new ArrayList<>();
+        long nodes, relationships, properties;
+    }
+}
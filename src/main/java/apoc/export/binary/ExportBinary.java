@@ -0,0 +1,95 @@
+package apoc.export.binary;
+
+import apoc.export.util.ExportConfig;
+import apoc.export.util.NodesAndRelsSubGraph;
+import apoc.export.util.ProgressReporter;
+import apoc.result.ProgressInfo;
+import apoc.util.FileUtils;
+import apoc.util.Util;
+import org.apache.commons.lang3.StringUtils;
+import org.neo4j.cypher.export.CypherResultSubGraph;
+import org.neo4j.cypher.export.DatabaseSubGraph;
+import org.neo4j.cypher.export.SubGraph;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.Result;
+import org.neo4j.helpers.collection.Iterables;
+import org.neo4j.procedure.Context;
+import org.neo4j.procedure.Description;
+import org.neo4j.procedure.Name;
+import org.neo4j.procedure.Procedure;
+
+import java.io.OutputStream;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static apoc.util.FileUtils.checkWriteAllowed;
+
+public class ExportBinary {
+    @Context
+    public GraphDatabaseService db;
+
+    public ExportBinary(GraphDatabaseService db) {
+        this.db = db;
+    }
+
+    public ExportBinary() {
+    }
+
+    @Procedure
+    @Description("apoc.export.binary.all(file,config) - exports whole database as a binary snapshot to the provided file")
+    public Stream<ProgressInfo> all(@Name("file") String fileName, @Name(value = "config", defaultValue = "{}") Map<String, Object> config) throws Exception {
+
+        String source = String.format("database: nodes(%d), rels(%d)", Util.nodeCount(db), Util.relCount(db));
+        return exportBinary(fileName, source, new DatabaseSubGraph(db), config);
+    }
+
+    @Procedure
+    @Description("apoc.export.binary.data(nodes,rels,file,config) - exports given nodes and relationships as a binary snapshot to the provided file")
+    public Stream<ProgressInfo> data(@Name("nodes") List<Node> nodes, @Name("rels") List<Relationship> rels, @Name("file") String fileName, @Name(value = "config", defaultValue = "{}") Map<String, Object> config) throws Exception {
+
+        String source = String.format("data: nodes(%d), rels(%d)", nodes.size(), rels.size());
+        return exportBinary(fileName, source, new NodesAndRelsSubGraph(db, nodes, rels), config);
+    }
+
+    @Procedure
+    @Description("apoc.export.binary.graph(graph,file,config) - exports given graph object as a binary snapshot to the provided file")
+    public Stream<ProgressInfo> graph(@Name("graph") Map<String,Object> graph, @Name("file") String fileName, @Name(value = "config", defaultValue = "{}") Map<String, Object> config) throws Exception {
+
+        Collection<Node> nodes = (Collection<Node>) graph.get("nodes");
+        Collection<Relationship> rels = (Collection<Relationship>) graph.get("relationships");
+        String source = String.format("graph: nodes(%d), rels(%d)", nodes.size(), rels.size());
+        return exportBinary(fileName, source, new NodesAndRelsSubGraph(db, nodes, rels), config);
+    }
+
+    @Procedure
+    @Description("apoc.export.binary.query(query,file,{config,...,params:{params}}) - exports nodes and relationships from the cypher statement as a binary snapshot to the provided file")
+    public Stream<ProgressInfo> query(@Name("query") String query, @Name("file") String fileName, @Name(value = "config", defaultValue = "{}") Map<String, Object> config) throws Exception {
+        Map<String,Object> params = config == null ? Collections.emptyMap() : (Map<String,Object>)config.getOrDefault("params", Collections.emptyMap());
+        ExportConfig c = new ExportConfig(config);
+        Result result = db.execute(query, params);
+        SubGraph graph = CypherResultSubGraph.from(result, db, c.getRelsInBetween());
+        String source = String.format("statement: nodes(%d), rels(%d)",
+                Iterables.count(graph.getNodes()), Iterables.count(graph.getRelationships()));
+        return exportBinary(fileName, source, graph, config);
+    }
+
+    private Stream<ProgressInfo> exportBinary(String fileName, String source, SubGraph graph, Map<String,Object> config) throws Exception {
+        ExportConfig exportConfig = new ExportConfig(config);
+        if (StringUtils.isBlank(fileName) || exportConfig.streamStatements()) {
+            throw new IllegalArgumentException("Binary snapshots can only be exported to a file");
+        }
+        checkWriteAllowed(exportConfig);
+        BinaryFormat.Compression compression = BinaryFormat.Compression.from(config == null ? null : config.get("compression"));
+        ProgressReporter reporter = new ProgressReporter(null, null, new ProgressInfo(fileName, source, "binary"));
+        try (OutputStream out = FileUtils.getOutputStream(fileName, null)) {
+            new BinaryGraphWriter(db, exportConfig, reporter, compression).write(graph, out);
+        }
+        reporter.done();
+        return reporter.stream();
+    }
+}
@@ -0,0 +1,46 @@
+package apoc.export.binary;
+
+import apoc.Description;
+import apoc.export.csv.CsvIdMapping;
+import apoc.export.csv.CsvLoaderConfig;
+import apoc.export.util.ProgressReporter;
+import apoc.result.ProgressInfo;
+import apoc.util.FileUtils;
+import apoc.util.Util;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.procedure.Context;
+import org.neo4j.procedure.Mode;
+import org.neo4j.procedure.Name;
+import org.neo4j.procedure.Procedure;
+
+import java.io.BufferedInputStream;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.stream.Stream;
+
+public class ImportBinary {
+    @Context
+    public GraphDatabaseService db;
+
+    public ImportBinary(GraphDatabaseService db) {
+        this.db = db;
+    }
+
+    public ImportBinary() {
+    }
+
+    @Procedure(name = "apoc.import.binary", mode = Mode.WRITE)
+    @Description("apoc.import.binary(file, config) - imports the nodes and relationships of a binary snapshot written by apoc.export.binary")
+    public Stream<ProgressInfo> importBinary(@Name("file") String fileName, @Name(value = "config", defaultValue = "{}") Map<String, Object> config) throws Exception {
+        ProgressInfo result =
+                Util.inThread(() -> {
+                    final ProgressReporter reporter = new ProgressReporter(null, null, new ProgressInfo(fileName, "file", "binary"));
+                    final CsvIdMapping.Storage idMapping = CsvLoaderConfig.from(config).getIdMapping();
+                    try (InputStream in = new BufferedInputStream(FileUtils.inputStreamFor(fileName), 1 << 16)) {
+                        new BinaryGraphReader(db, reporter, idMapping).read(in);
+                    }
+                    return reporter.getTotal();
+                });
+        return Stream.of(result);
+    }
+}
@@ -0,0 +1,398 @@
+package apoc.export.csv;
+
+import apoc.Pools;
+import apoc.export.cypher.ExportFileManager;
+import apoc.export.util.ExportConfig;
+import apoc.export.util.FormatUtils;
+import apoc.export.util.Reporter;
+import apoc.util.Util;
+import apoc.util.kernel.MultiThreadedGlobalGraphOperations;
+import org.neo4j.cypher.export.DatabaseSubGraph;
+import org.neo4j.cypher.export.SubGraph;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.NotFoundException;
+import org.neo4j.graphdb.PropertyContainer;
+import org.neo4j.graphdb.Relationship;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.text.DecimalFormat;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.LongStream;
+
+import static apoc.export.util.BulkImportUtil.formatHeader;
+import static apoc.export.util.EntityChunks.chunks;
+import static apoc.export.util.EntityChunks.idRanges;
+import static apoc.export.util.MetaInformation.updateKeyTypes;
+import static apoc.util.Util.joinLabels;
+
+/**
+ * Streams the <code>bulkImport:true</code> layout of apoc.export.csv, one file per label combination and per relationship type,
+ * that can be loaded with <code>neo4j-admin import</code>.
+ *
+ * Nodes and relationships are read in chunks of <code>batchSize</code> ids on worker threads, whole database exports scan the
+ * stores by id range. A first pass only collects the property keys and types of each file for the headers, the second pass
+ * encodes the rows of a chunk directly into reusable buffers that are appended to the files in chunk order,
+ * so at most a few chunks are held in memory, whatever the size of the graph.
+ */
+class BulkImportCsvWriter {
+    private static final ThreadLocal<DecimalFormat> DECIMAL_FORMAT = ThreadLocal.withInitial(() -> (DecimalFormat) FormatUtils.decimalFormat.clone());
+
+    private final GraphDatabaseService db;
+    private final ExportConfig config;
+    private final Reporter reporter;
+    private final ExportFileManager files;
+    private final Encoder encoder;
+    // the export itself may run on the export pool, the chunks run elsewhere so they can't starve it
+    private final ExecutorService pool = Pools.DEFAULT;
+    private final int maxInFlight = Math.max(2, Pools.getNoThreadsInDefaultPool() * 2);
+    private final Queue<StringBuilder> buffers = new ConcurrentLinkedQueue<>();
+
+    BulkImportCsvWriter(GraphDatabaseService db, ExportConfig config, Reporter reporter, ExportFileManager files) {
+        this.db = db;
+        this.config = config;
+        this.reporter = reporter;
+        this.files = files;
+        this.encoder = Encoder.of(config);
+    }
+
+    void write(SubGraph graph) {
+        boolean all = graph instanceof DatabaseSubGraph;
+        int batchSize = config.getBatchSize();
+        write(new Nodes(all ? idRanges(db, MultiThreadedGlobalGraphOperations.GlobalOperationsTypes.NODES, batchSize) : chunks(graph.getNodes(), batchSize)));
+        write(new Relationships(all ? idRanges(db, MultiThreadedGlobalGraphOperations.GlobalOperationsTypes.RELATIONSHIPS, batchSize) : chunks(graph.getRelationships(), batchSize)));
+    }
+
+    private <T extends PropertyContainer> void write(Entities<T> entities) {
+        Map<String, Group> groups = new LinkedHashMap<>();
+        pipeline(entities.chunks.get(), ids -> scan(entities, ids), chunk -> chunk.forEach((name, group) -> {
+            Group merged = groups.get(name);
+            if (merged == null) groups.put(name, group);
+            else merged.merge(group);
+        }));
+        groups.values().forEach(entities::header);
+
+        Map<String, PrintWriter> writers = new HashMap<>();
+        try {
+            pipeline(entities.chunks.get(), ids -> encode(entities, groups, ids), chunk -> {
+                chunk.rows.forEach((name, rows) -> {
+                    writer(writers, groups.get(name)).append(rows);
+                    rows.setLength(0);
+                    buffers.offer(rows);
+                });
+                reporter.update(chunk.nodes, chunk.relationships, chunk.properties);
+            });
+        } finally {
+            writers.values().forEach(PrintWriter::close);
+        }
+    }
+
+    private <T extends PropertyContainer> Map<String, Group> scan(Entities<T> entities, LongStream ids) {
+        Map<String, Group> groups = new LinkedHashMap<>();
+        ids.forEach(id -> {
+            T entity = entities.lookup(id);
+            if (entity == null) return;
+            Group group = groups.computeIfAbsent(entities.group(entity), name -> entities.newGroup(name, entity));
+            updateKeyTypes(group.keyTypes, entity);
+        });
+        return groups;
+    }
+
+    private <T extends PropertyContainer> Chunk encode(Entities<T> entities, Map<String, Group> groups, LongStream ids) {
+        Chunk chunk = new Chunk();
+        ids.forEach(id -> {
+            T entity = entities.lookup(id);
+            if (entity == null) return;
+            Group group = groups.get(entities.group(entity));
+            // label combinations or types that only appeared after the first pass belong to the next export
+            if (group == null) return;
+            StringBuilder rows = chunk.rows.computeIfAbsent(group.name, name -> buffer());
+            Map<String, Object> properties = entity.getAllProperties();
+            entities.encode(rows, entity, group, properties);
+            chunk.properties += properties.size();
+            if (entity instanceof Node) chunk.nodes++; else chunk.relationships++;
+        });
+        return chunk;
+    }
+
+    private StringBuilder buffer() {
+        StringBuilder buffer = buffers.poll();
+        return buffer == null ? new StringBuilder(8192) : buffer;
+    }
+
+    private PrintWriter writer(Map<String, PrintWriter> writers, Group group) {
+        return writers.computeIfAbsent(group.name, name -> {
+            try {
+                StringBuilder header = new StringBuilder();
+                for (String column : group.header) {
+                    encoder.cell(header, column);
+                }
+                encoder.endRow(header);
+                PrintWriter writer = files.getPrintWriter(name);
+                if (config.isSeparateHeader()) {
+                    try (PrintWriter headerWriter = files.getPrintWriter("header." + name)) {
+                        headerWriter.append(header);
+                    }
+                } else {
+                    writer.append(header);
+                }
+                return writer;
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        });
+    }
+
+    /**
+     * Runs <code>work</code> for each chunk on the worker pool and hands the results to <code>commit</code> in chunk order
+     * on the calling thread, with a bounded number of chunks in flight.
+     */
+    private <R> void pipeline(Iterator<LongStream> chunks, Function<LongStream, R> work, Consumer<R> commit) {
+        Deque<Future<R>> inFlight = new ArrayDeque<>(maxInFlight);
+        try {
+            while (chunks.hasNext()) {
+                LongStream ids = chunks.next();
+                inFlight.add(Util.inTxFuture(pool, db, () -> work.apply(ids)));
+                if (inFlight.size() >= maxInFlight) commit.accept(Pools.force(inFlight.poll()));
+            }
+            while (!inFlight.isEmpty()) {
+                commit.accept(Pools.force(inFlight.poll()));
+            }
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Error exporting the bulk import files", e.getCause());
+        } finally {
+            inFlight.forEach(future -> future.cancel(false));
+        }
+    }
+
+    private void cell(StringBuilder sb, Object value) {
+        if (value == null) {
+            encoder.cell(sb, "");
+        } else if (value instanceof String && ((String) value).indexOf('"') == -1) {
+            encoder.cell(sb, (String) value);
+        } else if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            encoder.cell(sb, ((Number) value).longValue());
+        } else if (value instanceof Number) {
+            encoder.cell(sb, DECIMAL_FORMAT.get().format(value));
+        } else {
+            encoder.cell(sb, cleanPoint(FormatUtils.toString(value)));
+        }
+    }
+
+    static String cleanPoint(String point) {
+        point = point.replace(",\"z\":null", "");
+        point = point.replace(",\"heigth\":null", "");
+        point = point.replace("\"", "");
+        return point;
+    }
+
+    /**
+     * one output file, the key types are collected in the first pass, keys and header are fixed before the second one
+     */
+    private static class Group {
+        final String name;
+        // the value of the :LABEL or :TYPE column
+        final String token;
+        final Map<String, Class> keyTypes = new LinkedHashMap<>();
+        final List<String> header = new ArrayList<>();
+        List<String> keys;
+
+        Group(String name, String token) {
+            this.name = name;
+            this.token = token;
+        }
+
+        // same outcome as updating the key types sequentially, chunks are merged in order
+        void merge(Group other) {
+            other.keyTypes.forEach((key, type) -> {
+                Class stored = keyTypes.get(key);
+                if (stored == null) keyTypes.put(key, type);
+                else if (stored != void.class && !stored.equals(type)) keyTypes.put(key, void.class);
+            });
+        }
+
+        List<String> typedKeys() {
+            keys = new ArrayList<>(keyTypes.keySet());
+            List<String> typed = new ArrayList<>(keyTypes.size());
+            keyTypes.entrySet().forEach(entry -> typed.add(formatHeader(entry)));
+            return typed;
+        }
+    }
+
+    private static class Chunk {
+        final Map<String, StringBuilder> rows = new LinkedHashMap<>();
+        long nodes, relationships, properties;
+    }
+
+    private abstract static class Entities<T extends PropertyContainer> {
+        final Supplier<Iterator<LongStream>> chunks;
+
+        Entities(Supplier<Iterator<LongStream>> chunks) {
+            this.chunks = chunks;
+        }
+
+        abstract T lookup(long id);
+
+        abstract String group(T entity);
+
+        abstract Group newGroup(String name, T entity);
+
+        abstract void header(Group group);
+
+        abstract void encode(StringBuilder sb, T entity, Group group, Map<String, Object> properties);
+    }
+
+    private class Nodes extends Entities<Node> {
+        Nodes(Supplier<Iterator<LongStream>> chunks) {
+            super(chunks);
+        }
+
+        Node lookup(long id) {
+            try {
+                return db.getNodeById(id);
+            } catch (NotFoundException e) {
+                return null;
+            }
+        }
+
+        String group(Node node) {
+            return "nodes." + joinLabels(node.getLabels(), ".");
+        }
+
+        Group newGroup(String name, Node node) {
+            return new Group(name, joinLabels(node.getLabels(), config.getArrayDelim()));
+        }
+
+        void header(Group group) {
+            group.header.add(":ID");
+            group.header.addAll(group.typedKeys());
+            group.header.add(":LABEL");
+        }
+
+        void encode(StringBuilder sb, Node node, Group group, Map<String, Object> properties) {
+            encoder.cell(sb, node.getId());
+            for (String key : group.keys) {
+                cell(sb, properties.get(key));
+            }
+            encoder.cell(sb, group.token);
+            encoder.endRow(sb);
+        }
+    }
+
+    private class Relationships extends Entities<Relationship> {
+        Relationships(Supplier<Iterator<LongStream>> chunks) {
+            super(chunks);
+        }
+
+        Relationship lookup(long id) {
+            try {
+                return db.getRelationshipById(id);
+            } catch (NotFoundException e) {
+                return null;
+            }
+        }
+
+        String group(Relationship rel) {
+            return "relationships." + rel.getType().name();
+        }
+
+        Group newGroup(String name, Relationship rel) {
+            return new Group(name, rel.getType().name());
+        }
+
+        void header(Group group) {
+            group.header.addAll(Arrays.asList(":START_ID", ":END_ID", ":TYPE"));
+            group.header.addAll(group.typedKeys());
+        }
+
+        void encode(StringBuilder sb, Relationship rel, Group group, Map<String, Object> properties) {
+            encoder.cell(sb, rel.getStartNodeId());
+            encoder.cell(sb, rel.getEndNodeId());
+            encoder.cell(sb, group.token);
+            for (String key : group.keys) {
+                cell(sb, properties.get(key));
+            }
+            encoder.endRow(sb);
+        }
+    }
+
+    /**
+     * Appends cells to a buffer with the quoting and escaping rules of the opencsv CSVWriter for the configured
+     * <code>quotes</code>, when only the cells that need it are quoted.
+     */
+    static class Encoder {
+        private static final char NONE = '\0';
+        private final char separator;
+        private final char quote;
+        private final char escape;
+
+        Encoder(char separator, char quote, char escape) {
+            this.separator = separator;
+            this.quote = quote;
+            this.escape = escape;
+        }
+
+        static Encoder of(ExportConfig config) {
+            switch (config.isQuotes()) {
+                case ExportConfig.NONE_QUOTES:
+                    return new Encoder(config.getDelimChar(), NONE, NONE);
+                case ExportConfig.IF_NEEDED_QUUOTES:
+                    return new Encoder(config.getDelimChar(), ExportConfig.QUOTECHAR, NONE);
+                case ExportConfig.ALWAYS_QUOTES:
+                default:
+                    return new Encoder(config.getDelimChar(), ExportConfig.QUOTECHAR, '"');
+            }
+        }
+
+        void cell(StringBuilder sb, long value) {
+            sb.append(value).append(separator);
+        }
+
+        void cell(StringBuilder sb, String value) {
+            int length = value.length();
+            boolean special = false;
+            for (int i = 0; i < length && !special; i++) {
+                char c = value.charAt(i);
+                special = c == quote || c == escape || c == separator || c == '\n' || c == '\r';
+            }
+            if (!special) {
+                sb.append(value).append(separator);
+                return;
+            }
+            if (quote != NONE) sb.append(quote);
+            for (int i = 0; i < length; i++) {
+                char c = value.charAt(i);
+                if (escape != NONE && escapes(c)) sb.append(escape);
+                sb.append(c);
+            }
+            if (quote != NONE) sb.append(quote);
+            sb.append(separator);
+        }
+
+        private boolean escapes(char c) {
+            return quote == NONE ? c == quote || c == escape || c == separator || c == '\n' : c == quote || c == escape;
+        }
+
+        // every cell is followed by a separator, the last one of the row is replaced by the line end
+        void endRow(StringBuilder sb) {
+            sb.setCharAt(sb.length() - 1, '\n');
+        }
+    }
+}
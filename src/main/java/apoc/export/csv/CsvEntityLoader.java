@@ -1,5 +1,6 @@
 package apoc.export.csv;
 
+import apoc.Pools;
 import apoc.export.util.BatchTransaction;
 import apoc.export.util.CountingReader;
 import apoc.export.util.ProgressReporter;
@@ -15,20 +16,40 @@ import org.neo4j.graphdb.RelationshipType;
 
 import java.io.IOException;
 import java.util.AbstractMap;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.EnumSet;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import java.util.Arrays;
 
+/**
+ * Loads the node and relationship files of apoc.import.csv.
+ *
+ * Each file runs through a pipeline: a reader task on the <code>import</code> pool parses it in batches of <code>batchSize</code>
+ * lines, the values of each batch are converted on the same pool, and the calling thread writes the batches in file order,
+ * committing after every batch. While one file is written, the next <code>parallelFiles - 1</code> files are already
+ * parsed and converted. Gzip and zstd compressed files are decompressed while reading.
+ */
 public class CsvEntityLoader {
 
+    private static final Future<Batch> END = CompletableFuture.completedFuture(null);
+
     private final CsvLoaderConfig clc;
     private final ProgressReporter reporter;
+    private final ExecutorService pool = Pools.pool(Pools.IMPORT);
+    private final int batchesAhead = Math.max(2, Pools.getNoThreadsInPool(Pools.IMPORT));
 
     /**
      * @param clc configuration object
@@ -41,7 +62,7 @@ public class CsvEntityLoader {
 
     /**
      * Loads nodes from a CSV file with given labels to an online database, and fills the {@code idMapping},
-     * which will be used by the {@link #loadRelationships(String, String, GraphDatabaseService, Map)}
+     * which will be used by the {@link #loadRelationships(String, String, GraphDatabaseService, CsvIdMapping)}
      * method.
      *
      * @param fileName URI of the CSV file representing the node
@@ -51,23 +72,53 @@ public class CsvEntityLoader {
      * @throws IOException
      */
     public void loadNodes(final String fileName, final List<String> labels, final GraphDatabaseService db,
-                          final Map<String, Map<String, Long>> idMapping) throws IOException {
-        final CountingReader reader = FileUtils.readerFor(fileName);
-        final String header = readFirstLine(reader);
-        reader.skip(clc.getSkipLines() - 1);
-        final List<CsvHeaderField> fields = CsvHeaderFields.processHeader(header, clc.getDelimiter(), clc.getQuotationCharacter());
+                          final CsvIdMapping idMapping) throws IOException {
+        load(Collections.singletonList(nodes(fileName, labels)), db, idMapping);
+    }
 
-        final Optional<CsvHeaderField> idField = fields.stream()
-                .filter(f -> CsvLoaderConstants.ID_FIELD.equals(f.getType()))
-                .findFirst();
+    /**
+     * Loads relationships from a CSV file with given relationship types to an online database,
+     * using the {@code idMapping} created by the
+     * {@link #loadNodes(String, List, GraphDatabaseService, CsvIdMapping)} method.
+     *
+     * @param fileName URI of the CSV file representing the relationship
+     * @param type relationship type to be applied to each relationships
+     * @param db running database instance
+     * @param idMapping stores mapping between the CSV ids and the DB's internal node ids
+     * @throws IOException
+     */
+    public void loadRelationships(
+            final String fileName, final String type, final GraphDatabaseService db,
+            final CsvIdMapping idMapping) throws IOException {
+        load(Collections.singletonList(relationships(fileName, type)), db, idMapping);
+    }
 
-        final Optional<String> idAttribute = idField.isPresent() ? Optional.of(idField.get().getName()) : Optional.empty();
-        final String idSpace = idField.isPresent() ? idField.get().getIdSpace() : CsvLoaderConstants.DEFAULT_IDSPACE;
+    public Input nodes(final String fileName, final List<String> labels) {
+        return new NodeInput(fileName, labels);
+    }
 
-        idMapping.putIfAbsent(idSpace, new HashMap<>());
-        final Map<String, Long> idspaceIdMapping = idMapping.get(idSpace);
+    public Input relationships(final String fileName, final String type) {
+        return new RelationshipInput(fileName, type);
+    }
 
-        final Map<String, LoadCsv.Mapping> mapping = fields.stream().collect(
+    /**
+     * Writes the inputs in the given order, nodes have to come before the relationships that refer to them.
+     */
+    public void load(final List<Input> inputs, final GraphDatabaseService db, final CsvIdMapping idMapping) throws IOException {
+        try {
+            for (int i = 0; i < inputs.size(); i++) {
+                for (int j = i; j < Math.min(inputs.size(), i + clc.getParallelFiles()); j++) {
+                    inputs.get(j).start();
+                }
+                inputs.get(i).write(db, idMapping);
+            }
+        } finally {
+            inputs.forEach(Input::close);
+        }
+    }
+
+    private Map<String, LoadCsv.Mapping> mapping(List<CsvHeaderField> fields) {
+        return fields.stream().collect(
                 Collectors.toMap(
                         CsvHeaderField::getName,
                         f -> {
@@ -80,178 +131,288 @@ public class CsvEntityLoader {
                         }
                 )
         );
+    }
 
-        final CSVReader csv = new CSVReader(reader, clc.getDelimiter(), clc.getQuotationCharacter());
+    private static class Batch {
+        final List<String[]> lines;
+        final List<LoadCsv.CSVResult> results;
 
-        final String[] loadCsvCompatibleHeader = fields.stream().map(f -> f.getName()).toArray(String[]::new);
-        int lineNo = 0;
-        try (BatchTransaction tx = new BatchTransaction(db, clc.getBatchSize(), reporter)) {
-            for (String[] line : csv.readAll()) {
-                lineNo++;
+        Batch(List<String[]> lines, List<LoadCsv.CSVResult> results) {
+            this.lines = lines;
+            this.results = results;
+        }
+    }
 
-                final EnumSet<LoadCsvConfig.Results> results = EnumSet.of(LoadCsvConfig.Results.map);
-                final LoadCsv.CSVResult result = new LoadCsv.CSVResult(
-                        loadCsvCompatibleHeader, line, lineNo, false, mapping, Collections.emptyList(), results
-                );
+    /**
+     * A node or relationship file, parsed and converted ahead of writing into a bounded queue of batches.
+     */
+    public abstract class Input implements AutoCloseable {
+        final String fileName;
+        private final BlockingQueue<Future<Batch>> batches = new ArrayBlockingQueue<>(batchesAhead);
+        private Future<?> reader;
+        private volatile boolean closed;
+
+        // set by the reader thread before the first batch is queued
+        List<CsvHeaderField> fields;
+        private String[] header;
+        private Map<String, LoadCsv.Mapping> mapping;
+
+        Input(String fileName) {
+            this.fileName = fileName;
+        }
 
-                final String nodeCsvId = result.map.get(idAttribute.get()).toString();
+        /**
+         * reads the header and positions the reader at the first line of data
+         */
+        abstract CSVReader open(CountingReader reader) throws IOException;
 
-                // if 'ignore duplicate nodes' is false, there is an id field and the mapping already has the current id,
-                // we either fail the loading process or skip it depending on the 'ignore duplicate nodes' setting
-                if (idField.isPresent() && idspaceIdMapping.containsKey(nodeCsvId)) {
-                    if (clc.getIgnoreDuplicateNodes()) {
-                        continue;
-                    } else {
-                        throw new IllegalStateException("Duplicate node with id " + nodeCsvId + " found on line "+lineNo+"\n"
-                                                        +Arrays.toString(line));
+        abstract void write(GraphDatabaseService db, LoadCsv.CSVResult result, String[] line, CsvIdMapping idMapping);
+
+        void fields(List<CsvHeaderField> fields) {
+            this.fields = fields;
+            this.header = fields.stream().map(CsvHeaderField::getName).toArray(String[]::new);
+            this.mapping = mapping(fields);
+        }
+
+        synchronized void start() {
+            if (reader == null) reader = pool.submit(this::read);
+        }
+
+        private void read() {
+            try (CountingReader in = FileUtils.decompressingReaderFor(fileName)) {
+                CSVReader csv = open(in);
+                List<String[]> lines = new ArrayList<>(clc.getBatchSize());
+                int lineNo = 0;
+                String[] line;
+                while (!closed && (line = csv.readNext()) != null) {
+                    lines.add(line);
+                    if (lines.size() == clc.getBatchSize()) {
+                        convert(lines, lineNo);
+                        lineNo += lines.size();
+                        lines = new ArrayList<>(clc.getBatchSize());
                     }
                 }
+                if (!lines.isEmpty()) convert(lines, lineNo);
+                enqueue(END);
+            } catch (Exception e) {
+                CompletableFuture<Batch> failed = new CompletableFuture<>();
+                failed.completeExceptionally(e);
+                enqueue(failed);
+            }
+        }
 
-                // create node and add its id to the mapping
-                final Node node = db.createNode();
-                if (idField.isPresent()) {
-                    idspaceIdMapping.put(nodeCsvId, node.getId());
+        private void convert(List<String[]> lines, int lineNo) {
+            FutureTask<Batch> conversion = new FutureTask<>(() -> {
+                final EnumSet<LoadCsvConfig.Results> results = EnumSet.of(LoadCsvConfig.Results.map);
+                List<LoadCsv.CSVResult> converted = new ArrayList<>(lines.size());
+                int no = lineNo;
+                for (String[] line : lines) {
+                    converted.add(new LoadCsv.CSVResult(header, line, ++no, false, mapping, Collections.emptyList(), results));
                 }
+                return new Batch(lines, converted);
+            });
+            pool.execute(conversion);
+            enqueue(conversion);
+        }
 
-                // add labels
-                for (String label : labels) {
-                    node.addLabel(Label.label(label));
+        private void enqueue(Future<Batch> batch) {
+            try {
+                while (!closed && !batches.offer(batch, 100, TimeUnit.MILLISECONDS)) {
+                    // the writer is behind
                 }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
 
-                // add properties
-                int props = 0;
-                for (CsvHeaderField field : fields) {
-                    final String name = field.getName();
-                    Object value = result.map.get(name);
-
-                    if (field.isMeta()) {
-                        final List<String> customLabels = (List<String>) value;
-                        for (String customLabel : customLabels) {
-                            node.addLabel(Label.label(customLabel));
-                        }
-                    } else if (field.isId()) {
-                        final Object idValue;
-                        if (clc.getStringIds()) {
-                            idValue = value;
-                        } else {
-                            idValue = Long.valueOf((String) value);
-                        }
-                        node.setProperty(field.getName(), idValue);
-                        props++;
-                    } else {
-                        boolean propertyAdded = CsvPropertyConverter.addPropertyToGraphEntity(node, field, value);
-                        props += propertyAdded ? 1 : 0;
+        void write(GraphDatabaseService db, CsvIdMapping idMapping) throws IOException {
+            start();
+            try (BatchTransaction tx = new BatchTransaction(db, clc.getBatchSize(), reporter)) {
+                Future<Batch> next;
+                while ((next = batches.take()) != END) {
+                    // converts the batch on this thread if no thread of the pool has started it yet,
+                    // so the readers that hold the threads of the pool can't hold up the conversions
+                    if (next instanceof FutureTask) ((FutureTask<Batch>) next).run();
+                    Batch batch = next.get();
+                    for (int i = 0; i < batch.results.size(); i++) {
+                        write(db, batch.results.get(i), batch.lines.get(i), idMapping);
+                        tx.increment();
                     }
                 }
-                reporter.update(1, 0, props++);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while importing " + fileName, e);
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof IOException) throw (IOException) cause;
+                if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+                throw new RuntimeException("Error importing " + fileName, cause);
             }
         }
-    }
 
-    /**
-     * Loads relationships from a CSV file with given relationship types to an online database,
-     * using the {@code idMapping} created by the
-     * {@link #loadNodes(String, List, GraphDatabaseService, Map)} method.
-     *
-     * @param fileName URI of the CSV file representing the relationship
-     * @param type relationship type to be applied to each relationships
-     * @param db running database instance
-     * @param idMapping stores mapping between the CSV ids and the DB's internal node ids
-     * @throws IOException
-     */
-    public void loadRelationships(
-            final String fileName, final String type, final GraphDatabaseService db,
-            final Map<String, Map<String, Long>> idMapping) throws IOException {
-        final CountingReader reader = FileUtils.readerFor(fileName);
-        final String header = readFirstLine(reader);
-        final List<CsvHeaderField> fields = CsvHeaderFields.processHeader(header, clc.getDelimiter(), clc.getQuotationCharacter());
-
-        final CsvHeaderField startIdField = fields.stream()
-                .filter(f -> CsvLoaderConstants.START_ID_FIELD.equals(f.getType()))
-                .findFirst().get();
+        @Override
+        public synchronized void close() {
+            closed = true;
+            if (reader != null) reader.cancel(true);
+            batches.clear();
+        }
+    }
 
-        final CsvHeaderField endIdField = fields.stream()
-                .filter(f -> CsvLoaderConstants.END_ID_FIELD.equals(f.getType()))
-                .findFirst().get();
+    private class NodeInput extends Input {
+        private final List<String> labels;
+        private Optional<CsvHeaderField> idField;
+        private String idSpace;
 
-        final List<CsvHeaderField> edgePropertiesFields = fields.stream()
-                .filter(field -> !CsvLoaderConstants.START_ID_FIELD.equals(field.getType()))
-                .filter(field -> !CsvLoaderConstants.END_ID_FIELD.equals(field.getType()))
-                .collect(Collectors.toList());
+        NodeInput(String fileName, List<String> labels) {
+            super(fileName);
+            this.labels = labels;
+        }
 
-        final Map<String, LoadCsv.Mapping> mapping = fields.stream().collect(
-                Collectors.toMap(
-                        CsvHeaderField::getName,
-                        f -> {
-                            final Map<String, Object> mappingMap = Collections
-                                    .unmodifiableMap(Stream.of(
-                                            new AbstractMap.SimpleEntry<>("type", f.getType()),
-                                            new AbstractMap.SimpleEntry<>("array", f.isArray())
-                                    ).collect(Collectors.toMap(AbstractMap.SimpleEntry::getKey, AbstractMap.SimpleEntry::getValue)));
+        @Override
+        CSVReader open(CountingReader reader) throws IOException {
+            final String header = readFirstLine(reader);
+            reader.skip(clc.getSkipLines() - 1);
+            fields(CsvHeaderFields.processHeader(header, clc.getDelimiter(), clc.getQuotationCharacter()));
+
+            idField = fields.stream()
+                    .filter(f -> CsvLoaderConstants.ID_FIELD.equals(f.getType()))
+                    .findFirst();
+            idSpace = idField.isPresent() ? idField.get().getIdSpace() : CsvLoaderConstants.DEFAULT_IDSPACE;
+            return new CSVReader(reader, clc.getDelimiter(), clc.getQuotationCharacter());
+        }
 
-                            return new LoadCsv.Mapping(f.getName(), mappingMap, clc.getArrayDelimiter(), false);
-                        }
-                )
-        );
+        @Override
+        void write(GraphDatabaseService db, LoadCsv.CSVResult result, String[] line, CsvIdMapping idMapping) {
+            final String nodeCsvId = idField.isPresent() ? result.map.get(idField.get().getName()).toString() : null;
 
-        final CSVReader csv = new CSVReader(reader, clc.getDelimiter());
-        final String[] loadCsvCompatibleHeader = fields.stream().map(f -> f.getName()).toArray(String[]::new);
+            // if 'ignore duplicate nodes' is false, there is an id field and the mapping already has the current id,
+            // we either fail the loading process or skip it depending on the 'ignore duplicate nodes' setting
+            if (idField.isPresent() && idMapping.contains(idSpace, nodeCsvId)) {
+                if (clc.getIgnoreDuplicateNodes()) {
+                    return;
+                } else {
+                    throw new IllegalStateException("Duplicate node with id " + nodeCsvId + " found on line " + result.lineNo + "\n"
+                                                    + Arrays.toString(line));
+                }
+            }
 
-        int lineNo = 0;
-        try (BatchTransaction tx = new BatchTransaction(db, clc.getBatchSize(), reporter)) {
-            for (String[] line : csv.readAll()) {
-                lineNo++;
+            // create node and add its id to the mapping
+            final Node node = db.createNode();
+            if (idField.isPresent()) {
+                idMapping.put(idSpace, nodeCsvId, node.getId());
+            }
 
-                final EnumSet<LoadCsvConfig.Results> results = EnumSet.of(LoadCsvConfig.Results.map);
-                final LoadCsv.CSVResult result = new LoadCsv.CSVResult(
-                        loadCsvCompatibleHeader, line, lineNo, false, mapping, Collections.emptyList(), results
-                );
-
-                final Object startId = result.map.get(CsvLoaderConstants.START_ID_ATTR);
-                final Object startInternalId = idMapping.get(startIdField.getIdSpace()).get(startId);
-                if (startInternalId == null) {
-                    throw new IllegalStateException("Node for id space " + endIdField.getIdSpace() + " and id " + startId + " not found");
-                }
-                final Node source = db.getNodeById((long) startInternalId);
+            // add labels
+            for (String label : labels) {
+                node.addLabel(Label.label(label));
+            }
 
-                final Object endId = result.map.get(CsvLoaderConstants.END_ID_ATTR);
-                final Object endInternalId = idMapping.get(endIdField.getIdSpace()).get(endId);
-                if (endInternalId == null) {
-                    throw new IllegalStateException("Node for id space " + endIdField.getIdSpace() + " and id " + endId + " not found");
-                }
-                final Node target = db.getNodeById((long) endInternalId);
+            // add properties
+            int props = 0;
+            for (CsvHeaderField field : fields) {
+                final String name = field.getName();
+                Object value = result.map.get(name);
 
-                final String currentType;
-                final Object overridingType = result.map.get(CsvLoaderConstants.TYPE_ATTR);
-                if (overridingType != null && !((String) overridingType).isEmpty()) {
-                    currentType = (String) overridingType;
+                if (field.isMeta()) {
+                    final List<String> customLabels = (List<String>) value;
+                    for (String customLabel : customLabels) {
+                        node.addLabel(Label.label(customLabel));
+                    }
+                } else if (field.isId()) {
+                    final Object idValue;
+                    if (clc.getStringIds()) {
+                        idValue = value;
+                    } else {
+                        idValue = Long.valueOf((String) value);
+                    }
+                    node.setProperty(field.getName(), idValue);
+                    props++;
                 } else {
-                    currentType = type;
-                }
-                final Relationship rel = source.createRelationshipTo(target, RelationshipType.withName(currentType));
-
-                // add properties
-                int props = 0;
-                for (CsvHeaderField field : edgePropertiesFields) {
-                    final String name = field.getName();
-                    Object value = result.map.get(name);
-                    boolean propertyAdded = CsvPropertyConverter.addPropertyToGraphEntity(rel, field, value);
+                    boolean propertyAdded = CsvPropertyConverter.addPropertyToGraphEntity(node, field, value);
                     props += propertyAdded ? 1 : 0;
                 }
-                reporter.update(0, 1, props);
             }
+            reporter.update(1, 0, props);
+        }
+    }
+
+    private class RelationshipInput extends Input {
+        private final String type;
+        private CsvHeaderField startIdField;
+        private CsvHeaderField endIdField;
+        private List<CsvHeaderField> edgePropertiesFields;
+
+        RelationshipInput(String fileName, String type) {
+            super(fileName);
+            this.type = type;
+        }
+
+        @Override
+        CSVReader open(CountingReader reader) throws IOException {
+            final String header = readFirstLine(reader);
+            fields(CsvHeaderFields.processHeader(header, clc.getDelimiter(), clc.getQuotationCharacter()));
+
+            startIdField = fields.stream()
+                    .filter(f -> CsvLoaderConstants.START_ID_FIELD.equals(f.getType()))
+                    .findFirst().get();
+
+            endIdField = fields.stream()
+                    .filter(f -> CsvLoaderConstants.END_ID_FIELD.equals(f.getType()))
+                    .findFirst().get();
+
+            edgePropertiesFields = fields.stream()
+                    .filter(field -> !CsvLoaderConstants.START_ID_FIELD.equals(field.getType()))
+                    .filter(field -> !CsvLoaderConstants.END_ID_FIELD.equals(field.getType()))
+                    .collect(Collectors.toList());
+            return new CSVReader(reader, clc.getDelimiter());
+        }
+
+        @Override
+        void write(GraphDatabaseService db, LoadCsv.CSVResult result, String[] line, CsvIdMapping idMapping) {
+            final Object startId = result.map.get(CsvLoaderConstants.START_ID_ATTR);
+            final long startInternalId = idMapping.get(startIdField.getIdSpace(), String.valueOf(startId));
+            if (startInternalId == CsvIdMapping.NOT_FOUND) {
+                throw new IllegalStateException("Node for id space " + startIdField.getIdSpace() + " and id " + startId + " not found");
+            }
+            final Node source = db.getNodeById(startInternalId);
+
+            final Object endId = result.map.get(CsvLoaderConstants.END_ID_ATTR);
+            final long endInternalId = idMapping.get(endIdField.getIdSpace(), String.valueOf(endId));
+            if (endInternalId == CsvIdMapping.NOT_FOUND) {
+                throw new IllegalStateException("Node for id space " + endIdField.getIdSpace() + " and id " + endId + " not found");
+            }
+            final Node target = db.getNodeById(endInternalId);
+
+            final String currentType;
+            final Object overridingType = result.map.get(CsvLoaderConstants.TYPE_ATTR);
+            if (overridingType != null && !((String) overridingType).isEmpty()) {
+                currentType = (String) overridingType;
+            } else {
+                currentType = type;
+            }
+            final Relationship rel = source.createRelationshipTo(target, RelationshipType.withName(currentType));
+
+            // add properties
+            int props = 0;
+            for (CsvHeaderField field : edgePropertiesFields) {
+                final String name = field.getName();
+                Object value = result.map.get(name);
+                boolean propertyAdded = CsvPropertyConverter.addPropertyToGraphEntity(rel, field, value);
+                props += propertyAdded ? 1 : 0;
+            }
+            reporter.update(0, 1, props);
         }
     }
 
     private static String readFirstLine(CountingReader reader) throws IOException {
-        String line = "";
+        StringBuilder line = new StringBuilder();
         int i;
-        while ((i = reader.read()) != 0) {
+        while ((i = reader.read()) > 0) {
             char c = (char) i;
             if (c == '\n') break;
-            line += c;
+            line.append(c);
         }
-        return line;
+        return line.toString();
     }
 
 }
@@ -0,0 +1,346 @@
+package apoc.export.csv;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Maps the ids of the CSV files to the internal node ids, per id space.
+ *
+ * Each id space is an open addressing hash table of primitive <code>long</code> slots, stored in pages that
+ * are either on the heap, off-heap (direct buffers) or in memory mapped temporary files the operating system can page out.
+ * Ids in canonical decimal form are used as keys directly, all other ids are hashed to 64 bit and kept in the same storage,
+ * so ids whose hashes collide are still told apart.
+ */
+public class CsvIdMapping implements AutoCloseable {
+    public enum Storage {HEAP, OFFHEAP, DISK}
+
+    static final int PAGE_SHIFT = 20;
+    static final int PAGE_SIZE = 1 << PAGE_SHIFT;
+    public static final long NOT_FOUND = -1;
+    private static final int INITIAL_CAPACITY = 1 << 14;
+    private static final double LOAD_FACTOR = 0.7;
+
+    private final Storage storage;
+    private final Map<String, IdSpace> idSpaces = new HashMap<>();
+
+    public CsvIdMapping(Storage storage) {
+        this.storage = storage;
+    }
+
+    /**
+     * @return false if the id was already mapped in the id space, the mapping is left unchanged then
+     */
+    public boolean put(String idSpace, String id, long nodeId) {
+        return isNumeric(id) ? idSpace(idSpace).put(Long.parseLong(id), null, nodeId) : idSpace(idSpace).put(hash(id), id, nodeId);
+    }
+
+    /**
+     * maps the id to the node id, replacing an existing mapping
+     */
+    public void set(String idSpace, String id, long nodeId) {
+        if (isNumeric(id)) {
+            idSpace(idSpace).set(Long.parseLong(id), null, nodeId);
+        } else {
+            idSpace(idSpace).set(hash(id), id, nodeId);
+        }
+    }
+
+    /**
+     * like {@link #put(String, String, long)} with the decimal form of a numeric id
+     */
+    public boolean put(String idSpace, long id, long nodeId) {
+        return idSpace(idSpace).put(id, null, nodeId);
+    }
+
+    public boolean contains(String idSpace, String id) {
+        return get(idSpace, id) != NOT_FOUND;
+    }
+
+    /**
+     * @return the node id or {@link #NOT_FOUND}
+     */
+    public long get(String idSpace, String id) {
+        IdSpace space = idSpaces.get(idSpace);
+        if (space == null) return NOT_FOUND;
+        return isNumeric(id) ? space.get(Long.parseLong(id), null) : space.get(hash(id), id);
+    }
+
+    /**
+     * like {@link #get(String, String)} with the decimal form of a numeric id
+     */
+    public long get(String idSpace, long id) {
+        IdSpace space = idSpaces.get(idSpace);
+        return space == null ? NOT_FOUND : space.get(id, null);
+    }
+
+    public long size() {
+        return idSpaces.values().stream().mapToLong(space -> space.size).sum();
+    }
+
+    private IdSpace idSpace(String name) {
+        return idSpaces.computeIfAbsent(name, n -> new IdSpace(INITIAL_CAPACITY));
+    }
+
+    /**
+     * up to 18 digits without leading zeros always fit, so "01" and "1" stay different ids
+     */
+    static boolean isNumeric(String id) {
+        int length = id.length();
+        boolean negative = length > 1 && id.charAt(0) == '-';
+        int start = negative ? 1 : 0;
+        if (length == start || length - start > 18 || (id.charAt(start) == '0' && length - start > 1)) return false;
+        for (int i = start; i < length; i++) {
+            char c = id.charAt(i);
+            if (c < '0' || c > '9') return false;
+        }
+        return !(negative && length == 2 && id.charAt(1) == '0');
+    }
+
+    // FNV-1a over the chars, finished with the murmur3 mixer
+    private static long hash(String id) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < id.length(); i++) {
+            h ^= id.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        return mix(h);
+    }
+
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    @Override
+    public void close() {
+        idSpaces.values().forEach(IdSpace::release);
+        idSpaces.clear();
+    }
+
+    /**
+     * linear probing over slots of three longs: the key, the node id + 1, so that 0 marks a free slot,
+     * and for hashed ids the offset + 1 of the id in the {@link Strings}, or 0 for numeric keys
+     */
+    private class IdSpace {
+        private long capacity;
+        private long mask;
+        private Pages pages;
+        private Strings strings;
+        long size;
+
+        IdSpace(long capacity) {
+            allocate(capacity);
+        }
+
+        private void allocate(long capacity) {
+            this.capacity = capacity;
+            this.mask = capacity - 1;
+            this.pages = new Pages(storage, capacity * 3);
+        }
+
+        /**
+         * @param id the original id of a hashed key, or null for a numeric key
+         */
+        boolean put(long key, String id, long nodeId) {
+            if (size + 1 > capacity * LOAD_FACTOR) grow();
+            long slot = slot(key, id);
+            if (pages.get(slot * 3 + 1) != 0) return false;
+            insert(slot, key, nodeId + 1, ref(id));
+            size++;
+            return true;
+        }
+
+        void set(long key, String id, long nodeId) {
+            if (size + 1 > capacity * LOAD_FACTOR) grow();
+            long slot = slot(key, id);
+            if (pages.get(slot * 3 + 1) != 0) {
+                pages.set(slot * 3 + 1, nodeId + 1);
+            } else {
+                insert(slot, key, nodeId + 1, ref(id));
+                size++;
+            }
+        }
+
+        long get(long key, String id) {
+            long stored = pages.get(slot(key, id) * 3 + 1);
+            return stored == 0 ? NOT_FOUND : stored - 1;
+        }
+
+        private long ref(String id) {
+            if (id == null) return 0;
+            if (strings == null) strings = new Strings(storage);
+            return strings.add(id) + 1;
+        }
+
+        private void insert(long slot, long key, long value, long ref) {
+            pages.set(slot * 3, key);
+            pages.set(slot * 3 + 1, value);
+            pages.set(slot * 3 + 2, ref);
+        }
+
+        /**
+         * @return the slot holding the key and id, or the free slot they go into
+         */
+        private long slot(long key, String id) {
+            long slot = mix(key) & mask;
+            while (pages.get(slot * 3 + 1) != 0 && !(pages.get(slot * 3) == key && matches(pages.get(slot * 3 + 2), id))) {
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+
+        private boolean matches(long ref, String id) {
+            return id == null ? ref == 0 : ref != 0 && strings.equals(ref - 1, id);
+        }
+
+        private void grow() {
+            Pages old = pages;
+            long oldCapacity = capacity;
+            allocate(capacity * 2);
+            for (long slot = 0; slot < oldCapacity; slot++) {
+                long value = old.get(slot * 3 + 1);
+                if (value == 0) continue;
+                long key = old.get(slot * 3);
+                // the entries are distinct, so the first free slot is theirs
+                long free = mix(key) & mask;
+                while (pages.get(free * 3 + 1) != 0) free = (free + 1) & mask;
+                insert(free, key, value, old.get(slot * 3 + 2));
+            }
+            old.release();
+        }
+
+        void release() {
+            pages.release();
+            if (strings != null) strings.release();
+        }
+    }
+
+    /**
+     * The hashed ids of an id space, appended as their length followed by their chars, four to a long.
+     * The pages are doubled when full, like the slots of the id space.
+     */
+    static class Strings {
+        private static final int INITIAL_LENGTH = 1 << 12;
+
+        private final Storage storage;
+        private Pages pages;
+        private long capacity;
+        private long length;
+
+        Strings(Storage storage) {
+            this.storage = storage;
+        }
+
+        /**
+         * @return the offset of the id
+         */
+        long add(String id) {
+            long offset = length;
+            long end = offset + 1 + (id.length() + 3) / 4;
+            ensure(end);
+            pages.set(offset, id.length());
+            for (int i = 0; i < id.length(); i += 4) {
+                pages.set(offset + 1 + i / 4, pack(id, i));
+            }
+            length = end;
+            return offset;
+        }
+
+        boolean equals(long offset, String id) {
+            if (pages.get(offset) != id.length()) return false;
+            for (int i = 0; i < id.length(); i += 4) {
+                if (pages.get(offset + 1 + i / 4) != pack(id, i)) return false;
+            }
+            return true;
+        }
+
+        private static long pack(String id, int from) {
+            long packed = 0;
+            for (int j = 0; j < 4 && from + j < id.length(); j++) {
+                packed |= (long) id.charAt(from + j) << (16 * j);
+            }
+            return packed;
+        }
+
+        private void ensure(long end) {
+            if (end <= capacity) return;
+            long newCapacity = Math.max(capacity == 0 ? INITIAL_LENGTH : capacity * 2, end);
+            Pages old = pages;
+            pages = new Pages(storage, newCapacity);
+            for (long i = 0; i < length; i++) {
+                pages.set(i, old.get(i));
+            }
+            capacity = newCapacity;
+            if (old != null) old.release();
+        }
+
+        void release() {
+            if (pages != null) pages.release();
+        }
+    }
+
+    /**
+     * a long array of arbitrary length, split into pages of {@link #PAGE_SIZE} longs
+     */
+    static class Pages {
+        private final LongBuffer[] pages;
+        private final List<File> files = new ArrayList<>();
+
+        Pages(Storage storage, long length) {
+            int count = (int) ((length + PAGE_SIZE - 1) >>> PAGE_SHIFT);
+            this.pages = new LongBuffer[count];
+            for (int i = 0; i < count; i++) {
+                int size = (int) Math.min(PAGE_SIZE, length - ((long) i << PAGE_SHIFT));
+                pages[i] = allocate(storage, size);
+            }
+        }
+
+        private LongBuffer allocate(Storage storage, int size) {
+            switch (storage) {
+                case OFFHEAP:
+                    return ByteBuffer.allocateDirect(size * Long.BYTES).order(ByteOrder.nativeOrder()).asLongBuffer();
+                case DISK:
+                    try {
+                        File file = File.createTempFile("apoc-id-mapping", ".bin");
+                        file.deleteOnExit();
+                        files.add(file);
+                        try (RandomAccessFile raf = new RandomAccessFile(file, "rw"); FileChannel channel = raf.getChannel()) {
+                            // the mapping stays valid after the channel is closed
+                            return channel.map(FileChannel.MapMode.READ_WRITE, 0, (long) size * Long.BYTES).order(ByteOrder.nativeOrder()).asLongBuffer();
+                        }
+                    } catch (IOException e) {
+                        throw new RuntimeException("Can't create a page of the id mapping on disk", e);
+                    }
+                case HEAP:
+                default:
+                    return LongBuffer.wrap(new long[size]);
+            }
+        }
+
+        long get(long index) {
+            return pages[(int) (index >>> PAGE_SHIFT)].get((int) (index & (PAGE_SIZE - 1)));
+        }
+
+        void set(long index, long value) {
+            pages[(int) (index >>> PAGE_SHIFT)].put((int) (index & (PAGE_SIZE - 1)), value);
+        }
+
+        void release() {
+            files.forEach(File::delete);
+            files.clear();
+        }
+    }
+}
@@ -15,6 +15,8 @@ public class CsvLoaderConfig {
     public static final String SKIP_LINES = "skipLines";
     public static final String BATCH_SIZE = "batchSize";
     public static final String IGNORE_DUPLICATE_NODES = "ignoreDuplicateNodes";
+    public static final String ID_MAPPING = "idMapping";
+    public static final String PARALLEL_FILES = "parallelFiles";
 
     public static char DELIMITER_DEFAULT = ',';
     public static char ARRAY_DELIMITER_DEFAULT = ';';
@@ -23,6 +25,8 @@ public class CsvLoaderConfig {
     public static int SKIP_LINES_DEFAULT = 1;
     public static int BATCH_SIZE_DEFAULT = 2000;
     public static boolean IGNORE_DUPLICATE_NODES_DEFAULT = false;
+    public static CsvIdMapping.Storage ID_MAPPING_DEFAULT = CsvIdMapping.Storage.HEAP;
+    public static int PARALLEL_FILES_DEFAULT = 2;
 
     private final char delimiter;
     private final char arrayDelimiter;
@@ -31,6 +35,8 @@ public class CsvLoaderConfig {
     private final int skipLines;
     private final int batchSize;
     private final boolean ignoreDuplicateNodes;
+    private final CsvIdMapping.Storage idMapping;
+    private final int parallelFiles;
 
     private CsvLoaderConfig(Builder builder) {
         this.delimiter = builder.delimiter;
@@ -40,6 +46,8 @@ public class CsvLoaderConfig {
         this.skipLines = builder.skipLines;
         this.batchSize = builder.batchSize;
         this.ignoreDuplicateNodes = builder.ignoreDuplicateNodes;
+        this.idMapping = builder.idMapping;
+        this.parallelFiles = builder.parallelFiles;
     }
 
     public char getDelimiter() {
@@ -68,6 +76,14 @@ public class CsvLoaderConfig {
 
     public boolean getIgnoreDuplicateNodes() { return ignoreDuplicateNodes; }
 
+    public CsvIdMapping.Storage getIdMapping() {
+        return idMapping;
+    }
+
+    public int getParallelFiles() {
+        return parallelFiles;
+    }
+
     /**
      * Creates builder to build {@link CsvLoaderConfig}.
      *
@@ -102,6 +118,8 @@ public class CsvLoaderConfig {
         if (config.get(SKIP_LINES) != null) builder.skipLines((int) config.get(SKIP_LINES));
         if (config.get(BATCH_SIZE) != null) builder.batchSize((int) config.get(BATCH_SIZE));
         if (config.get(IGNORE_DUPLICATE_NODES) != null) builder.ignoreDuplicateNodes((boolean) config.get(IGNORE_DUPLICATE_NODES));
+        if (config.get(ID_MAPPING) != null) builder.idMapping(CsvIdMapping.Storage.valueOf(config.get(ID_MAPPING).toString().toUpperCase()));
+        if (config.get(PARALLEL_FILES) != null) builder.parallelFiles(((Number) config.get(PARALLEL_FILES)).intValue());
 
         return builder.build();
     }
@@ -117,6 +135,8 @@ public class CsvLoaderConfig {
         private int skipLines = SKIP_LINES_DEFAULT;
         private int batchSize = BATCH_SIZE_DEFAULT;
         private boolean ignoreDuplicateNodes = IGNORE_DUPLICATE_NODES_DEFAULT;
+        private CsvIdMapping.Storage idMapping = ID_MAPPING_DEFAULT;
+        private int parallelFiles = PARALLEL_FILES_DEFAULT;
 
         private Builder() {
         }
@@ -156,6 +176,16 @@ public class CsvLoaderConfig {
             return this;
         }
 
+        public Builder idMapping(CsvIdMapping.Storage idMapping) {
+            this.idMapping = idMapping;
+            return this;
+        }
+
+        public Builder parallelFiles(int parallelFiles) {
+            this.parallelFiles = Math.max(1, parallelFiles);
+            return this;
+        }
+
         public CsvLoaderConfig build() {
             return new CsvLoaderConfig(this);
         }
@@ -98,7 +98,7 @@ public class ExportCSV {
         CsvFormat exporter = new CsvFormat(db);
 
         ExportFileManager cypherFileManager = FileManagerFactory
-                .createFileManager(fileName, exportConfig.isBulkImport());
+                .createFileManager(fileName, exportConfig.isBulkImport(), exportConfig);
 
         if (exportConfig.streamStatements()) {
             return ExportUtils.getProgressInfoStream(db, terminationGuard, format, exportConfig, reporter, cypherFileManager,
@@ -110,11 +110,12 @@ public class ExportCSV {
     }
 
     private void dump(Object data, ExportConfig c, ProgressReporter reporter, ExportFileManager printWriter, CsvFormat exporter) {
-        try {
+        // the files are closed on errors too, so their buffers and file handles are released
+        try (ExportFileManager fileManager = printWriter) {
             if (data instanceof SubGraph)
-                exporter.dump((SubGraph)data,printWriter,reporter,c);
+                exporter.dump((SubGraph)data,fileManager,reporter,c);
             if (data instanceof Result)
-                exporter.dump((Result)data,printWriter,reporter,c);
+                exporter.dump((Result)data,fileManager,reporter,c);
         } catch (Exception e) {
             throw new RuntimeException(e);
         }
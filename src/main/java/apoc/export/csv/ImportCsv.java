@@ -10,7 +10,7 @@ import org.neo4j.procedure.Mode;
 import org.neo4j.procedure.Name;
 import org.neo4j.procedure.Procedure;
 
-import java.util.HashMap;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Stream;
@@ -40,17 +40,21 @@ public class ImportCsv {
                     final CsvLoaderConfig clc = CsvLoaderConfig.from(config);
                     final CsvEntityLoader loader = new CsvEntityLoader(clc, reporter);
 
-                    final Map<String, Map<String, Long>> idMapping = new HashMap<>();
+                    final List<CsvEntityLoader.Input> inputs = new ArrayList<>();
                     for (Map<String, Object> node : nodes) {
                         final String fileName = (String) node.get("fileName");
                         final List<String> labels = (List<String>) node.get("labels");
-                        loader.loadNodes(fileName, labels, db, idMapping);
+                        inputs.add(loader.nodes(fileName, labels));
                     }
 
                     for (Map<String, String> relationship : relationships) {
                         final String fileName = relationship.get("fileName");
                         final String type = relationship.get("type");
-                        loader.loadRelationships(fileName, type, db, idMapping);
+                        inputs.add(loader.relationships(fileName, type));
+                    }
+
+                    try (CsvIdMapping idMapping = new CsvIdMapping(clc.getIdMapping())) {
+                        loader.load(inputs, db, idMapping);
                     }
 
                     return reporter.getTotal();
@@ -103,14 +103,14 @@ public class ExportCypher {
         progressInfo.batchSize = c.getBatchSize();
         ProgressReporter reporter = new ProgressReporter(null, null, progressInfo);
         boolean separatedFiles = !onlySchema && c.separateFiles();
-        ExportFileManager cypherFileManager = FileManagerFactory.createFileManager(fileName, separatedFiles);
+        ExportFileManager cypherFileManager = FileManagerFactory.createFileManager(fileName, separatedFiles, c);
 
         if (c.streamStatements()) {
             long timeout = c.getTimeoutSeconds();
             final BlockingQueue<DataProgressInfo> queue = new ArrayBlockingQueue<>(1000);
             ProgressReporter reporterWithConsumer = reporter.withConsumer(
                     (pi) -> Util.put(queue,pi == ProgressInfo.EMPTY ? DataProgressInfo.EMPTY : new DataProgressInfo(pi).enrich(cypherFileManager),timeout));
-            Util.inTxFuture(Pools.DEFAULT, db, () -> { doExport(graph, c, onlySchema, reporterWithConsumer, cypherFileManager); return true; });
+            Util.inTxFuture(Pools.pool(Pools.EXPORT), db, () -> { doExport(graph, c, onlySchema, reporterWithConsumer, cypherFileManager); return true; });
             QueueBasedSpliterator<DataProgressInfo> spliterator = new QueueBasedSpliterator<>(queue, DataProgressInfo.EMPTY, terminationGuard, timeout);
             return StreamSupport.stream(spliterator, false);
         } else {
@@ -122,10 +122,14 @@ public class ExportCypher {
     private void doExport(SubGraph graph, ExportConfig c, boolean onlySchema, ProgressReporter reporter, ExportFileManager cypherFileManager) throws IOException {
         MultiStatementCypherSubGraphExporter exporter = new MultiStatementCypherSubGraphExporter(graph, c, db);
 
-        if (onlySchema)
-            exporter.exportOnlySchema(cypherFileManager);
-        else
-            exporter.export(c, reporter, cypherFileManager);
+        try {
+            if (onlySchema)
+                exporter.exportOnlySchema(cypherFileManager);
+            else
+                exporter.export(c, reporter, cypherFileManager);
+        } finally {
+            cypherFileManager.close();
+        }
     }
 
     public static class DataProgressInfo {
@@ -2,14 +2,17 @@ package apoc.export.cypher;
 
 import java.io.IOException;
 import java.io.PrintWriter;
-import java.io.StringWriter;
 
-public interface ExportFileManager {
+public interface ExportFileManager extends AutoCloseable {
     PrintWriter getPrintWriter(String type) throws IOException;
 
-    StringWriter getStringWriter(String type);
-
     String drain(String type);
 
     String getFileName();
+
+    /**
+     * completes the files written so far, the statements kept in memory can still be drained
+     */
+    @Override
+    void close() throws IOException;
 }
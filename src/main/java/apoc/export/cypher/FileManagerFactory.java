@@ -1,10 +1,13 @@
 package apoc.export.cypher;
 
-import apoc.util.FileUtils;
+import apoc.export.util.ExportConfig;
+import apoc.export.util.PipelinedFileOutputStream;
 
 import java.io.IOException;
 import java.io.PrintWriter;
-import java.io.StringWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 
@@ -14,13 +17,24 @@ import java.util.concurrent.ConcurrentMap;
  */
 public class FileManagerFactory {
     public static ExportFileManager createFileManager(String fileName, boolean separatedFiles) {
+        return createFileManager(fileName, separatedFiles, PipelinedFileOutputStream.Compression.NONE, 0);
+    }
+
+    /**
+     * uses the <code>compression</code> and <code>maxFileSize</code> of the config for the export files
+     */
+    public static ExportFileManager createFileManager(String fileName, boolean separatedFiles, ExportConfig config) {
+        return createFileManager(fileName, separatedFiles, PipelinedFileOutputStream.Compression.from(config.getCompression()), config.getMaxFileSize());
+    }
+
+    public static ExportFileManager createFileManager(String fileName, boolean separatedFiles, PipelinedFileOutputStream.Compression compression, long maxFileSize) {
         if (fileName == null) {
             return new StringExportCypherFileManager(separatedFiles);
         }
 
         int indexOfDot = fileName.lastIndexOf(".");
         String fileType = fileName.substring(indexOfDot + 1);
-        return new PhysicalExportFileManager(fileType, fileName, separatedFiles);
+        return new PhysicalExportFileManager(fileType, fileName, separatedFiles, compression, maxFileSize);
     }
 
     private static class PhysicalExportFileManager implements ExportFileManager {
@@ -28,30 +42,37 @@ public class FileManagerFactory {
         private final String fileName;
         private final String fileType;
         private boolean separatedFiles;
+        private final PipelinedFileOutputStream.Compression compression;
+        private final long maxFileSize;
+        private final List<PrintWriter> writers = new ArrayList<>();
         private PrintWriter writer;
 
-        public PhysicalExportFileManager(String fileType, String fileName, boolean separatedFiles) {
+        public PhysicalExportFileManager(String fileType, String fileName, boolean separatedFiles, PipelinedFileOutputStream.Compression compression, long maxFileSize) {
             this.fileType = fileType;
             this.fileName = fileName;
             this.separatedFiles = separatedFiles;
+            this.compression = compression;
+            this.maxFileSize = maxFileSize;
         }
 
         @Override
         public PrintWriter getPrintWriter(String type) throws IOException {
 
             if (this.separatedFiles) {
-                return FileUtils.getPrintWriter(normalizeFileName(fileName, type), null);
+                return open(normalizeFileName(fileName, type));
             } else {
                 if (this.writer == null) {
-                    this.writer = FileUtils.getPrintWriter(normalizeFileName(fileName, null), null);
+                    this.writer = open(normalizeFileName(fileName, null));
                 }
                 return this.writer;
             }
         }
 
-        @Override
-        public StringWriter getStringWriter(String type) {
-            return null;
+        private synchronized PrintWriter open(String name) throws IOException {
+            // the same default charset as FileUtils.getPrintWriter
+            PrintWriter printWriter = new PrintWriter(new PipelinedFileOutputStream(name, compression, maxFileSize));
+            writers.add(printWriter);
+            return printWriter;
         }
 
         private String normalizeFileName(final String fileName, String suffix) {
@@ -68,12 +89,23 @@ public class FileManagerFactory {
         public String getFileName() {
             return this.fileName;
         }
+
+        @Override
+        public synchronized void close() throws IOException {
+            boolean error = false;
+            for (PrintWriter printWriter : writers) {
+                printWriter.close();
+                error |= printWriter.checkError();
+            }
+            writers.clear();
+            if (error) throw new IOException("Error writing the export files of " + fileName);
+        }
     }
 
     private static class StringExportCypherFileManager implements ExportFileManager {
 
         private boolean separatedFiles;
-        private ConcurrentMap<String, StringWriter> writers = new ConcurrentHashMap<>();
+        private ConcurrentMap<String, ChunkedStringWriter> writers = new ConcurrentHashMap<>();
 
         public StringExportCypherFileManager(boolean separatedFiles) {
             this.separatedFiles = separatedFiles;
@@ -82,7 +114,7 @@ public class FileManagerFactory {
         @Override
         public PrintWriter getPrintWriter(String type) throws IOException {
             if (this.separatedFiles) {
-                return new PrintWriter(getStringWriter(type));
+                return new PrintWriter(getWriter(type));
             } else {
                 switch (type) {
                     case "csv":
@@ -92,30 +124,104 @@ public class FileManagerFactory {
                     default:
                         type = "cypher";
                 }
-                return new PrintWriter(getStringWriter(type));
+                return new PrintWriter(getWriter(type));
             }
         }
 
-        @Override
-        public StringWriter getStringWriter(String type) {
-            return writers.computeIfAbsent(type, (key) -> new StringWriter());
+        private ChunkedStringWriter getWriter(String type) {
+            return writers.computeIfAbsent(type, (key) -> new ChunkedStringWriter());
         }
 
         @Override
         public synchronized String drain(String type) {
-            StringWriter writer = writers.get(type);
-            if (writer != null) {
-                String text = writer.toString();
-                writer.getBuffer().setLength(0);
-                return text;
-            }
-            else return null;
+            ChunkedStringWriter writer = writers.get(type);
+            return writer != null ? writer.drain() : null;
         }
 
         @Override
         public String getFileName() {
             return null;
         }
+
+        @Override
+        public void close() {
+        }
     }
 
-}
\ No newline at end of file
+    /**
+     * Collects the statements between two drains in chunks of a fixed size, instead of a single buffer that is copied
+     * whenever it grows and keeps the size of the largest batch after it is drained.
+     */
+    static class ChunkedStringWriter extends Writer {
+        static final int CHUNK_SIZE = 8192;
+
+        private final List<char[]> chunks = new ArrayList<>();
+        // the chars used of the last chunk
+        private int used = CHUNK_SIZE;
+
+        @Override
+        public synchronized void write(char[] cbuf, int off, int len) {
+            while (len > 0) {
+                if (used == CHUNK_SIZE) {
+                    chunks.add(new char[CHUNK_SIZE]);
+                    used = 0;
+                }
+                int n = Math.min(len, CHUNK_SIZE - used);
+                System.arraycopy(cbuf, off, chunks.get(chunks.size() - 1), used, n);
+                used += n;
+                off += n;
+                len -= n;
+            }
+        }
+
+        @Override
+        public synchronized void write(String str, int off, int len) {
+            while (len > 0) {
+                if (used == CHUNK_SIZE) {
+                    chunks.add(new char[CHUNK_SIZE]);
+                    used = 0;
+                }
+                int n = Math.min(len, CHUNK_SIZE - used);
+                str.getChars(off, off + n, chunks.get(chunks.size() - 1), used);
+                used += n;
+                off += n;
+                len -= n;
+            }
+        }
+
+        /**
+         * @return the text written since the last drain, the first chunk is kept for the next batch
+         */
+        synchronized String drain() {
+            if (chunks.isEmpty()) return "";
+            int last = chunks.size() - 1;
+            StringBuilder text = new StringBuilder(last * CHUNK_SIZE + used);
+            for (int i = 0; i < last; i++) {
+                text.append(chunks.get(i));
+            }
+            text.append(chunks.get(last), 0, used);
+            char[] first = chunks.get(0);
+            chunks.clear();
+            chunks.add(first);
+            used = 0;
+            return text.toString();
+        }
+
+        @Override
+        public synchronized String toString() {
+            StringBuilder text = new StringBuilder();
+            for (int i = 0; i < chunks.size(); i++) {
+                text.append(chunks.get(i), 0, i == chunks.size() - 1 ? used : CHUNK_SIZE);
+            }
+            return text.toString();
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
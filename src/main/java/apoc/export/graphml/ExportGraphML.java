@@ -5,6 +5,7 @@ import apoc.export.cypher.FileManagerFactory;
 import apoc.export.util.ExportConfig;
 import apoc.export.util.ExportUtils;
 import apoc.export.util.NodesAndRelsSubGraph;
+import apoc.export.util.PipelinedFileOutputStream;
 import apoc.export.util.ProgressReporter;
 import apoc.result.ProgressInfo;
 import apoc.util.FileUtils;
@@ -105,7 +106,7 @@ public class ExportGraphML {
         final String format = "graphml";
         ProgressReporter reporter = new ProgressReporter(null, null, new ProgressInfo(fileName, source, format));
         XmlGraphMLWriter exporter = new XmlGraphMLWriter();
-        ExportFileManager cypherFileManager = FileManagerFactory.createFileManager(fileName, false);
+        ExportFileManager cypherFileManager = FileManagerFactory.createFileManager(fileName, false, PipelinedFileOutputStream.Compression.from(exportConfig.getCompression()), 0);
         final PrintWriter graphMl = cypherFileManager.getPrintWriter(format);
         if (exportConfig.streamStatements()) {
             return ExportUtils.getProgressInfoStream(db, terminationGuard, format, exportConfig, reporter, cypherFileManager,
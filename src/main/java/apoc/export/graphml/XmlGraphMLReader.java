@@ -1,10 +1,12 @@
 package apoc.export.graphml;
 
-import apoc.export.util.BatchTransaction;
+import apoc.Pools;
+import apoc.export.csv.CsvIdMapping;
 import apoc.export.util.Reporter;
 import apoc.util.JsonUtil;
 import org.apache.commons.lang.StringUtils;
 import org.neo4j.graphdb.*;
+import org.neo4j.kernel.DeadlockDetectedException;
 
 import javax.xml.namespace.QName;
 import javax.xml.stream.XMLEventReader;
@@ -16,9 +18,20 @@ import javax.xml.stream.events.StartElement;
 import javax.xml.stream.events.XMLEvent;
 import java.io.Reader;
 import java.lang.reflect.Array;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.function.Function;
 
 /**
@@ -27,6 +40,7 @@ import java.util.function.Function;
 public class XmlGraphMLReader {
 
     public static final String LABEL_SPLIT = " *: *";
+    private static final String ID_SPACE = "graphml";
     private final GraphDatabaseService gdb;
     private boolean storeNodeIds;
     private RelationshipType defaultRelType = RelationshipType.withName("UNKNOWN");
@@ -178,17 +192,21 @@ public class XmlGraphMLReader {
         this.gdb = gdb;
     }
 
+    /**
+     * Parses the GraphML on the calling thread and writes the nodes and edges in batches of <code>batchSize</code>
+     * on the <code>import</code> pool. Edges are written once the node batches submitted before them are committed,
+     * edges whose nodes come later in the file are deferred to the end.
+     */
     public long parseXML(Reader input) throws XMLStreamException {
-        Map<String, Long> cache = new HashMap<>(1024*32);
         XMLInputFactory inputFactory = XMLInputFactory.newInstance();
         inputFactory.setProperty("javax.xml.stream.isCoalescing", true);
         inputFactory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, true);
         XMLEventReader reader = inputFactory.createXMLEventReader(input);
-        PropertyContainer last = null;
+        Entity last = null;
         Map<String, Key> nodeKeys = new HashMap<>();
         Map<String, Key> relKeys = new HashMap<>();
         int count = 0;
-        try (BatchTransaction tx = new BatchTransaction(gdb, batchSize * 10, reporter)) {
+        try (Pipeline pipeline = new Pipeline()) {
 
             while (reader.hasNext()) {
                 XMLEvent event = (XMLEvent) reader.next();
@@ -214,7 +232,7 @@ public class XmlGraphMLReader {
                     if (name.equals("data")) {
                         if (last == null) continue;
                         String id = getAttribute(element, KEY);
-                        boolean isNode = last instanceof Node;
+                        boolean isNode = last instanceof NodeEntity;
                         Key key = isNode ? nodeKeys.get(id) : relKeys.get(id);
                         if (key == null) key = Key.defaultKey(id, isNode);
                         Object value = key.defaultValue;
@@ -224,50 +242,46 @@ public class XmlGraphMLReader {
                         }
                         if (value != null) {
                             if (this.labels && isNode && id.equals("labels")) {
-                                addLabels((Node)last,value.toString());
+                                addLabels(((NodeEntity) last).labels, value.toString());
                             } else if (!this.labels || isNode || !id.equals("label")) {
-                                last.setProperty(key.name, value);
-                                if (reporter != null) reporter.update(0, 0, 1);
+                                last.properties.put(key.name, value);
+                                last.reported++;
                             }
                         } else if (next.getEventType() == XMLStreamConstants.END_ELEMENT) {
-                            last.setProperty(key.name, StringUtils.EMPTY);
-                            reporter.update(0, 0, 1);
+                            last.properties.put(key.name, StringUtils.EMPTY);
+                            last.reported++;
                         }
                         continue;
                     }
                     if (name.equals("node")) {
-                        tx.increment();
                         String id = getAttribute(element, ID);
-                        Node node = gdb.createNode();
+                        NodeEntity node = new NodeEntity(id);
                         if (this.labels) {
                             String labels = getAttribute(element, LABELS);
-                            addLabels(node, labels);
+                            addLabels(node.labels, labels);
                         }
-                        if (storeNodeIds) node.setProperty("id", id);
+                        if (storeNodeIds) node.properties.put("id", id);
                         setDefaults(nodeKeys, node);
+                        pipeline.add(node);
                         last = node;
-                        cache.put(id, node.getId());
-                        if (reporter != null) reporter.update(1, 0, 0);
                         count++;
                         continue;
                     }
                     if (name.equals("edge")) {
-                        tx.increment();
                         String source = getAttribute(element, SOURCE);
                         String target = getAttribute(element, TARGET);
                         String label = getAttribute(element, LABEL);
-                        Node from = gdb.getNodeById(cache.get(source));
-                        Node to = gdb.getNodeById(cache.get(target));
 
                         RelationshipType relationshipType = label == null ? getRelationshipType(reader) : RelationshipType.withName(label);
-                        Relationship relationship = from.createRelationshipTo(to, relationshipType);
-                        setDefaults(relKeys, relationship);
-                        last = relationship;
-                        if (reporter != null) reporter.update(0, 1, 0);
+                        EdgeEntity edge = new EdgeEntity(source, target, relationshipType);
+                        setDefaults(relKeys, edge);
+                        pipeline.add(edge);
+                        last = edge;
                         count++;
                     }
                 }
             }
+            pipeline.finish();
         }
         return count;
     }
@@ -288,14 +302,14 @@ public class XmlGraphMLReader {
         return defaultRelType;
     }
 
-    private void addLabels(Node node, String labels) {
+    private void addLabels(List<Label> nodeLabels, String labels) {
         if (labels==null) return;
         labels = labels.trim();
         if (labels.isEmpty()) return;
         String[] parts = labels.split(LABEL_SPLIT);
         for (String part : parts) {
             if (part.trim().isEmpty()) continue;
-            node.addLabel(Label.label(part.trim()));
+            nodeLabels.add(Label.label(part.trim()));
         }
     }
 
@@ -308,10 +322,10 @@ public class XmlGraphMLReader {
         return peek;
     }
 
-    private void setDefaults(Map<String, Key> keys, PropertyContainer pc) {
+    private void setDefaults(Map<String, Key> keys, Entity entity) {
         if (keys.isEmpty()) return;
         for (Key key : keys.values()) {
-            if (key.defaultValue!=null) pc.setProperty(key.name,key.defaultValue);
+            if (key.defaultValue!=null) entity.properties.put(key.name,key.defaultValue);
         }
     }
 
@@ -319,4 +333,212 @@ public class XmlGraphMLReader {
         Attribute attribute = element.getAttributeByName(qname);
         return attribute != null ? attribute.getValue() : null;
     }
+
+    private static abstract class Entity {
+        final Map<String, Object> properties = new LinkedHashMap<>();
+        // the properties the original GraphML data elements account for
+        int reported;
+    }
+
+    private static class NodeEntity extends Entity {
+        final String id;
+        final List<Label> labels = new ArrayList<>();
+
+        NodeEntity(String id) {
+            this.id = id;
+        }
+    }
+
+    private static class EdgeEntity extends Entity {
+        final String source;
+        final String target;
+        final RelationshipType type;
+
+        EdgeEntity(String source, String target, RelationshipType type) {
+            this.source = source;
+            this.target = target;
+            this.type = type;
+        }
+    }
+
+    /**
+     * Batches the parsed entities and writes them on the import pool, keeping at most twice as many batches in flight as the pool has threads.
+     * The ids of the GraphML nodes are mapped to the node ids once their batch is committed.
+     */
+    private class Pipeline implements AutoCloseable {
+        private static final int DEADLOCK_RETRIES = 10;
+
+        private final ExecutorService pool = Pools.pool(Pools.IMPORT);
+        private final int maxInFlight = Math.max(2, 2 * Pools.getNoThreadsInPool(Pools.IMPORT));
+        private final CsvIdMapping ids = new CsvIdMapping(CsvIdMapping.Storage.HEAP);
+        private final Deque<Future<long[]>> nodeBatches = new ArrayDeque<>();
+        private final Deque<Future<long[]>> edgeBatches = new ArrayDeque<>();
+        private final Queue<EdgeEntity> deferred = new ConcurrentLinkedQueue<>();
+        private List<NodeEntity> nodes = new ArrayList<>(batchSize);
+        private List<EdgeEntity> edges = new ArrayList<>(batchSize);
+        // set on close, the batches that haven't started yet are skipped then
+        private volatile boolean aborted;
+
+        void add(NodeEntity node) {
+            // the last entity still receives its data elements, so a batch is submitted only when the next entity arrives
+            if (nodes.size() >= batchSize) flushNodes();
+            nodes.add(node);
+        }
+
+        void add(EdgeEntity edge) {
+            if (edges.size() >= batchSize) flushEdges();
+            edges.add(edge);
+        }
+
+        private void flushNodes() {
+            if (nodes.isEmpty()) return;
+            List<NodeEntity> batch = nodes;
+            nodes = new ArrayList<>(batchSize);
+            submit(nodeBatches, () -> writeNodes(batch));
+        }
+
+        private void flushEdges() {
+            if (edges.isEmpty()) return;
+            // the nodes parsed before these edges have to be committed and mapped first
+            flushNodes();
+            drain(nodeBatches, 0);
+            List<EdgeEntity> batch = edges;
+            edges = new ArrayList<>(batchSize);
+            submit(edgeBatches, () -> writeEdges(batch, true));
+        }
+
+        private void submit(Deque<Future<long[]>> batches, Callable<long[]> write) {
+            drain(batches, maxInFlight - 1);
+            batches.addLast(pool.submit(() -> aborted ? new long[3] : write.call()));
+        }
+
+        /**
+         * waits for the oldest batches until at most <code>inFlight</code> are left, reporting their counts on this thread
+         */
+        private void drain(Deque<Future<long[]>> batches, int inFlight) {
+            while (batches.size() > inFlight) {
+                try {
+                    long[] counts = Pools.force(batches.pollFirst());
+                    if (reporter != null) reporter.update(counts[0], counts[1], counts[2]);
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    throw cause instanceof RuntimeException ? (RuntimeException) cause : new RuntimeException(cause);
+                }
+            }
+        }
+
+        private long[] writeNodes(List<NodeEntity> batch) {
+            long[] nodeIds = new long[batch.size()];
+            long properties = 0;
+            try (Transaction tx = gdb.beginTx()) {
+                for (int i = 0; i < nodeIds.length; i++) {
+                    NodeEntity entity = batch.get(i);
+                    Node node = gdb.createNode(entity.labels.toArray(new Label[0]));
+                    entity.properties.forEach(node::setProperty);
+                    nodeIds[i] = node.getId();
+                    properties += entity.reported;
+                }
+                tx.success();
+            }
+            synchronized (ids) {
+                for (int i = 0; i < nodeIds.length; i++) {
+                    // like a map, a later node with the same id takes over
+                    String id = batch.get(i).id;
+                    ids.set(ID_SPACE, id, nodeIds[i]);
+                }
+            }
+            return new long[]{batch.size(), 0, properties};
+        }
+
+        private long[] writeEdges(List<EdgeEntity> batch, boolean defer) {
+            long[][] endpoints = new long[batch.size()][];
+            synchronized (ids) {
+                for (int i = 0; i < endpoints.length; i++) {
+                    EdgeEntity edge = batch.get(i);
+                    long from = ids.get(ID_SPACE, String.valueOf(edge.source)), to = ids.get(ID_SPACE, String.valueOf(edge.target));
+                    if (from == CsvIdMapping.NOT_FOUND || to == CsvIdMapping.NOT_FOUND) {
+                        if (!defer) {
+                            throw new IllegalStateException("Node for id " + (from == CsvIdMapping.NOT_FOUND ? edge.source : edge.target) + " of an edge not found");
+                        }
+                        deferred.add(edge);
+                    } else {
+                        endpoints[i] = new long[]{from, to};
+                    }
+                }
+            }
+            for (int attempt = 0; ; attempt++) {
+                long rels = 0, properties = 0;
+                try (Transaction tx = gdb.beginTx()) {
+                    for (int i = 0; i < endpoints.length; i++) {
+                        if (endpoints[i] == null) continue;
+                        EdgeEntity edge = batch.get(i);
+                        Relationship relationship = gdb.getNodeById(endpoints[i][0]).createRelationshipTo(gdb.getNodeById(endpoints[i][1]), edge.type);
+                        edge.properties.forEach(relationship::setProperty);
+                        rels++;
+                        properties += edge.reported;
+                    }
+                    tx.success();
+                    return new long[]{0, rels, properties};
+                } catch (DeadlockDetectedException e) {
+                    // edge batches written in parallel may lock the same nodes in different order, the batch is rolled back and written again
+                    if (attempt >= DEADLOCK_RETRIES) throw e;
+                }
+            }
+        }
+
+        void finish() {
+            flushNodes();
+            flushEdges();
+            drain(nodeBatches, 0);
+            drain(edgeBatches, 0);
+            if (deferred.isEmpty()) return;
+            // edges that came before their nodes
+            List<EdgeEntity> batch = new ArrayList<>(batchSize);
+            for (EdgeEntity edge : deferred) {
+                batch.add(edge);
+                if (batch.size() == batchSize) {
+                    submit(edgeBatches, copyOfBatch(batch));
+                    batch.clear();
+                }
+            }
+            if (!batch.isEmpty()) submit(edgeBatches, copyOfBatch(batch));
+            drain(edgeBatches, 0);
+        }
+
+        private Callable<long[]> copyOfBatch(List<EdgeEntity> batch) {
+            List<EdgeEntity> copy = new ArrayList<>(batch);
+            return () -> writeEdges(copy, false);
+        }
+
+        /**
+         * Skips the batches that haven't started and waits for the running ones, which still read and write the id mapping,
+         * before it is released. Their failures are thrown, or added to the error that ended the import.
+         */
+        @Override
+        public void close() {
+            aborted = true;
+            RuntimeException failure = null;
+            boolean interrupted = false;
+            for (Deque<Future<long[]>> batches : Arrays.asList(nodeBatches, edgeBatches)) {
+                while (!batches.isEmpty()) {
+                    try {
+                        batches.peekFirst().get();
+                    } catch (InterruptedException e) {
+                        interrupted = true;
+                        continue;
+                    } catch (ExecutionException e) {
+                        if (failure == null) {
+                            failure = e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : new RuntimeException(e.getCause());
+                        } else {
+                            failure.addSuppressed(e.getCause());
+                        }
+                    }
+                    batches.pollFirst();
+                }
+            }
+            ids.close();
+            if (interrupted) Thread.currentThread().interrupt();
+            if (failure != null) throw failure;
+        }
+    }
 }
@@ -83,7 +83,7 @@ public class ExportJson {
         final String format = "json";
         ProgressReporter reporter = new ProgressReporter(null, null, new ProgressInfo(fileName, source, format));
         JsonFormat exporter = new JsonFormat(db);
-        ExportFileManager cypherFileManager = FileManagerFactory.createFileManager(fileName, false);
+        ExportFileManager cypherFileManager = FileManagerFactory.createFileManager(fileName, false, exportConfig);
         if (exportConfig.streamStatements()) {
             return ExportUtils.getProgressInfoStream(db, terminationGuard, format, exportConfig, reporter, cypherFileManager,
                     (reporterWithConsumer) -> dump(data, exportConfig, reporterWithConsumer, exporter, cypherFileManager));
@@ -94,11 +94,12 @@ public class ExportJson {
     }
 
     private void dump(Object data, ExportConfig c, ProgressReporter reporter, JsonFormat exporter, ExportFileManager cypherFileManager) {
-        try {
+        // the files are closed on errors too, so their buffers and file handles are released
+        try (ExportFileManager fileManager = cypherFileManager) {
             if (data instanceof SubGraph)
-                exporter.dump(((SubGraph)data),cypherFileManager,reporter,c);
+                exporter.dump(((SubGraph)data),fileManager,reporter,c);
             if (data instanceof Result)
-                exporter.dump(((Result)data),cypherFileManager,reporter,c);
+                exporter.dump(((Result)data),fileManager,reporter,c);
         } catch (Exception e) {
             throw new RuntimeException(e);
         }
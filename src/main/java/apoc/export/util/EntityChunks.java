@@ -0,0 +1,72 @@
+package apoc.export.util;
+
+import apoc.util.kernel.MultiThreadedGlobalGraphOperations;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.PropertyContainer;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.kernel.internal.GraphDatabaseAPI;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.Supplier;
+import java.util.stream.LongStream;
+
+/**
+ * Splits the nodes or relationships of an export into chunks of ids, that are read on worker threads.
+ */
+public class EntityChunks {
+    private EntityChunks() {
+    }
+
+    /**
+     * id ranges of <code>batchSize</code> over the whole store, ids of deleted entities included
+     */
+    public static Supplier<Iterator<LongStream>> idRanges(GraphDatabaseService db, MultiThreadedGlobalGraphOperations.GlobalOperationsTypes type, int batchSize) {
+        int size = Math.max(1, batchSize);
+        return () -> {
+            long highId = MultiThreadedGlobalGraphOperations.getHighestIdInUseForStore(((GraphDatabaseAPI) db).getDependencyResolver(), type);
+            return new Iterator<LongStream>() {
+                long from = 0;
+
+                public boolean hasNext() {
+                    return from < highId;
+                }
+
+                public LongStream next() {
+                    if (!hasNext()) throw new NoSuchElementException();
+                    LongStream range = LongStream.range(from, Math.min(highId, from + size));
+                    from += size;
+                    return range;
+                }
+            };
+        };
+    }
+
+    /**
+     * the ids of the given nodes or relationships, <code>batchSize</code> at a time
+     */
+    public static Supplier<Iterator<LongStream>> chunks(Iterable<? extends PropertyContainer> entities, int batchSize) {
+        int size = Math.max(1, batchSize);
+        return () -> {
+            Iterator<? extends PropertyContainer> it = entities.iterator();
+            return new Iterator<LongStream>() {
+                public boolean hasNext() {
+                    return it.hasNext();
+                }
+
+                public LongStream next() {
+                    long[] ids = new long[size];
+                    int count = 0;
+                    while (count < size && it.hasNext()) {
+                        PropertyContainer entity = it.next();
+                        ids[count++] = entity instanceof Node ? ((Node) entity).getId() : ((Relationship) entity).getId();
+                    }
+                    if (count == 0) throw new NoSuchElementException();
+                    return Arrays.stream(ids, 0, count);
+                }
+            };
+        };
+    }
+}
@@ -154,6 +154,17 @@ public class ExportConfig {
         return toBoolean(config.getOrDefault("separateFiles", false));
     }
 
+    public String getCompression() {
+        return config.getOrDefault("compression", "none").toString();
+    }
+
+    /**
+     * @return the number of uncompressed bytes after which an export file is continued in the next numbered one, 0 for a single file
+     */
+    public long getMaxFileSize() {
+        return Util.toLong(config.getOrDefault("maxFileSize", 0));
+    }
+
     private static Set<String> convertCaption(Object value) {
         if (value == null) return null;
         if (!(value instanceof List)) throw new RuntimeException("Only array of Strings are allowed!");
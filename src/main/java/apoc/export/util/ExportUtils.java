@@ -26,9 +26,9 @@ public class ExportUtils {
         long timeout = exportConfig.getTimeoutSeconds();
         final ArrayBlockingQueue<ProgressInfo> queue = new ArrayBlockingQueue<>(1000);
         ProgressReporter reporterWithConsumer = reporter.withConsumer(
-                (pi) -> Util.put(queue, pi == ProgressInfo.EMPTY ? ProgressInfo.EMPTY : new ProgressInfo(pi).drain(cypherFileManager.getStringWriter(format)), timeout)
+                (pi) -> Util.put(queue, pi == ProgressInfo.EMPTY ? ProgressInfo.EMPTY : new ProgressInfo(pi).drain(cypherFileManager.drain(format)), timeout)
         );
-        Util.inTxFuture(Pools.DEFAULT, db, () -> {
+        Util.inTxFuture(Pools.pool(Pools.EXPORT), db, () -> {
             dump.accept(reporterWithConsumer);
             return true;
         });
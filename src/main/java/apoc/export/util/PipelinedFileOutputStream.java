@@ -0,0 +1,211 @@
+package apoc.export.util;
+
+import apoc.Pools;
+import apoc.util.FileUtils;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * The output stream of an export file, that leaves compressing and writing to a background task.
+ *
+ * The exporting thread fills one of two buffers while the other one is compressed and written on the default pool,
+ * so formatting and file I/O overlap. The exports themselves may run on the export pool, the writes run elsewhere so
+ * they can't starve it. Each buffer is written by a short task of its own, so open exports don't hold on to
+ * pool threads. With a <code>maxFileSize</code> the output is continued in the next numbered file
+ * at the first line end after that many uncompressed bytes, so each file holds whole lines.
+ */
+public class PipelinedFileOutputStream extends OutputStream {
+    public enum Compression {
+        NONE(""), GZIP(".gz"), ZSTD(".zst");
+
+        private final String suffix;
+
+        Compression(String suffix) {
+            this.suffix = suffix;
+        }
+
+        public static Compression from(String name) {
+            if (name == null) return NONE;
+            try {
+                return valueOf(name.trim().toUpperCase());
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Unknown compression '" + name + "', use 'none', 'gzip' or 'zstd'");
+            }
+        }
+
+        public String fileName(String fileName) {
+            return fileName.endsWith(suffix) ? fileName : fileName + suffix;
+        }
+
+        OutputStream wrap(OutputStream out) throws IOException {
+            switch (this) {
+                case GZIP:
+                    return new GZIPOutputStream(out, 1 << 16);
+                case ZSTD:
+                    if (!FileUtils.ZSTD_ENABLED) {
+                        throw new IOException("Writing zstd compressed exports requires com.github.luben:zstd-jni on the classpath");
+                    }
+                    try {
+                        return (OutputStream) Class.forName("com.github.luben.zstd.ZstdOutputStream").getConstructor(OutputStream.class).newInstance(out);
+                    } catch (ReflectiveOperationException e) {
+                        throw new IOException("Can't create the zstd compressed output", e);
+                    }
+                case NONE:
+                default:
+                    return out;
+            }
+        }
+    }
+
+    static final int DEFAULT_BUFFER_SIZE = 1 << 20;
+
+    private final String fileName;
+    private final Compression compression;
+    private final long maxFileSize;
+    private ByteBuffer buffer;
+    // the buffer of the chunk in flight, it is filled next
+    private ByteBuffer spare;
+    private Future<?> pending;
+    // the end of the last line in the buffer, or -1
+    private int lineEnd = -1;
+    // the bytes handed to the current file so far
+    private long fileBytes;
+    private boolean closed;
+    // only used by the chunk writes, which run one after the other
+    private OutputStream out;
+    private int file;
+
+    public PipelinedFileOutputStream(String fileName, Compression compression, long maxFileSize) throws IOException {
+        this(fileName, compression, maxFileSize, DEFAULT_BUFFER_SIZE);
+    }
+
+    PipelinedFileOutputStream(String fileName, Compression compression, long maxFileSize, int bufferSize) throws IOException {
+        this.fileName = fileName;
+        this.compression = compression;
+        this.maxFileSize = maxFileSize;
+        // the first file is opened right away, so a file that can't be written fails the export before it starts
+        this.out = open(0);
+        this.buffer = ByteBuffer.allocate(bufferSize);
+        this.spare = ByteBuffer.allocate(bufferSize);
+    }
+
+    /**
+     * @return the name of the given file of the export, files are numbered only with a <code>maxFileSize</code>
+     */
+    String fileName(int file) {
+        String name = fileName;
+        if (maxFileSize > 0) {
+            int dot = name.lastIndexOf('.');
+            String number = String.format(".%05d", file);
+            name = dot > name.lastIndexOf('/') ? name.substring(0, dot) + number + name.substring(dot) : name + number;
+        }
+        return compression.fileName(name);
+    }
+
+    private OutputStream open(int file) throws IOException {
+        return compression.wrap(FileUtils.getOutputStream(fileName(file), null));
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[]{(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (closed) throw new IOException("Stream closed");
+        while (len > 0) {
+            int n = Math.min(len, buffer.remaining());
+            buffer.put(b, off, n);
+            if (maxFileSize > 0) {
+                for (int i = n - 1; i >= 0; i--) {
+                    if (b[off + i] == '\n') {
+                        lineEnd = buffer.position() - n + i + 1;
+                        break;
+                    }
+                }
+            }
+            off += n;
+            len -= n;
+            if (maxFileSize > 0 && lineEnd != -1 && fileBytes + lineEnd >= maxFileSize) {
+                handOff(lineEnd, true);
+            } else if (!buffer.hasRemaining()) {
+                handOff(buffer.position(), false);
+            }
+        }
+    }
+
+    /**
+     * Hands the buffer up to <code>end</code> to a write on the default pool, the rest is carried over into the spare buffer.
+     * Waits for the previous write first, so the writes of a file stay in order and at most one buffer is in flight.
+     */
+    private void handOff(int end, boolean nextFile) throws IOException {
+        awaitPending();
+        ByteBuffer data = buffer, next = spare;
+        next.clear();
+        next.put(data.array(), end, data.position() - end);
+        data.limit(end);
+        pending = Pools.DEFAULT.submit(() -> {
+            writeChunk(data, nextFile);
+            return null;
+        });
+        buffer = next;
+        spare = data;
+        lineEnd = -1;
+        fileBytes = nextFile ? 0 : fileBytes + end;
+    }
+
+    private void writeChunk(ByteBuffer data, boolean nextFile) throws IOException {
+        if (out == null) out = open(++file);
+        out.write(data.array(), 0, data.limit());
+        if (nextFile) {
+            out.close();
+            out = null;
+        }
+    }
+
+    private void awaitPending() throws IOException {
+        if (pending == null) return;
+        try {
+            pending.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted writing " + fileName);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof IOException ? (IOException) cause : new IOException("Error writing " + fileName, cause);
+        } finally {
+            pending = null;
+        }
+    }
+
+    /**
+     * does nothing, the writers flush after each statement and a write of a few bytes per flush would defeat the buffering.
+     * The data is written once a buffer is full and on {@link #close()}
+     */
+    @Override
+    public void flush() {
+    }
+
+    /**
+     * writes the remaining data and waits until the last file is complete
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) return;
+        closed = true;
+        try {
+            if (buffer.position() > 0) handOff(buffer.position(), false);
+            awaitPending();
+        } finally {
+            if (out != null) out.close();
+            out = null;
+        }
+    }
+}
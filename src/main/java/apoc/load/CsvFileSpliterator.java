@@ -0,0 +1,215 @@
+package apoc.load;
+
+import apoc.Pools;
+import apoc.load.util.LoadCsvConfig;
+import apoc.util.FileUtils;
+import com.opencsv.CSVParser;
+import com.opencsv.CSVReader;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import static apoc.util.Util.cleanUrl;
+
+/**
+ * Splittable source of the rows of a local, uncompressed CSV file.
+ *
+ * Using the {@link CsvRecordIndex} of the file, a range of records is split at index entries and each part is parsed
+ * from its own byte offset of the memory mapped file, so <code>skip</code> seeks instead of parsing the skipped rows.
+ * When advanced sequentially, the following chunks of the range are parsed ahead on the import pool, so a single consumer
+ * like a Cypher query gets the rows parsed on several cores, in file order.
+ */
+class CsvFileSpliterator implements Spliterator<LoadCsv.CSVResult> {
+    static final int CHUNK_ENTRIES = 4;
+    private static final long WINDOW = 64 << 20;
+
+    private final Source source;
+    private long from;
+    private final long to;
+    private long next;
+    private final Deque<Future<List<LoadCsv.CSVResult>>> ahead = new ArrayDeque<>();
+    private Iterator<LoadCsv.CSVResult> current;
+
+    private CsvFileSpliterator(Source source, long from, long to) {
+        this.source = source;
+        this.from = from;
+        this.to = to;
+        this.next = from;
+    }
+
+    static Stream<LoadCsv.CSVResult> stream(String url, File file, LoadCsvConfig config) throws IOException {
+        Source source = new Source(url, file, config);
+        long first = source.headerRecords + config.getSkip();
+        long last = Math.min(source.index.records, first + Math.min(config.getLimit(), Long.MAX_VALUE - first));
+        CsvFileSpliterator spliterator = new CsvFileSpliterator(source, first, Math.max(first, last));
+        return StreamSupport.stream(spliterator, false).onClose(spliterator::cancel);
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super LoadCsv.CSVResult> action) {
+        while (current == null || !current.hasNext()) {
+            if (next >= to && ahead.isEmpty()) return false;
+            while (ahead.size() < source.parallelism && next < to) {
+                long start = next, end = Math.min(to, (start / CsvRecordIndex.INTERVAL + CHUNK_ENTRIES) * CsvRecordIndex.INTERVAL);
+                ahead.add(Pools.pool(Pools.IMPORT).submit(() -> source.read(start, end)));
+                next = end;
+            }
+            try {
+                current = Pools.force(ahead.poll()).iterator();
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+                throw new RuntimeException(e.getCause());
+            }
+        }
+        action.accept(current.next());
+        return true;
+    }
+
+    /**
+     * splits off the first half of the remaining index entries, as long as this part hasn't started reading
+     */
+    @Override
+    public Spliterator<LoadCsv.CSVResult> trySplit() {
+        if (current != null || next != from) return null;
+        long firstEntry = from / CsvRecordIndex.INTERVAL + 1, lastEntry = (to - 1) / CsvRecordIndex.INTERVAL;
+        if (firstEntry > lastEntry) return null;
+        long middle = (firstEntry + lastEntry) / 2 * CsvRecordIndex.INTERVAL;
+        CsvFileSpliterator prefix = new CsvFileSpliterator(source, from, middle);
+        from = next = middle;
+        return prefix;
+    }
+
+    @Override
+    public long estimateSize() {
+        return Math.max(0, to - next);
+    }
+
+    @Override
+    public int characteristics() {
+        return ORDERED | NONNULL | IMMUTABLE;
+    }
+
+    private void cancel() {
+        ahead.forEach(future -> future.cancel(false));
+        ahead.clear();
+    }
+
+    private static class Source {
+        final String url;
+        final File file;
+        final LoadCsvConfig config;
+        final CsvRecordIndex index;
+        final String[] header;
+        final long headerRecords;
+        final boolean checkIgnore;
+        final int parallelism;
+
+        Source(String url, File file, LoadCsvConfig config) throws IOException {
+            this.url = url;
+            this.file = file;
+            this.config = config;
+            if (config.isSaveIndex()) FileUtils.checkWriteAllowed();
+            this.index = CsvRecordIndex.of(file, config.getQuoteChar(), CSVParser.DEFAULT_ESCAPE_CHARACTER, config.isIgnoreQuotations(), config.isSaveIndex());
+            this.headerRecords = config.isHasHeader() && index.records > 0 ? 1 : 0;
+            try (CSVReader csv = LoadCsv.csvReader(reader(0, index.offset(CsvRecordIndex.INTERVAL)), config)) {
+                this.header = LoadCsv.getHeader(csv, config);
+            }
+            this.checkIgnore = !config.getIgnore().isEmpty() || config.getMappings().values().stream().anyMatch(m -> m.ignore);
+            this.parallelism = Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), Pools.getNoThreadsInPool(Pools.IMPORT)));
+        }
+
+        List<LoadCsv.CSVResult> read(long from, long to) {
+            long entryStart = from / CsvRecordIndex.INTERVAL * CsvRecordIndex.INTERVAL;
+            long entryEnd = (to + CsvRecordIndex.INTERVAL - 1) / CsvRecordIndex.INTERVAL * CsvRecordIndex.INTERVAL;
+            Map<String, LoadCsv.Mapping> mapping = config.getMappings();
+            List<LoadCsv.CSVResult> rows = new ArrayList<>((int) (to - from));
+            long record = entryStart;
+            try (CSVReader csv = LoadCsv.csvReader(reader(index.offset(entryStart), index.offset(entryEnd)), config)) {
+                for (; record < to; record++) {
+                    String[] row = csv.readNext();
+                    if (row == null) throw misaligned();
+                    if (record >= from) {
+                        rows.add(new LoadCsv.CSVResult(header, row, record - headerRecords, checkIgnore, mapping, config.getNullValues(), config.getResults()));
+                    }
+                }
+                // the parser has to end exactly at the next index entry
+                if (to == Math.min(entryEnd, index.records) && csv.readNext() != null) throw misaligned();
+                return rows;
+            } catch (IOException e) {
+                throw new RuntimeException("Error reading CSV from URL " + cleanUrl(url) + " at " + (record - headerRecords), e);
+            }
+        }
+
+        private IllegalStateException misaligned() {
+            return new IllegalStateException("The records of the CSV from URL " + cleanUrl(url) + " don't match its index, " +
+                    "load it with {parallel:false} instead");
+        }
+
+        private InputStreamReader reader(long start, long end) throws IOException {
+            // the same charset as the FileReader used for sequential reads
+            return new InputStreamReader(new MappedInputStream(file, start, end), StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * reads a byte range of a file through memory mapped windows
+     */
+    private static class MappedInputStream extends InputStream {
+        private final FileChannel channel;
+        private final long end;
+        private long position;
+        private MappedByteBuffer window;
+
+        MappedInputStream(File file, long start, long end) throws IOException {
+            this.channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+            this.position = start;
+            this.end = end;
+        }
+
+        private boolean fill() throws IOException {
+            if (window != null && window.hasRemaining()) return true;
+            if (position >= end) return false;
+            long size = Math.min(WINDOW, end - position);
+            window = channel.map(FileChannel.MapMode.READ_ONLY, position, size);
+            position += size;
+            return true;
+        }
+
+        @Override
+        public int read() throws IOException {
+            return fill() ? window.get() & 0xff : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) return 0;
+            if (!fill()) return -1;
+            int n = Math.min(len, window.remaining());
+            window.get(b, off, n);
+            return n;
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package apoc.load;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A sparse index of a local CSV file, holding the byte offset of every {@link #INTERVAL}th record.
+ *
+ * The index is built with a single pass over the memory mapped file that finds the record boundaries: line breaks outside
+ * of quotes, as the CSV parser sees them. The indexes of the last files read are kept in memory, and only with
+ * <code>saveIndex:true</code> saved next to the file. Both are reused as long as the file keeps its length and modification time.
+ */
+class CsvRecordIndex {
+    static final int INTERVAL = 1024;
+    static final String SUFFIX = ".apoc-index";
+    private static final int CACHED_INDEXES = 16;
+
+    private static final long MAGIC = 0x61706f632d637376L;
+    private static final int VERSION = 1;
+    private static final long WINDOW = 1L << 30;
+    private static final char NO_QUOTE = '\0';
+
+    // the indexes of the last files read, by path, quote and escape
+    private static final Map<String, CsvRecordIndex> cache = new LinkedHashMap<String, CsvRecordIndex>(CACHED_INDEXES * 2, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, CsvRecordIndex> eldest) {
+            return size() > CACHED_INDEXES;
+        }
+    };
+
+    final long length;
+    final long records;
+    private final long[] offsets;
+    private long lastModified;
+    // whether the index is in the index file
+    private boolean saved;
+
+    private CsvRecordIndex(long length, long records, long[] offsets) {
+        this.length = length;
+        this.records = records;
+        this.offsets = offsets;
+    }
+
+    /**
+     * @return the byte offset of the given record, which has to be a multiple of {@link #INTERVAL}, or the length of the file for records after the last one
+     */
+    long offset(long record) {
+        long entry = record / INTERVAL;
+        return entry < offsets.length ? offsets[(int) entry] : length;
+    }
+
+    /**
+     * @param save whether a new index is saved next to the file, the caller has to check that writing files is allowed
+     */
+    static CsvRecordIndex of(File file, char quote, char escape, boolean ignoreQuotations, boolean save) throws IOException {
+        if (ignoreQuotations) quote = NO_QUOTE;
+        File indexFile = new File(file.getPath() + SUFFIX);
+        long length = file.length(), lastModified = file.lastModified();
+        String key = file.getCanonicalPath() + ':' + (int) quote + ':' + (int) escape;
+        CsvRecordIndex index;
+        synchronized (cache) {
+            index = cache.get(key);
+        }
+        if (index == null || index.length != length || index.lastModified != lastModified) {
+            index = indexFile.isFile() ? load(indexFile, length, lastModified, quote, escape) : null;
+            if (index == null) index = scan(file, quote, escape);
+            index.lastModified = lastModified;
+            synchronized (cache) {
+                cache.put(key, index);
+            }
+        }
+        if (save && !index.saved) index.save(indexFile, lastModified, quote, escape);
+        return index;
+    }
+
+    private static CsvRecordIndex scan(File file, char quote, char escape) throws IOException {
+        long[] offsets = new long[16];
+        int entries = 0;
+        long records = 0;
+        boolean recordStart = true, inQuotes = false, escaped = false, cr = false;
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long length = channel.size();
+            for (long position = 0; position < length; position += WINDOW) {
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(WINDOW, length - position));
+                for (int i = 0, n = buffer.limit(); i < n; i++) {
+                    byte b = buffer.get(i);
+                    if (cr) {
+                        cr = false;
+                        if (b == '\n') continue;
+                    }
+                    if (recordStart) {
+                        if (records % INTERVAL == 0) {
+                            if (entries == offsets.length) offsets = Arrays.copyOf(offsets, entries * 2);
+                            offsets[entries++] = position + i;
+                        }
+                        records++;
+                        recordStart = false;
+                    }
+                    if (escaped) {
+                        escaped = false;
+                        if (b == quote || b == escape) continue;
+                    }
+                    if (quote == NO_QUOTE) {
+                        // every line break ends a record
+                    } else if (b == escape) {
+                        escaped = true;
+                        continue;
+                    } else if (b == quote) {
+                        inQuotes = !inQuotes;
+                        continue;
+                    }
+                    if (!inQuotes && (b == '\n' || b == '\r')) {
+                        recordStart = true;
+                        cr = b == '\r';
+                    }
+                }
+            }
+            return new CsvRecordIndex(length, records, Arrays.copyOf(offsets, entries));
+        }
+    }
+
+    private static CsvRecordIndex load(File indexFile, long length, long lastModified, char quote, char escape) {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile)))) {
+            if (in.readLong() != MAGIC || in.readInt() != VERSION || in.readLong() != length || in.readLong() != lastModified
+                    || in.readChar() != quote || in.readChar() != escape || in.readInt() != INTERVAL) {
+                return null;
+            }
+            long records = in.readLong();
+            long[] offsets = new long[in.readInt()];
+            for (int i = 0; i < offsets.length; i++) {
+                offsets[i] = in.readLong();
+            }
+            CsvRecordIndex index = new CsvRecordIndex(length, records, offsets);
+            index.saved = true;
+            return index;
+        } catch (IOException e) {
+            // unreadable or truncated index, it is rebuilt
+            return null;
+        }
+    }
+
+    private void save(File indexFile, long lastModified, char quote, char escape) {
+        File tmp = new File(indexFile.getPath() + ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+                out.writeLong(MAGIC);
+                out.writeInt(VERSION);
+                out.writeLong(length);
+                out.writeLong(lastModified);
+                out.writeChar(quote);
+                out.writeChar(escape);
+                out.writeInt(INTERVAL);
+                out.writeLong(records);
+                out.writeInt(offsets.length);
+                for (long offset : offsets) {
+                    out.writeLong(offset);
+                }
+            }
+            Files.move(tmp.toPath(), indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            saved = true;
+        } catch (IOException | SecurityException e) {
+            // the directory may be read only, the index is rebuilt on the next read then
+            tmp.delete();
+        }
+    }
+}
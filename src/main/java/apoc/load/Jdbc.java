@@ -1,6 +1,7 @@
 package apoc.load;
 
 import apoc.ApocConfiguration;
+import apoc.load.util.JdbcPools;
 import apoc.load.util.LoadJdbcConfig;
 import apoc.result.RowResult;
 import apoc.util.MapUtil;
@@ -20,7 +21,7 @@ import java.util.*;
 import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
 
-import static apoc.load.util.JdbcUtil.*;
+import static apoc.load.util.JdbcUtil.getSqlOrKey;
 
 /**
  * @author mh
@@ -70,15 +71,14 @@ public class Jdbc {
 
     private Stream<RowResult> executeQuery(String urlOrKey, String tableOrSelect, Map<String, Object> config, Object... params) {
         LoadJdbcConfig loadJdbcConfig = new LoadJdbcConfig(config);
-        String url = getUrlOrKey(urlOrKey);
         String query = getSqlOrKey(tableOrSelect);
         try {
-            Connection connection = getConnection(url,loadJdbcConfig);
+            Connection connection = JdbcPools.getConnection(urlOrKey,loadJdbcConfig);
             // see https://jdbc.postgresql.org/documentation/91/query.html#query-with-cursors
             connection.setAutoCommit(false);
             try {
                 PreparedStatement stmt = connection.prepareStatement(query,ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
-                stmt.setFetchSize(5000);
+                stmt.setFetchSize(loadJdbcConfig.getFetchSize());
                 try {
                     for (int i = 0; i < params.length; i++) stmt.setObject(i + 1, params[i]);
                     ResultSet rs = stmt.executeQuery();
@@ -96,10 +96,7 @@ public class Jdbc {
                 throw sqle;
             }
         } catch (Exception e) {
-            log.error(String.format("Cannot execute SQL statement `%s`.%nError:%n%s", query, e.getMessage()),e);
-            String errorMessage = "Cannot execute SQL statement `%s`.%nError:%n%s";
-            if(e.getMessage().contains("No suitable driver")) errorMessage="Cannot execute SQL statement `%s`.%nError:%n%s%n%s";
-            throw new RuntimeException(String.format(errorMessage, query, e.getMessage(), "Please download and copy the JDBC driver into $NEO4J_HOME/plugins,more details at https://neo4j-contrib.github.io/neo4j-apoc-procedures/#_load_jdbc_resources"), e);
+            throw sqlError(query, e);
         }
     }
 
@@ -111,13 +108,12 @@ public class Jdbc {
     }
 
     private Stream<RowResult> executeUpdate(String urlOrKey, String query, Map<String, Object> config, Object...params) {
-        String url = getUrlOrKey(urlOrKey);
         LoadJdbcConfig jdbcConfig = new LoadJdbcConfig(config);
         try {
-            Connection connection = getConnection(url,jdbcConfig);
+            Connection connection = JdbcPools.getConnection(urlOrKey,jdbcConfig);
             try {
                 PreparedStatement stmt = connection.prepareStatement(query,ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
-                stmt.setFetchSize(5000);
+                stmt.setFetchSize(jdbcConfig.getFetchSize());
                 try {
                     for (int i = 0; i < params.length; i++) stmt.setObject(i + 1, params[i]);
                     int updateCount = stmt.executeUpdate();
@@ -134,13 +130,59 @@ public class Jdbc {
                 throw sqle;
             }
         } catch (Exception e) {
-            log.error(String.format("Cannot execute SQL statement `%s`.%nError:%n%s", query, e.getMessage()),e);
-            String errorMessage = "Cannot execute SQL statement `%s`.%nError:%n%s";
-            if(e.getMessage().contains("No suitable driver")) errorMessage="Cannot execute SQL statement `%s`.%nError:%n%s%n%s";
-            throw new RuntimeException(String.format(errorMessage, query, e.getMessage(), "Please download and copy the JDBC driver into $NEO4J_HOME/plugins,more details at https://neo4j-contrib.github.io/neo4j-apoc-procedures/#_load_jdbc_resources"), e);
+            throw sqlError(query, e);
         }
     }
 
+    @Procedure
+    @Description("apoc.load.jdbcBatch('key or url','statement',[[params],...],config) YIELD row - update relational database, runs the statement with each list of params, batchSize of them as one JDBC batch and transaction")
+    public Stream<RowResult> jdbcBatch(@Name("jdbc") String urlOrKey, @Name("query") String query, @Name("batch") List<List<Object>> batch, @Name(value = "config",defaultValue = "{}") Map<String, Object> config) {
+        log.info( String.format( "Executing SQL batch update: %s", query ) );
+        LoadJdbcConfig jdbcConfig = new LoadJdbcConfig(config);
+        int batchSize = jdbcConfig.getBatchSize();
+        List<Map<String, Object>> results = new ArrayList<>();
+        try {
+            Connection connection = JdbcPools.getConnection(urlOrKey,jdbcConfig);
+            PreparedStatement stmt = null;
+            boolean autoCommit = connection.getAutoCommit();
+            try {
+                connection.setAutoCommit(false);
+                stmt = connection.prepareStatement(query);
+                for (int from = 0; from < batch.size(); from += batchSize) {
+                    List<List<Object>> statements = batch.subList(from, Math.min(batch.size(), from + batchSize));
+                    for (List<Object> params : statements) {
+                        for (int i = 0; i < params.size(); i++) stmt.setObject(i + 1, params.get(i));
+                        stmt.addBatch();
+                    }
+                    int[] updateCounts;
+                    try {
+                        updateCounts = stmt.executeBatch();
+                        connection.commit();
+                    } catch (SQLException sqle) {
+                        connection.rollback();
+                        throw sqle;
+                    }
+                    // drivers that don't know the count of a statement report SUCCESS_NO_INFO
+                    int updateCount = Arrays.stream(updateCounts).filter(count -> count >= 0).sum();
+                    results.add(MapUtil.map("batch", from / batchSize, "statements", statements.size(), "count", updateCount));
+                }
+            } finally {
+                ignore(() -> { connection.setAutoCommit(autoCommit); return null; });
+                closeIt(log, stmt, connection);
+            }
+        } catch (Exception e) {
+            throw sqlError(query, e);
+        }
+        return results.stream().map(RowResult::new);
+    }
+
+    private RuntimeException sqlError(String query, Exception e) {
+        log.error(String.format("Cannot execute SQL statement `%s`.%nError:%n%s", query, e.getMessage()),e);
+        String errorMessage = "Cannot execute SQL statement `%s`.%nError:%n%s";
+        if(e.getMessage() != null && e.getMessage().contains("No suitable driver")) errorMessage="Cannot execute SQL statement `%s`.%nError:%n%s%n%s";
+        return new RuntimeException(String.format(errorMessage, query, e.getMessage(), "Please download and copy the JDBC driver into $NEO4J_HOME/plugins,more details at https://neo4j-contrib.github.io/neo4j-apoc-procedures/#_load_jdbc_resources"), e);
+    }
+
     static void closeIt(Log log, AutoCloseable...closeables) {
         for (AutoCloseable c : closeables) {
             try {
@@ -14,7 +14,9 @@ import org.neo4j.procedure.Description;
 import org.neo4j.procedure.Name;
 import org.neo4j.procedure.Procedure;
 
+import java.io.File;
 import java.io.IOException;
+import java.io.Reader;
 import java.util.*;
 import java.util.function.Consumer;
 import java.util.regex.Pattern;
@@ -38,11 +40,15 @@ public class LoadCsv {
     public GraphDatabaseService db;
 
     @Procedure
-    @Description("apoc.load.csv('url',{config}) YIELD lineNo, list, map - load CSV fom URL as stream of values,\n config contains any of: {skip:1,limit:5,header:false,sep:'TAB',ignore:['tmp'],nullValues:['na'],arraySep:';',mapping:{years:{type:'int',arraySep:'-',array:false,name:'age',ignore:false}}")
+    @Description("apoc.load.csv('url',{config}) YIELD lineNo, list, map - load CSV fom URL as stream of values,\n config contains any of: {skip:1,limit:5,header:false,sep:'TAB',ignore:['tmp'],nullValues:['na'],arraySep:';',parallel:false,saveIndex:false,mapping:{years:{type:'int',arraySep:'-',array:false,name:'age',ignore:false}}")
     public Stream<CSVResult> csv(@Name("url") String url, @Name(value = "config",defaultValue = "{}") Map<String, Object> configMap) {
         LoadCsvConfig config = new LoadCsvConfig(configMap);
         CountingReader reader = null;
         try {
+            File file = config.isParallel() ? FileUtils.localFile(url) : null;
+            if (file != null) {
+                return CsvFileSpliterator.stream(url, file, config);
+            }
             reader = FileUtils.readerFor(url);
             return streamCsv(url, config, reader);
         } catch (IOException e) {
@@ -56,13 +62,7 @@ public class LoadCsv {
 
     public Stream<CSVResult> streamCsv(@Name("url") String url, LoadCsvConfig config, CountingReader reader) throws IOException {
 
-        CSVReader csv = new CSVReaderBuilder(reader)
-                .withCSVParser(new CSVParserBuilder()
-                        .withQuoteChar(config.getQuoteChar())
-                        .withIgnoreQuotations( config.isIgnoreQuotations() )
-                        .withSeparator(config.getSeparator())
-                        .build())
-                .build();
+        CSVReader csv = csvReader(reader, config);
 
         String[] header = getHeader(csv, config);
         boolean checkIgnore = !config.getIgnore().isEmpty() || config.getMappings().values().stream().anyMatch(m -> m.ignore);
@@ -71,6 +71,16 @@ public class LoadCsv {
                 .onClose(() -> closeReaderSafely(reader));
     }
 
+    static CSVReader csvReader(Reader reader, LoadCsvConfig config) {
+        return new CSVReaderBuilder(reader)
+                .withCSVParser(new CSVParserBuilder()
+                        .withQuoteChar(config.getQuoteChar())
+                        .withIgnoreQuotations( config.isIgnoreQuotations() )
+                        .withSeparator(config.getSeparator())
+                        .build())
+                .build();
+    }
+
     public static class Mapping {
         public static final Mapping EMPTY = new Mapping("", Collections.emptyMap(), DEFAULT_ARRAY_SEP, false);
         final String name;
@@ -125,7 +135,7 @@ public class LoadCsv {
         }
     }
 
-    private String[] getHeader(CSVReader csv, LoadCsvConfig config) throws IOException {
+    static String[] getHeader(CSVReader csv, LoadCsvConfig config) throws IOException {
         if (!config.isHasHeader()) return null;
         String[] headers = csv.readNext();
         List<String> ignore = config.getIgnore();
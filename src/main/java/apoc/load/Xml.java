@@ -89,6 +89,18 @@ public class Xml {
     }
 
     private Stream<MapResult> parse(InputStream data, boolean simpleMode, String path, boolean failOnError) throws Exception {
+        path = StringUtils.isEmpty(path) ? "/" : path;
+        XmlStreamingXPath streaming = XmlStreamingXPath.compile(path);
+        if (streaming != null) {
+            try {
+                return streaming.stream(data, simpleMode, failOnError);
+            } catch (Exception e) {
+                if (!failOnError)
+                    return Stream.of(new MapResult(Collections.emptyMap()));
+                else
+                    throw e;
+            }
+        }
         List<MapResult> result = new ArrayList<>();
         try {
             DocumentBuilderFactory documentBuilderFactory = DocumentBuilderFactory.newInstance();
@@ -320,6 +332,10 @@ public class Xml {
                 break;
         }
 
+        addText(elementMap, text);
+    }
+
+    static void addText(Map<String, Object> elementMap, Object text) {
         // If the text is valid ...
         if (!StringUtils.isEmpty(text.toString())) {
             // We check if we have already collected some text previously
@@ -338,7 +354,7 @@ public class Xml {
      * @param text
      * @return
      */
-    private String normalizeText(String text) {
+    static String normalizeText(String text) {
         String[] tokens = StringUtils.split(text, "\n");
         for (int i = 0; i < tokens.length; i++) {
             tokens[i] = tokens[i].trim();
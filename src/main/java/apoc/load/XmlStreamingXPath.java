@@ -0,0 +1,578 @@
+package apoc.load;
+
+import apoc.result.MapResult;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import static javax.xml.stream.XMLStreamConstants.*;
+
+/**
+ * Evaluates a subset of XPath on a StAX stream, so that apoc.load.xml emits the matching elements one at a time
+ * without building the DOM of the whole document.
+ *
+ * Supported are absolute paths of child (<code>/</code>) and descendant (<code>//</code>) steps with element names or
+ * <code>*</code>, <code>.</code> steps, and the predicates <code>[@attr]</code>, <code>[@attr='value']</code>,
+ * <code>[@attr!='value']</code>, <code>[child]</code>, <code>[child='value']</code>, <code>[child!='value']</code> and
+ * <code>[n]</code>. {@link #compile(String)} returns null for all other expressions, which are evaluated on the DOM.
+ *
+ * Only the subtrees of matching elements are kept in memory. Predicates on child elements are decided at the end of
+ * the element, matches below such an element are held back until then, so the results stay in document order.
+ */
+class XmlStreamingXPath {
+
+    private static final XMLInputFactory FACTORY = createFactory();
+
+    private static final byte PENDING = 0, TRUE = 1, FALSE = 2;
+
+    private static final Pattern NAME = Pattern.compile("[A-Za-z_][\\w.\\-]*");
+    private static final Pattern PREDICATE = Pattern.compile(
+            "\\s*(?:(\\d{1,9})|(@?)([A-Za-z_][\\w.\\-]*)\\s*(?:(!?=)\\s*(?:\"([^\"]*)\"|'([^']*)'))?)\\s*");
+
+    private final List<Step> steps;
+
+    private XmlStreamingXPath(List<Step> steps) {
+        this.steps = steps;
+    }
+
+    private static XMLInputFactory createFactory() {
+        XMLInputFactory factory = XMLInputFactory.newFactory();
+        factory.setProperty(XMLInputFactory.IS_COALESCING, false);
+        factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, true);
+        // like the DocumentBuilder of the DOM evaluation, external entities and DTDs resolve to nothing
+        factory.setXMLResolver((publicId, systemId, baseUri, namespace) -> new ByteArrayInputStream(new byte[0]));
+        return factory;
+    }
+
+    /**
+     * @return the streaming evaluation of the path or null, if the path is outside of the supported subset
+     */
+    static XmlStreamingXPath compile(String path) {
+        if (path == null || !path.startsWith("/")) return null;
+        List<Step> steps = new ArrayList<>();
+        int i = 0, length = path.length();
+        while (i < length) {
+            boolean descendant = path.startsWith("//", i);
+            i += descendant ? 2 : 1;
+            if (i >= length) {
+                if (descendant || !steps.isEmpty()) return null;
+                break;
+            }
+            if (path.charAt(i) == '.') {
+                // self step without predicates
+                i++;
+                if (descendant || (i < length && path.charAt(i) != '/')) return null;
+                continue;
+            }
+            String name = null;
+            if (path.charAt(i) == '*') {
+                i++;
+            } else {
+                Matcher matcher = NAME.matcher(path).region(i, length);
+                if (!matcher.lookingAt()) return null;
+                name = matcher.group();
+                i = matcher.end();
+            }
+            Step step = new Step(descendant, name);
+            while (i < length && path.charAt(i) == '[') {
+                int end = path.indexOf(']', i);
+                if (end == -1) return null;
+                Predicate predicate = Predicate.parse(path.substring(i + 1, end));
+                if (predicate == null) return null;
+                step.add(predicate);
+                i = end + 1;
+            }
+            if (i < length && path.charAt(i) != '/') return null;
+            steps.add(step);
+        }
+        // the document node stands for its root element
+        if (steps.isEmpty()) steps.add(new Step(false, null));
+        return new XmlStreamingXPath(steps);
+    }
+
+    /**
+     * With failOnError false, a document that can't be read ends the stream with an empty map, after the elements
+     * that matched before the error, instead of throwing.
+     */
+    Stream<MapResult> stream(InputStream input, boolean simpleMode, boolean failOnError) throws XMLStreamException {
+        Evaluation evaluation = new Evaluation(FACTORY.createXMLStreamReader(input), input, simpleMode, failOnError);
+        return StreamSupport.stream(evaluation, false).onClose(evaluation::close);
+    }
+
+    private static class Step {
+        final boolean descendant;
+        final String name;
+        final List<Predicate> predicates = new ArrayList<>();
+        // predicates from the first one on a child element are decided at the end of the element
+        int firstDeferred;
+        Set<String> childNames = Collections.emptySet();
+
+        Step(boolean descendant, String name) {
+            this.descendant = descendant;
+            this.name = name;
+        }
+
+        void add(Predicate predicate) {
+            if (predicate.kind == Predicate.Kind.CHILD && childNames.isEmpty()) {
+                childNames = new HashSet<>();
+            }
+            if (predicate.kind == Predicate.Kind.CHILD) childNames.add(predicate.name);
+            predicates.add(predicate);
+            if (childNames.isEmpty()) firstDeferred = predicates.size();
+        }
+
+        /**
+         * a named step only matches elements without a namespace, like in the DOM evaluation without a namespace context,
+         * <code>*</code> and the document node match any element
+         */
+        boolean matches(XMLStreamReader reader) {
+            return name == null || (noNamespace(reader.getNamespaceURI()) && name.equals(reader.getLocalName()));
+        }
+    }
+
+    private static class Predicate {
+        enum Kind {ATTRIBUTE, CHILD, POSITION}
+
+        final Kind kind;
+        final String name;
+        final String value;
+        final boolean negate;
+        final int position;
+
+        private Predicate(Kind kind, String name, String value, boolean negate, int position) {
+            this.kind = kind;
+            this.name = name;
+            this.value = value;
+            this.negate = negate;
+            this.position = position;
+        }
+
+        static Predicate parse(String expression) {
+            Matcher matcher = PREDICATE.matcher(expression);
+            if (!matcher.matches()) return null;
+            if (matcher.group(1) != null) {
+                int position = Integer.parseInt(matcher.group(1));
+                return position > 0 ? new Predicate(Kind.POSITION, null, null, false, position) : null;
+            }
+            String value = matcher.group(5) != null ? matcher.group(5) : matcher.group(6);
+            boolean negate = "!=".equals(matcher.group(4));
+            Kind kind = matcher.group(2).isEmpty() ? Kind.CHILD : Kind.ATTRIBUTE;
+            return new Predicate(kind, matcher.group(3), value, negate, 0);
+        }
+
+        /**
+         * XPath compares node-sets existentially: true if any of the values compares
+         */
+        boolean test(List<String> values) {
+            if (values == null) return false;
+            if (value == null) return !values.isEmpty();
+            for (String v : values) {
+                if (value.equals(v) != negate) return true;
+            }
+            return false;
+        }
+    }
+
+    /**
+     * an element matched by a step, valid if its predicates hold and any of the matches of the previous step it was reached from is valid
+     */
+    private static class Match {
+        final Frame frame;
+        final int step;
+        final List<Match> previous = new ArrayList<>(1);
+        byte status;
+        byte valid = PENDING;
+
+        Match(Frame frame, int step, byte status) {
+            this.frame = frame;
+            this.step = step;
+            this.status = status;
+        }
+
+        byte valid() {
+            if (valid != PENDING) return valid;
+            if (status == FALSE) return valid = FALSE;
+            boolean pending = status == PENDING, any = false;
+            for (Match match : previous) {
+                byte v = match.valid();
+                if (v == TRUE) {
+                    any = true;
+                    break;
+                }
+                if (v == PENDING) pending = true;
+            }
+            if (!any) return pending ? PENDING : (valid = FALSE);
+            return status == TRUE ? (valid = TRUE) : PENDING;
+        }
+    }
+
+    private static class Frame {
+        final Frame parent;
+        XmlElement element;
+        Match[] matches;
+        Map<String, List<String>> attributes;
+        // matches whose next step applies to the children, or to all descendants
+        List<Match> childContexts = Collections.emptyList();
+        List<Match> descendantContexts;
+        // string values of the children that pending predicates refer to
+        Set<String> childNames = Collections.emptySet();
+        Map<String, List<StringBuilder>> childTexts;
+        List<StringBuilder> textSinks;
+        int[][] counters;
+        Output output;
+
+        Frame(Frame parent) {
+            this.parent = parent;
+            this.descendantContexts = parent == null ? Collections.emptyList() : parent.descendantContexts;
+            this.textSinks = parent == null ? Collections.emptyList() : parent.textSinks;
+        }
+
+        int count(int step, int predicate, int steps) {
+            if (counters == null) counters = new int[steps][];
+            if (counters[step] == null) counters[step] = new int[predicate + 1];
+            if (counters[step].length <= predicate) counters[step] = Arrays.copyOf(counters[step], predicate + 1);
+            return ++counters[step][predicate];
+        }
+    }
+
+    private static class Output {
+        final Match match;
+        final XmlElement element;
+        boolean ended;
+
+        Output(Match match, XmlElement element) {
+            this.match = match;
+            this.element = element;
+        }
+    }
+
+    static class XmlElement {
+        final String localName;
+        final List<String[]> attributes;
+        final List<Object> children = new ArrayList<>();
+
+        XmlElement(String localName, List<String[]> attributes) {
+            this.localName = localName;
+            this.attributes = attributes;
+        }
+    }
+
+    private static class XmlText {
+        final String text;
+
+        XmlText(String text) {
+            this.text = text;
+        }
+    }
+
+    private class Evaluation extends Spliterators.AbstractSpliterator<MapResult> {
+        private final XMLStreamReader reader;
+        private final InputStream input;
+        private final boolean simpleMode;
+        private final boolean failOnError;
+        private boolean failed;
+        private final Deque<Output> outputs = new ArrayDeque<>();
+        private final Deque<MapResult> ready = new ArrayDeque<>();
+        private final StringBuilder text = new StringBuilder();
+        private Frame current;
+
+        Evaluation(XMLStreamReader reader, InputStream input, boolean simpleMode, boolean failOnError) {
+            super(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL);
+            this.reader = reader;
+            this.input = input;
+            this.simpleMode = simpleMode;
+            this.failOnError = failOnError;
+            Frame document = new Frame(null);
+            Match root = new Match(document, -1, TRUE);
+            root.valid = TRUE;
+            addContext(document, root);
+            this.current = document;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super MapResult> action) {
+            if (failed) return false;
+            try {
+                while (ready.isEmpty()) {
+                    if (!reader.hasNext()) return false;
+                    handle(reader.next());
+                }
+            } catch (XMLStreamException e) {
+                if (failOnError) throw new RuntimeException("Can't read XML: " + e.getMessage(), e);
+                failed = true;
+                close();
+                action.accept(new MapResult(Collections.emptyMap()));
+                return true;
+            }
+            action.accept(ready.poll());
+            return true;
+        }
+
+        private void handle(int event) {
+            switch (event) {
+                case START_ELEMENT:
+                    flushText();
+                    start();
+                    break;
+                case END_ELEMENT:
+                    flushText();
+                    end();
+                    break;
+                case CHARACTERS:
+                case SPACE:
+                case ENTITY_REFERENCE:
+                    append(reader.getText(), false);
+                    break;
+                case CDATA:
+                    flushText();
+                    append(reader.getText(), true);
+                    break;
+                default:
+                    // comments, processing instructions and the document events are not part of the results
+                    flushText();
+            }
+        }
+
+        private void append(String chars, boolean cdata) {
+            for (StringBuilder sink : current.textSinks) {
+                sink.append(chars);
+            }
+            if (current.element == null) return;
+            if (cdata) {
+                current.element.children.add(new XmlText(chars));
+            } else {
+                text.append(chars);
+            }
+        }
+
+        private void flushText() {
+            if (text.length() == 0) return;
+            if (current.element != null) current.element.children.add(new XmlText(text.toString()));
+            text.setLength(0);
+        }
+
+        private void start() {
+            Frame parent = current;
+            Frame frame = new Frame(parent);
+            String localName = reader.getLocalName();
+
+            // the string value of a child a pending predicate of the parent refers to
+            if (parent.childNames.contains(localName) && noNamespace(reader.getNamespaceURI())) {
+                StringBuilder sink = new StringBuilder();
+                parent.childTexts.computeIfAbsent(localName, k -> new ArrayList<>()).add(sink);
+                frame.textSinks = new ArrayList<>(parent.textSinks);
+                frame.textSinks.add(sink);
+            }
+
+            match(frame, parent.childContexts);
+            match(frame, parent.descendantContexts);
+
+            Match last = frame.matches == null ? null : frame.matches[steps.size() - 1];
+            boolean output = last != null && last.status != FALSE;
+            if (parent.element != null || output) {
+                frame.element = new XmlElement(localName, attributes());
+                if (parent.element != null) parent.element.children.add(frame.element);
+            }
+            if (output) {
+                frame.output = new Output(last, frame.element);
+                outputs.addLast(frame.output);
+            }
+            current = frame;
+        }
+
+        private void match(Frame frame, List<Match> contexts) {
+            for (Match context : contexts) {
+                if (context.valid() == FALSE) continue;
+                int s = context.step + 1;
+                if (frame.matches == null) frame.matches = new Match[steps.size()];
+                Match match = frame.matches[s];
+                if (match == null) {
+                    Step step = steps.get(s);
+                    match = new Match(frame, s, step.matches(reader) ? startStatus(frame, s) : FALSE);
+                    frame.matches[s] = match;
+                    if (match.status != FALSE && s + 1 < steps.size()) addContext(frame, match);
+                }
+                if (match.status != FALSE) match.previous.add(context);
+            }
+        }
+
+        private void addContext(Frame frame, Match match) {
+            boolean descendant = steps.get(match.step + 1).descendant;
+            List<Match> contexts = new ArrayList<>(descendant ? frame.descendantContexts : frame.childContexts);
+            contexts.add(match);
+            if (descendant) frame.descendantContexts = contexts;
+            else frame.childContexts = contexts;
+        }
+
+        private byte startStatus(Frame frame, int s) {
+            Step step = steps.get(s);
+            for (int p = 0; p < step.firstDeferred; p++) {
+                if (!test(frame, s, p)) return FALSE;
+            }
+            if (step.firstDeferred == step.predicates.size()) return TRUE;
+            if (frame.attributes == null) frame.attributes = attributeValues();
+            if (frame.childNames.isEmpty()) {
+                frame.childNames = new HashSet<>();
+                frame.childTexts = new HashMap<>();
+            }
+            frame.childNames.addAll(step.childNames);
+            return PENDING;
+        }
+
+        private boolean test(Frame frame, int s, int p) {
+            Predicate predicate = steps.get(s).predicates.get(p);
+            switch (predicate.kind) {
+                case POSITION:
+                    return frame.parent.count(s, p, steps.size()) == predicate.position;
+                case ATTRIBUTE:
+                    if (frame.attributes == null) frame.attributes = attributeValues();
+                    return predicate.test(frame.attributes.get(predicate.name));
+                case CHILD:
+                default:
+                    List<StringBuilder> sinks = frame.childTexts == null ? null : frame.childTexts.get(predicate.name);
+                    if (sinks == null) return predicate.test(null);
+                    List<String> values = new ArrayList<>(sinks.size());
+                    for (StringBuilder sink : sinks) values.add(sink.toString());
+                    return predicate.test(values);
+            }
+        }
+
+        private void end() {
+            Frame frame = current;
+            if (frame.matches != null) {
+                for (Match match : frame.matches) {
+                    if (match == null || match.status != PENDING) continue;
+                    Step step = steps.get(match.step);
+                    match.status = TRUE;
+                    for (int p = step.firstDeferred; p < step.predicates.size(); p++) {
+                        if (!test(frame, match.step, p)) {
+                            match.status = FALSE;
+                            break;
+                        }
+                    }
+                }
+            }
+            if (frame.output != null) frame.output.ended = true;
+            current = frame.parent;
+            emit();
+        }
+
+        private void emit() {
+            while (!outputs.isEmpty() && outputs.peekFirst().ended) {
+                byte valid = outputs.peekFirst().match.valid();
+                if (valid == PENDING) return;
+                Output output = outputs.pollFirst();
+                if (valid == TRUE) ready.add(new MapResult(toMap(output.element)));
+            }
+        }
+
+        private Map<String, List<String>> attributeValues() {
+            Map<String, List<String>> values = new HashMap<>();
+            for (int a = 0; a < reader.getAttributeCount(); a++) {
+                if (noNamespace(reader.getAttributeNamespace(a))) {
+                    values.put(reader.getAttributeLocalName(a), Collections.singletonList(reader.getAttributeValue(a)));
+                }
+            }
+            return values;
+        }
+
+        // the attributes as the DOM has them: qualified names including the namespace declarations, in name order
+        private List<String[]> attributes() {
+            List<String[]> attributes = new ArrayList<>();
+            for (int n = 0; n < reader.getNamespaceCount(); n++) {
+                String prefix = reader.getNamespacePrefix(n);
+                attributes.add(new String[]{prefix == null || prefix.isEmpty() ? "xmlns" : "xmlns:" + prefix, reader.getNamespaceURI(n)});
+            }
+            for (int a = 0; a < reader.getAttributeCount(); a++) {
+                String prefix = reader.getAttributePrefix(a);
+                String name = prefix == null || prefix.isEmpty() ? reader.getAttributeLocalName(a) : prefix + ":" + reader.getAttributeLocalName(a);
+                attributes.add(new String[]{name, reader.getAttributeValue(a)});
+            }
+            attributes.sort((a, b) -> a[0].compareTo(b[0]));
+            return attributes;
+        }
+
+        private Map<String, Object> toMap(XmlElement element) {
+            Deque<Map<String, Object>> stack = new LinkedList<>();
+            handleElement(stack, element);
+            return stack.pollFirst();
+        }
+
+        // follows Xml.handleNode, so that both evaluations return the same maps
+        private void handleElement(Deque<Map<String, Object>> stack, XmlElement element) {
+            Map<String, Object> elementMap = new LinkedHashMap<>();
+            elementMap.put("_type", element.localName);
+            for (String[] attribute : element.attributes) {
+                elementMap.put(attribute[0], attribute[1]);
+            }
+
+            int count = 0;
+            for (Object child : element.children) {
+                if (child instanceof XmlElement) {
+                    handleElement(stack, (XmlElement) child);
+                    count++;
+                } else {
+                    Xml.addText(elementMap, Xml.normalizeText(((XmlText) child).text));
+                }
+            }
+
+            if (!element.children.isEmpty() && !stack.isEmpty()) {
+                List<Object> nodeChildren = new ArrayList<>();
+                for (int i = 0; i < count; i++) {
+                    nodeChildren.add(stack.pollLast());
+                }
+                String key = simpleMode ? "_" + element.localName : "_children";
+                Collections.reverse(nodeChildren);
+                if (nodeChildren.size() > 0) {
+                    Object text = elementMap.get("_text");
+                    if (text instanceof List) {
+                        nodeChildren.addAll((List) text);
+                        elementMap.remove("_text");
+                    }
+                    elementMap.put(key, nodeChildren);
+                }
+            }
+            stack.addLast(elementMap);
+        }
+
+        void close() {
+            try {
+                reader.close();
+            } catch (XMLStreamException e) {
+                // ignore
+            }
+            try {
+                input.close();
+            } catch (IOException e) {
+                // ignore
+            }
+        }
+    }
+
+    private static boolean noNamespace(String namespace) {
+        return namespace == null || namespace.isEmpty();
+    }
+}
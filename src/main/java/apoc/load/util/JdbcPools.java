@@ -0,0 +1,80 @@
+package apoc.load.util;
+
+import apoc.ApocConfiguration;
+import apoc.util.Util;
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+
+import java.sql.Connection;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The pooled data sources of the urls configured as <code>apoc.jdbc.&lt;key&gt;.url</code>, created on the first use of the key.
+ *
+ * The pool of a key is configured with <code>apoc.jdbc.&lt;key&gt;.pool.*</code>, urls that are passed directly,
+ * calls with credentials in their config and kerberos urls get a connection of their own, like before.
+ */
+public class JdbcPools {
+
+    private static final String LOAD_TYPE = "jdbc";
+
+    private static final Map<List<String>, HikariDataSource> dataSources = new ConcurrentHashMap<>();
+
+    static {
+        Runtime.getRuntime().addShutdownHook(new Thread(JdbcPools::closeAll));
+    }
+
+    private JdbcPools() {}
+
+    public static Connection getConnection(String urlOrKey, LoadJdbcConfig config) throws Exception {
+        String url = JdbcUtil.getUrlOrKey(urlOrKey);
+        if (url.equals(urlOrKey) || config.hasCredentials() || url.contains(";auth=kerberos")
+                || !Util.toBoolean(setting(urlOrKey, "enabled", true))) {
+            return JdbcUtil.getConnection(url, config);
+        }
+        return dataSources.computeIfAbsent(Arrays.asList(urlOrKey, url), (key) -> createDataSource(urlOrKey, url)).getConnection();
+    }
+
+    private static Object setting(String key, String name, Object defaultValue) {
+        return Util.getLoadUrlByConfigFile(LOAD_TYPE, key, "pool." + name).map(v -> (Object) v).orElse(defaultValue);
+    }
+
+    private static HikariDataSource createDataSource(String key, String url) {
+        HikariConfig hikari = new HikariConfig();
+        hikari.setPoolName("apoc-jdbc-" + key);
+        try {
+            String[] userInfo = JdbcUtil.splitUserInfo(url);
+            if (userInfo != null) {
+                hikari.setJdbcUrl(userInfo[0]);
+                hikari.setUsername(userInfo[1]);
+                hikari.setPassword(userInfo[2]);
+            } else {
+                hikari.setJdbcUrl(url);
+            }
+        } catch (Exception e) {
+            throw new RuntimeException("Invalid url of apoc.jdbc." + key + ".url: " + e.getMessage(), e);
+        }
+        hikari.setMaximumPoolSize(Util.toInteger(setting(key, "size", 10)));
+        hikari.setMinimumIdle(Util.toInteger(setting(key, "minIdle", 1)));
+        hikari.setIdleTimeout(Util.toLong(setting(key, "idleTimeout", 600_000L)));
+        hikari.setMaxLifetime(Util.toLong(setting(key, "maxLifetime", 1_800_000L)));
+        hikari.setConnectionTimeout(Util.toLong(setting(key, "connectionTimeout", 30_000L)));
+        hikari.setValidationTimeout(Util.toLong(setting(key, "validationTimeout", 5_000L)));
+        // without a query the connections are validated with Connection.isValid()
+        Object validationQuery = setting(key, "validationQuery", null);
+        if (validationQuery != null) hikari.setConnectionTestQuery(validationQuery.toString());
+        // don't fail until a connection is needed, like the connections that aren't pooled
+        hikari.setInitializationFailTimeout(-1);
+        return new HikariDataSource(hikari);
+    }
+
+    public static void closeAll() {
+        for (List<String> key : dataSources.keySet()) {
+            HikariDataSource dataSource = dataSources.remove(key);
+            if (dataSource != null) dataSource.close();
+        }
+    }
+}
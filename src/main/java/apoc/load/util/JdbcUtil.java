@@ -24,17 +24,26 @@ public class JdbcUtil {
         if(config.hasCredentials()) {
             return createConnection(jdbcUrl, config.getCredentials().getUser(), config.getCredentials().getPassword());
         } else {
-            URI uri = new URI(jdbcUrl.substring("jdbc:".length()));
-            String userInfo = uri.getUserInfo();
+            String[] userInfo = splitUserInfo(jdbcUrl);
             if (userInfo != null) {
-                String cleanUrl = jdbcUrl.substring(0, jdbcUrl.indexOf("://") + 3) + jdbcUrl.substring(jdbcUrl.indexOf("@") + 1);
-                String[] user = userInfo.split(":");
-                return createConnection(cleanUrl, user[0], user[1]);
+                return createConnection(userInfo[0], userInfo[1], userInfo[2]);
             }
             return DriverManager.getConnection(jdbcUrl);
         }
     }
 
+    /**
+     * @return the url without the user info, the user and the password, or null if the url has no user info
+     */
+    static String[] splitUserInfo(String jdbcUrl) throws Exception {
+        URI uri = new URI(jdbcUrl.substring("jdbc:".length()));
+        String userInfo = uri.getUserInfo();
+        if (userInfo == null) return null;
+        String cleanUrl = jdbcUrl.substring(0, jdbcUrl.indexOf("://") + 3) + jdbcUrl.substring(jdbcUrl.indexOf("@") + 1);
+        String[] user = userInfo.split(":");
+        return new String[]{cleanUrl, user[0], user[1]};
+    }
+
     private static Connection createConnection(String jdbcUrl, String userName, String password) throws Exception {
         if (jdbcUrl.contains(";auth=kerberos")) {
             String client = System.getProperty("java.security.auth.login.config.client", "KerberosClient");
@@ -25,6 +25,8 @@ public class LoadCsvConfig {
 
     private boolean failOnError;
     private boolean ignoreQuotations;
+    private boolean parallel;
+    private boolean saveIndex;
 
     private EnumSet<Results> results;
 
@@ -50,6 +52,8 @@ public class LoadCsvConfig {
         limit = (long) config.getOrDefault("limit", Long.MAX_VALUE);
         failOnError = (boolean) config.getOrDefault("failOnError", true);
         ignoreQuotations = (boolean) config.getOrDefault("ignoreQuotations", false);
+        parallel = Util.toBoolean(config.getOrDefault("parallel", false));
+        saveIndex = Util.toBoolean(config.getOrDefault("saveIndex", false));
 
         results = EnumSet.noneOf(Results.class);
         List<String> resultList = (List<String>) config.getOrDefault("results", asList("map","list"));
@@ -128,4 +132,12 @@ public class LoadCsvConfig {
     public boolean isIgnoreQuotations() {
         return ignoreQuotations;
     }
+
+    public boolean isParallel() {
+        return parallel;
+    }
+
+    public boolean isSaveIndex() {
+        return saveIndex;
+    }
 }
@@ -1,5 +1,6 @@
 package apoc.load.util;
 
+import apoc.util.Util;
 import org.apache.commons.lang.StringUtils;
 
 import java.time.DateTimeException;
@@ -17,6 +18,10 @@ public class LoadJdbcConfig {
 
     private Credentials credentials;
 
+    private int fetchSize;
+
+    private int batchSize;
+
     public LoadJdbcConfig(Map<String,Object> config) {
         config = config != null ? config : Collections.emptyMap();
         try {
@@ -26,6 +31,8 @@ public class LoadJdbcConfig {
             throw new IllegalArgumentException(String.format("The timezone field contains an error: %s", e.getMessage()));
         }
         this.credentials = config.containsKey("credentials") ? createCredentials((Map<String, String>) config.get("credentials")) : null;
+        this.fetchSize = Util.toInteger(config.getOrDefault("fetchSize", 5000));
+        this.batchSize = Math.max(1, Util.toInteger(config.getOrDefault("batchSize", 1000)));
     }
 
     public ZoneId getZoneId(){
@@ -36,6 +43,14 @@ public class LoadJdbcConfig {
         return this.credentials;
     }
 
+    public int getFetchSize() {
+        return this.fetchSize;
+    }
+
+    public int getBatchSize() {
+        return this.batchSize;
+    }
+
     public static Credentials createCredentials(Map<String,String> credentials) {
         if (!credentials.getOrDefault("user", StringUtils.EMPTY).equals(StringUtils.EMPTY) && !credentials.getOrDefault("password", StringUtils.EMPTY).equals(StringUtils.EMPTY)) {
             return new Credentials(credentials.get("user"), credentials.get("password"));
@@ -1,5 +1,8 @@
 package apoc.meta;
 
+import apoc.Pools;
+import apoc.util.Util;
+import apoc.util.kernel.MultiThreadedGlobalGraphOperations;
 import org.neo4j.logging.Log;
 import apoc.result.GraphResult;
 import apoc.result.MapResult;
@@ -13,16 +16,23 @@ import org.neo4j.graphdb.schema.IndexDefinition;
 import org.neo4j.graphdb.schema.Schema;
 import org.neo4j.graphdb.spatial.Point;
 import org.neo4j.helpers.collection.Pair;
+import org.neo4j.helpers.collection.Iterables;
+import org.neo4j.internal.kernel.api.NodeCursor;
 import org.neo4j.internal.kernel.api.Read;
 import org.neo4j.internal.kernel.api.TokenRead;
 import org.neo4j.kernel.api.KernelTransaction;
+import org.neo4j.kernel.impl.core.ThreadToStatementContextBridge;
 import org.neo4j.kernel.internal.GraphDatabaseAPI;
 import org.neo4j.procedure.*;
 import org.neo4j.values.storable.DurationValue;
 
 import java.time.*;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -145,6 +155,7 @@ public class Meta {
         public List<String> other = new ArrayList<>();
         public List<String> otherLabels = new ArrayList<>();
         public String elementType;
+        public Double confidence; // share of the sampled values of a property that have its type
 
         public MetaResult addLabel(String label) {
             this.otherLabels.add(label);
@@ -336,6 +347,33 @@ public class Meta {
         return Stream.of(collectStats());
     }
 
+    @Procedure("apoc.meta.cache.stats")
+    @Description("apoc.meta.cache.stats() - lists the profiles of the meta data cache with their versions and the changes since they were sampled")
+    public Stream<MetaCache.CacheStats> cacheStats() {
+        return MetaCache.get(api).stats();
+    }
+
+    @Procedure("apoc.meta.cache.refresh")
+    @Description("apoc.meta.cache.refresh() - samples the profiles of the meta data cache again")
+    public Stream<MetaCache.CacheStats> cacheRefresh() {
+        return MetaCache.get(api).refresh(this::collectMetaSample, this::collectTables4LabelsProfile);
+    }
+
+    /**
+     * runs a sampler outside of a procedure call, in a transaction of its own, e.g. for the background refresh of the meta data cache
+     */
+    static <T> T inNewTransaction(GraphDatabaseAPI api, Log log, Function<Meta, T> sampler) {
+        try (Transaction tx = api.beginTx()) {
+            Meta meta = new Meta();
+            meta.db = meta.api = api;
+            meta.log = log;
+            meta.kernelTx = api.getDependencyResolver().resolveDependency(ThreadToStatementContextBridge.class).getKernelTransactionBoundToThisThread(true);
+            T result = sampler.apply(meta);
+            tx.success();
+            return result;
+        }
+    }
+
     private MetaStats collectStats() {
         Map<String, Long> relStatsCount = new LinkedHashMap<>();
         TokenRead tokenRead = kernelTx.tokenRead();
@@ -447,6 +485,9 @@ public class Meta {
     public Stream<Tables4LabelsProfile.NodeTypePropertiesEntry> nodeTypeProperties(@Name(value = "config",defaultValue = "{}") Map<String,Object> config) {
         MetaConfig metaConfig = new MetaConfig(config);
         try {
+            if (metaConfig.isCached()) {
+                return MetaCache.get(api).tables4Labels(metaConfig, () -> collectTables4LabelsProfile(metaConfig), Tables4LabelsProfile::asNodeStream);
+            }
             return collectTables4LabelsProfile(metaConfig).asNodeStream();
         } catch (Exception e) {
             log.debug("meta.nodeTypeProperties(): Failed to return stream", e);
@@ -464,6 +505,9 @@ public class Meta {
     public Stream<Tables4LabelsProfile.RelTypePropertiesEntry> relTypeProperties(@Name(value = "config",defaultValue = "{}") Map<String,Object> config) {
         MetaConfig metaConfig = new MetaConfig(config);
         try {
+            if (metaConfig.isCached()) {
+                return MetaCache.get(api).tables4Labels(metaConfig, () -> collectTables4LabelsProfile(metaConfig), Tables4LabelsProfile::asRelStream);
+            }
             return collectTables4LabelsProfile(metaConfig).asRelStream();
         } catch (Exception e) {
             log.debug("meta.relTypeProperties(): Failed to return stream", e);
@@ -471,7 +515,7 @@ public class Meta {
         }
     }
 
-    private Tables4LabelsProfile collectTables4LabelsProfile (MetaConfig config) {
+    Tables4LabelsProfile collectTables4LabelsProfile (MetaConfig config) {
         Tables4LabelsProfile profile = new Tables4LabelsProfile();
 
         Schema schema = db.schema();
@@ -501,9 +545,6 @@ public class Meta {
         Set<String> includeLabels = config.getIncludesLabels();
         Set<String> excludes = config.getExcludes();
 
-		Set<String> includeRels = config.getIncludesRels();
-		Set<String> excludeRels = config.getExcludeRels();
-
         for (Label label : db.getAllLabelsInUse()) {
             String labelName = label.name();
 
@@ -521,20 +562,7 @@ public class Meta {
                     while (nodes.hasNext()) {
                         Node node = nodes.next();
                         if(count++ % sample == 0) {
-						    boolean skipNode = false;
-						    for (RelationshipType rel : node.getRelationshipTypes()) {
-							    String relName = rel.name();
-                                if (excludeRels.contains(relName)) {
-                                    // Skip if explicitly excluded
-                                    skipNode = true;
-                                } else if (!includeRels.isEmpty() && !includeRels.contains(relName)) {
-                                    // Skip if included set is specified and this is not in it.
-								    skipNode = true;
-							    }
-						    }
-						    if (skipNode != true) {
-                                profile.observe(node, config);
-						    }
+                            profile.observeUnlessExcluded(node, config);
                         }
                     }
                 }
@@ -545,40 +573,124 @@ public class Meta {
     }
 
     private Map<String, Map<String, MetaResult>> collectMetaData (MetaConfig config) {
-        Map<String,Map<String,MetaResult>> metaData = new LinkedHashMap<>(100);
+        if (config.isCached()) {
+            return MetaCache.get(api).metaData(config, () -> collectMetaSample(config));
+        }
+        return collectMetaSample(config).finished();
+    }
+
+    /**
+     * Samples the labels on the meta pool, each task collects a sample of its own that are merged in order at the end.
+     * Each label is scanned by a task of its own, large labels are sampled together at random ids of the node store,
+     * split into id ranges. The label counts are taken from the counts store.
+     */
+    MetaSample collectMetaSample(MetaConfig config) {
         Schema schema = db.schema();
+        MetaSample.SchemaInfo schemaInfo = new MetaSample.SchemaInfo();
+        MetaSample result = new MetaSample(schemaInfo);
 
-        Map<String, Iterable<ConstraintDefinition>> relConstraints = new HashMap<>(20);
         for (RelationshipType type : db.getAllRelationshipTypesInUse()) {
-            metaData.put(type.name(), new LinkedHashMap<>(10));
-            relConstraints.put(type.name(),schema.getConstraints(type));
+            result.metaData.put(type.name(), new LinkedHashMap<>(10));
+            schemaInfo.relConstraints.put(type.name(), Iterables.asList(schema.getConstraints(type)));
         }
         Map<String, Long> countStore = getLabelCountStore();
+        long highId = MultiThreadedGlobalGraphOperations.getHighestIdInUseForStore(api.getDependencyResolver(), MultiThreadedGlobalGraphOperations.GlobalOperationsTypes.NODES);
+        TokenRead tokenRead = kernelTx.tokenRead();
+        List<Label> scanned = new ArrayList<>();
+        Map<Integer, String> idSampled = new LinkedHashMap<>();
+        Map<Integer, Double> rates = new HashMap<>();
         for (Label label : db.getAllLabelsInUse()) {
-            Map<String,MetaResult> nodeMeta = new LinkedHashMap<>(50);
             String labelName = label.name();
-            metaData.put(labelName, nodeMeta);
-            Iterable<ConstraintDefinition> constraints = schema.getConstraints(label);
+            result.metaData.put(labelName, new LinkedHashMap<>(50));
+            schemaInfo.labelConstraints.put(labelName, Iterables.asList(schema.getConstraints(label)));
             Set<String> indexed = new LinkedHashSet<>();
             for (IndexDefinition index : schema.getIndexes(label)) {
                 for (String prop : index.getPropertyKeys()) {
                     indexed.add(prop);
                 }
             }
+            schemaInfo.indexed.put(labelName, indexed);
             long labelCount = countStore.get(labelName);
-            long sample = getSampleForLabelCount(labelCount, config.getSample());
-            try (ResourceIterator<Node> nodes = db.findNodes(label)) {
-                int count = 1;
-                while (nodes.hasNext()) {
-                    Node node = nodes.next();
-                    if(count++ % sample == 0) {
-                        addRelationships(metaData, nodeMeta, labelName, node, relConstraints);
-                        addProperties(nodeMeta, labelName, constraints, indexed, node, node);
+            // looking at every id with the rate finds about sample nodes of the label
+            double rate = (double) config.getSample() / labelCount;
+            if (config.getSample() != -1 && labelCount >= config.getIdSamplingMinCount() && rate * highId < labelCount) {
+                int labelId = tokenRead.nodeLabel(labelName);
+                idSampled.put(labelId, labelName);
+                rates.put(labelId, rate);
+            } else {
+                scanned.add(label);
+            }
+        }
+
+        ExecutorService pool = Pools.pool(Pools.META);
+        List<Future<MetaSample>> futures = new ArrayList<>();
+        for (Label label : scanned) {
+            String labelName = label.name();
+            long labelCount = countStore.get(labelName);
+            futures.add(Util.inTxFuture(pool, db, () -> {
+                MetaSample sample = new MetaSample(schemaInfo);
+                long skip = getSampleForLabelCount(labelCount, config.getSample());
+                try (ResourceIterator<Node> nodes = db.findNodes(label)) {
+                    int count = 1;
+                    while (nodes.hasNext()) {
+                        Node node = nodes.next();
+                        if(count++ % skip == 0) {
+                            sample.sample(node, labelName);
+                        }
                     }
                 }
+                return sample;
+            }));
+        }
+        if (!idSampled.isEmpty()) {
+            double maxRate = Collections.max(rates.values());
+            long rangeSize = Math.max(config.getIdRangeMinSize(), highId / (Pools.getNoThreadsInPool(Pools.META) * 4L) + 1);
+            ThreadToStatementContextBridge ctx = api.getDependencyResolver().resolveDependency(ThreadToStatementContextBridge.class);
+            for (long from = 0; from < highId; from += rangeSize) {
+                long start = from, end = Math.min(highId, from + rangeSize);
+                futures.add(Util.inTxFuture(pool, db, () ->
+                        sampleIdRange(ctx.getKernelTransactionBoundToThisThread(true), start, end, idSampled, rates, maxRate, schemaInfo)));
+            }
+        }
+
+        for (Future<MetaSample> future : futures) {
+            try {
+                result.merge(future.get());
+            } catch (InterruptedException | ExecutionException e) {
+                futures.forEach(f -> f.cancel(true));
+                throw new RuntimeException("Error sampling the meta data", e);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Looks at random ids of the range with the highest rate of the labels, a node is then sampled for each
+     * of its labels at the rate of that label.
+     */
+    private MetaSample sampleIdRange(KernelTransaction ktx, long from, long to, Map<Integer, String> labels, Map<Integer, Double> rates, double maxRate, MetaSample.SchemaInfo schemaInfo) {
+        MetaSample sample = new MetaSample(schemaInfo);
+        Random random = ThreadLocalRandom.current();
+        Read read = ktx.dataRead();
+        try (NodeCursor cursor = ktx.cursors().allocateNodeCursor()) {
+            for (long id = from + skip(random, maxRate); id < to; id += 1 + skip(random, maxRate)) {
+                read.singleNode(id, cursor);
+                if (!cursor.next()) continue;
+                Node node = null;
+                for (Map.Entry<Integer, String> label : labels.entrySet()) {
+                    if (!cursor.hasLabel(label.getKey()) || random.nextDouble() * maxRate >= rates.get(label.getKey())) continue;
+                    if (node == null) node = db.getNodeById(id);
+                    sample.sample(node, label.getValue());
+                }
             }
         }
-        return metaData;
+        return sample;
+    }
+
+    // the number of ids passed over before the next one, geometrically distributed so each id is looked at with the rate
+    private static long skip(Random random, double rate) {
+        if (rate >= 1) return 0;
+        return (long) (Math.log(1 - random.nextDouble()) / Math.log(1 - rate));
     }
 
     private Map<String, Long> getLabelCountStore() {
@@ -708,93 +820,6 @@ public class Meta {
         return relationships;
     }
 
-    private void addProperties(Map<String, MetaResult> properties, String labelName, Iterable<ConstraintDefinition> constraints, Set<String> indexed, PropertyContainer pc, Node node) {
-        for (String prop : pc.getPropertyKeys()) {
-            if (properties.containsKey(prop)) continue;
-            MetaResult res = metaResultForProp(pc, labelName, prop);
-            res.elementType(Types.of(pc).name());
-            addSchemaInfo(res, prop, constraints, indexed, node);
-            properties.put(prop,res);
-        }
-    }
-
-    private void addRelationships(Map<String, Map<String, MetaResult>> metaData, Map<String, MetaResult> nodeMeta, String labelName, Node node, Map<String, Iterable<ConstraintDefinition>> relConstraints) {
-        for (RelationshipType type : node.getRelationshipTypes()) {
-
-            int out = node.getDegree(type, Direction.OUTGOING);
-            if (out == 0) continue;
-
-            String typeName = type.name();
-
-            Iterable<ConstraintDefinition> constraints = relConstraints.get(typeName);
-            if (!nodeMeta.containsKey(typeName)) nodeMeta.put(typeName, new MetaResult(labelName,typeName));
-//            int in = node.getDegree(type, Direction.INCOMING);
-
-            Map<String, MetaResult> typeMeta = metaData.get(typeName);
-            if (!typeMeta.containsKey(labelName)) typeMeta.put(labelName,new MetaResult(typeName,labelName));
-            MetaResult relMeta = nodeMeta.get(typeName);
-            addOtherNodeInfo(node, labelName, out, type, relMeta , typeMeta, constraints);
-        }
-    }
-
-    private void addOtherNodeInfo(Node node, String labelName, int out, RelationshipType type, MetaResult relMeta, Map<String, MetaResult> typeMeta, Iterable<ConstraintDefinition> relConstraints) {
-        MetaResult relNodeMeta = typeMeta.get(labelName);
-        relMeta.elementType(Types.of(node).name());
-        for (Relationship rel : node.getRelationships(type, Direction.OUTGOING)) {
-            Node endNode = rel.getEndNode();
-            List<String> labels = toStrings(endNode.getLabels());
-            int in = endNode.getDegree(type, Direction.INCOMING);
-            relMeta.inc().other(labels).rel(out , in);
-            relNodeMeta.inc().other(labels).rel(out,in);
-            addProperties(typeMeta, type.name(), relConstraints, Collections.emptySet(), rel, node);
-            relNodeMeta.elementType(Types.RELATIONSHIP.name());
-        }
-    }
-
-    private void addSchemaInfo(MetaResult res, String prop, Iterable<ConstraintDefinition> constraints, Set<String> indexed, Node node) {
-
-        if (indexed.contains(prop)) {
-            res.index = true;
-        }
-        if (constraints == null) return;
-        for (ConstraintDefinition constraint : constraints) {
-            for (String key : constraint.getPropertyKeys()) {
-                if (key.equals(prop)) {
-                    switch (constraint.getConstraintType()) {
-                        case UNIQUENESS: res.unique = true;
-                            node.getLabels().forEach(l -> {
-                                if(res.label != l.name())
-                                    res.addLabel(l.name());
-                            });
-                            break;
-                        case NODE_PROPERTY_EXISTENCE:res.existence = true; break;
-                        case RELATIONSHIP_PROPERTY_EXISTENCE: res.existence = true; break;
-                    }
-                }
-            }
-        }
-    }
-
-    private MetaResult metaResultForProp(PropertyContainer pc, String labelName, String prop) {
-        MetaResult res = new MetaResult(labelName, prop);
-        Object value = pc.getProperty(prop);
-        res.type(Types.of(value).name());
-        res.elementType(Types.of(pc).name());
-        if (value.getClass().isArray()) {
-            res.array = true;
-        }
-        return res;
-    }
-
-    private List<String> toStrings(Iterable<Label> labels) {
-        List<String> res=new ArrayList<>(10);
-        for (Label label : labels) {
-            String name = label.name();
-            res.add(name);
-        }
-        return res;
-    }
-
     interface Sampler {
         void sample(Label label, int count, Node node);
         void sample(Label label, int count, Node node, RelationshipType type, Direction direction, int degree, Relationship rel);
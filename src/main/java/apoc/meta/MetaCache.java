@@ -0,0 +1,357 @@
+package apoc.meta;
+
+import apoc.ApocConfiguration;
+import apoc.util.Util;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.event.LabelEntry;
+import org.neo4j.graphdb.event.PropertyEntry;
+import org.neo4j.graphdb.event.TransactionData;
+import org.neo4j.graphdb.event.TransactionEventHandler;
+import org.neo4j.kernel.internal.GraphDatabaseAPI;
+import org.neo4j.logging.Log;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * Keeps the profiles of apoc.meta.data, apoc.meta.schema, apoc.meta.nodeTypeProperties and apoc.meta.relTypeProperties
+ * that are called with <code>{cached:true}</code>, so repeated calls don't sample the graph again.
+ *
+ * A profile is sampled on its first call and by apoc.meta.cache.refresh(). Commits only count their changes and mark
+ * the profiles as stale, which are then sampled again in the background, at most once per <code>refreshDelay</code>
+ * milliseconds. The readers keep reading the previous profile until the new one is complete.
+ */
+public class MetaCache implements TransactionEventHandler<Void> {
+
+    private static final String NOT_ENABLED_ERROR = "The meta data cache has not been enabled." +
+            " Set 'apoc.meta.cache.enabled=true' in your neo4j.conf file located in the $NEO4J_HOME/conf/ directory.";
+
+    private static final Map<GraphDatabaseService, MetaCache> caches = new ConcurrentHashMap<>();
+
+    enum Kind { DATA, TABLES_4_LABELS }
+
+    private final Log log;
+    // the samplers of the background refresh, they run in a transaction of their own
+    private final Function<MetaConfig, MetaSample> metaDataSampler;
+    private final Function<MetaConfig, Tables4LabelsProfile> tables4LabelsSampler;
+    // the milliseconds from the first change of a stale profile until it is sampled again
+    private final long refreshDelay;
+    private final ScheduledExecutorService refresher;
+    private final AtomicLong version = new AtomicLong();
+    private final Map<Map<String, Object>, Profile> profiles = new ConcurrentHashMap<>();
+
+    MetaCache(Log log, Function<MetaConfig, MetaSample> metaDataSampler, Function<MetaConfig, Tables4LabelsProfile> tables4LabelsSampler, long refreshDelay) {
+        this.log = log;
+        this.metaDataSampler = metaDataSampler;
+        this.tables4LabelsSampler = tables4LabelsSampler;
+        this.refreshDelay = refreshDelay;
+        // a single thread, so the profiles are sampled one after the other and not on the pools the sampling itself uses
+        this.refresher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "apoc-meta-cache-refresh");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public static MetaCache get(GraphDatabaseService db) {
+        MetaCache cache = caches.get(db);
+        if (cache == null) {
+            throw new RuntimeException(NOT_ENABLED_ERROR);
+        }
+        return cache;
+    }
+
+    /**
+     * The sampled profile of a procedure and config, with the counts of the changes committed since it was sampled.
+     */
+    static class Profile {
+        final Kind kind;
+        final MetaConfig config;
+        private final ReentrantLock sampling = new ReentrantLock();
+        private MetaSample metaData;
+        private Tables4LabelsProfile tables4Labels;
+        private boolean refreshScheduled;
+        long builtVersion = -1;
+        long version = -1;
+        long builtAt;
+        long changedAt;
+        long changedNodes;
+        long changedRelationships;
+        long removals;
+
+        Profile(Kind kind, MetaConfig config) {
+            this.kind = kind;
+            this.config = config;
+        }
+
+        synchronized boolean isBuilt() {
+            return builtVersion != -1;
+        }
+
+        synchronized boolean isStale() {
+            return isBuilt() && version > builtVersion;
+        }
+
+        synchronized void changed(Changes changes, long version) {
+            this.version = version;
+            this.changedAt = System.currentTimeMillis();
+            changedNodes += changes.nodes;
+            changedRelationships += changes.relationships;
+            removals += changes.removals;
+        }
+
+        /**
+         * marks the refresh as scheduled, returns false if it already was
+         */
+        synchronized boolean scheduleRefresh() {
+            if (refreshScheduled) return false;
+            refreshScheduled = true;
+            return true;
+        }
+
+        synchronized void refreshStarted() {
+            refreshScheduled = false;
+        }
+
+        /**
+         * samples the profile, the readers keep reading the previous profile until the new one is complete.
+         * The changes committed while sampling stay counted, as the sample may or may not contain them.
+         */
+        void build(MetaCache cache, Supplier<?> sampler, boolean refresh) {
+            sampling.lock();
+            try {
+                if (isBuilt() && !refresh) return;
+                long startVersion;
+                synchronized (this) {
+                    startVersion = cache.version.get();
+                    changedNodes = changedRelationships = removals = 0;
+                }
+                Object sample = sampler.get();
+                synchronized (this) {
+                    if (kind == Kind.DATA) {
+                        metaData = (MetaSample) sample;
+                    } else {
+                        tables4Labels = (Tables4LabelsProfile) sample;
+                    }
+                    builtVersion = startVersion;
+                    version = Math.max(version, startVersion);
+                    builtAt = System.currentTimeMillis();
+                }
+            } finally {
+                sampling.unlock();
+            }
+        }
+
+        synchronized Map<String, Map<String, Meta.MetaResult>> metaData() {
+            return metaData.copy().finished();
+        }
+
+        synchronized <T> T tables4Labels(Function<Tables4LabelsProfile, T> reader) {
+            return reader.apply(tables4Labels);
+        }
+
+        synchronized CacheStats stats() {
+            return new CacheStats(kind == Kind.DATA ? "apoc.meta.data, apoc.meta.schema" : "apoc.meta.nodeTypeProperties, apoc.meta.relTypeProperties",
+                    config.getConfig(), version, builtVersion, builtAt, changedAt, changedNodes, changedRelationships, removals, refreshScheduled);
+        }
+    }
+
+    public static class CacheStats {
+        public final String procedures;
+        public final Map<String, Object> config;
+        public final long version;
+        public final long builtVersion;
+        public final long transactions; // the transactions committed since the profile was sampled
+        public final long builtAt;
+        public final long changedAt;
+        public final long age;
+        public final long changedNodes;
+        public final long changedRelationships;
+        public final long removals;
+        public final boolean refreshScheduled;
+
+        public CacheStats(String procedures, Map<String, Object> config, long version, long builtVersion, long builtAt, long changedAt, long changedNodes, long changedRelationships, long removals, boolean refreshScheduled) {
+            this.procedures = procedures;
+            this.config = config;
+            this.version = version;
+            this.builtVersion = builtVersion;
+            this.transactions = Math.max(0, version - builtVersion);
+            this.builtAt = builtAt;
+            this.changedAt = changedAt;
+            this.age = System.currentTimeMillis() - builtAt;
+            this.changedNodes = changedNodes;
+            this.changedRelationships = changedRelationships;
+            this.removals = removals;
+            this.refreshScheduled = refreshScheduled;
+        }
+    }
+
+    /**
+     * The counts of the entities a transaction created, changed or removed.
+     */
+    static class Changes {
+        long nodes;
+        long relationships;
+        long removals;
+
+        boolean isEmpty() {
+            return nodes == 0 && relationships == 0 && removals == 0;
+        }
+    }
+
+    private Profile profile(Kind kind, MetaConfig config) {
+        // the profile of apoc.meta.data and apoc.meta.schema depends only on the sample
+        MetaConfig key = kind == Kind.DATA ? new MetaConfig(Collections.singletonMap("sample", config.getSample())) : config;
+        Map<String, Object> mapKey = new HashMap<>(key.getConfig());
+        mapKey.put("kind", kind.name());
+        return profiles.computeIfAbsent(mapKey, (k) -> new Profile(kind, key));
+    }
+
+    Map<String, Map<String, Meta.MetaResult>> metaData(MetaConfig config, Supplier<MetaSample> sampler) {
+        Profile profile = profile(Kind.DATA, config);
+        build(profile, sampler);
+        return profile.metaData();
+    }
+
+    <T> T tables4Labels(MetaConfig config, Supplier<Tables4LabelsProfile> sampler, Function<Tables4LabelsProfile, T> reader) {
+        Profile profile = profile(Kind.TABLES_4_LABELS, config);
+        build(profile, sampler);
+        return profile.tables4Labels(reader);
+    }
+
+    private void build(Profile profile, Supplier<?> sampler) {
+        profile.build(this, sampler, false);
+        // transactions committed during the first sampling may be missing from it
+        if (profile.isStale()) scheduleRefresh(profile);
+    }
+
+    /**
+     * samples all profiles again with the given samplers
+     */
+    Stream<CacheStats> refresh(Function<MetaConfig, MetaSample> metaData, Function<MetaConfig, Tables4LabelsProfile> tables4Labels) {
+        List<CacheStats> stats = new ArrayList<>(profiles.size());
+        for (Profile profile : profiles.values()) {
+            profile.build(this, sampler(profile, metaData, tables4Labels), true);
+            stats.add(profile.stats());
+        }
+        return stats.stream();
+    }
+
+    private static Supplier<?> sampler(Profile profile, Function<MetaConfig, MetaSample> metaData, Function<MetaConfig, Tables4LabelsProfile> tables4Labels) {
+        return profile.kind == Kind.DATA ?
+                () -> metaData.apply(profile.config) :
+                () -> tables4Labels.apply(profile.config);
+    }
+
+    private void scheduleRefresh(Profile profile) {
+        if (!profile.scheduleRefresh()) return;
+        try {
+            refresher.schedule(() -> {
+                profile.refreshStarted();
+                if (!profile.isStale()) return;
+                try {
+                    profile.build(this, sampler(profile, metaDataSampler, tables4LabelsSampler), true);
+                } catch (Exception e) {
+                    log.warn("Error refreshing the cached meta data of " + profile.config.getConfig(), e);
+                }
+                if (profile.isStale()) scheduleRefresh(profile);
+            }, refreshDelay, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // the cache was stopped
+            profile.refreshStarted();
+        }
+    }
+
+    Stream<CacheStats> stats() {
+        return profiles.values().stream().map(Profile::stats);
+    }
+
+    @Override
+    public Void beforeCommit(TransactionData data) {
+        return null;
+    }
+
+    private static long count(Iterable<?> entries) {
+        long count = 0;
+        for (Object ignored : entries) count++;
+        return count;
+    }
+
+    /**
+     * Counts the changes of the transaction and schedules the refresh of the profiles, the sampling itself runs
+     * in the background so the committing thread doesn't walk the changed nodes and their relationships.
+     */
+    @Override
+    public void afterCommit(TransactionData data, Void state) {
+        if (profiles.isEmpty()) return;
+        Set<Long> nodes = new HashSet<>();
+        for (Node node : data.createdNodes()) nodes.add(node.getId());
+        for (LabelEntry entry : data.assignedLabels()) nodes.add(entry.node().getId());
+        for (PropertyEntry<Node> entry : data.assignedNodeProperties()) nodes.add(entry.entity().getId());
+        Set<Long> relationships = new HashSet<>();
+        for (Relationship rel : data.createdRelationships()) relationships.add(rel.getId());
+        for (PropertyEntry<Relationship> entry : data.assignedRelationshipProperties()) relationships.add(entry.entity().getId());
+        Changes changes = new Changes();
+        changes.nodes = nodes.size();
+        changes.relationships = relationships.size();
+        changes.removals = count(data.deletedNodes()) + count(data.deletedRelationships()) + count(data.removedLabels())
+                + count(data.removedNodeProperties()) + count(data.removedRelationshipProperties());
+        if (changes.isEmpty()) return;
+
+        long version = this.version.incrementAndGet();
+        for (Profile profile : profiles.values()) {
+            try {
+                profile.changed(changes, version);
+                if (profile.isBuilt()) scheduleRefresh(profile);
+            } catch (Exception e) {
+                log.warn("Error updating the cached meta data of " + profile.config.getConfig(), e);
+            }
+        }
+    }
+
+    @Override
+    public void afterRollback(TransactionData data, Void state) {
+    }
+
+    public static class LifeCycle {
+        private final GraphDatabaseAPI db;
+        private final Log log;
+        private MetaCache cache;
+
+        public LifeCycle(GraphDatabaseAPI db, Log log) {
+            this.db = db;
+            this.log = log;
+        }
+
+        public void start() {
+            boolean enabled = Util.toBoolean(ApocConfiguration.get("meta.cache.enabled", null));
+            if (!enabled) {
+                return;
+            }
+            cache = new MetaCache(log,
+                    (config) -> Meta.inNewTransaction(db, log, (meta) -> meta.collectMetaSample(config)),
+                    (config) -> Meta.inNewTransaction(db, log, (meta) -> meta.collectTables4LabelsProfile(config)),
+                    Util.toLong(ApocConfiguration.get("meta.cache.refreshDelay", 10_000)));
+            caches.put(db, cache);
+            db.registerTransactionEventHandler(cache);
+        }
+
+        public void stop() {
+            if (cache == null) return;
+            db.unregisterTransactionEventHandler(cache);
+            caches.remove(db);
+            cache.refresher.shutdownNow();
+        }
+    }
+}
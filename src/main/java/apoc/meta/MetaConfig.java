@@ -14,6 +14,10 @@ public class MetaConfig {
 	private Set<String> excludeRels;
     private long maxRels;
     private long sample;
+    private long idSamplingMinCount;
+    private long idRangeMinSize;
+    private boolean cached;
+    private Map<String,Object> config;
 
     /**
      * A map of values, with the following keys and meanings.
@@ -28,6 +32,10 @@ public class MetaConfig {
      * every 1000th node will be examined.  It does **not** mean that a total of 1000 nodes
      * will be sampled.
      * - maxRels: the maximum number of relationships of a given type to look at.
+     * - cached: true to read the profile kept up to date by the meta data cache, instead of sampling the graph.
+     * - idSamplingMinCount: labels with at least this many nodes are sampled at random ids of the node store instead of a label scan,
+     * when that looks at fewer nodes.
+     * - idRangeMinSize: the smallest range of node ids that is sampled by one task.
      * @param config
      */
     public MetaConfig(Map<String,Object> config) {
@@ -55,6 +63,11 @@ public class MetaConfig {
 		this.excludeRels = new HashSet<>((Collection<String>)config.getOrDefault("excludeRels",Collections.EMPTY_SET));
         this.sample = (long) config.getOrDefault("sample", 1000L);
         this.maxRels = (long) config.getOrDefault("maxRels", 100L);
+        this.idSamplingMinCount = (long) config.getOrDefault("idSamplingMinCount", 1_000_000L);
+        this.idRangeMinSize = (long) config.getOrDefault("idRangeMinSize", 100_000L);
+        this.cached = (boolean) config.getOrDefault("cached", false);
+        this.config = new HashMap<>(config);
+        this.config.remove("cached");
     }
 
     public Set<String> getIncludesLabels() {
@@ -129,4 +142,23 @@ public class MetaConfig {
     public long getMaxRels() {
         return maxRels;
     }
+
+    public long getIdSamplingMinCount() {
+        return idSamplingMinCount;
+    }
+
+    public long getIdRangeMinSize() {
+        return idRangeMinSize;
+    }
+
+    public boolean isCached() {
+        return cached;
+    }
+
+    /**
+     * @return the config without the cached flag, the key of the cached profile
+     */
+    public Map<String, Object> getConfig() {
+        return config;
+    }
 }
@@ -0,0 +1,226 @@
+package apoc.meta;
+
+import apoc.meta.Meta.MetaResult;
+import apoc.meta.Meta.Types;
+import org.neo4j.graphdb.*;
+import org.neo4j.graphdb.schema.ConstraintDefinition;
+
+import java.util.*;
+
+/**
+ * The meta data of the nodes sampled by one task of apoc.meta.data and apoc.meta.schema.
+ *
+ * Each task fills a sample of its own, the samples are merged in a fixed order at the end,
+ * so the entries and properties are listed in the order they are first seen, like a single threaded scan would.
+ * The types seen for each property are counted, the type seen most often is reported with its share of the values as confidence.
+ */
+class MetaSample {
+    /**
+     * the constraints and indexes of the labels and relationship types, read once before sampling
+     */
+    static class SchemaInfo {
+        final Map<String, List<ConstraintDefinition>> labelConstraints = new HashMap<>();
+        final Map<String, Set<String>> indexed = new HashMap<>();
+        final Map<String, List<ConstraintDefinition>> relConstraints = new HashMap<>();
+    }
+
+    final SchemaInfo schema;
+    final Map<String, Map<String, MetaResult>> metaData = new LinkedHashMap<>(100);
+    // the number of values of each type, for the property results
+    private final Map<MetaResult, Map<String, Long>> types = new IdentityHashMap<>();
+
+    MetaSample(SchemaInfo schema) {
+        this.schema = schema;
+    }
+
+    private Map<String, MetaResult> entity(String name) {
+        return metaData.computeIfAbsent(name, (key) -> new LinkedHashMap<>(50));
+    }
+
+    void sample(Node node, String labelName) {
+        Map<String, MetaResult> nodeMeta = entity(labelName);
+        addRelationships(nodeMeta, labelName, node);
+        addProperties(nodeMeta, labelName, schema.labelConstraints.get(labelName), schema.indexed.getOrDefault(labelName, Collections.emptySet()), node, node);
+    }
+
+    private void addProperties(Map<String, MetaResult> properties, String labelName, Iterable<ConstraintDefinition> constraints, Set<String> indexed, PropertyContainer pc, Node node) {
+        for (Map.Entry<String, Object> prop : pc.getAllProperties().entrySet()) {
+            String key = prop.getKey();
+            MetaResult res = properties.get(key);
+            if (res == null) {
+                res = new MetaResult(labelName, key);
+                res.elementType(Types.of(pc).name());
+                addSchemaInfo(res, key, constraints, indexed, node);
+                properties.put(key, res);
+                types.put(res, new LinkedHashMap<>(4));
+            }
+            Map<String, Long> counts = types.get(res);
+            // the relationship results of a node share the map with its properties
+            if (counts != null) counts.merge(Types.of(prop.getValue()).name(), 1L, Long::sum);
+        }
+    }
+
+    private void addRelationships(Map<String, MetaResult> nodeMeta, String labelName, Node node) {
+        for (RelationshipType type : node.getRelationshipTypes()) {
+
+            int out = node.getDegree(type, Direction.OUTGOING);
+            if (out == 0) continue;
+
+            String typeName = type.name();
+
+            Iterable<ConstraintDefinition> constraints = schema.relConstraints.get(typeName);
+            if (!nodeMeta.containsKey(typeName)) nodeMeta.put(typeName, new MetaResult(labelName,typeName));
+
+            Map<String, MetaResult> typeMeta = entity(typeName);
+            if (!typeMeta.containsKey(labelName)) typeMeta.put(labelName,new MetaResult(typeName,labelName));
+            MetaResult relMeta = nodeMeta.get(typeName);
+            addOtherNodeInfo(node, labelName, out, type, relMeta , typeMeta, constraints);
+        }
+    }
+
+    private void addOtherNodeInfo(Node node, String labelName, int out, RelationshipType type, MetaResult relMeta, Map<String, MetaResult> typeMeta, Iterable<ConstraintDefinition> relConstraints) {
+        MetaResult relNodeMeta = typeMeta.get(labelName);
+        relMeta.elementType(Types.of(node).name());
+        for (Relationship rel : node.getRelationships(type, Direction.OUTGOING)) {
+            Node endNode = rel.getEndNode();
+            List<String> labels = toStrings(endNode.getLabels());
+            int in = endNode.getDegree(type, Direction.INCOMING);
+            relMeta.inc().other(labels).rel(out , in);
+            relNodeMeta.inc().other(labels).rel(out,in);
+            addProperties(typeMeta, type.name(), relConstraints, Collections.emptySet(), rel, node);
+            relNodeMeta.elementType(Types.RELATIONSHIP.name());
+        }
+    }
+
+    private void addSchemaInfo(MetaResult res, String prop, Iterable<ConstraintDefinition> constraints, Set<String> indexed, Node node) {
+
+        if (indexed.contains(prop)) {
+            res.index = true;
+        }
+        if (constraints == null) return;
+        for (ConstraintDefinition constraint : constraints) {
+            for (String key : constraint.getPropertyKeys()) {
+                if (key.equals(prop)) {
+                    switch (constraint.getConstraintType()) {
+                        case UNIQUENESS: res.unique = true;
+                            node.getLabels().forEach(l -> {
+                                if(res.label != l.name())
+                                    res.addLabel(l.name());
+                            });
+                            break;
+                        case NODE_PROPERTY_EXISTENCE:res.existence = true; break;
+                        case RELATIONSHIP_PROPERTY_EXISTENCE: res.existence = true; break;
+                    }
+                }
+            }
+        }
+    }
+
+    private List<String> toStrings(Iterable<Label> labels) {
+        List<String> res=new ArrayList<>(10);
+        for (Label label : labels) {
+            String name = label.name();
+            res.add(name);
+        }
+        return res;
+    }
+
+    /**
+     * adds the results of another task, the results that this sample doesn't have yet are taken over
+     */
+    void merge(MetaSample other) {
+        other.metaData.forEach((name, results) -> {
+            Map<String, MetaResult> target = entity(name);
+            results.forEach((key, res) -> {
+                MetaResult existing = target.get(key);
+                Map<String, Long> counts = other.types.get(res);
+                if (existing == null) {
+                    target.put(key, res);
+                    if (counts != null) types.put(res, counts);
+                } else {
+                    merge(existing, res);
+                    Map<String, Long> existingCounts = types.get(existing);
+                    if (existingCounts != null && counts != null) {
+                        counts.forEach((type, count) -> existingCounts.merge(type, count, Long::sum));
+                    }
+                }
+            });
+        });
+    }
+
+    /**
+     * @return a copy that doesn't share any results with this sample
+     */
+    MetaSample copy() {
+        MetaSample copy = new MetaSample(schema);
+        metaData.forEach((name, results) -> {
+            Map<String, MetaResult> target = copy.entity(name);
+            results.forEach((key, res) -> {
+                MetaResult result = copy(res);
+                target.put(key, result);
+                Map<String, Long> counts = types.get(res);
+                if (counts != null) copy.types.put(result, new LinkedHashMap<>(counts));
+            });
+        });
+        return copy;
+    }
+
+    private static MetaResult copy(MetaResult res) {
+        MetaResult copy = new MetaResult(res.label, res.property);
+        copy.count = res.count;
+        copy.unique = res.unique;
+        copy.index = res.index;
+        copy.existence = res.existence;
+        copy.type = res.type;
+        copy.array = res.array;
+        copy.sample = res.sample;
+        copy.leftCount = res.leftCount;
+        copy.rightCount = res.rightCount;
+        copy.left = res.left;
+        copy.right = res.right;
+        copy.other.addAll(res.other);
+        copy.otherLabels.addAll(res.otherLabels);
+        copy.elementType = res.elementType;
+        copy.confidence = res.confidence;
+        return copy;
+    }
+
+    private static void merge(MetaResult target, MetaResult source) {
+        target.count += source.count;
+        target.leftCount += source.leftCount;
+        target.rightCount += source.rightCount;
+        if (target.count > 0) {
+            target.left = target.leftCount / target.count;
+            target.right = target.rightCount / target.count;
+        }
+        target.array |= source.array;
+        target.other(source.other);
+        for (String label : source.otherLabels) {
+            if (!target.otherLabels.contains(label)) target.otherLabels.add(label);
+        }
+        if (target.type == null) target.type = source.type;
+        if (target.elementType == null) target.elementType = source.elementType;
+    }
+
+    /**
+     * sets the type seen most often for each property, and the share of its values as confidence
+     */
+    Map<String, Map<String, MetaResult>> finished() {
+        types.forEach((res, counts) -> {
+            long total = 0, max = 0;
+            String type = null;
+            for (Map.Entry<String, Long> entry : counts.entrySet()) {
+                total += entry.getValue();
+                if (entry.getValue() > max) {
+                    max = entry.getValue();
+                    type = entry.getKey();
+                }
+            }
+            if (type == null) return;
+            res.type(type);
+            res.array(Types.LIST.name().equals(type));
+            res.confidence = (double) max / total;
+        });
+        return metaData;
+    }
+}
@@ -167,6 +167,28 @@ public class Tables4LabelsProfile {
         }
     }
 
+    /**
+     * Observes the node, unless it has relationships of types that are excluded or not included by the config.
+     */
+    public void observeUnlessExcluded(Node node, MetaConfig config) {
+        Set<String> includeRels = config.getIncludesRels();
+        Set<String> excludeRels = config.getExcludeRels();
+        boolean skipNode = false;
+        for (RelationshipType rel : node.getRelationshipTypes()) {
+            String relName = rel.name();
+            if (excludeRels.contains(relName)) {
+                // Skip if explicitly excluded
+                skipNode = true;
+            } else if (!includeRels.isEmpty() && !includeRels.contains(relName)) {
+                // Skip if included set is specified and this is not in it.
+                skipNode = true;
+            }
+        }
+        if (skipNode != true) {
+            observe(node, config);
+        }
+    }
+
     public void observe(Node n, MetaConfig config) {
         OrderedLabels labels = new OrderedLabels(n.getLabels());
         PropertyContainerProfile localNodeProfile = getNodeProfile(labels);
@@ -220,6 +242,16 @@ public class Tables4LabelsProfile {
         }
     }
 
+    /**
+     * adds the observations of another profile, e.g. of the nodes changed by a transaction
+     */
+    public void merge(Tables4LabelsProfile other) {
+        other.labelMap.forEach((labels, profile) -> getNodeProfile(labels).merge(profile));
+        other.relMap.forEach((relType, profile) -> getRelProfile(relType).merge(profile));
+        other.obsByNode.forEach((labels, count) -> obsByNode.merge(labels, count, Long::sum));
+        other.obsByRelType.forEach((relType, count) -> obsByRelType.merge(relType, count, Long::sum));
+    }
+
     public Tables4LabelsProfile finished() {
         for (PropertyContainerProfile prof : labelMap.values()) {
             prof.finished();
@@ -24,6 +24,12 @@ public class PropertyTracker {
         types.add(assignTypeName(value));
     }
 
+    public void merge(PropertyTracker other) {
+        observations += other.observations;
+        nulls += other.nulls;
+        types.addAll(other.types);
+    }
+
     private String assignTypeName(Object value) {
         String typeName = value.getClass().getCanonicalName();
         if (typeMappings.containsKey(typeName)) {
@@ -4,6 +4,7 @@ import apoc.result.LongResult;
 import apoc.result.MapResult;
 import apoc.util.MissingDependencyException;
 import apoc.util.UrlResolver;
+import apoc.util.Util;
 import org.neo4j.logging.Log;
 import org.neo4j.procedure.Context;
 import org.neo4j.procedure.Description;
@@ -11,6 +12,7 @@ import org.neo4j.procedure.Name;
 import org.neo4j.procedure.Procedure;
 
 import java.io.Closeable;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.function.Consumer;
@@ -52,7 +54,7 @@ public class MongoDB {
 
     @Deprecated
     @Procedure
-    @Description("apoc.mongodb.get(host-or-key,db,collection,query,[compatibleValues=false|true],skip-or-null,limit-or-null,[extractReferences=false|true],[objectIdAsMap=true|false]) yield value - perform a find operation on mongodb collection")
+    @Description("apoc.mongodb.get(host-or-key,db,collection,query,[compatibleValues=false|true],skip-or-null,limit-or-null,[extractReferences=false|true],[objectIdAsMap=true|false],[batchSize]) yield value - perform a find operation on mongodb collection")
     public Stream<MapResult> get(@Name("host") String hostOrKey,
                                  @Name("db") String db,
                                  @Name("collection") String collection,
@@ -61,9 +63,10 @@ public class MongoDB {
                                  @Name(value = "skip", defaultValue = "0") Long skip,
                                  @Name(value = "limit", defaultValue = "0") Long limit,
                                  @Name(value = "extractReferences", defaultValue = "false") boolean extractReferences,
-                                 @Name(value = "objectIdAsMap", defaultValue = "true") boolean objectIdAsMap) {
+                                 @Name(value = "objectIdAsMap", defaultValue = "true") boolean objectIdAsMap,
+                                 @Name(value = "batchSize", defaultValue = "0") Long batchSize) {
         return executeMongoQuery(hostOrKey, db, collection, compatibleValues,
-                extractReferences, objectIdAsMap, coll -> coll.all(query, skip, limit).map(MapResult::new),
+                extractReferences, objectIdAsMap, coll -> coll.all(query, skip, limit, batchSize.intValue()).map(MapResult::new),
                 e -> log.error("apoc.mongodb.get - hostOrKey = [" + hostOrKey + "], db = [" + db + "], collection = [" + collection + "], query = [" + query + "], compatibleValues = [" + compatibleValues + "], skip = [" + skip + "], limit = [" + limit + "]", e));
     }
 
@@ -103,7 +106,7 @@ public class MongoDB {
 
     @Deprecated
     @Procedure
-    @Description("apoc.mongodb.find(host-or-key,db,collection,query,projection,sort,[compatibleValues=false|true],skip-or-null,limit-or-null,[extractReferences=false|true],[objectIdAsMap=true|false]) yield value - perform a find,project,sort operation on mongodb collection")
+    @Description("apoc.mongodb.find(host-or-key,db,collection,query,projection,sort,[compatibleValues=false|true],skip-or-null,limit-or-null,[extractReferences=false|true],[objectIdAsMap=true|false],[batchSize]) yield value - perform a find,project,sort operation on mongodb collection")
     public Stream<MapResult> find(@Name("host") String hostOrKey,
                                   @Name("db") String db,
                                   @Name("collection") String collection,
@@ -114,24 +117,39 @@ public class MongoDB {
                                   @Name(value = "skip", defaultValue = "0") Long skip,
                                   @Name(value = "limit", defaultValue = "0") Long limit,
                                   @Name(value = "extractReferences", defaultValue = "false") boolean extractReferences,
-                                  @Name(value = "objectIdAsMap", defaultValue = "true") boolean objectIdAsMap) {
+                                  @Name(value = "objectIdAsMap", defaultValue = "true") boolean objectIdAsMap,
+                                  @Name(value = "batchSize", defaultValue = "0") Long batchSize) {
         return executeMongoQuery(hostOrKey, db, collection, compatibleValues,
-                extractReferences, objectIdAsMap, coll -> coll.find(query, project, sort, skip, limit).map(MapResult::new),
+                extractReferences, objectIdAsMap, coll -> coll.find(query, project, sort, skip, limit, batchSize.intValue()).map(MapResult::new),
                 e -> log.error("apoc.mongodb.find - hostOrKey = [" + hostOrKey + "], db = [" + db + "], collection = [" + collection + "], query = [" + query + "], project = [" + project + "], sort = [" + sort + "], compatibleValues = [" + compatibleValues + "], skip = [" + skip + "], limit = [" + limit + "]",e));
     }
 
     @Deprecated
     @Procedure
-    @Description("apoc.mongodb.insert(host-or-key,db,collection,documents) - inserts the given documents into the mongodb collection")
-    public void insert(@Name("host") String hostOrKey, @Name("db") String db, @Name("collection") String collection, @Name("documents") List<Map<String, Object>> documents) {
+    @Description("apoc.mongodb.insert(host-or-key,db,collection,documents,[batchSize=1000]) - inserts the given documents into the mongodb collection, batchSize of them per round trip")
+    public void insert(@Name("host") String hostOrKey, @Name("db") String db, @Name("collection") String collection, @Name("documents") List<Map<String, Object>> documents,
+                       @Name(value = "batchSize", defaultValue = "1000") Long batchSize) {
         try (Coll coll = getMongoColl(hostOrKey, db, collection, false, false, false)) {
-            coll.insert(documents);
+            coll.insert(documents, Math.max(1, batchSize.intValue()));
         } catch (Exception e) {
             log.error("apoc.mongodb.insert - hostOrKey = [" + hostOrKey + "], db = [" + db + "], collection = [" + collection + "], documents = [" + documents + "]",e);
             throw new RuntimeException(e);
         }
     }
 
+    @Procedure
+    @Description("apoc.mongodb.bulk(host-or-key,db,collection,documents,{keys:['_id'],batchSize:1000,ordered:false}) yield value - upserts the documents by their keys, batchSize of them per unordered bulk write, and returns the write counts")
+    public Stream<MapResult> bulk(@Name("host") String hostOrKey, @Name("db") String db, @Name("collection") String collection, @Name("documents") List<Map<String, Object>> documents,
+                                  @Name(value = "config", defaultValue = "{}") Map<String, Object> config) {
+        Object keys = config.getOrDefault("keys", Collections.singletonList("_id"));
+        List<String> keyList = keys instanceof List ? (List<String>) keys : Collections.singletonList(keys.toString());
+        int batchSize = Math.max(1, Util.toInteger(config.getOrDefault("batchSize", 1000)));
+        boolean ordered = Util.toBoolean(config.getOrDefault("ordered", false));
+        return executeMongoQuery(hostOrKey, db, collection, false,
+                false, false, coll -> Stream.of(new MapResult(coll.bulk(documents, keyList, batchSize, ordered))),
+                e -> log.error("apoc.mongodb.bulk - hostOrKey = [" + hostOrKey + "], db = [" + db + "], collection = [" + collection + "], config = [" + config + "]",e));
+    }
+
     @Deprecated
     @Procedure
     @Description("apoc.mongodb.delete(host-or-key,db,collection,query) - delete the given documents from the mongodb collection and returns the number of affected documents")
@@ -178,13 +196,15 @@ public class MongoDB {
     interface Coll extends Closeable {
         Map<String, Object> first(Map<String, Object> params);
 
-        Stream<Map<String, Object>> all(Map<String, Object> query, Long skip, Long limit);
+        Stream<Map<String, Object>> all(Map<String, Object> query, Long skip, Long limit, int batchSize);
 
         long count(Map<String, Object> query);
 
-        Stream<Map<String, Object>> find(Map<String, Object> query, Map<String, Object> project, Map<String, Object> sort, Long skip, Long limit);
+        Stream<Map<String, Object>> find(Map<String, Object> query, Map<String, Object> project, Map<String, Object> sort, Long skip, Long limit, int batchSize);
+
+        void insert(List<Map<String, Object>> docs, int batchSize);
 
-        void insert(List<Map<String, Object>> docs);
+        Map<String, Object> bulk(List<Map<String, Object>> docs, List<String> keys, int batchSize, boolean ordered);
 
         long update(Map<String, Object> query, Map<String, Object> update);
 
@@ -0,0 +1,37 @@
+package apoc.mongodb;
+
+import com.mongodb.MongoClient;
+import com.mongodb.MongoClientURI;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The clients of apoc.mongodb.*, one per connection string for the whole process.
+ *
+ * A MongoClient holds a connection pool and monitors the servers, creating one per call made each call
+ * connect and discover the servers again. The pool is configured with the options of the connection string,
+ * e.g. <code>mongodb://host/?maxPoolSize=50&amp;maxIdleTimeMS=60000</code>.
+ */
+class MongoDBClients {
+
+    private static final Map<String, MongoClient> clients = new ConcurrentHashMap<>();
+
+    static {
+        Runtime.getRuntime().addShutdownHook(new Thread(MongoDBClients::closeAll));
+    }
+
+    private MongoDBClients() {
+    }
+
+    static MongoClient get(String url) {
+        return clients.computeIfAbsent(url, (key) -> new MongoClient(new MongoClientURI(key)));
+    }
+
+    static void closeAll() {
+        for (String url : clients.keySet()) {
+            MongoClient client = clients.remove(url);
+            if (client != null) client.close();
+        }
+    }
+}
@@ -3,10 +3,16 @@ package apoc.mongodb;
 import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.mongodb.MongoClient;
-import com.mongodb.MongoClientURI;
+import com.mongodb.bulk.BulkWriteResult;
 import com.mongodb.client.FindIterable;
 import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoCursor;
 import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.InsertOneModel;
+import com.mongodb.client.model.ReplaceOneModel;
+import com.mongodb.client.model.UpdateOptions;
+import com.mongodb.client.model.WriteModel;
 import com.mongodb.client.result.DeleteResult;
 import com.mongodb.client.result.UpdateResult;
 import org.bson.Document;
@@ -30,16 +36,13 @@ class MongoDBColl implements MongoDB.Coll {
     private static final ObjectMapper jsonMapper = new ObjectMapper().enable(DeserializationFeature.USE_LONG_FOR_INTS);
     public static final String ID = "_id";
     private final MongoCollection<Document> collection;
-    private final MongoClient mongoClient;
     private boolean compatibleValues = false;
-    private boolean doorStop = false;
     private final MongoDatabase database;
     private boolean extractReferences = false;
     private boolean objectIdAsMap = true;
 
     public MongoDBColl(String url, String db, String coll) {
-        MongoClientURI connectionString = new MongoClientURI(url);
-        mongoClient = new MongoClient(connectionString);
+        MongoClient mongoClient = MongoDBClients.get(url);
         database = mongoClient.getDatabase(db);
         collection = database.getCollection(coll);
     }
@@ -59,10 +62,11 @@ class MongoDBColl implements MongoDB.Coll {
         this.objectIdAsMap = objectIdAsMap;
     }
 
+    /**
+     * the client is shared and stays open, the cursors are closed by their streams
+     */
     @Override
     public void close() throws IOException {
-        if (doorStop) return;
-        mongoClient.close();
     }
 
     /**
@@ -152,10 +156,11 @@ class MongoDBColl implements MongoDB.Coll {
     }
 
     @Override
-    public Stream<Map<String, Object>> all(Map<String, Object> query, Long skip, Long limit) {
+    public Stream<Map<String, Object>> all(Map<String, Object> query, Long skip, Long limit, int batchSize) {
         FindIterable<Document> documents = query == null ? collection.find() : collection.find(new Document(query));
         if (skip != 0) documents = documents.skip(skip.intValue());
         if (limit != 0) documents = documents.limit(limit.intValue());
+        if (batchSize > 0) documents = documents.batchSize(batchSize);
         return asStream(documents);
     }
 
@@ -165,32 +170,64 @@ class MongoDBColl implements MongoDB.Coll {
     }
 
     private Stream<Map<String, Object>> asStream(FindIterable<Document> result) {
-        this.doorStop = true;
-        Iterable<Document> it = () -> result.iterator();
+        MongoCursor<Document> cursor = result.iterator();
         return StreamSupport
-                .stream(it.spliterator(), false)
+                .stream(Spliterators.spliteratorUnknownSize(cursor, Spliterator.ORDERED), false)
                 .map(doc -> this.documentToPackableMap(doc))
-                .onClose( () -> {
-                        result.iterator().close();
-                        mongoClient.close();
-                    } );
+                .onClose(cursor::close);
     }
 
     @Override
-    public Stream<Map<String, Object>> find(Map<String, Object> query, Map<String, Object> project, Map<String, Object> sort, Long skip, Long limit) {
+    public Stream<Map<String, Object>> find(Map<String, Object> query, Map<String, Object> project, Map<String, Object> sort, Long skip, Long limit, int batchSize) {
         FindIterable<Document> documents = query == null ? collection.find() : collection.find(new Document(query));
         if (project != null) documents = documents.projection(new Document(project));
         if (sort != null) documents = documents.sort(new Document(sort));
         if (skip != 0) documents = documents.skip(skip.intValue());
         if (limit != 0) documents = documents.limit(limit.intValue());
+        if (batchSize > 0) documents = documents.batchSize(batchSize);
         return asStream(documents);
     }
 
     @Override
-    public void insert(List<Map<String, Object>> docs) {
-        for (Map<String, Object> doc : docs) {
-            collection.insertOne(new Document(doc));
+    public void insert(List<Map<String, Object>> docs, int batchSize) {
+        for (int from = 0; from < docs.size(); from += batchSize) {
+            List<Document> documents = docs.subList(from, Math.min(docs.size(), from + batchSize)).stream()
+                    .map(Document::new)
+                    .collect(Collectors.toList());
+            collection.insertMany(documents);
+        }
+    }
+
+    @Override
+    public Map<String, Object> bulk(List<Map<String, Object>> docs, List<String> keys, int batchSize, boolean ordered) {
+        long inserted = 0, matched = 0, modified = 0, upserted = 0, batches = 0;
+        BulkWriteOptions options = new BulkWriteOptions().ordered(ordered);
+        UpdateOptions upsert = new UpdateOptions().upsert(true);
+        for (int from = 0; from < docs.size(); from += batchSize) {
+            List<WriteModel<Document>> writes = new ArrayList<>(Math.min(batchSize, docs.size() - from));
+            for (Map<String, Object> doc : docs.subList(from, Math.min(docs.size(), from + batchSize))) {
+                Document document = new Document(doc);
+                Document filter = new Document();
+                for (String key : keys) {
+                    if (document.containsKey(key)) filter.append(key, document.get(key));
+                }
+                // documents without all the keys can't be matched, they are inserted
+                writes.add(filter.size() == keys.size() ? new ReplaceOneModel<>(filter, document, upsert) : new InsertOneModel<>(document));
+            }
+            BulkWriteResult result = collection.bulkWrite(writes, options);
+            inserted += result.getInsertedCount();
+            matched += result.getMatchedCount();
+            if (result.isModifiedCountAvailable()) modified += result.getModifiedCount();
+            upserted += result.getUpserts().size();
+            batches++;
         }
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("batches", batches);
+        stats.put("inserted", inserted);
+        stats.put("matched", matched);
+        stats.put("modified", modified);
+        stats.put("upserted", upserted);
+        return stats;
     }
 
     @Override
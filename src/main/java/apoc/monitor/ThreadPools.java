@@ -0,0 +1,17 @@
+package apoc.monitor;
+
+import apoc.Pools;
+import apoc.result.PoolInfoResult;
+import org.neo4j.procedure.Description;
+import org.neo4j.procedure.Procedure;
+
+import java.util.stream.Stream;
+
+public class ThreadPools {
+
+    @Procedure("apoc.monitor.pools")
+    @Description("apoc.monitor.pools() yield name, poolSize, maxPoolSize, activeCount, queueSize, completedTaskCount, callerBlocked... - returns the statistics of the APOC thread pools")
+    public Stream<PoolInfoResult> pools() {
+        return Pools.info();
+    }
+}
@@ -0,0 +1,194 @@
+package apoc.neighbors;
+
+import apoc.Pools;
+import apoc.stats.DegreeUtil;
+import apoc.util.Util;
+import org.neo4j.graphdb.Direction;
+import org.neo4j.graphdb.RelationshipType;
+import org.neo4j.helpers.collection.Pair;
+import org.neo4j.internal.kernel.api.CursorFactory;
+import org.neo4j.internal.kernel.api.NodeCursor;
+import org.neo4j.internal.kernel.api.Read;
+import org.neo4j.internal.kernel.api.TokenRead;
+import org.neo4j.internal.kernel.api.helpers.RelationshipSelectionCursor;
+import org.neo4j.internal.kernel.api.helpers.RelationshipSelections;
+import org.neo4j.kernel.api.KernelTransaction;
+import org.neo4j.kernel.api.txstate.TxStateHolder;
+import org.neo4j.kernel.impl.core.ThreadToStatementContextBridge;
+import org.neo4j.kernel.internal.GraphDatabaseAPI;
+import org.roaringbitmap.longlong.LongIterator;
+import org.roaringbitmap.longlong.Roaring64NavigableMap;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import static apoc.path.RelationshipTypeAndDirections.parse;
+import static org.neo4j.internal.kernel.api.Read.ANY_RELATIONSHIP_TYPE;
+
+/**
+ * Expands the frontier of a hop of apoc.neighbors.* with kernel cursors.
+ *
+ * The frontier is split into batches that are expanded on the neighbors pool, each worker with its own cursors and bitmap,
+ * the bitmaps are or-ed into the next frontier. A batch holds up to <code>batchNodes</code> nodes, dense nodes close it
+ * earlier once their relationships, whose number is read from the relationship group store, reach <code>BATCH_RELATIONSHIPS</code>.
+ * A frontier of a single batch is expanded on the calling thread.
+ *
+ * The workers read in transactions of their own, which don't see the uncommitted changes of the caller. So when the
+ * caller's transaction has changes, all batches are expanded on the calling thread, in the caller's transaction,
+ * and the result doesn't depend on the batch boundaries.
+ */
+class NeighborsExpander {
+    static final int BATCH_NODES = 10_000;
+    static final long BATCH_RELATIONSHIPS = 100_000;
+
+    private final GraphDatabaseAPI db;
+    private final KernelTransaction ktx;
+    private final int batchNodes;
+    // the relationship types of each direction, null for all types
+    private final Map<Direction, int[]> selections = new EnumMap<>(Direction.class);
+
+    NeighborsExpander(GraphDatabaseAPI db, KernelTransaction ktx, String types) {
+        this(db, ktx, types, BATCH_NODES);
+    }
+
+    NeighborsExpander(GraphDatabaseAPI db, KernelTransaction ktx, String types, int batchNodes) {
+        this.db = db;
+        this.ktx = ktx;
+        this.batchNodes = batchNodes;
+        TokenRead tokenRead = ktx.tokenRead();
+        Map<Direction, List<Integer>> typeIds = new EnumMap<>(Direction.class);
+        for (Pair<RelationshipType, Direction> pair : parse(types)) {
+            Direction direction = pair.other();
+            if (pair.first() == null) {
+                typeIds.put(direction, null);
+                continue;
+            }
+            if (typeIds.containsKey(direction) && typeIds.get(direction) == null) continue;
+            int typeId = tokenRead.relationshipType(pair.first().name());
+            List<Integer> ids = typeIds.computeIfAbsent(direction, (key) -> new ArrayList<>());
+            if (typeId != TokenRead.NO_TOKEN) ids.add(typeId);
+        }
+        typeIds.forEach((direction, ids) -> {
+            // an empty selection would select all relationships, the types don't exist yet
+            if (ids == null || !ids.isEmpty()) {
+                selections.put(direction, ids == null ? null : ids.stream().mapToInt(Integer::intValue).toArray());
+            }
+        });
+    }
+
+    static Roaring64NavigableMap bitmap(long nodeId) {
+        Roaring64NavigableMap bitmap = new Roaring64NavigableMap();
+        bitmap.addLong(nodeId);
+        return bitmap;
+    }
+
+    /**
+     * @return the nodes related to the nodes of the frontier by the selected relationships
+     */
+    Roaring64NavigableMap expand(Roaring64NavigableMap frontier) {
+        Roaring64NavigableMap next = new Roaring64NavigableMap();
+        if (selections.isEmpty()) return next;
+        if (hasChanges()) return expand(ktx.dataRead(), ktx.cursors(), frontier.toArray());
+        List<Future<Roaring64NavigableMap>> futures = new ArrayList<>();
+        long[] first = null;
+        try (NodeCursor node = ktx.cursors().allocateNodeCursor()) {
+            Read read = ktx.dataRead();
+            long[] batch = new long[(int) Math.min(batchNodes, frontier.getLongCardinality())];
+            int count = 0;
+            long relationships = 0;
+            LongIterator ids = frontier.getLongIterator();
+            while (ids.hasNext()) {
+                long id = ids.next();
+                batch[count++] = id;
+                read.singleNode(id, node);
+                if (node.next() && node.isDense()) relationships += degree(node, ktx.cursors());
+                if (count == batch.length || relationships >= BATCH_RELATIONSHIPS || !ids.hasNext()) {
+                    long[] ready = Arrays.copyOf(batch, count);
+                    if (first == null) {
+                        first = ready;
+                    } else {
+                        // there is more than one batch, so they are expanded on the pool
+                        if (futures.isEmpty()) futures.add(submit(first));
+                        futures.add(submit(ready));
+                    }
+                    count = 0;
+                    relationships = 0;
+                }
+            }
+        }
+        if (futures.isEmpty()) {
+            return first == null ? next : expand(ktx.dataRead(), ktx.cursors(), first);
+        }
+        for (Future<Roaring64NavigableMap> future : futures) {
+            try {
+                next.or(future.get());
+            } catch (InterruptedException | ExecutionException e) {
+                futures.forEach(f -> f.cancel(true));
+                throw new RuntimeException("Error expanding the neighbors", e);
+            }
+        }
+        return next;
+    }
+
+    // without access to the transaction state the caller's transaction is assumed to have changes
+    private boolean hasChanges() {
+        return !(ktx instanceof TxStateHolder) || ((TxStateHolder) ktx).hasTxStateWithChanges();
+    }
+
+    private Future<Roaring64NavigableMap> submit(long[] ids) {
+        ThreadToStatementContextBridge ctx = db.getDependencyResolver().resolveDependency(ThreadToStatementContextBridge.class);
+        return Util.inTxFuture(Pools.pool(Pools.NEIGHBORS), db, () -> {
+            KernelTransaction workerKtx = ctx.getKernelTransactionBoundToThisThread(true);
+            return expand(workerKtx.dataRead(), workerKtx.cursors(), ids);
+        });
+    }
+
+    private Roaring64NavigableMap expand(Read read, CursorFactory cursors, long[] ids) {
+        Roaring64NavigableMap next = new Roaring64NavigableMap();
+        try (NodeCursor node = cursors.allocateNodeCursor()) {
+            for (long id : ids) {
+                read.singleNode(id, node);
+                if (!node.next()) continue;
+                for (Map.Entry<Direction, int[]> selection : selections.entrySet()) {
+                    RelationshipSelectionCursor rels = selectionCursor(cursors, node, selection.getKey(), selection.getValue());
+                    while (rels.next()) {
+                        next.addLong(rels.otherNodeReference());
+                    }
+                    rels.close();
+                }
+            }
+        }
+        return next;
+    }
+
+    private static RelationshipSelectionCursor selectionCursor(CursorFactory cursors, NodeCursor node, Direction direction, int[] types) {
+        switch (direction) {
+            case OUTGOING:
+                return RelationshipSelections.outgoingCursor(cursors, node, types);
+            case INCOMING:
+                return RelationshipSelections.incomingCursor(cursors, node, types);
+            default:
+                return RelationshipSelections.allCursor(cursors, node, types);
+        }
+    }
+
+    // the selected relationships of a dense node, from its relationship groups
+    private long degree(NodeCursor node, CursorFactory cursors) {
+        long degree = 0;
+        for (Map.Entry<Direction, int[]> selection : selections.entrySet()) {
+            if (selection.getValue() == null) {
+                degree += DegreeUtil.degree(node, cursors, ANY_RELATIONSHIP_TYPE, selection.getKey());
+            } else {
+                for (int type : selection.getValue()) {
+                    degree += DegreeUtil.degree(node, cursors, type, selection.getKey());
+                }
+            }
+        }
+        return degree;
+    }
+}
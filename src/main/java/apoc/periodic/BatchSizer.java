@@ -0,0 +1,109 @@
+package apoc.periodic;
+
+import apoc.util.Util;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decides the size of the next batch and how many batches may be in flight for apoc.periodic.iterate.
+ *
+ * With <code>adaptive:false</code> (the default) the configured values are returned unchanged.
+ * With <code>adaptive:true</code> the batch size is steered towards <code>targetBatchMillis</code> from the measured
+ * execute+commit latency of finished batches, and both batch size and concurrency are halved whenever a batch ran into
+ * a lock conflict (deadlock or transient failure). Concurrency grows back by one per conflict-free batch,
+ * never above the configured value.
+ *
+ * Only used from the thread driving the iteration, so no synchronization is needed.
+ */
+class BatchSizer {
+    static final long DEFAULT_TARGET_BATCH_MILLIS = 1000;
+
+    private final boolean adaptive;
+    private final int initialBatchSize;
+    private final int initialConcurrency;
+    private final int minBatchSize;
+    private final int maxBatchSize;
+    private final long targetNanos;
+
+    private int batchSize;
+    private int concurrency;
+    private long completed;
+    private long conflicts;
+    private long totalNanos;
+    private long adjustments;
+
+    BatchSizer(int batchSize, int concurrency, boolean adaptive, long targetBatchMillis, int minBatchSize, int maxBatchSize) {
+        this.adaptive = adaptive;
+        this.initialBatchSize = Math.max(1, batchSize);
+        this.initialConcurrency = Math.max(1, concurrency);
+        this.minBatchSize = Math.max(1, Math.min(minBatchSize, this.initialBatchSize));
+        this.maxBatchSize = Math.max(this.initialBatchSize, maxBatchSize);
+        this.targetNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, targetBatchMillis));
+        this.batchSize = this.initialBatchSize;
+        this.concurrency = this.initialConcurrency;
+    }
+
+    static BatchSizer from(Map<String, Object> config, int batchSize, int concurrency) {
+        boolean adaptive = Util.toBoolean(config.getOrDefault("adaptive", false));
+        long target = Util.toLong(config.getOrDefault("targetBatchMillis", DEFAULT_TARGET_BATCH_MILLIS));
+        int min = Util.toInteger(config.getOrDefault("minBatchSize", Math.max(1, batchSize / 100)));
+        int max = Util.toInteger(config.getOrDefault("maxBatchSize", (int) Math.min(Integer.MAX_VALUE, batchSize * 10L)));
+        return new BatchSizer(batchSize, concurrency, adaptive, target, min, max);
+    }
+
+    static BatchSizer fixed(int batchSize, int concurrency) {
+        return new BatchSizer(batchSize, concurrency, false, DEFAULT_TARGET_BATCH_MILLIS, batchSize, batchSize);
+    }
+
+    int batchSize() {
+        return batchSize;
+    }
+
+    int concurrency() {
+        return concurrency;
+    }
+
+    void completed(int size, long nanos, boolean conflict) {
+        completed++;
+        totalNanos += nanos;
+        if (conflict) conflicts++;
+        if (!adaptive || size == 0) return;
+
+        int newBatchSize = batchSize;
+        int newConcurrency = concurrency;
+        if (conflict) {
+            newBatchSize = batchSize / 2;
+            newConcurrency = concurrency / 2;
+        } else {
+            if (nanos > 0) {
+                // scale the batch this one was taken from towards the target latency, at most halving or doubling per step
+                double factor = Math.max(0.5d, Math.min(2.0d, (double) targetNanos / nanos));
+                if (factor < 0.8d || factor > 1.25d) {
+                    newBatchSize = (int) Math.min(Integer.MAX_VALUE, (long) (size * factor));
+                }
+            }
+            newConcurrency = concurrency + 1;
+        }
+        newBatchSize = Math.max(minBatchSize, Math.min(maxBatchSize, newBatchSize));
+        newConcurrency = Math.max(1, Math.min(initialConcurrency, newConcurrency));
+        if (newBatchSize != batchSize || newConcurrency != concurrency) adjustments++;
+        batchSize = newBatchSize;
+        concurrency = newConcurrency;
+    }
+
+    Map<String, Object> toMap() {
+        return Util.map("enabled", adaptive,
+                "batchSize", (long) initialBatchSize,
+                "finalBatchSize", (long) batchSize,
+                "minBatchSize", (long) minBatchSize,
+                "maxBatchSize", (long) maxBatchSize,
+                "concurrency", (long) initialConcurrency,
+                "finalConcurrency", (long) concurrency,
+                "targetBatchMillis", TimeUnit.NANOSECONDS.toMillis(targetNanos),
+                "avgBatchMillis", completed == 0 ? 0L : TimeUnit.NANOSECONDS.toMillis(totalNanos / completed),
+                "conflicts", conflicts,
+                "conflictRate", completed == 0 ? 0d : (double) conflicts / completed,
+                "adjustments", adjustments);
+    }
+}
@@ -0,0 +1,98 @@
+package apoc.periodic;
+
+import org.neo4j.graphdb.Entity;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Routes the rows of the outer apoc.periodic.iterate statement into a fixed number of lanes by the value of the
+ * <code>partitionBy</code> column, so rows sharing a key always end up in batches of the same lane.
+ *
+ * Nodes and relationships are keyed by their id, numbers by their long value and everything else by its hash code.
+ * The caller is responsible for never running two batches of the same lane concurrently.
+ * Only the values of the partition column are kept apart, other nodes the rows lock can still be shared between lanes.
+ */
+class PartitionedBatches {
+    private final Iterator<Map<String, Object>> iterator;
+    private final String column;
+    private final List<Map<String, Object>>[] lanes;
+    private int lane = -1;
+
+    @SuppressWarnings("unchecked")
+    PartitionedBatches(Iterator<Map<String, Object>> iterator, String column, int partitions) {
+        this.iterator = iterator;
+        this.column = column;
+        this.lanes = new List[Math.max(1, partitions)];
+        for (int i = 0; i < lanes.length; i++) {
+            lanes[i] = new ArrayList<>();
+        }
+    }
+
+    int partitions() {
+        return lanes.length;
+    }
+
+    /**
+     * @return the lane of the batch last returned by {@link #next(int)}
+     */
+    int lane() {
+        return lane;
+    }
+
+    boolean hasNext() {
+        if (iterator.hasNext()) return true;
+        for (List<Map<String, Object>> rows : lanes) {
+            if (!rows.isEmpty()) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Reads rows until one lane has collected <code>batchSize</code> rows, once the input is exhausted the partially
+     * filled lanes are returned one after the other.
+     */
+    List<Map<String, Object>> next(int batchSize) {
+        while (iterator.hasNext()) {
+            Map<String, Object> row = iterator.next();
+            int l = partition(row.get(column));
+            lanes[l].add(row);
+            if (lanes[l].size() >= batchSize) {
+                return take(l);
+            }
+        }
+        for (int l = 0; l < lanes.length; l++) {
+            if (!lanes[l].isEmpty()) return take(l);
+        }
+        lane = -1;
+        return new ArrayList<>();
+    }
+
+    private List<Map<String, Object>> take(int l) {
+        List<Map<String, Object>> batch = lanes[l];
+        lanes[l] = new ArrayList<>(batch.size());
+        lane = l;
+        return batch;
+    }
+
+    int partition(Object value) {
+        return (int) Math.floorMod(mix(key(value)), (long) lanes.length);
+    }
+
+    static long key(Object value) {
+        if (value == null) return 0L;
+        if (value instanceof Entity) return ((Entity) value).getId();
+        if (value instanceof Number) return ((Number) value).longValue();
+        return value.hashCode();
+    }
+
+    // sequential ids would otherwise map to lanes round-robin, which is fine, but clustered ids (e.g. every 8th) would not
+    private static long mix(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        return key;
+    }
+}
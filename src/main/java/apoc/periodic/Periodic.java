@@ -4,8 +4,10 @@ import apoc.Pools;
 import apoc.util.Util;
 import org.neo4j.graphdb.GraphDatabaseService;
 import org.neo4j.graphdb.Result;
+import org.neo4j.graphdb.TransientFailureException;
 import org.neo4j.helpers.collection.Iterators;
 import org.neo4j.helpers.collection.Pair;
+import org.neo4j.kernel.DeadlockDetectedException;
 import org.neo4j.logging.Log;
 import org.neo4j.procedure.*;
 
@@ -13,7 +15,6 @@ import java.util.*;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
-import java.util.concurrent.locks.LockSupport;
 import java.util.function.Consumer;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -300,7 +301,7 @@ public class Periodic {
      * @param cypherAction
      */
     @Procedure(mode = Mode.WRITE)
-    @Description("apoc.periodic.iterate('statement returning items', 'statement per item', {batchSize:1000,iterateList:true,parallel:false,params:{},concurrency:50,retries:0}) YIELD batches, total - run the second statement for each item returned by the first statement. Returns number of batches and total processed rows")
+    @Description("apoc.periodic.iterate('statement returning items', 'statement per item', {batchSize:1000,iterateList:true,parallel:false,params:{},concurrency:50,retries:0,adaptive:false,partitionBy:null}) YIELD batches, total - run the second statement for each item returned by the first statement. Returns number of batches and total processed rows")
     public Stream<BatchAndTotalResult> iterate(
             @Name("cypherIterate") String cypherIterate,
             @Name("cypherAction") String cypherAction,
@@ -314,12 +315,22 @@ public class Periodic {
         long retries = Util.toLong(config.getOrDefault("retries", 0)); // todo sleep/delay or push to end of batch to try again or immediate ?
         Map<String,Object> params = (Map)config.getOrDefault("params", Collections.emptyMap());
         int failedParams = Util.toInteger(config.getOrDefault("failedParams", -1));
+        String partitionBy = (String) config.get("partitionBy");
         try (Result result = db.execute(slottedRuntime(cypherIterate),params)) {
+            PartitionedBatches partitioned = null;
+            if (partitionBy != null) {
+                if (!result.columns().contains(partitionBy)) {
+                    throw new IllegalArgumentException(String.format("partitionBy column `%s` is not returned by the iterate statement, available columns are %s", partitionBy, result.columns()));
+                }
+                int partitions = Util.toInteger(config.getOrDefault("partitions", Pools.getNoThreadsInPool(Pools.PERIODIC)));
+                partitioned = new PartitionedBatches(result, partitionBy, partitions);
+            }
             Pair<String,Boolean> prepared = prepareInnerStatement(cypherAction, iterateList, result.columns(), "_batch");
             String innerStatement = prepared.first();
             iterateList=prepared.other();
             log.info("starting batching from `%s` operation using iteration `%s` in separate thread", cypherIterate,cypherAction);
-            return iterateAndExecuteBatchedInSeparateThread((int)batchSize, parallel, iterateList, retries, result, (p) -> db.execute(innerStatement, merge(params, p)).close(), concurrency, failedParams);
+            BatchSizer sizer = BatchSizer.from(config, (int) batchSize, concurrency);
+            return iterateAndExecuteBatchedInSeparateThread(sizer, parallel, iterateList, retries, result, partitioned, (p) -> db.execute(innerStatement, merge(params, p)).close(), failedParams);
         }
     }
 
@@ -380,8 +391,16 @@ public class Periodic {
 
     private Stream<BatchAndTotalResult> iterateAndExecuteBatchedInSeparateThread(int batchsize, boolean parallel, boolean iterateList, long retries,
                                                                                  Iterator<Map<String, Object>> iterator, Consumer<Map<String, Object>> consumer, int concurrency, int failedParams) {
-        ExecutorService pool = parallel ? Pools.DEFAULT : Pools.SINGLE;
-        List<Future<Long>> futures = new ArrayList<>(concurrency);
+        return iterateAndExecuteBatchedInSeparateThread(BatchSizer.fixed(batchsize, concurrency), parallel, iterateList, retries, iterator, null, consumer, failedParams);
+    }
+
+    private Stream<BatchAndTotalResult> iterateAndExecuteBatchedInSeparateThread(BatchSizer sizer, boolean parallel, boolean iterateList, long retries,
+                                                                                 Iterator<Map<String, Object>> iterator, PartitionedBatches partitioned,
+                                                                                 Consumer<Map<String, Object>> consumer, int failedParams) {
+        ExecutorService pool = parallel ? Pools.pool(Pools.PERIODIC) : Pools.SINGLE;
+        CompletionService<Long> completionService = new ExecutorCompletionService<>(pool);
+        Map<Future<Long>, BatchTiming> inFlight = new HashMap<>();
+        List<Future<Long>> laneFutures = partitioned == null ? Collections.emptyList() : new ArrayList<>(Collections.nCopies(partitioned.partitions(), null));
         long batches = 0;
         long start = System.nanoTime();
         AtomicLong count = new AtomicLong();
@@ -394,9 +413,11 @@ public class Periodic {
         long successes = 0;
         do {
             if (Util.transactionIsTerminated(terminationGuard)) break;
+            int batchsize = sizer.batchSize();
             if (log.isDebugEnabled()) log.debug("execute in batch no " + batches + " batch size " + batchsize);
-            List<Map<String,Object>> batch = Util.take(iterator, batchsize);
+            List<Map<String,Object>> batch = partitioned == null ? Util.take(iterator, batchsize) : partitioned.next(batchsize);
             long currentBatchSize = batch.size();
+            BatchTiming timing = new BatchTiming(batch.size());
             Callable<Long> task;
             if (iterateList) {
                 long finalBatches = batches;
@@ -407,10 +428,11 @@ public class Periodic {
                         Map<String, Object> params = Util.map("_count", c, "_batch", batch);
                         retried.addAndGet(retry(consumer,params,0,retries));
                     } catch (Exception e) {
-                        failedOps.addAndGet(batchsize);
+                        failedOps.addAndGet((int) currentBatchSize);
                         if (failedParams >= 0) {
                             failedParamsMap.put(Long.toString(finalBatches), new ArrayList<Map<String,Object>>(batch.subList(0, Math.min(failedParams+1, batch.size()))));
                         }
+                        timing.failed(e);
                         recordError(operationErrors, e);
                     }
                     return currentBatchSize;
@@ -431,42 +453,102 @@ public class Periodic {
                                 if (failedParams >= 0) {
                                     failedParamsMap.put(Long.toString(finalBatches), new ArrayList<Map<String,Object>>(batch.subList(0, Math.min(failedParams+1, batch.size()))));
                                 }
+                                timing.failed(e);
                                 recordError(operationErrors, e);
                             }
                             return 1;
                         }).mapToLong(l -> l).sum();
                 };
             }
-            futures.add(Util.inTxFuture(pool, db, log, task));
+            if (partitioned != null && partitioned.lane() >= 0) {
+                // a lane runs one batch at a time, so rows sharing a partition key are never written concurrently
+                Future<Long> previous = laneFutures.get(partitioned.lane());
+                if (previous != null) successes += completed(previous, inFlight, sizer, batchErrors, failedBatches);
+            }
+            Future<Long> future = completionService.submit(timedInTx(timing, task));
+            inFlight.put(future, timing);
+            if (partitioned != null && partitioned.lane() >= 0) laneFutures.set(partitioned.lane(), future);
             batches++;
-            if (futures.size() > concurrency) {
-                while (futures.stream().noneMatch(Future::isDone)) { // none done yet, block for a bit
-                    LockSupport.parkNanos(1000);
-                }
-                Iterator<Future<Long>> it = futures.iterator();
-                while (it.hasNext()) {
-                    Future<Long> future = it.next();
-                    if (future.isDone()) {
-                        successes += Util.getFuture(future, batchErrors, failedBatches, 0L);
-                        it.remove();
-                    }
+            // block on the completion queue instead of polling the futures, then drain whatever else is already done
+            while (inFlight.size() > sizer.concurrency()) {
+                Future<Long> done = takeCompleted(completionService);
+                if (done == null) break;
+                successes += completed(done, inFlight, sizer, batchErrors, failedBatches);
+                while ((done = completionService.poll()) != null) {
+                    successes += completed(done, inFlight, sizer, batchErrors, failedBatches);
                 }
             }
-        } while (iterator.hasNext());
+        } while (partitioned == null ? iterator.hasNext() : partitioned.hasNext());
         boolean wasTerminated = Util.transactionIsTerminated(terminationGuard);
         if (wasTerminated) {
-            successes += futures.stream().mapToLong(f -> Util.getFutureOrCancel(f, batchErrors, failedBatches, 0L)).sum();
+            successes += inFlight.keySet().stream().mapToLong(f -> Util.getFutureOrCancel(f, batchErrors, failedBatches, 0L)).sum();
         } else {
-            successes += futures.stream().mapToLong(f -> Util.getFuture(f, batchErrors, failedBatches, 0L)).sum();
+            for (Future<Long> future : new ArrayList<>(inFlight.keySet())) {
+                successes += completed(future, inFlight, sizer, batchErrors, failedBatches);
+            }
         }
         Util.logErrors("Error during iterate.commit:", batchErrors, log);
         Util.logErrors("Error during iterate.execute:", operationErrors, log);
         long timeTaken = TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - start);
         BatchAndTotalResult result =
-                new BatchAndTotalResult(batches, count.get(), timeTaken, successes, failedOps.get(), failedBatches.get(), retried.get(), operationErrors, batchErrors, wasTerminated, failedParamsMap);
+                new BatchAndTotalResult(batches, count.get(), timeTaken, successes, failedOps.get(), failedBatches.get(), retried.get(), operationErrors, batchErrors, wasTerminated, failedParamsMap, sizer.toMap());
         return Stream.of(result);
     }
 
+    private Future<Long> takeCompleted(CompletionService<Long> completionService) {
+        while (!Util.transactionIsTerminated(terminationGuard)) {
+            try {
+                Future<Long> future = completionService.poll(100, TimeUnit.MILLISECONDS);
+                if (future != null) return future;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            }
+        }
+        return null;
+    }
+
+    private long completed(Future<Long> future, Map<Future<Long>, BatchTiming> inFlight, BatchSizer sizer, Map<String, Long> batchErrors, AtomicInteger failedBatches) {
+        BatchTiming timing = inFlight.remove(future);
+        if (timing == null) return 0L; // already accounted for, e.g. by waiting on its lane
+        long result = Util.getFuture(future, batchErrors, failedBatches, 0L);
+        sizer.completed(timing.size, timing.nanos, timing.conflict);
+        return result;
+    }
+
+    // the transaction handling of Util.inTxFuture, timed including the commit
+    private Callable<Long> timedInTx(BatchTiming timing, Callable<Long> task) {
+        Callable<Long> inTx = Util.txCallable(db, log, task);
+        return () -> {
+            long start = System.nanoTime();
+            try {
+                return inTx.call();
+            } catch (Exception e) {
+                timing.failed(e);
+                throw e;
+            } finally {
+                timing.nanos = System.nanoTime() - start;
+            }
+        };
+    }
+
+    private static class BatchTiming {
+        final int size;
+        volatile long nanos;
+        volatile boolean conflict;
+
+        BatchTiming(int size) {
+            this.size = size;
+        }
+
+        void failed(Throwable e) {
+            while (e != null && !conflict) {
+                conflict = e instanceof DeadlockDetectedException || e instanceof TransientFailureException;
+                e = e.getCause() == e ? null : e.getCause();
+            }
+        }
+    }
+
     public static class BatchAndTotalResult {
         public final long batches;
         public final long total;
@@ -480,10 +562,12 @@ public class Periodic {
         public final Map<String,Object> operations;
         public final boolean wasTerminated;
         public final Map<String, List<Map<String,Object>>> failedParams;
+        public final Map<String,Object> adaptive;
 
         public BatchAndTotalResult(long batches, long total, long timeTaken, long committedOperations,
                                    long failedOperations, long failedBatches, long retries,
-                                   Map<String, Long> operationErrors, Map<String, Long> batchErrors, boolean wasTerminated, Map<String, List<Map<String, Object>>> failedParams) {
+                                   Map<String, Long> operationErrors, Map<String, Long> batchErrors, boolean wasTerminated, Map<String, List<Map<String, Object>>> failedParams,
+                                   Map<String, Object> adaptive) {
             this.batches = batches;
             this.total = total;
             this.timeTaken = timeTaken;
@@ -494,6 +578,7 @@ public class Periodic {
             this.errorMessages = operationErrors;
             this.wasTerminated = wasTerminated;
             this.failedParams = failedParams;
+            this.adaptive = adaptive;
             this.batch = Util.map("total",batches,"failed",failedBatches,"committed",batches-failedBatches,"errors",batchErrors);
             this.operations = Util.map("total",total,"failed",failedOperations,"committed", committedOperations,"errors",operationErrors);
         }
@@ -0,0 +1,53 @@
+package apoc.result;
+
+public class PoolInfoResult {
+
+    public String name;
+
+    public long poolSize;
+
+    public long maxPoolSize;
+
+    public long activeCount;
+
+    public long largestPoolSize;
+
+    public long queueSize;
+
+    public long queueRemainingCapacity;
+
+    public long taskCount;
+
+    public long completedTaskCount;
+
+    public long callerBlocked;
+
+    public boolean shutdown;
+
+    public PoolInfoResult(
+            String name,
+            long poolSize,
+            long maxPoolSize,
+            long activeCount,
+            long largestPoolSize,
+            long queueSize,
+            long queueRemainingCapacity,
+            long taskCount,
+            long completedTaskCount,
+            long callerBlocked,
+            boolean shutdown
+    ) {
+        this.name = name;
+        this.poolSize = poolSize;
+        this.maxPoolSize = maxPoolSize;
+        this.activeCount = activeCount;
+        this.largestPoolSize = largestPoolSize;
+        this.queueSize = queueSize;
+        this.queueRemainingCapacity = queueRemainingCapacity;
+        this.taskCount = taskCount;
+        this.completedTaskCount = completedTaskCount;
+        this.callerBlocked = callerBlocked;
+        this.shutdown = shutdown;
+    }
+
+}
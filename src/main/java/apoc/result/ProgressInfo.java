@@ -1,7 +1,5 @@
 package apoc.result;
 
-import java.io.StringWriter;
-
 /**
  * @author mh
  * @since 22.05.16
@@ -66,10 +64,9 @@ public class ProgressInfo {
         this.rows++;
     }
 
-    public ProgressInfo drain(StringWriter writer) {
-        if (writer != null) {
-            this.data = writer.toString();
-            writer.getBuffer().setLength(0);
+    public ProgressInfo drain(String data) {
+        if (data != null) {
+            this.data = data;
         }
         return this;
     }
@@ -1,5 +1,6 @@
 package apoc.search;
 
+import apoc.Pools;
 import org.neo4j.graphdb.GraphDatabaseService;
 import org.neo4j.procedure.Description;
 import apoc.result.NodeResult;
@@ -13,6 +14,8 @@ import org.neo4j.procedure.Name;
 import org.neo4j.procedure.Procedure;
 
 import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -38,7 +41,7 @@ public class ParallelNodeSearch {
     @Procedure("apoc.search.nodeAllReduced")
     @Description("Do a parallel search over multiple indexes returning a reduced representation of the nodes found: node id, labels and the searched property. apoc.search.nodeShortAll( map of label and properties which will be searched upon, operator: EXACT / CONTAINS / STARTS WITH | ENDS WITH / = / <> / < / > ..., value ). All 'hits' are returned.")
     public Stream<NodeReducedResult> multiSearchAll(@Name("LabelPropertyMap") final Object labelProperties, @Name("operator") final String operator, @Name("value") final Object value) throws Exception {
-        return createWorkersFromValidInput(labelProperties, operator, value).flatMap(QueryWorker::queryForData);
+        return inParallel(createWorkersFromValidInput(labelProperties, operator, value), QueryWorker::queryForData);
     }
 
 
@@ -53,8 +56,7 @@ public class ParallelNodeSearch {
     @Procedure("apoc.search.nodeReduced")
     @Description("Do a parallel search over multiple indexes returning a reduced representation of the nodes found: node id, labels and the searched properties. apoc.search.nodeReduced( map of label and properties which will be searched upon, operator: EXACT | CONTAINS | STARTS WITH | ENDS WITH, searchValue ). Multiple search results for the same node are merged into one record.")
     public Stream<NodeReducedResult> multiSearch(@Name("LabelPropertyMap") final Object labelProperties, @Name("operator") final String operator, @Name("value") final String value) throws Exception {
-        return createWorkersFromValidInput(labelProperties, operator, value)
-                    .flatMap(QueryWorker::queryForData)
+        return inParallel(createWorkersFromValidInput(labelProperties, operator, value), QueryWorker::queryForData)
                     .collect(groupingBy(res -> res.id,Collectors.reducing(this::merge)))
                     .values().stream().filter(Optional::isPresent).map(Optional::get);
     }
@@ -62,8 +64,7 @@ public class ParallelNodeSearch {
     @Procedure("apoc.search.multiSearchReduced")
     @Description("Do a parallel search over multiple indexes returning a reduced representation of the nodes found: node id, labels and the searched properties. apoc.search.multiSearchReduced( map of label and properties which will be searched upon, operator: EXACT | CONTAINS | STARTS WITH | ENDS WITH, searchValue ). Multiple search results for the same node are merged into one record.")
     public Stream<NodeReducedResult> multiSearchOld(@Name("LabelPropertyMap") final Object labelProperties, @Name("operator") final String operator, @Name("value") final String value) throws Exception {
-            return createWorkersFromValidInput(labelProperties, operator, value)
-                    .flatMap(QueryWorker::queryForData)
+            return inParallel(createWorkersFromValidInput(labelProperties, operator, value), QueryWorker::queryForData)
                     .collect(groupingBy(res -> res.id))
                     .values().stream().map( list -> list.stream().reduce( this::merge ))
                     .filter(Optional::isPresent).map(Optional::get);
@@ -72,19 +73,26 @@ public class ParallelNodeSearch {
     @Procedure("apoc.search.nodeAll")
     @Description("Do a parallel search over multiple indexes returning nodes. usage apoc.search.nodeAll( map of label and properties which will be searched upon, operator: EXACT | CONTAINS | STARTS WITH | ENDS WITH, searchValue ) returns all the Nodes found in the different searches.")
     public Stream<NodeResult> multiSearchNodeAll(@Name("LabelPropertyMap") final Object labelProperties, @Name("operator") final String operator, @Name("value") final String value) throws Exception {
-        return createWorkersFromValidInput(labelProperties, operator, value).flatMap(QueryWorker::queryForNode);
+        return inParallel(createWorkersFromValidInput(labelProperties, operator, value), QueryWorker::queryForNode);
     }
 
 
     @Procedure("apoc.search.node")
     @Description("Do a parallel search over multiple indexes returning nodes. usage apoc.search.node( map of label and properties which will be searched upon, operator: EXACT | CONTAINS | STARTS WITH | ENDS WITH, searchValue ) returns all the DISTINCT Nodes found in the different searches.")
     public Stream<NodeResult> multiSearchNode(@Name("LabelPropertyMap") final Object labelProperties, @Name("operator") final String operator, @Name("value") final String value) throws Exception {
-        return createWorkersFromValidInput(labelProperties, operator, value)
-                .flatMap(QueryWorker::queryForNode)
+        return inParallel(createWorkersFromValidInput(labelProperties, operator, value), QueryWorker::queryForNode)
                 .distinct();
     }
 
 
+    private <T> Stream<T> inParallel(Stream<QueryWorker> workers, Function<QueryWorker, Stream<T>> query) {
+        ExecutorService pool = Pools.pool(Pools.SEARCH);
+        List<Future<List<T>>> futures = workers
+                .map(worker -> pool.submit(() -> query.apply(worker).collect(Collectors.toList())))
+                .collect(Collectors.toList());
+        return futures.stream().flatMap(future -> Pools.forceSilently(future).stream());
+    }
+
     private Stream<QueryWorker> createWorkersFromValidInput(final Object labelPropertiesInput, String operatorInput, final Object value) throws Exception {
         String operatorNormalized = operatorInput.trim().toLowerCase();
         if (operatorInput == null || !OPERATORS.contains(operatorNormalized)) {
@@ -97,7 +105,7 @@ public class ParallelNodeSearch {
         }
         Map<String, Object> labelProperties = labelPropertiesInput instanceof Map ? (Map<String, Object>) labelPropertiesInput : Util.readMap(labelPropertiesInput.toString());
 
-        return labelProperties.entrySet().parallelStream().flatMap(e -> {
+        return labelProperties.entrySet().stream().flatMap(e -> {
             String label = e.getKey();
             Object properties = e.getValue();
             if (properties instanceof String) {
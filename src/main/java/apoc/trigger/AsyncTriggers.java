@@ -0,0 +1,169 @@
+package apoc.trigger;
+
+import apoc.ApocConfiguration;
+import apoc.Pools;
+import apoc.util.Util;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.event.TransactionData;
+import org.neo4j.logging.Log;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs the triggers with <code>{phase:'async'}</code> outside of the committing transactions.
+ *
+ * After each commit the transaction data is copied into a bounded queue, a background job drains it every
+ * <code>trigger.async.interval_ms</code> and coalesces up to <code>trigger.async.batch_size</code> transactions into a
+ * single set of parameters, so every async trigger runs once per batch instead of once per transaction.
+ * Each trigger only sees the transactions its selector matched when they were queued.
+ * When the queue (<code>trigger.async.queue_size</code>) is full, committing transactions either wait for room
+ * (<code>trigger.async.policy=block</code>) or their data is dropped (<code>drop</code>).
+ */
+class AsyncTriggers {
+    enum Policy {BLOCK, DROP}
+
+    static final String PHASE = "async";
+    private static final String TRIGGERS = "triggers";
+
+    private static final List<String> ENTITY_LISTS = Arrays.asList("createdNodes", "createdRelationships", "deletedNodes", "deletedRelationships");
+    private static final List<String> ENTRY_MAPS = Arrays.asList("assignedLabels", "removedLabels",
+            "assignedNodeProperties", "removedNodeProperties", "assignedRelationshipProperties", "removedRelationshipProperties");
+
+    private final GraphDatabaseService db;
+    private final Log log;
+    private final BlockingQueue<Map<String, Object>> queue;
+    private final Policy policy;
+    private final int batchSize;
+    private final ScheduledFuture<?> job;
+    private volatile Thread runner;
+
+    private final AtomicLong queued = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+
+    AsyncTriggers(GraphDatabaseService db, Log log) {
+        this.db = db;
+        this.log = log;
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, Util.toInteger(ApocConfiguration.get("trigger.async.queue_size", 10_000))));
+        this.policy = Policy.valueOf(ApocConfiguration.get("trigger.async.policy", "block").toString().toUpperCase());
+        this.batchSize = Math.max(1, Util.toInteger(ApocConfiguration.get("trigger.async.batch_size", 100)));
+        long interval = Math.max(1, Util.toLong(ApocConfiguration.get("trigger.async.interval_ms", 100)));
+        this.job = Pools.SCHEDULED.scheduleWithFixedDelay(this::drain, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Copies the data of the committed transaction, it is not accessible after afterCommit returned.
+     * @param triggers the names of the async triggers whose selectors matched the transaction
+     */
+    void offer(TransactionData txData, Set<String> triggers) {
+        // changes made by the async triggers themselves don't trigger them again
+        if (Thread.currentThread() == runner) return;
+        Map<String, Object> payload = Trigger.txDataSnapshot(txData);
+        payload.put(TRIGGERS, triggers);
+        if (policy == Policy.DROP) {
+            if (!queue.offer(payload)) {
+                if (dropped.incrementAndGet() % 1000 == 1) {
+                    log.warn("Async trigger queue is full, dropped the data of %d transactions so far", dropped.get());
+                }
+                return;
+            }
+        } else {
+            try {
+                queue.put(payload);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                dropped.incrementAndGet();
+                return;
+            }
+        }
+        queued.incrementAndGet();
+    }
+
+    synchronized void drain() {
+        runner = Thread.currentThread();
+        try {
+            List<Map<String, Object>> batch = new ArrayList<>(batchSize);
+            while (queue.drainTo(batch, batchSize) > 0) {
+                run(batch);
+                batches.incrementAndGet();
+                batch.clear();
+            }
+        } catch (Throwable t) {
+            // an exception would cancel the scheduled job
+            log.error("Error executing async triggers", t);
+        } finally {
+            runner = null;
+        }
+    }
+
+    // every trigger runs once on the transactions of the batch its selector matched
+    @SuppressWarnings("unchecked")
+    private void run(List<Map<String, Object>> batch) {
+        Trigger.TriggerHandler.current().forEach((name, data) -> {
+            if (!PHASE.equals(Trigger.TriggerHandler.phase(data)) || Boolean.TRUE.equals(data.get("paused"))) return;
+            List<Map<String, Object>> selected = new ArrayList<>(batch.size());
+            for (Map<String, Object> payload : batch) {
+                if (((Set<String>) payload.get(TRIGGERS)).contains(name)) selected.add(payload);
+            }
+            if (selected.isEmpty()) return;
+            try {
+                Trigger.TriggerHandler.executeTrigger(db, name, data, coalesce(selected));
+            } catch (Exception e) {
+                log.warn("Error executing trigger " + name + " in phase " + PHASE, e);
+            }
+        });
+    }
+
+    /**
+     * Unions the entity lists and concatenates the label and property entries of the transactions in commit order.
+     * Entities that were created and deleted within the batch are only reported as deleted.
+     */
+    @SuppressWarnings("unchecked")
+    static Map<String, Object> coalesce(List<Map<String, Object>> payloads) {
+        Map<String, Object> result = new HashMap<>();
+        Map<String, Set<Object>> entities = new HashMap<>();
+        Map<String, Map<String, List<Object>>> entries = new HashMap<>();
+        List<Object> transactionIds = new ArrayList<>(payloads.size());
+        for (Map<String, Object> payload : payloads) {
+            for (String key : ENTITY_LISTS) {
+                entities.computeIfAbsent(key, k -> new LinkedHashSet<>()).addAll((Collection<Object>) payload.get(key));
+            }
+            for (String key : ENTRY_MAPS) {
+                Map<String, List<Object>> merged = entries.computeIfAbsent(key, k -> new LinkedHashMap<>());
+                ((Map<String, List<Object>>) payload.get(key)).forEach((k, v) -> merged.computeIfAbsent(k, x -> new ArrayList<>()).addAll(v));
+            }
+            transactionIds.add(payload.get("transactionId"));
+            result.put("transactionId", payload.get("transactionId"));
+            result.put("commitTime", payload.get("commitTime"));
+        }
+        entities.get("createdNodes").removeAll(entities.get("deletedNodes"));
+        entities.get("createdRelationships").removeAll(entities.get("deletedRelationships"));
+        entities.forEach((k, v) -> result.put(k, new ArrayList<>(v)));
+        result.putAll(entries);
+        result.put("transactionIds", transactionIds);
+        return result;
+    }
+
+    Map<String, Object> stats() {
+        return Util.map("queued", queued.get(), "dropped", dropped.get(), "batches", batches.get(),
+                "queueSize", (long) queue.size(), "remainingCapacity", (long) queue.remainingCapacity(), "policy", policy.name());
+    }
+
+    void stop() {
+        job.cancel(false);
+        drain();
+    }
+}
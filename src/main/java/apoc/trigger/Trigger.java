@@ -3,12 +3,14 @@ package apoc.trigger;
 import apoc.ApocConfiguration;
 import apoc.Description;
 import apoc.coll.SetBackedList;
+import apoc.result.MapResult;
 import apoc.util.Util;
 import org.neo4j.graphdb.*;
 import org.neo4j.graphdb.event.LabelEntry;
 import org.neo4j.graphdb.event.PropertyEntry;
 import org.neo4j.graphdb.event.TransactionData;
 import org.neo4j.graphdb.event.TransactionEventHandler;
+import org.neo4j.helpers.collection.Iterables;
 import org.neo4j.helpers.collection.Iterators;
 import org.neo4j.kernel.impl.core.EmbeddedProxySPI;
 import org.neo4j.kernel.impl.core.GraphProperties;
@@ -100,7 +102,7 @@ public class Trigger {
     }
 
     @Procedure(mode = Mode.WRITE)
-    @Description("add a trigger kernelTransaction under a name, in the kernelTransaction you can use {createdNodes}, {deletedNodes} etc., the selector is {phase:'before/after/rollback'} returns previous and new trigger information. Takes in an optional configuration.")
+    @Description("add a trigger kernelTransaction under a name, in the kernelTransaction you can use {createdNodes}, {deletedNodes} etc., the selector is {phase:'before/after/rollback/async'} returns previous and new trigger information. Takes in an optional configuration.")
     public Stream<TriggerInfo> add(@Name("name") String name, @Name("kernelTransaction") String statement, @Name(value = "selector"/*, defaultValue = "{}"*/)  Map<String,Object> selector, @Name(value = "config", defaultValue = "{}") Map<String,Object> config) {
         Map<String,Object> params = (Map)config.getOrDefault("params", Collections.emptyMap());
         Map<String, Object> removed = TriggerHandler.add(name, statement, selector, params);
@@ -168,10 +170,18 @@ public class Trigger {
         return Stream.of(new TriggerInfo(name,(String)resume.get("kernelTransaction"), (Map<String,Object>) resume.get("selector"), (Map<String,Object>) resume.get("params"),true, false));
     }
 
+    @Procedure
+    @Description("CALL apoc.trigger.asyncStats() | number of queued, dropped and executed batches of transactions for the triggers with {phase:'async'}")
+    public Stream<MapResult> asyncStats() {
+        TriggerHandler.checkEnabled();
+        return Stream.of(new MapResult(TriggerHandler.async.stats()));
+    }
+
     public static class TriggerHandler implements TransactionEventHandler {
         public static final String APOC_TRIGGER = "apoc.trigger";
         static ConcurrentHashMap<String,Map<String,Object>> triggers = new ConcurrentHashMap(map("",map()));
         private static GraphProperties properties;
+        static AsyncTriggers async;
         private final Log log;
 
         public static final String NOT_ENABLED_ERROR = "Triggers have not been enabled." +
@@ -181,6 +191,11 @@ public class Trigger {
             properties = api.getDependencyResolver().resolveDependency(EmbeddedProxySPI.class).newGraphPropertiesProxy();
 //            Pools.SCHEDULED.submit(() -> updateTriggers(null,null));
             this.log = log;
+            async = new AsyncTriggers(api, log);
+        }
+
+        public void stop() {
+            async.stop();
         }
 
         public static void checkEnabled() {
@@ -265,43 +280,81 @@ public class Trigger {
         }
 
         private void executeTriggers(TransactionData txData, String phase) {
-            if (triggers.containsKey("")) updateTriggers(null,null);
+            current();
             GraphDatabaseService db = properties.getGraphDatabase();
             Map<String,String> exceptions = new LinkedHashMap<>();
-            Map<String, Object> params = txDataParams(txData, phase);
-            triggers.forEach((name, data) -> {
+            TriggerSelector.Changes changes = new TriggerSelector.Changes(txData);
+            Map<String, Object> params = null;
+            for (Map.Entry<String, Map<String, Object>> entry : triggers.entrySet()) {
+                String name = entry.getKey();
+                Map<String, Object> data = entry.getValue();
                 if( data.get("paused").equals(false)) {
-                    if( data.get( "params" ) != null)
-                    {
-                        params.putAll( (Map<String,Object>) data.get( "params" ) );
-                    }
-                    try (Transaction tx = db.beginTx()) {
-                        Map<String,Object> selector = (Map<String, Object>) data.get("selector");
-                        if (when(selector, phase)) {
-                            params.put("trigger", name);
-                            Result result = db.execute((String) data.get("kernelTransaction"), params);
-                            Iterators.count(result);
-                            result.close();
+                    try {
+                        Map<String, Object> selector = (Map<String, Object>) data.get("selector");
+                        // the parameters are only built once a trigger selects the transaction
+                        if (when(selector, phase) && TriggerSelector.matches(selector, changes)) {
+                            if (params == null) params = txDataParams(txData, phase);
+                            executeTrigger(db, name, data, params);
                         }
-                        tx.success();
                     } catch(Exception e) {
                         log.warn("Error executing trigger "+name+" in phase "+phase,e);
                         exceptions.put(name, e.getMessage());
                     }
                 }
-            });
+            }
             if (!exceptions.isEmpty()) {
                 throw new RuntimeException("Error executing triggers "+exceptions.toString());
             }
         }
 
+        static Map<String,Map<String,Object>> current() {
+            if (triggers.containsKey("")) updateTriggers(null,null);
+            return triggers;
+        }
+
+        static void executeTrigger(GraphDatabaseService db, String name, Map<String,Object> data, Map<String,Object> params) {
+            if( data.get( "params" ) != null)
+            {
+                params.putAll( (Map<String,Object>) data.get( "params" ) );
+            }
+            try (Transaction tx = db.beginTx()) {
+                params.put("trigger", name);
+                Result result = db.execute((String) data.get("kernelTransaction"), params);
+                Iterators.count(result);
+                result.close();
+                tx.success();
+            }
+        }
+
+        static String phase(Map<String,Object> data) {
+            Map<String,Object> selector = (Map<String, Object>) data.get("selector");
+            return selector == null ? "before" : (String) selector.getOrDefault("phase", "before");
+        }
+
         private boolean when(Map<String, Object> selector, String phase) {
             if (selector == null) return (phase.equals("before"));
             return selector.getOrDefault("phase", "before").equals(phase);
         }
 
+        private static Set<String> asyncTriggers(TransactionData txData) {
+            Set<String> names = null;
+            TriggerSelector.Changes changes = null;
+            for (Map.Entry<String, Map<String, Object>> entry : current().entrySet()) {
+                Map<String, Object> data = entry.getValue();
+                if (!AsyncTriggers.PHASE.equals(phase(data)) || !Boolean.FALSE.equals(data.get("paused"))) continue;
+                if (changes == null) changes = new TriggerSelector.Changes(txData);
+                if (TriggerSelector.matches((Map<String, Object>) data.get("selector"), changes)) {
+                    if (names == null) names = new HashSet<>();
+                    names.add(entry.getKey());
+                }
+            }
+            return names;
+        }
+
         @Override
         public void afterCommit(TransactionData txData, Object state) {
+            Set<String> asyncTriggers = asyncTriggers(txData);
+            if (asyncTriggers != null) async.offer(txData, asyncTriggers);
             executeTriggers(txData, "after");
         }
 
@@ -327,6 +380,18 @@ public class Trigger {
                         "assignedRelationshipProperties",aggregatePropertyKeys(txData.assignedRelationshipProperties(),false,false));
     }
 
+    /**
+     * the parameters of the committed transaction with the entity iterables copied into lists,
+     * so they can still be used after the transaction event handler returned
+     */
+    static Map<String, Object> txDataSnapshot(TransactionData txData) {
+        Map<String, Object> params = txDataParams(txData, "after");
+        for (String key : Arrays.asList("createdNodes", "createdRelationships", "deletedNodes", "deletedRelationships")) {
+            params.put(key, Iterables.asList((Iterable<?>) params.get(key)));
+        }
+        return params;
+    }
+
     private static <T extends PropertyContainer> Map<String,List<Map<String,Object>>> aggregatePropertyKeys(Iterable<PropertyEntry<T>> entries, boolean nodes, boolean removed) {
         if (!entries.iterator().hasNext()) return Collections.emptyMap();
         Map<String,List<Map<String,Object>>> result = new HashMap<>();
@@ -380,6 +445,7 @@ public class Trigger {
         public void stop() {
             if (triggerHandler == null) return;
             db.unregisterTransactionEventHandler(triggerHandler);
+            triggerHandler.stop();
         }
     }
 }
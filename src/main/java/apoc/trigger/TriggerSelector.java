@@ -0,0 +1,130 @@
+package apoc.trigger;
+
+import org.neo4j.graphdb.Label;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.event.LabelEntry;
+import org.neo4j.graphdb.event.PropertyEntry;
+import org.neo4j.graphdb.event.TransactionData;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Checks the <code>labels</code>, <code>types</code> and <code>propertyKeys</code> of a trigger selector against the
+ * changes of a transaction before any parameters are built, so triggers for other parts of the graph cost next to nothing.
+ *
+ * Each given list matches if the transaction touched any of its entries, all given lists have to match.
+ * A label is touched if it was added or removed or a property of a node with the label was changed,
+ * a type if a relationship of the type was created or deleted or one of its properties changed.
+ */
+class TriggerSelector {
+
+    static boolean matches(Map<String, Object> selector, Changes changes) {
+        if (selector == null) return true;
+        Collection<String> labels = names(selector.get("labels"));
+        if (labels != null && Collections.disjoint(labels, changes.labels())) return false;
+        Collection<String> types = names(selector.get("types"));
+        if (types != null && !changes.unknownTypes() && Collections.disjoint(types, changes.types())) return false;
+        Collection<String> keys = names(selector.get("propertyKeys"));
+        if (keys != null && Collections.disjoint(keys, changes.propertyKeys())) return false;
+        return true;
+    }
+
+    private static Collection<String> names(Object value) {
+        if (value == null) return null;
+        if (value instanceof String) return Collections.singleton((String) value);
+        return (Collection<String>) value;
+    }
+
+    /**
+     * the label names, relationship type names and property keys touched by a transaction, each computed on first use
+     */
+    static class Changes {
+        private final TransactionData txData;
+        private Set<String> labels, types, propertyKeys;
+        private boolean unknownTypes;
+
+        Changes(TransactionData txData) {
+            this.txData = txData;
+        }
+
+        Set<String> labels() {
+            if (labels == null) {
+                labels = new HashSet<>();
+                addLabels(txData.assignedLabels());
+                addLabels(txData.removedLabels());
+                addNodeLabels(txData.assignedNodeProperties());
+                addNodeLabels(txData.removedNodeProperties());
+            }
+            return labels;
+        }
+
+        private void addLabels(Iterable<LabelEntry> entries) {
+            for (LabelEntry entry : entries) {
+                labels.add(entry.label().name());
+            }
+        }
+
+        private void addNodeLabels(Iterable<PropertyEntry<Node>> entries) {
+            for (PropertyEntry<Node> entry : entries) {
+                try {
+                    for (Label label : entry.entity().getLabels()) {
+                        labels.add(label.name());
+                    }
+                } catch (Exception e) {
+                    // deleted nodes, their labels show up as removed labels
+                }
+            }
+        }
+
+        Set<String> types() {
+            if (types == null) {
+                types = new HashSet<>();
+                addTypes(txData.createdRelationships());
+                addTypes(txData.deletedRelationships());
+                for (PropertyEntry<Relationship> entry : txData.assignedRelationshipProperties()) {
+                    addType(entry.entity());
+                }
+                for (PropertyEntry<Relationship> entry : txData.removedRelationshipProperties()) {
+                    addType(entry.entity());
+                }
+            }
+            return types;
+        }
+
+        // the type of a deleted relationship might not be readable anymore, then every type selector matches
+        boolean unknownTypes() {
+            types();
+            return unknownTypes;
+        }
+
+        private void addTypes(Iterable<Relationship> rels) {
+            for (Relationship rel : rels) {
+                addType(rel);
+            }
+        }
+
+        private void addType(Relationship rel) {
+            try {
+                types.add(rel.getType().name());
+            } catch (Exception e) {
+                unknownTypes = true;
+            }
+        }
+
+        Set<String> propertyKeys() {
+            if (propertyKeys == null) {
+                propertyKeys = new HashSet<>();
+                for (PropertyEntry<Node> entry : txData.assignedNodeProperties()) propertyKeys.add(entry.key());
+                for (PropertyEntry<Node> entry : txData.removedNodeProperties()) propertyKeys.add(entry.key());
+                for (PropertyEntry<Relationship> entry : txData.assignedRelationshipProperties()) propertyKeys.add(entry.key());
+                for (PropertyEntry<Relationship> entry : txData.removedRelationshipProperties()) propertyKeys.add(entry.key());
+            }
+            return propertyKeys;
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package apoc.ttl;
+
+import org.neo4j.procedure.Description;
+import org.neo4j.procedure.Procedure;
+
+import java.util.stream.Stream;
+
+public class TTL {
+
+    @Procedure
+    @Description("apoc.ttl.stats() YIELD backlogNodes, backlogRelationships, lagMillis, nodesDeleted, relationshipsDeleted, ... - backlog, expiry lag and totals of the ttl expiry runs")
+    public Stream<TTLStats.Info> stats() {
+        return Stream.of(TTLLifeCycle.STATS.info());
+    }
+}
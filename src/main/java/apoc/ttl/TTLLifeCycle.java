@@ -1,18 +1,42 @@
 package apoc.ttl;
 
 import apoc.ApocConfiguration;
+import apoc.Pools;
 import apoc.util.Util;
-import org.neo4j.graphdb.QueryStatistics;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.NotFoundException;
+import org.neo4j.graphdb.Relationship;
 import org.neo4j.graphdb.Result;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.graphdb.index.IndexHits;
+import org.neo4j.graphdb.index.RelationshipIndex;
+import org.neo4j.index.lucene.QueryContext;
+import org.neo4j.index.lucene.ValueContext;
 import org.neo4j.scheduler.Group;
 import org.neo4j.scheduler.JobHandle;
 import org.neo4j.scheduler.JobScheduler;
 import org.neo4j.kernel.internal.GraphDatabaseAPI;
 import org.neo4j.logging.Log;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
+ * Deletes expired nodes (label <code>:TTL</code>, property <code>ttl</code>) and relationships
+ * (property <code>ttl</code>, registered in the explicit relationship index <code>ttl</code>).
+ *
+ * Every <code>ttl.schedule</code> seconds a run starts that deletes the expired entities oldest first in batches of
+ * <code>ttl.limit</code> and keeps going as long as it finds expired ones, optionally with <code>ttl.concurrency</code>
+ * node batches in parallel and capped at <code>ttl.max_per_second</code> deleted entities.
+ * The relationships of nodes with more than <code>ttl.relationship_batch_size</code> of them are deleted in
+ * transactions of that size before the node itself, so dense nodes don't end up in one huge transaction.
+ *
  * @author mh
  * @since 15.02.17
  */
@@ -20,13 +44,27 @@ public class TTLLifeCycle {
 
     public static final int INITIAL_DELAY = 30;
     public static final int DEFAULT_SCHEDULE = 60;
+    public static final long DEFAULT_LIMIT = 1000L;
+    public static final long DEFAULT_RELATIONSHIP_BATCH_SIZE = 10_000L;
+    public static final String TTL_PROPERTY = "ttl";
+    public static final String RELATIONSHIP_INDEX = "ttl";
     public static Group TTL_GROUP = Group.INDEX_UPDATING;
+
+    static final TTLStats STATS = new TTLStats();
+
     private final JobScheduler scheduler;
     private final GraphDatabaseAPI db;
+    private final AtomicBoolean running = new AtomicBoolean();
+    private volatile boolean stopped;
     private JobHandle ttlIndexJobHandle;
     private JobHandle ttlJobHandle;
     private Log log;
 
+    private long limit = DEFAULT_LIMIT;
+    private int concurrency = 1;
+    private long maxPerSecond = 0;
+    private long relationshipBatchSize = DEFAULT_RELATIONSHIP_BATCH_SIZE;
+
     public TTLLifeCycle(JobScheduler scheduler, GraphDatabaseAPI db, Log log) {
         this.scheduler = scheduler;
         this.log = log;
@@ -35,28 +73,244 @@ public class TTLLifeCycle {
 
     public void start() {
         boolean enabled = Util.toBoolean(ApocConfiguration.get("ttl.enabled", null));
+        STATS.reset(enabled);
         if (!enabled) return;
 
         long ttlSchedule = Util.toLong(ApocConfiguration.get("ttl.schedule", DEFAULT_SCHEDULE));
         ttlIndexJobHandle = scheduler.schedule(TTL_GROUP, this::createTTLIndex, (int)(ttlSchedule*0.8), TimeUnit.SECONDS);
 
-        long limit = Util.toLong(ApocConfiguration.get("ttl.limit", 1000L));
+        limit = Math.max(1, Util.toLong(ApocConfiguration.get("ttl.limit", DEFAULT_LIMIT)));
+        concurrency = Math.max(1, Util.toInteger(ApocConfiguration.get("ttl.concurrency", 1)));
+        maxPerSecond = Util.toLong(ApocConfiguration.get("ttl.max_per_second", 0));
+        relationshipBatchSize = Math.max(1, Util.toLong(ApocConfiguration.get("ttl.relationship_batch_size", DEFAULT_RELATIONSHIP_BATCH_SIZE)));
 
-        ttlJobHandle = scheduler.scheduleRecurring(TTL_GROUP, () -> expireNodes(limit), ttlSchedule, ttlSchedule, TimeUnit.SECONDS);
+        ttlJobHandle = scheduler.scheduleRecurring(TTL_GROUP, this::expire, ttlSchedule, ttlSchedule, TimeUnit.SECONDS);
     }
 
-    public void expireNodes(long limit) {
+    /**
+     * Deletes expired nodes and relationships until none are left, skipped if the previous run is still busy.
+     */
+    public void expire() {
+        if (!running.compareAndSet(false, true)) return;
         try {
             if (!Util.isWriteableInstance(db)) return;
-            Result result = db.execute("MATCH (t:TTL) where t.ttl < timestamp() WITH t LIMIT {limit} DETACH DELETE t", Util.map("limit", limit));
-            QueryStatistics stats = result.getQueryStatistics();
-            result.close();
-            if (stats.getNodesDeleted()>0) {
-                log.info("TTL: Expired %d nodes %d relationships", stats.getNodesDeleted(), stats.getRelationshipsDeleted());
+            long start = System.currentTimeMillis();
+            long nodes = 0, rels = 0;
+            updateBacklog(start);
+            while (!stopped) {
+                long roundStart = System.nanoTime();
+                long now = System.currentTimeMillis();
+                long[] deleted = expireNodes(now);
+                long deletedRels = expireRelationships(now);
+                nodes += deleted[0];
+                rels += deleted[1] + deletedRels;
+                long round = deleted[0] + deleted[1] + deletedRels;
+                if (round == 0) break;
+                throttle(round, roundStart);
             }
+            STATS.ran(start, System.currentTimeMillis() - start);
+            if (nodes > 0 || rels > 0) {
+                log.info("TTL: Expired %d nodes %d relationships in %d ms", nodes, rels, System.currentTimeMillis() - start);
+            }
+            updateBacklog(System.currentTimeMillis());
         } catch (Exception e) {
             log.error("TTL: Error deleting expired nodes", e);
+        } finally {
+            running.set(false);
+        }
+    }
+
+    // the number of deleted entities per second never exceeds maxPerSecond on average over a round
+    private void throttle(long deleted, long roundStart) {
+        if (maxPerSecond <= 0) return;
+        long minNanos = TimeUnit.SECONDS.toNanos(deleted) / maxPerSecond;
+        long sleepNanos = minNanos - (System.nanoTime() - roundStart);
+        if (sleepNanos > 0) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(sleepNanos);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                stopped = true;
+            }
+        }
+    }
+
+    private void updateBacklog(long now) {
+        long backlogNodes = 0, oldest = now;
+        try (Result result = db.execute("MATCH (t:TTL) WHERE t.ttl < {now} RETURN count(*) AS count, min(t.ttl) AS oldest", Util.map("now", now))) {
+            if (result.hasNext()) {
+                Map<String, Object> row = result.next();
+                backlogNodes = Util.toLong(row.get("count"));
+                if (row.get("oldest") != null) oldest = Math.min(oldest, Util.toLong(row.get("oldest")));
+            }
         }
+        long backlogRels = 0;
+        try (Transaction tx = db.beginTx()) {
+            if (db.index().existsForRelationships(RELATIONSHIP_INDEX)) {
+                try (IndexHits<Relationship> hits = expiredRelationships(db, now)) {
+                    backlogRels = hits.size();
+                    if (hits.hasNext()) {
+                        Object ttl = hits.next().getProperty(TTL_PROPERTY, null);
+                        if (ttl instanceof Number) oldest = Math.min(oldest, ((Number) ttl).longValue());
+                    }
+                }
+            }
+            tx.success();
+        }
+        STATS.backlog(backlogNodes, backlogRels, now - oldest);
+    }
+
+    /**
+     * @return the number of deleted nodes and relationships
+     */
+    long[] expireNodes(long now) {
+        List<Long> ids = new ArrayList<>();
+        try (Result result = db.execute("MATCH (t:TTL) WHERE t.ttl < {now} RETURN id(t) AS id ORDER BY t.ttl LIMIT {limit}",
+                Util.map("now", now, "limit", limit * concurrency))) {
+            result.<Long>columnAs("id").forEachRemaining(ids::add);
+        }
+        long[] deleted = new long[2];
+        if (ids.isEmpty()) return deleted;
+        if (concurrency == 1 || ids.size() <= limit) {
+            add(deleted, deleteNodes(ids, now));
+            return deleted;
+        }
+        ExecutorService pool = Pools.pool(Pools.TTL);
+        List<Future<long[]>> futures = new ArrayList<>();
+        for (int i = 0; i < ids.size(); i += limit) {
+            List<Long> batch = ids.subList(i, (int) Math.min(ids.size(), i + limit));
+            futures.add(pool.submit(() -> deleteNodes(batch, now)));
+        }
+        for (Future<long[]> future : futures) {
+            try {
+                add(deleted, future.get());
+            } catch (Exception e) {
+                // the nodes of a failed batch are still expired and picked up by the next round
+                STATS.failed();
+                log.warn("TTL: Error deleting a batch of expired nodes: %s", e.getMessage());
+            }
+        }
+        return deleted;
+    }
+
+    private static void add(long[] total, long[] deleted) {
+        total[0] += deleted[0];
+        total[1] += deleted[1];
+    }
+
+    private long[] deleteNodes(List<Long> ids, long now) {
+        long nodes = 0, rels = 0;
+        List<Long> dense = new ArrayList<>();
+        try (Transaction tx = db.beginTx()) {
+            for (Long id : ids) {
+                Node node = expiredNode(id, now);
+                if (node == null) continue;
+                if (node.getDegree() > relationshipBatchSize) {
+                    dense.add(id);
+                    continue;
+                }
+                for (Relationship rel : node.getRelationships()) {
+                    rel.delete();
+                    rels++;
+                }
+                node.delete();
+                nodes++;
+            }
+            tx.success();
+        }
+        for (Long id : dense) {
+            rels += deleteRelationships(id);
+            try (Transaction tx = db.beginTx()) {
+                Node node = expiredNode(id, now);
+                if (node != null) {
+                    for (Relationship rel : node.getRelationships()) {
+                        rel.delete();
+                        rels++;
+                    }
+                    node.delete();
+                    nodes++;
+                }
+                tx.success();
+            }
+        }
+        STATS.deleted(nodes, rels);
+        return new long[]{nodes, rels};
+    }
+
+    // the ttl could have been extended or the node deleted since it was selected
+    private Node expiredNode(long id, long now) {
+        try {
+            Node node = db.getNodeById(id);
+            Object ttl = node.getProperty(TTL_PROPERTY, null);
+            return ttl instanceof Number && ((Number) ttl).longValue() < now ? node : null;
+        } catch (NotFoundException e) {
+            return null;
+        }
+    }
+
+    private long deleteRelationships(long nodeId) {
+        long deleted = 0;
+        while (!stopped) {
+            List<Relationship> batch = new ArrayList<>();
+            try (Transaction tx = db.beginTx()) {
+                Node node = db.getNodeById(nodeId);
+                for (Relationship rel : node.getRelationships()) {
+                    batch.add(rel);
+                    if (batch.size() == relationshipBatchSize) break;
+                }
+                batch.forEach(Relationship::delete);
+                tx.success();
+            } catch (NotFoundException e) {
+                break;
+            }
+            deleted += batch.size();
+            if (batch.size() < relationshipBatchSize) break;
+        }
+        return deleted;
+    }
+
+    long expireRelationships(long now) {
+        long deleted = 0;
+        try (Transaction tx = db.beginTx()) {
+            if (!db.index().existsForRelationships(RELATIONSHIP_INDEX)) return 0;
+            RelationshipIndex index = db.index().forRelationships(RELATIONSHIP_INDEX);
+            try (IndexHits<Relationship> hits = expiredRelationships(db, now)) {
+                while (hits.hasNext() && deleted < limit) {
+                    Relationship rel = hits.next();
+                    Object ttl = rel.getProperty(TTL_PROPERTY, null);
+                    if (ttl instanceof Number && ((Number) ttl).longValue() < now) {
+                        index.remove(rel);
+                        rel.delete();
+                        deleted++;
+                    } else {
+                        // the ttl was changed or removed after indexing, replace the stale entry with the current ttl
+                        index.remove(rel, TTL_PROPERTY);
+                        if (ttl instanceof Number) {
+                            index.add(rel, TTL_PROPERTY, ValueContext.numeric(((Number) ttl).longValue()));
+                        }
+                    }
+                }
+            }
+            tx.success();
+        }
+        STATS.deleted(0, deleted);
+        return deleted;
+    }
+
+    private static IndexHits<Relationship> expiredRelationships(GraphDatabaseService db, long now) {
+        RelationshipIndex index = db.index().forRelationships(RELATIONSHIP_INDEX);
+        return index.query(QueryContext.numericRange(TTL_PROPERTY, null, now, true, false).sortNumeric(TTL_PROPERTY, false));
+    }
+
+    /**
+     * Sets the <code>ttl</code> property of the relationship to the given time in milliseconds since epoch
+     * and registers it for expiry, has to run in a transaction.
+     */
+    public static void expire(GraphDatabaseService db, Relationship rel, long ttl) {
+        RelationshipIndex index = db.index().forRelationships(RELATIONSHIP_INDEX);
+        index.remove(rel, TTL_PROPERTY);
+        rel.setProperty(TTL_PROPERTY, ttl);
+        index.add(rel, TTL_PROPERTY, ValueContext.numeric(ttl));
     }
 
     public void createTTLIndex() {
@@ -68,6 +322,7 @@ public class TTLLifeCycle {
     }
 
     public void stop() {
+        stopped = true;
         if (ttlIndexJobHandle != null) ttlIndexJobHandle.cancel(false);
         if (ttlJobHandle != null) ttlJobHandle.cancel(false);
     }
@@ -0,0 +1,80 @@
+package apoc.ttl;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counters of the expiry runs of {@link TTLLifeCycle}, exposed by apoc.ttl.stats().
+ */
+class TTLStats {
+    private volatile boolean enabled;
+    private final AtomicLong runs = new AtomicLong();
+    private final AtomicLong nodesDeleted = new AtomicLong();
+    private final AtomicLong relationshipsDeleted = new AtomicLong();
+    private final AtomicLong failedBatches = new AtomicLong();
+    private volatile long lastRun;
+    private volatile long lastRunMillis;
+    private volatile long backlogNodes;
+    private volatile long backlogRelationships;
+    private volatile long lagMillis;
+
+    void reset(boolean enabled) {
+        this.enabled = enabled;
+        runs.set(0);
+        nodesDeleted.set(0);
+        relationshipsDeleted.set(0);
+        failedBatches.set(0);
+        lastRun = lastRunMillis = backlogNodes = backlogRelationships = lagMillis = 0;
+    }
+
+    void ran(long start, long millis) {
+        runs.incrementAndGet();
+        lastRun = start;
+        lastRunMillis = millis;
+    }
+
+    void deleted(long nodes, long relationships) {
+        nodesDeleted.addAndGet(nodes);
+        relationshipsDeleted.addAndGet(relationships);
+    }
+
+    void failed() {
+        failedBatches.incrementAndGet();
+    }
+
+    void backlog(long nodes, long relationships, long lagMillis) {
+        this.backlogNodes = nodes;
+        this.backlogRelationships = relationships;
+        this.lagMillis = lagMillis;
+    }
+
+    Info info() {
+        return new Info(enabled, runs.get(), nodesDeleted.get(), relationshipsDeleted.get(), failedBatches.get(),
+                lastRun, lastRunMillis, backlogNodes, backlogRelationships, lagMillis);
+    }
+
+    public static class Info {
+        public final boolean enabled;
+        public final long runs;
+        public final long nodesDeleted;
+        public final long relationshipsDeleted;
+        public final long failedBatches;
+        public final long lastRun;
+        public final long lastRunMillis;
+        public final long backlogNodes;
+        public final long backlogRelationships;
+        public final long lagMillis;
+
+        public Info(boolean enabled, long runs, long nodesDeleted, long relationshipsDeleted, long failedBatches, long lastRun, long lastRunMillis, long backlogNodes, long backlogRelationships, long lagMillis) {
+            this.enabled = enabled;
+            this.runs = runs;
+            this.nodesDeleted = nodesDeleted;
+            this.relationshipsDeleted = relationshipsDeleted;
+            this.failedBatches = failedBatches;
+            this.lastRun = lastRun;
+            this.lastRunMillis = lastRunMillis;
+            this.backlogNodes = backlogNodes;
+            this.backlogRelationships = backlogRelationships;
+            this.lagMillis = lagMillis;
+        }
+    }
+}
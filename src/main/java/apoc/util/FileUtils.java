@@ -32,6 +32,7 @@ public class FileUtils {
     public static final boolean HDFS_ENABLED = Util.classExists("org.apache.hadoop.fs.FileSystem");
     public static final Pattern HDFS_PATTERN = Pattern.compile("^(hdfs:\\/\\/)(?:[^@\\/\\n]+@)?([^\\/\\n]+)");
 
+    public static final boolean ZSTD_ENABLED = Util.classExists("com.github.luben.zstd.ZstdInputStream");
     public static final List<String> NON_FILE_PROTOCOLS = Arrays.asList(HTTP_PROTOCOL, S3_PROTOCOL, GCS_PROTOCOL, HDFS_PROTOCOL);
 
     public static CountingReader readerFor(String fileName) throws IOException {
@@ -61,6 +62,66 @@ public class FileUtils {
         return readFileStream(fileName);
     }
 
+    /**
+     * Like {@link #readerFor(String)}, but gzip and zstd compressed input is recognized by its magic bytes and decompressed while reading.
+     */
+    public static CountingReader decompressingReaderFor(String fileName) throws IOException {
+        CountingInputStream stream = inputStreamFor(fileName);
+        if (stream == null) return null;
+        return new CountingReader(new InputStreamReader(decompress(stream), "UTF-8"), stream.getTotal());
+    }
+
+    public static InputStream decompress(InputStream stream) throws IOException {
+        InputStream in = stream.markSupported() ? stream : new BufferedInputStream(stream);
+        byte[] magic = new byte[4];
+        in.mark(magic.length);
+        int read = 0;
+        for (int n; read < magic.length && (n = in.read(magic, read, magic.length - read)) != -1; ) {
+            read += n;
+        }
+        in.reset();
+        if (read >= 2 && magic[0] == (byte) 0x1f && magic[1] == (byte) 0x8b) {
+            return new java.util.zip.GZIPInputStream(in, 1 << 16);
+        }
+        if (read == 4 && magic[0] == (byte) 0x28 && magic[1] == (byte) 0xb5 && magic[2] == (byte) 0x2f && magic[3] == (byte) 0xfd) {
+            if (!ZSTD_ENABLED) {
+                throw new IOException("Reading zstd compressed input requires com.github.luben:zstd-jni on the classpath");
+            }
+            try {
+                return (InputStream) Class.forName("com.github.luben.zstd.ZstdInputStream").getConstructor(InputStream.class).newInstance(in);
+            } catch (ReflectiveOperationException e) {
+                throw new IOException("Can't open the zstd compressed input", e);
+            }
+        }
+        return in;
+    }
+
+    /**
+     * @return the local, uncompressed file the url points to, or null if it is remote, compressed or can't be read
+     */
+    public static File localFile(String fileName) throws IOException {
+        checkReadAllowed(fileName);
+        if (fileName == null || !isFile(fileName)) return null;
+        fileName = changeFileUrlIfImportDirectoryConstrained(fileName);
+        File file;
+        if (fileName.matches("^\\w+:/.+")) {
+            if (!fileName.toLowerCase().startsWith("file:")) return null;
+            try {
+                file = new File(URI.create(fileName));
+            } catch (IllegalArgumentException e) {
+                return null;
+            }
+        } else {
+            file = new File(fileName);
+        }
+        if (!file.isFile() || !file.canRead()) return null;
+        try (InputStream in = new BufferedInputStream(new FileInputStream(file), 4)) {
+            return decompress(in) == in ? file : null;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
     private static CountingInputStream readHdfsStream(String fileName) {
         try {
             StreamConnection streamConnection = HDFSUtils.readFile(fileName);
@@ -232,21 +232,28 @@ public class Util {
 
     public static <T> Future<T> inTxFuture(ExecutorService pool, GraphDatabaseService db, Log log, Callable<T> callable) {
         try {
-            return pool.submit(() -> {
-                try (Transaction tx = db.beginTx()) {
-                    T result = callable.call();
-                    tx.success();
-                    return result;
-                } catch (Exception e) {
-                    log.error("Error while executing background job because of the following exception (the task will be killed):", e);
-                    throw e;
-                }
-            });
+            return pool.submit(txCallable(db, log, callable));
         } catch (Exception e) {
             throw new RuntimeException("Error executing in separate transaction", e);
         }
     }
 
+    /**
+     * @return a callable that runs the given one in a transaction of its own, for executors that submit it themselves
+     */
+    public static <T> Callable<T> txCallable(GraphDatabaseService db, Log log, Callable<T> callable) {
+        return () -> {
+            try (Transaction tx = db.beginTx()) {
+                T result = callable.call();
+                tx.success();
+                return result;
+            } catch (Exception e) {
+                log.error("Error while executing background job because of the following exception (the task will be killed):", e);
+                throw e;
+            }
+        };
+    }
+
     public static <T> T inTx(GraphDatabaseService db, Callable<T> callable) {
         try {
             return inTxFuture(Pools.DEFAULT, db, callable).get();
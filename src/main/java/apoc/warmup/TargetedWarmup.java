@@ -0,0 +1,284 @@
+package apoc.warmup;
+
+import apoc.Pools;
+import apoc.util.Util;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.internal.kernel.api.CursorFactory;
+import org.neo4j.internal.kernel.api.IndexOrder;
+import org.neo4j.internal.kernel.api.IndexReference;
+import org.neo4j.internal.kernel.api.NodeCursor;
+import org.neo4j.internal.kernel.api.NodeLabelIndexCursor;
+import org.neo4j.internal.kernel.api.NodeValueIndexCursor;
+import org.neo4j.internal.kernel.api.PropertyCursor;
+import org.neo4j.internal.kernel.api.Read;
+import org.neo4j.internal.kernel.api.TokenRead;
+import org.neo4j.internal.kernel.api.exceptions.KernelException;
+import org.neo4j.internal.kernel.api.helpers.RelationshipSelectionCursor;
+import org.neo4j.internal.kernel.api.helpers.RelationshipSelections;
+import org.neo4j.io.pagecache.PageCursor;
+import org.neo4j.io.pagecache.PagedFile;
+import org.neo4j.io.pagecache.monitoring.PageCacheCounters;
+import org.neo4j.kernel.api.KernelTransaction;
+import org.neo4j.kernel.api.schema.SchemaDescriptorFactory;
+import org.neo4j.kernel.impl.core.ThreadToStatementContextBridge;
+import org.neo4j.kernel.internal.GraphDatabaseAPI;
+import org.neo4j.logging.Log;
+import org.neo4j.procedure.TerminationGuard;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Warms only the pages reachable from the configured labels, relationship types and indexes
+ * instead of every page of every store file.
+ *
+ * The nodes of each label are read from the label scan store and loaded in chunks of <code>batchSize</code> on the
+ * warmup pool, together with their relationships of the given types and, optionally, the properties of both.
+ * Types without labels can't be narrowed down, so the relationship and relationship group stores are warmed
+ * completely, split into page ranges of <code>pagesPerTask</code> pages. Indexes are warmed by scanning them.
+ */
+class TargetedWarmup {
+    static final int DEFAULT_BATCH_SIZE = 10_000;
+    static final long DEFAULT_PAGES_PER_TASK = 8192;
+    private static final Pattern INDEX = Pattern.compile(":?`?([^(`]+)`?\\s*\\(([^)]+)\\)");
+
+    private final GraphDatabaseAPI db;
+    private final KernelTransaction ktx;
+    private final TerminationGuard guard;
+    private final Log log;
+    private final ExecutorService pool = Pools.pool(Pools.WARMUP);
+
+    final List<String> labels;
+    final List<String> types;
+    final List<String> indexes;
+    final boolean loadProperties;
+    final boolean loadDynamicProperties;
+    final int batchSize;
+    final long pagesPerTask;
+
+    final AtomicLong nodes = new AtomicLong();
+    final AtomicLong relationships = new AtomicLong();
+    final AtomicLong properties = new AtomicLong();
+    final AtomicLong indexEntries = new AtomicLong();
+    final AtomicLong filePages = new AtomicLong();
+
+    @SuppressWarnings("unchecked")
+    TargetedWarmup(GraphDatabaseAPI db, KernelTransaction ktx, TerminationGuard guard, Log log, Map<String, Object> config) {
+        this.db = db;
+        this.ktx = ktx;
+        this.guard = guard;
+        this.log = log;
+        this.labels = (List<String>) config.getOrDefault("labels", Collections.emptyList());
+        this.types = (List<String>) config.getOrDefault("types", Collections.emptyList());
+        this.indexes = (List<String>) config.getOrDefault("indexes", Collections.emptyList());
+        this.loadProperties = Util.toBoolean(config.getOrDefault("loadProperties", false));
+        this.loadDynamicProperties = Util.toBoolean(config.getOrDefault("loadDynamicProperties", false));
+        this.batchSize = Math.max(1, Util.toInteger(config.getOrDefault("batchSize", DEFAULT_BATCH_SIZE)));
+        this.pagesPerTask = Math.max(1, Util.toLong(config.getOrDefault("pagesPerTask", DEFAULT_PAGES_PER_TASK)));
+    }
+
+    Warmup.TargetedResult run(List<PagedFile> pagedFiles) {
+        long start = System.currentTimeMillis();
+        long faultsBefore = faults();
+        ScheduledFuture<?> progress = Pools.SCHEDULED.scheduleAtFixedRate(() -> logProgress(start, faultsBefore), 10, 10, TimeUnit.SECONDS);
+        try {
+            List<Future<Void>> futures = new ArrayList<>();
+            if (!labels.isEmpty()) {
+                warmLabels(futures);
+            } else if (!types.isEmpty()) {
+                for (PagedFile pagedFile : pagedFiles) {
+                    String name = pagedFile.file().getName();
+                    if (name.equals("neostore.relationshipstore.db") || name.equals("neostore.relationshipgroupstore.db")) {
+                        warmFile(pagedFile, futures);
+                    }
+                }
+            }
+            for (String index : indexes) {
+                futures.add(pool.submit(() -> { warmIndex(index); return null; }));
+            }
+            for (Future<Void> future : futures) {
+                Pools.forceSilently(future);
+            }
+        } finally {
+            progress.cancel(false);
+        }
+        long millis = System.currentTimeMillis() - start;
+        long pages = faultsBefore < 0 ? filePages.get() : faults() - faultsBefore;
+        return new Warmup.TargetedResult(labels, types, indexes, nodes.get(), relationships.get(), properties.get(),
+                indexEntries.get(), pages, millis, millis == 0 ? pages : pages * 1000 / millis, Util.transactionIsTerminated(guard));
+    }
+
+    private void warmLabels(List<Future<Void>> futures) {
+        TokenRead tokens = ktx.tokenRead();
+        boolean loadRels = !types.isEmpty();
+        int[] relTypes = types.stream().mapToInt(tokens::relationshipType).filter(id -> id != TokenRead.NO_TOKEN).toArray();
+        Read read = ktx.dataRead();
+        for (String label : labels) {
+            int labelId = tokens.nodeLabel(label);
+            if (labelId == TokenRead.NO_TOKEN) continue;
+            try (NodeLabelIndexCursor cursor = ktx.cursors().allocateNodeLabelIndexCursor()) {
+                read.nodeLabelScan(labelId, cursor);
+                long[] ids = new long[batchSize];
+                int count = 0;
+                while (cursor.next()) {
+                    ids[count++] = cursor.nodeReference();
+                    if (count == batchSize) {
+                        futures.add(submitNodes(ids.clone(), loadRels, relTypes));
+                        count = 0;
+                        if (Util.transactionIsTerminated(guard)) return;
+                    }
+                }
+                if (count > 0) futures.add(submitNodes(Arrays.copyOf(ids, count), loadRels, relTypes));
+            }
+        }
+    }
+
+    private Future<Void> submitNodes(long[] ids, boolean loadRels, int[] relTypes) {
+        ThreadToStatementContextBridge ctx = db.getDependencyResolver().resolveDependency(ThreadToStatementContextBridge.class);
+        return pool.submit(() -> {
+            if (Util.transactionIsTerminated(guard)) return null;
+            try (Transaction tx = db.beginTx()) {
+                KernelTransaction workerKtx = ctx.getKernelTransactionBoundToThisThread(true);
+                warmNodes(workerKtx.dataRead(), workerKtx.cursors(), ids, loadRels, relTypes);
+                tx.success();
+            }
+            return null;
+        });
+    }
+
+    private void warmNodes(Read read, CursorFactory cursors, long[] ids, boolean loadRels, int[] relTypes) {
+        long nodeCount = 0, relCount = 0, propCount = 0;
+        try (NodeCursor node = cursors.allocateNodeCursor();
+             PropertyCursor property = cursors.allocatePropertyCursor()) {
+            for (long id : ids) {
+                read.singleNode(id, node);
+                if (!node.next()) continue;
+                nodeCount++;
+                if (loadProperties) {
+                    node.properties(property);
+                    propCount += loadProperties(property);
+                }
+                // none of the types exist if relTypes is empty, an empty selection would select all relationships
+                if (loadRels && relTypes.length > 0) {
+                    RelationshipSelectionCursor rels = RelationshipSelections.allCursor(cursors, node, relTypes);
+                    while (rels.next()) {
+                        relCount++;
+                        if (loadProperties) {
+                            read.relationshipProperties(rels.relationshipReference(), rels.propertiesReference(), property);
+                            propCount += loadProperties(property);
+                        }
+                    }
+                    rels.close();
+                }
+            }
+        }
+        nodes.addAndGet(nodeCount);
+        relationships.addAndGet(relCount);
+        properties.addAndGet(propCount);
+    }
+
+    private long loadProperties(PropertyCursor property) {
+        long count = 0;
+        while (property.next()) {
+            if (loadDynamicProperties) property.propertyValue();
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * scans all entries of the index with a kernel cursor, which works for single property and composite indexes alike
+     */
+    private void warmIndex(String index) {
+        Matcher matcher = INDEX.matcher(index.trim());
+        if (!matcher.matches()) {
+            throw new IllegalArgumentException("Index " + index + " is not of the form :Label(property,...)");
+        }
+        String label = matcher.group(1).trim();
+        List<String> keys = new ArrayList<>();
+        for (String key : matcher.group(2).split(",")) {
+            keys.add(key.trim().replace("`", ""));
+        }
+        ThreadToStatementContextBridge ctx = db.getDependencyResolver().resolveDependency(ThreadToStatementContextBridge.class);
+        try (Transaction tx = db.beginTx()) {
+            KernelTransaction workerKtx = ctx.getKernelTransactionBoundToThisThread(true);
+            TokenRead tokens = workerKtx.tokenRead();
+            int[] propertyKeyIds = keys.stream().mapToInt(tokens::propertyKey).toArray();
+            IndexReference reference = workerKtx.schemaRead().index(SchemaDescriptorFactory.forLabel(tokens.nodeLabel(label), propertyKeyIds));
+            if (reference == IndexReference.NO_INDEX) {
+                throw new IllegalArgumentException("There is no index " + index);
+            }
+            long entries = 0;
+            try (NodeValueIndexCursor cursor = workerKtx.cursors().allocateNodeValueIndexCursor()) {
+                workerKtx.dataRead().nodeIndexScan(reference, cursor, IndexOrder.NONE, false);
+                while (cursor.next()) {
+                    if (++entries % batchSize == 0 && Util.transactionIsTerminated(guard)) break;
+                }
+            }
+            indexEntries.addAndGet(entries);
+            tx.success();
+        } catch (KernelException e) {
+            throw new IllegalArgumentException("Can't scan the index " + index + ": " + e.getMessage(), e);
+        }
+    }
+
+    private void warmFile(PagedFile pagedFile, List<Future<Void>> futures) {
+        long lastPage;
+        try {
+            lastPage = pagedFile.getLastPageId();
+        } catch (IOException e) {
+            log.warn("Warmup: Can't read %s: %s", pagedFile.file(), e.getMessage());
+            return;
+        }
+        for (long from = 0; from <= lastPage; from += pagesPerTask) {
+            long fromPage = from, toPage = Math.min(lastPage + 1, from + pagesPerTask);
+            futures.add(pool.submit(() -> {
+                filePages.addAndGet(warmPages(pagedFile, fromPage, toPage, guard));
+                return null;
+            }));
+        }
+    }
+
+    /**
+     * touches one byte of each page in <code>[fromPage, toPage)</code>
+     */
+    static long warmPages(PagedFile pagedFile, long fromPage, long toPage, TerminationGuard guard) throws IOException {
+        long pages = 0;
+        try (PageCursor cursor = pagedFile.io(fromPage, PagedFile.PF_READ_AHEAD | PagedFile.PF_SHARED_READ_LOCK)) {
+            while (fromPage + pages < toPage && cursor.next()) {
+                cursor.getByte();
+                pages++;
+                if (pages % 1000 == 0 && Util.transactionIsTerminated(guard)) {
+                    break;
+                }
+            }
+        }
+        return pages;
+    }
+
+    private long faults() {
+        try {
+            return db.getDependencyResolver().resolveDependency(PageCacheCounters.class).faults();
+        } catch (Exception e) {
+            return -1;
+        }
+    }
+
+    private void logProgress(long start, long faultsBefore) {
+        long seconds = Math.max(1, (System.currentTimeMillis() - start) / 1000);
+        long pages = faultsBefore < 0 ? filePages.get() : faults() - faultsBefore;
+        log.info("Warmup: %d pages loaded in %d s (%d pages/s), %d nodes, %d relationships, %d properties, %d index entries",
+                pages, seconds, pages / seconds, nodes.get(), relationships.get(), properties.get(), indexEntries.get());
+    }
+}
@@ -3,8 +3,8 @@ package apoc.warmup;
 import apoc.Pools;
 import apoc.util.Util;
 import org.neo4j.io.pagecache.PageCache;
-import org.neo4j.io.pagecache.PageCursor;
 import org.neo4j.io.pagecache.PagedFile;
+import org.neo4j.kernel.api.KernelTransaction;
 import org.neo4j.kernel.impl.store.RecordStore;
 import org.neo4j.kernel.impl.store.record.AbstractBaseRecord;
 import org.neo4j.kernel.impl.store.record.RecordLoad;
@@ -16,6 +16,7 @@ import java.io.File;
 import java.io.IOException;
 import java.util.*;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -28,12 +29,15 @@ public class Warmup {
 
     private static final int BATCH_SIZE = 100_000;
     private static final int PAGE_SIZE = 1 << 13;
+    private static final long PAGES_PER_TASK = TargetedWarmup.DEFAULT_PAGES_PER_TASK;
     @Context
     public GraphDatabaseAPI db;
     @Context
     public TerminationGuard guard;
     @Context
     public Log log;
+    @Context
+    public KernelTransaction ktx;
 
     static class PageResult {
         public final String file;
@@ -71,39 +75,57 @@ public class Warmup {
 
         List<PagedFile> pagedFiles = pageCache.listExistingMappings();
 
-        Map<String, PageResult> records = pagedFiles.parallelStream()
+        List<PagedFile> selected = pagedFiles.stream()
                 .filter(pF -> {
                     String name = pF.file().getName();
                     if (isSchema(pF.file()) && !loadIndexes) return false;
                     if ((name.endsWith("propertystore.db.strings") || name.endsWith("propertystore.db.arrays")) && !loadDynamicProperties) return false;
                     if ((name.startsWith("propertystore.db")) && !loadProperties) return false;
                     return true;
-                })
-                .map((pagedFile -> {
-                    File file = pagedFile.file();
-                    boolean index = isSchema(file);
-                    String fileName = index ? subPath(file, "schema") : file.getName();
-                    long pages = 0;
-                    long start = System.currentTimeMillis();
-                    try {
-                        if (pagedFile.fileSize() > 0) {
-                            PageCursor cursor = pagedFile.io(0L, PagedFile.PF_READ_AHEAD | PagedFile.PF_SHARED_READ_LOCK);
-                            while (cursor.next()) {
-                                cursor.getByte();
-                                pages++;
-                                if (pages % 1000 == 0 && Util.transactionIsTerminated(guard)) {
-                                    break;
-                                }
-                            }
-                        }
-                        return new PageResult(fileName, index, pagedFile.fileSize(), pages, null, start);
-                    } catch (IOException e) {
-                        e.printStackTrace();
-                        return new PageResult(fileName, index, -1L, pages, e.getMessage(), start);
-                    } finally {
-                        pageCache.reportEvents();
-                    }
-                })).collect(Collectors.toMap(r -> r.file, r -> r));
+                }).collect(Collectors.toList());
+
+        // large files are split into page ranges, so they are warmed by several threads
+        ExecutorService pool = Pools.pool(Pools.WARMUP);
+        long start = System.currentTimeMillis();
+        Map<PagedFile, List<Future<Long>>> futures = new LinkedHashMap<>();
+        Map<PagedFile, String> errors = new HashMap<>();
+        for (PagedFile pagedFile : selected) {
+            List<Future<Long>> ranges = new ArrayList<>();
+            try {
+                long lastPage = pagedFile.fileSize() > 0 ? pagedFile.getLastPageId() : -1;
+                for (long from = 0; from <= lastPage; from += PAGES_PER_TASK) {
+                    long fromPage = from, toPage = Math.min(lastPage + 1, from + PAGES_PER_TASK);
+                    ranges.add(pool.submit(() -> TargetedWarmup.warmPages(pagedFile, fromPage, toPage, guard)));
+                }
+            } catch (IOException e) {
+                errors.put(pagedFile, e.getMessage());
+            }
+            futures.put(pagedFile, ranges);
+        }
+
+        Map<String, PageResult> records = new HashMap<>();
+        futures.forEach((pagedFile, ranges) -> {
+            File file = pagedFile.file();
+            boolean index = isSchema(file);
+            String fileName = index ? subPath(file, "schema") : file.getName();
+            long pages = 0;
+            String error = errors.get(pagedFile);
+            for (Future<Long> range : ranges) {
+                try {
+                    pages += range.get();
+                } catch (InterruptedException | ExecutionException e) {
+                    error = e.getCause() == null ? e.getMessage() : e.getCause().getMessage();
+                }
+            }
+            long fileSize;
+            try {
+                fileSize = error == null ? pagedFile.fileSize() : -1L;
+            } catch (IOException e) {
+                fileSize = -1L;
+            }
+            records.put(fileName, new PageResult(fileName, index, fileSize, pages, error, start));
+        });
+        pageCache.reportEvents();
 
         WarmupResult result = new WarmupResult(
                 pageCache.pageSize(),
@@ -125,6 +147,47 @@ public class Warmup {
         return Stream.of(result);
     }
 
+    @Procedure
+    @Description("apoc.warmup.runWithConfig({labels:[], types:[], indexes:[':Label(prop)'], loadProperties:false, loadDynamicProperties:false, batchSize:10000, pagesPerTask:8192}) - warms only the nodes with the labels, their relationships of the types and the given indexes, logs pages/s progress")
+    public Stream<TargetedResult> runWithConfig(@Name("config") Map<String, Object> config) {
+        PageCache pageCache = db.getDependencyResolver().resolveDependency(PageCache.class);
+        try {
+            return Stream.of(new TargetedWarmup(db, ktx, guard, log, config).run(pageCache.listExistingMappings()));
+        } catch (IOException e) {
+            throw new RuntimeException("Error listing the mapped store files", e);
+        } finally {
+            pageCache.reportEvents();
+        }
+    }
+
+    public static class TargetedResult {
+        public final List<String> labels;
+        public final List<String> types;
+        public final List<String> indexes;
+        public final long nodes;
+        public final long relationships;
+        public final long properties;
+        public final long indexEntries;
+        public final long pagesLoaded;
+        public final long time;
+        public final long pagesPerSecond;
+        public final boolean transactionWasTerminated;
+
+        public TargetedResult(List<String> labels, List<String> types, List<String> indexes, long nodes, long relationships, long properties, long indexEntries, long pagesLoaded, long time, long pagesPerSecond, boolean transactionWasTerminated) {
+            this.labels = labels;
+            this.types = types;
+            this.indexes = indexes;
+            this.nodes = nodes;
+            this.relationships = relationships;
+            this.properties = properties;
+            this.indexEntries = indexEntries;
+            this.pagesLoaded = pagesLoaded;
+            this.time = time;
+            this.pagesPerSecond = pagesPerSecond;
+            this.transactionWasTerminated = transactionWasTerminated;
+        }
+    }
+
     public boolean isSchema(File file) {
         return file.getAbsolutePath().contains(File.separator+"schema"+File.separator);
     }
@@ -139,13 +202,13 @@ public class Warmup {
             if (idx == BATCH_SIZE) {
                 long[] submitted = ids.clone();
                 idx = 0;
-                futures.add(Util.inTxFuture(Pools.DEFAULT, db, () -> loadRecords(submitted, record, recordStore, guard)));
+                futures.add(Util.inTxFuture(Pools.pool(Pools.WARMUP), db, () -> loadRecords(submitted, record, recordStore, guard)));
             }
             pages += removeDone(futures, false);
         }
         if (idx > 0) {
             long[] submitted = Arrays.copyOf(ids, idx);
-            futures.add(Util.inTxFuture(Pools.DEFAULT, db, () -> loadRecords(submitted, record, recordStore, guard)));
+            futures.add(Util.inTxFuture(Pools.pool(Pools.WARMUP), db, () -> loadRecords(submitted, record, recordStore, guard)));
         }
         pages += removeDone(futures, true);
         return pages;
@@ -0,0 +1,50 @@
+package apoc.agg;
+
+import apoc.util.TestUtil;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.test.TestGraphDatabaseFactory;
+
+import static apoc.util.TestUtil.testCall;
+import static org.junit.Assert.assertEquals;
+
+public class ApproxDistinctTest {
+
+    private static GraphDatabaseService db;
+
+    @BeforeClass public static void setUp() throws Exception {
+        db = new TestGraphDatabaseFactory().newImpermanentDatabase();
+        TestUtil.registerProcedure(db, ApproxDistinct.class);
+    }
+
+    @AfterClass public static void tearDown() {
+        db.shutdown();
+    }
+
+    @Test
+    public void testApproxDistinct() throws Exception {
+        testCall(db, "UNWIND [] as value RETURN apoc.agg.approxDistinct(value) as count",
+                (row) -> assertEquals(0L, row.get("count")));
+        testCall(db, "UNWIND [1, 2, 2, 2.0, null, 'a', 'a', [1, 2], [1, 2]] as value RETURN apoc.agg.approxDistinct(value) as count",
+                (row) -> assertEquals(4L, row.get("count")));
+        testCall(db, "UNWIND range(1,200000) as value RETURN apoc.agg.approxDistinct(value % 100000) as count",
+                (row) -> assertEquals(100000D, ((Number) row.get("count")).doubleValue(), 3000D));
+        testCall(db, "UNWIND range(1,200000) as value RETURN apoc.agg.approxDistinct('name' + (value % 100000), {precision: 16}) as count",
+                (row) -> assertEquals(100000D, ((Number) row.get("count")).doubleValue(), 1500D));
+    }
+
+    @Test
+    public void testMergeSketches() throws Exception {
+        testCall(db, "UNWIND range(1,200000) as value WITH value % 3 as part, apoc.agg.approxDistinct(value % 100000, {sketch: true}) as sketch " +
+                        "RETURN apoc.agg.approxDistinct(sketch, {merge: true}) as count",
+                (row) -> assertEquals(100000D, ((Number) row.get("count")).doubleValue(), 3000D));
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void testMergeNeedsSamePrecision() throws Exception {
+        testCall(db, "UNWIND [10, 12] as precision WITH precision, apoc.agg.approxDistinct(precision, {precision: precision, sketch: true}) as sketch " +
+                        "RETURN apoc.agg.approxDistinct(sketch, {merge: true}) as count", (row) -> {});
+    }
+}
@@ -0,0 +1,68 @@
+package apoc.agg;
+
+import apoc.util.TestUtil;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.test.TestGraphDatabaseFactory;
+
+import java.util.List;
+
+import static apoc.util.TestUtil.testCall;
+import static java.util.Arrays.asList;
+import static org.junit.Assert.*;
+
+public class ApproxPercentilesTest {
+
+    private static GraphDatabaseService db;
+
+    @BeforeClass public static void setUp() throws Exception {
+        db = new TestGraphDatabaseFactory().newImpermanentDatabase();
+        TestUtil.registerProcedure(db, ApproxPercentiles.class);
+    }
+
+    @AfterClass public static void tearDown() {
+        db.shutdown();
+    }
+
+    @Test
+    public void testApproxMedian() throws Exception {
+        testCall(db, "UNWIND [] as value RETURN apoc.agg.approxMedian(value) as p",
+                (row) -> assertNull(row.get("p")));
+        testCall(db, "UNWIND range(1,100000) as value RETURN apoc.agg.approxMedian(value) as p",
+                (row) -> assertEquals(50000D, (double) row.get("p"), 500D));
+        testCall(db, "UNWIND range(1,100000) as value RETURN apoc.agg.approxMedian(value / 1000.0, {compression: 200}) as p",
+                (row) -> assertEquals(50D, (double) row.get("p"), 0.5D));
+    }
+
+    @Test
+    public void testApproxPercentiles() throws Exception {
+        testCall(db, "UNWIND [] as value RETURN apoc.agg.approxPercentiles(value) as p",
+                (row) -> assertEquals(asList(null, null, null, null, null), row.get("p")));
+        testCall(db, "UNWIND range(1,100000) as value RETURN apoc.agg.approxPercentiles(value, [0.1, 0.9, 0.99]) as p",
+                (row) -> assertApproximately(asList(10000D, 90000D, 99000D), (List<Double>) row.get("p"), 0.01D));
+    }
+
+    @Test
+    public void testMergeSketches() throws Exception {
+        testCall(db, "UNWIND range(1,100000) as value WITH value % 4 as part, apoc.agg.approxMedian(value, {sketch: true}) as sketch " +
+                        "RETURN apoc.agg.approxMedian(sketch, {merge: true}) as median, apoc.agg.approxPercentiles(sketch, [0.25, 0.75], {merge: true}) as p",
+                (row) -> {
+                    assertEquals(50000D, (double) row.get("median"), 500D);
+                    assertApproximately(asList(25000D, 75000D), (List<Double>) row.get("p"), 0.01D);
+                });
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void testMergeNeedsSketches() throws Exception {
+        testCall(db, "UNWIND range(1,10) as value RETURN apoc.agg.approxMedian(value, {merge: true}) as p", (row) -> {});
+    }
+
+    private static void assertApproximately(List<Double> expected, List<Double> actual, double relativeError) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i), actual.get(i), expected.get(i) * relativeError);
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package apoc.agg;
+
+import apoc.util.TestUtil;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.test.TestGraphDatabaseFactory;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static apoc.util.MapUtil.map;
+import static apoc.util.TestUtil.testCall;
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TopKTest {
+
+    private static GraphDatabaseService db;
+
+    // value i occurs 1000/i times
+    private static final String VALUES = "UNWIND range(1,1000) as i UNWIND range(1, 1000 / i) as j ";
+
+    @BeforeClass public static void setUp() throws Exception {
+        db = new TestGraphDatabaseFactory().newImpermanentDatabase();
+        TestUtil.registerProcedure(db, TopK.class);
+    }
+
+    @AfterClass public static void tearDown() {
+        db.shutdown();
+    }
+
+    @Test
+    public void testTopK() throws Exception {
+        testCall(db, "UNWIND [] as value RETURN apoc.agg.topK(value) as top",
+                (row) -> assertEquals(Collections.emptyList(), row.get("top")));
+        testCall(db, "UNWIND ['a', 'b', 'b', null, 'c', 'b', 'c'] as value RETURN apoc.agg.topK(value, 2) as top",
+                (row) -> assertEquals(asList(map("item", "b", "count", 3L, "error", 0L), map("item", "c", "count", 2L, "error", 0L)), row.get("top")));
+        testCall(db, VALUES + "RETURN apoc.agg.topK(i, 3) as top",
+                (row) -> assertEquals(asList(map("item", 1L, "count", 1000L, "error", 0L), map("item", 2L, "count", 500L, "error", 0L),
+                        map("item", 3L, "count", 333L, "error", 0L)), row.get("top")));
+    }
+
+    @Test
+    public void testErrorBound() throws Exception {
+        testCall(db, VALUES + "RETURN apoc.agg.topK(i, 20, {capacity: 20}) as top, count(*) as total",
+                (row) -> {
+                    long bound = (long) row.get("total") / 20;
+                    for (Map<String, Object> counter : (List<Map<String, Object>>) row.get("top")) {
+                        long actual = 1000L / (long) counter.get("item");
+                        long count = (long) counter.get("count");
+                        long error = (long) counter.get("error");
+                        assertTrue(counter.toString(), count >= actual && count - error <= actual && error <= bound);
+                    }
+                });
+    }
+
+    @Test
+    public void testMergeSketches() throws Exception {
+        testCall(db, VALUES + "WITH j % 2 as part, apoc.agg.topK(i, 3, {sketch: true}) as sketch RETURN apoc.agg.topK(sketch, 3, {merge: true}) as top",
+                (row) -> assertEquals(asList(map("item", 1L, "count", 1000L, "error", 0L), map("item", 2L, "count", 500L, "error", 0L),
+                        map("item", 3L, "count", 333L, "error", 0L)), row.get("top")));
+    }
+
+    @Test
+    public void testArraysAndIntegralFloatsAreCountedByValue() throws Exception {
+        db.execute("UNWIND range(1, 3) AS i CREATE (:Tagged {tags: ['a', 'b']})").close();
+        db.execute("CREATE (:Tagged {tags: ['c']})").close();
+        testCall(db, "MATCH (n:Tagged) RETURN apoc.agg.topK(n.tags, 2) as top",
+                (row) -> assertEquals(asList(map("item", asList("a", "b"), "count", 3L, "error", 0L), map("item", asList("c"), "count", 1L, "error", 0L)), row.get("top")));
+        testCall(db, "UNWIND [1, 1.0, 2.5, 1] as value RETURN apoc.agg.topK(value, 2) as top",
+                (row) -> assertEquals(asList(map("item", 1L, "count", 3L, "error", 0L), map("item", 2.5, "count", 1L, "error", 0L)), row.get("top")));
+    }
+}
@@ -1,5 +1,7 @@
 package apoc.algo;
 
+import apoc.Pools;
+import apoc.algo.algorithms.HugeIntArray;
 import org.junit.*;
 import org.neo4j.graphdb.Direction;
 import org.neo4j.graphdb.Result;
@@ -67,14 +69,14 @@ public class CoreGraphAlgorithmsTest {
         CoreGraphAlgorithms algos = new CoreGraphAlgorithms(ktx).init();
         assertEquals(4,algos.getNodeCount());
         assertEquals(2,algos.getRelCount());
-        int[] offsets = algos.getNodeRelOffsets();
+        long[] offsets = algos.getNodeRelOffsets();
         assertEquals(0,offsets[idA]);
         assertEquals(1,offsets[idB]);
         assertEquals(2,offsets[idC]);
         assertEquals(2,offsets[idD]);
-        int[] rels = algos.getRels();
-        assertEquals(idB,rels[0]);
-        assertEquals(idC,rels[1]);
+        HugeIntArray rels = algos.getRels();
+        assertEquals(idB,rels.get(0));
+        assertEquals(idC,rels.get(1));
     }
 
     @Test
@@ -82,23 +84,53 @@ public class CoreGraphAlgorithmsTest {
         CoreGraphAlgorithms algos = new CoreGraphAlgorithms(ktx).init("A");
         assertEquals(2,algos.getNodeCount());
         assertEquals(2,algos.getRelCount());
-        int[] degrees = algos.getNodeRelOffsets();
+        long[] degrees = algos.getNodeRelOffsets();
         assertEquals(0,degrees[idA]);
         assertEquals(1,degrees[idB]);
-        int[] rels = algos.getRels();
-        assertEquals(idB,rels[0]);
-        assertEquals(idC,rels[1]);
+        HugeIntArray rels = algos.getRels();
+        assertEquals(idB,rels.get(0));
+        assertEquals(idC,rels.get(1));
     }
     @Test
     public void testInitLabelRel() throws Exception {
         CoreGraphAlgorithms algos = new CoreGraphAlgorithms(ktx).init("A","X");
         assertEquals(2,algos.getNodeCount());
         assertEquals(1,algos.getRelCount());
-        int[] degrees = algos.getNodeRelOffsets();
+        long[] degrees = algos.getNodeRelOffsets();
         assertEquals(0,degrees[idA]);
         assertEquals(1,degrees[idB]);
-        int[] rels = algos.getRels();
-        assertEquals(idB,rels[0]);
+        HugeIntArray rels = algos.getRels();
+        assertEquals(idB,rels.get(0));
+    }
+
+    @Test
+    public void testInitLabelMapsTargetsOutsideOfLabel() throws Exception {
+        CoreGraphAlgorithms algos = new CoreGraphAlgorithms(ktx).init("A");
+        assertEquals(2,algos.getNodeCount());
+        assertEquals(3,algos.getMappedNodeCount());
+        assertEquals(idC,algos.unMapId(algos.getRels().get(1)));
+        float[] rank = algos.pageRank(2);
+        assertEquals(3,rank.length);
+    }
+
+    @Test
+    public void testInitAllParallel() throws Exception {
+        CoreGraphAlgorithms algos = new CoreGraphAlgorithms(ktx, db, Pools.pool(Pools.ALGO)).init();
+        assertEquals(4,algos.getNodeCount());
+        assertEquals(2,algos.getRelCount());
+        assertEquals(algos.mapId(idB),algos.getRels().get(algos.getNodeRelOffsets()[algos.mapId(idA)]));
+        assertEquals(algos.mapId(idC),algos.getRels().get(algos.getNodeRelOffsets()[algos.mapId(idB)]));
+        int[] labels = algos.unionFind();
+        assertEquals(labels[algos.mapId(idA)],labels[algos.mapId(idC)]);
+        assertNotEquals(labels[algos.mapId(idA)],labels[algos.mapId(idD)]);
+    }
+
+    @Test
+    public void testInitLabelRelParallel() throws Exception {
+        CoreGraphAlgorithms algos = new CoreGraphAlgorithms(ktx, db, Pools.pool(Pools.ALGO)).init("A","X");
+        assertEquals(2,algos.getNodeCount());
+        assertEquals(1,algos.getRelCount());
+        assertEquals(algos.mapId(idB),algos.getRels().get(0));
     }
 
     @Test
@@ -0,0 +1,160 @@
+package apoc.algo;
+
+import apoc.util.TestUtil;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.QueryExecutionException;
+import org.neo4j.test.TestGraphDatabaseFactory;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.HashSet;
+
+import static apoc.util.TestUtil.testCall;
+import static apoc.util.TestUtil.testCallCount;
+import static apoc.util.TestUtil.testResult;
+import static java.util.Collections.emptyMap;
+import static java.util.Collections.singletonMap;
+import static org.junit.Assert.*;
+
+public class GraphProjectionsTest {
+
+    private GraphDatabaseService db;
+
+    @Before
+    public void setUp() throws Exception {
+        db = new TestGraphDatabaseFactory().newImpermanentDatabase();
+        TestUtil.registerProcedure(db, GraphProjections.class);
+        db.execute("CREATE (a:A {name:'a'})-[:X {w:1}]->(b:A {name:'b'})-[:X {w:3}]->(c:A {name:'c'}), (a)-[:X {w:1}]->(c), " +
+                "(d:A {name:'d'})-[:X {w:1}]->(e:A {name:'e'}), (a)-[:Y]->(d)").close();
+    }
+
+    @After
+    public void tearDown() {
+        GraphProjections.dropAll();
+        db.shutdown();
+    }
+
+    @Test
+    public void testLoadListDrop() {
+        testCall(db, "CALL apoc.algo.graph.load('g',{label:'A',relType:'X'})", (r) -> {
+            assertEquals("g", r.get("name"));
+            assertEquals(5L, r.get("nodes"));
+            assertEquals(4L, r.get("relationships"));
+            assertTrue((Long) r.get("sizeInBytes") > 0);
+        });
+        testCall(db, "CALL apoc.algo.graph.list()", (r) -> assertEquals("g", r.get("name")));
+        testCall(db, "CALL apoc.algo.graph.drop('g')", (r) -> assertEquals("g", r.get("name")));
+        testCallCount(db, "CALL apoc.algo.graph.list()", emptyMap(), 0);
+    }
+
+    @Test
+    public void testReuseAcrossCalls() {
+        db.execute("CALL apoc.algo.graph.load('g',{label:'A',relType:'X'})").close();
+        testResult(db, "CALL apoc.algo.graph.unionFind('g') YIELD node, component RETURN node.name AS name, component", (result) -> {
+            Map<String, Long> components = new HashMap<>();
+            result.forEachRemaining(row -> components.put((String) row.get("name"), (Long) row.get("component")));
+            assertEquals(5, components.size());
+            assertEquals(components.get("a"), components.get("b"));
+            assertEquals(components.get("a"), components.get("c"));
+            assertEquals(components.get("d"), components.get("e"));
+            assertNotEquals(components.get("a"), components.get("d"));
+        });
+        testResult(db, "CALL apoc.algo.graph.labelPropagation('g') YIELD component RETURN distinct component", (result) -> {
+            Set<Object> components = new HashSet<>();
+            result.forEachRemaining(row -> components.add(row.get("component")));
+            assertEquals(2, components.size());
+        });
+        testCallCount(db, "CALL apoc.algo.graph.pageRank('g')", emptyMap(), 5);
+        testCall(db, "CALL apoc.algo.graph.list()", (r) -> assertEquals(3L, r.get("uses")));
+    }
+
+    @Test
+    public void testWeightedPageRank() {
+        db.execute("CALL apoc.algo.graph.load('g',{label:'A',relType:'X',weightProperty:'w',parallel:false})").close();
+        testResult(db, "CALL apoc.algo.graph.pageRank('g',{iterations:20}) YIELD node, score RETURN node.name AS name, score", (result) -> {
+            Map<String, Double> scores = new HashMap<>();
+            result.forEachRemaining(row -> scores.put((String) row.get("name"), (Double) row.get("score")));
+            // c receives from a and most of b's rank
+            assertTrue(scores.get("c") > scores.get("b"));
+            assertTrue(scores.get("e") > scores.get("d"));
+        });
+    }
+
+    @Test
+    public void testWeightsOutsideFixedPointRange() {
+        db.execute("CALL apoc.algo.graph.load('g',{label:'A',relType:'X',weightProperty:'w',parallel:false})").close();
+        Map<String, Double> expected = scores("g");
+        // scaled up beyond and down below what fits into 5 fixed decimal places of an int, the ranks are the same
+        db.execute("MATCH (:A)-[r:X]->(:A) SET r.big = r.w * 1000000, r.small = r.w / 10000000").close();
+        db.execute("CALL apoc.algo.graph.load('big',{label:'A',relType:'X',weightProperty:'big',parallel:false})").close();
+        db.execute("CALL apoc.algo.graph.load('small',{label:'A',relType:'X',weightProperty:'small',parallel:false})").close();
+        for (String name : new String[]{"big", "small"}) {
+            Map<String, Double> scores = scores(name);
+            expected.forEach((node, score) -> assertEquals(name + " " + node, score, scores.get(node), 1e-4));
+        }
+    }
+
+    private Map<String, Double> scores(String projection) {
+        Map<String, Double> scores = new HashMap<>();
+        testResult(db, "CALL apoc.algo.graph.pageRank({name}) YIELD node, score RETURN node.name AS name, score", singletonMap("name", projection),
+                (result) -> result.forEachRemaining(row -> scores.put((String) row.get("name"), (Double) row.get("score"))));
+        return scores;
+    }
+
+    @Test
+    public void testDroppedWhenDatabaseStops() {
+        GraphDatabaseService other = new TestGraphDatabaseFactory().newImpermanentDatabase();
+        try {
+            TestUtil.registerProcedure(other, GraphProjections.class);
+            other.execute("CREATE (:A)-[:X]->(:A)").close();
+            other.execute("CALL apoc.algo.graph.load('other',{label:'A',relType:'X'})").close();
+            db.execute("CALL apoc.algo.graph.load('g',{label:'A',relType:'X'})").close();
+        } finally {
+            other.shutdown();
+        }
+        assertFalse(GraphProjections.projections.containsKey("other"));
+        assertTrue(GraphProjections.projections.containsKey("g"));
+    }
+
+    @Test
+    public void testInvalidateOnChange() {
+        db.execute("CALL apoc.algo.graph.load('g',{label:'A',relType:'X',invalidateOnChange:true})").close();
+        db.execute("MATCH (a:A {name:'a'}) CREATE (a)-[:Y]->(:B)").close();
+        testCallCount(db, "CALL apoc.algo.graph.list()", emptyMap(), 1);
+        db.execute("MATCH (a:A {name:'a'}), (e:A {name:'e'}) CREATE (e)-[:X]->(a)").close();
+        testCallCount(db, "CALL apoc.algo.graph.list()", emptyMap(), 0);
+    }
+
+    @Test
+    public void testDeletedNodesAreSkipped() {
+        db.execute("CALL apoc.algo.graph.load('g',{label:'A',relType:'X'})").close();
+        db.execute("MATCH (e:A {name:'e'}) DETACH DELETE e").close();
+        testCallCount(db, "CALL apoc.algo.graph.pageRank('g')", emptyMap(), 4);
+        testCallCount(db, "CALL apoc.algo.graph.unionFind('g')", emptyMap(), 4);
+        testCallCount(db, "CALL apoc.algo.graph.labelPropagation('g')", emptyMap(), 4);
+    }
+
+    @Test
+    public void testUnknownProjection() {
+        try {
+            testCall(db, "CALL apoc.algo.graph.pageRank('unknown')", (r) -> {});
+            fail("should fail for an unknown projection");
+        } catch (QueryExecutionException e) {
+            assertTrue(e.getMessage().contains("No projection named unknown"));
+        }
+    }
+
+    @Test
+    public void testUnknownLabel() {
+        try {
+            testCall(db, "CALL apoc.algo.graph.load('g',{label:'Unknown'})", (r) -> {});
+            fail("should fail for an unknown label");
+        } catch (QueryExecutionException e) {
+            assertTrue(e.getMessage().contains("Unknown label Unknown"));
+        }
+    }
+}
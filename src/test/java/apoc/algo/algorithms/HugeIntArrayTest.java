@@ -0,0 +1,47 @@
+package apoc.algo.algorithms;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class HugeIntArrayTest {
+
+    @Test
+    public void testAcrossPages() {
+        long size = (1L << HugeIntArray.PAGE_BITS) * 2 + 3;
+        HugeIntArray array = new HugeIntArray(size);
+        assertEquals(size, array.size());
+        array.set(0, 1);
+        array.set((1L << HugeIntArray.PAGE_BITS) - 1, 2);
+        array.set(1L << HugeIntArray.PAGE_BITS, 3);
+        array.set(size - 1, 4);
+        assertEquals(1, array.get(0));
+        assertEquals(2, array.get((1L << HugeIntArray.PAGE_BITS) - 1));
+        assertEquals(3, array.get(1L << HugeIntArray.PAGE_BITS));
+        assertEquals(4, array.get(size - 1));
+        assertEquals(size, array.toArray().length);
+    }
+
+    @Test
+    public void testFillAndToArray() {
+        HugeIntArray array = new HugeIntArray(5);
+        array.fill(1, 4, -1);
+        assertArrayEquals(new int[]{0, -1, -1, -1, 0}, array.toArray());
+    }
+
+    @Test
+    public void testNodeIdMap() {
+        NodeIdMap map = new NodeIdMap(new long[]{3, 7, 1L << 40, 0}, 3);
+        assertEquals(3, map.nodeCount());
+        assertEquals(0, map.toMapped(3));
+        assertEquals(2, map.toMapped(1L << 40));
+        assertEquals(NodeIdMap.NOT_MAPPED, map.toMapped(5));
+        assertEquals(3, map.getOrAdd(5));
+        assertEquals(3, map.getOrAdd(5));
+        assertEquals(3, map.toMapped(5));
+        assertEquals(4, map.size());
+        assertEquals(1L << 40, map.toOriginal(2));
+        assertEquals(5L, map.toOriginal(3));
+    }
+}
@@ -105,6 +105,20 @@ public class BoltTest {
                 });
     }
 
+    @Test
+    public void testBatch() throws Exception {
+        TestUtil.testResult(db, "call apoc.bolt.batch($url,'CREATE (n:Batch {name: row.name}) RETURN n.name AS name', $batch, {batchSize: 2})",
+                map("url", neo4jContainer.getBoltUrl(),
+                        "batch", Arrays.asList(map("name", "a"), map("name", "b"), map("name", "c"))),
+                r -> {
+                    List<Object> names = r.stream().map(row -> ((Map<String, Object>) row.get("row")).get("name")).collect(Collectors.toList());
+                    assertEquals(Arrays.asList("a", "b", "c"), names);
+                });
+        TestUtil.testCall(db, "call apoc.bolt.load($url,'MATCH (n:Batch) DETACH DELETE n', {}, {statistics: true, readOnly: false})",
+                map("url", neo4jContainer.getBoltUrl()),
+                r -> assertEquals(3L, (long) Util.toLong(((Map) r.get("row")).get("nodesDeleted"))));
+    }
+
     @Test
     public void testLoadNodesVirtual() throws Exception {
             TestUtil.testResult(db, "call apoc.bolt.load(" + BOLT_URL + ",'match(n) return n', {}, {virtual:true})", r -> {
@@ -0,0 +1,109 @@
+package apoc.cache;
+
+import org.junit.Test;
+
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static apoc.util.MapUtil.map;
+import static org.junit.Assert.*;
+
+public class StaticCacheTest {
+
+    @Test
+    public void testLruEviction() {
+        StaticCache cache = new StaticCache(3, StaticCache.Policy.LRU, 1);
+        cache.put("a", 1, 0);
+        cache.put("b", 2, 0);
+        cache.put("c", 3, 0);
+        assertEquals(1, cache.get("a"));
+        cache.put("d", 4, 0);
+        assertNull(cache.get("b"));
+        assertEquals(1, cache.get("a"));
+        assertEquals(3, cache.get("c"));
+        assertEquals(4, cache.get("d"));
+        assertEquals(3L, cache.size());
+        assertEquals(1L, cache.stats().get("evictions"));
+    }
+
+    @Test
+    public void testLfuEviction() {
+        StaticCache cache = new StaticCache(3, StaticCache.Policy.LFU, 1);
+        cache.put("a", 1, 0);
+        cache.put("b", 2, 0);
+        cache.put("c", 3, 0);
+        cache.get("a");
+        cache.get("a");
+        cache.get("a");
+        cache.get("b");
+        cache.get("c");
+        cache.get("c");
+        // a is the least recently used entry but b the least frequently used one
+        cache.put("d", 4, 0);
+        assertNull(cache.get("b"));
+        assertEquals(1, cache.get("a"));
+    }
+
+    @Test
+    public void testTtl() throws Exception {
+        StaticCache cache = new StaticCache(10, StaticCache.Policy.LRU, 1);
+        cache.put("short", 1, 50);
+        cache.put("forever", 2, 0);
+        assertEquals(1, cache.get("short"));
+        Thread.sleep(100);
+        assertNull(cache.get("short"));
+        assertEquals(2, cache.get("forever"));
+        assertEquals(1L, cache.stats().get("expirations"));
+        assertEquals(1L, cache.size());
+    }
+
+    @Test
+    public void testPrefixed() {
+        StaticCache cache = new StaticCache(0, StaticCache.Policy.LRU, 4);
+        cache.put("all.a", 1, 0);
+        cache.put("all.b", 2, 0);
+        cache.put("alm", 3, 0);
+        cache.put("x", 4, 0);
+        assertEquals(map("all.a", 1, "all.b", 2), cache.prefixed("all."));
+        assertEquals(4, cache.prefixed("").size());
+        cache.remove("all.a");
+        assertEquals(map("all.b", 2), cache.prefixed("all"));
+        // prefix lookups are not counted as hits
+        assertEquals(0L, cache.stats().get("hits"));
+    }
+
+    @Test
+    public void testStats() {
+        StaticCache cache = new StaticCache(100, StaticCache.Policy.LRU, 16);
+        cache.put("a", 1, 0);
+        cache.get("a");
+        cache.get("b");
+        Map<String, Object> stats = cache.stats();
+        assertEquals(1L, stats.get("hits"));
+        assertEquals(1L, stats.get("misses"));
+        assertEquals(0.5d, stats.get("hitRatio"));
+        assertEquals(100L, stats.get("maxSize"));
+        assertEquals("LRU", stats.get("policy"));
+    }
+
+    @Test
+    public void testConcurrentSetStaysBounded() throws Exception {
+        StaticCache cache = new StaticCache(1000, StaticCache.Policy.LRU, 8);
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        for (int t = 0; t < 8; t++) {
+            int offset = t * 10_000;
+            pool.submit(() -> {
+                for (int i = 0; i < 10_000; i++) {
+                    cache.put("key" + (offset + i), i, 0);
+                    cache.get("key" + (offset + i / 2));
+                }
+            });
+        }
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(30, TimeUnit.SECONDS));
+        assertTrue(cache.size() <= 1000);
+        assertEquals(cache.size(), (long) cache.prefixed("key").size());
+    }
+}
@@ -9,6 +9,7 @@ import org.neo4j.graphdb.factory.GraphDatabaseSettings;
 import org.neo4j.test.TestGraphDatabaseFactory;
 
 import java.io.File;
+import java.util.Map;
 
 import static apoc.util.MapUtil.map;
 import static org.junit.Assert.*;
@@ -83,4 +84,26 @@ public class StaticTest {
         TestUtil.testCall(db, "call apoc.static.set('test2',null)", r -> assertEquals(42L,r.get("value")));
         TestUtil.testCall(db, "call apoc.static.get('test2')", r -> assertEquals(null,r.get("value")));
     }
+
+    @Test
+    public void testSetWithTtl() throws Exception {
+        TestUtil.testCall(db, "call apoc.static.set('expiring',42,50)", r -> assertEquals(null,r.get("value")));
+        TestUtil.testCall(db, "return apoc.static.get('expiring') as value", r -> assertEquals(42L,r.get("value")));
+        Thread.sleep(100);
+        TestUtil.testCall(db, "return apoc.static.get('expiring') as value", r -> assertEquals(null,r.get("value")));
+        TestUtil.testCall(db, "call apoc.static.stats()", r -> assertEquals(1L,((Map)r.get("value")).get("expirations")));
+    }
+
+    @Test
+    public void testStats() throws Exception {
+        TestUtil.testCall(db, "call apoc.static.set('test2',42)", r -> assertEquals(null,r.get("value")));
+        TestUtil.testCall(db, "return apoc.static.get('test2') as value", r -> assertEquals(42L,r.get("value")));
+        TestUtil.testCall(db, "return apoc.static.get('test3') as value", r -> assertEquals(null,r.get("value")));
+        TestUtil.testCall(db, "call apoc.static.stats()", r -> {
+            Map<String,Object> stats = (Map<String,Object>) r.get("value");
+            assertEquals(1L, stats.get("size"));
+            assertEquals(1L, stats.get("hits"));
+            assertEquals(1L, stats.get("misses"));
+        });
+    }
 }
@@ -0,0 +1,196 @@
+package apoc.es;
+
+import apoc.util.JsonUtil;
+import apoc.util.TestUtil;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.test.TestGraphDatabaseFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static apoc.util.MapUtil.map;
+import static org.junit.Assert.*;
+
+/**
+ * Runs apoc.es.bulk, apoc.es.scroll and apoc.es.searchAfter against a local stub of the Elasticsearch http api
+ */
+public class ElasticSearchBulkTest {
+
+    private static final int DOCUMENTS = 5;
+
+    private static GraphDatabaseService db;
+    private static HttpServer server;
+    private static String host;
+
+    // the bulk lines and the scroll ids that the stub received
+    private static final List<Map<String, Object>> bulkLines = new CopyOnWriteArrayList<>();
+    private static final List<Object> deletedScrolls = new CopyOnWriteArrayList<>();
+
+    @BeforeClass
+    public static void setUp() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", ElasticSearchBulkTest::handle);
+        server.start();
+        host = "localhost:" + server.getAddress().getPort();
+        db = new TestGraphDatabaseFactory().newImpermanentDatabase();
+        TestUtil.registerProcedure(db, ElasticSearch.class);
+    }
+
+    @AfterClass
+    public static void tearDown() {
+        db.shutdown();
+        server.stop(0);
+    }
+
+    @Before
+    public void clear() {
+        bulkLines.clear();
+        deletedScrolls.clear();
+    }
+
+    private static void handle(HttpExchange exchange) throws IOException {
+        String path = exchange.getRequestURI().getPath();
+        String query = exchange.getRequestURI().getQuery();
+        String body = read(exchange.getRequestBody());
+        Object response;
+        if (path.endsWith("/_bulk")) {
+            response = bulk(body);
+        } else if (path.equals("/_search/scroll") && exchange.getRequestMethod().equals("DELETE")) {
+            deletedScrolls.addAll((List<Object>) parse(body).get("scroll_id"));
+            response = map("succeeded", true);
+        } else if (path.equals("/_search/scroll")) {
+            int page = Integer.parseInt(parse(body).get("scroll_id").toString());
+            response = page(page * 2, page + 1);
+        } else if (path.endsWith("/_search") && query != null && query.contains("scroll=1m")) {
+            response = page(0, 1);
+        } else if (path.endsWith("/_search")) {
+            List<Object> after = (List<Object>) parse(body).get("search_after");
+            response = page(after == null ? 0 : ((Number) after.get(0)).intValue(), null);
+        } else {
+            exchange.sendResponseHeaders(404, -1);
+            exchange.close();
+            return;
+        }
+        byte[] bytes = JsonUtil.OBJECT_MAPPER.writeValueAsBytes(response);
+        exchange.getResponseHeaders().add("content-type", "application/json");
+        exchange.sendResponseHeaders(200, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static Map<String, Object> bulk(String body) throws IOException {
+        List<Object> items = new ArrayList<>();
+        boolean errors = false;
+        String[] lines = body.split("\n");
+        for (int i = 0; i < lines.length; i += 2) {
+            Map<String, Object> action = parse(lines[i]);
+            Map<String, Object> source = parse(lines[i + 1]);
+            bulkLines.add(map("action", action, "source", source));
+            if (Boolean.TRUE.equals(source.get("fail"))) {
+                errors = true;
+                items.add(map("index", map("status", 400, "error", map("type", "mapper_parsing_exception", "reason", "failed to parse"))));
+            } else {
+                items.add(map("index", map("status", 201)));
+            }
+        }
+        return map("took", 3, "errors", errors, "items", items);
+    }
+
+    // two hits per page, sorted by their id, starting after the given id
+    private static Map<String, Object> page(int after, Integer nextScroll) {
+        List<Object> hits = IntStream.rangeClosed(after + 1, Math.min(after + 2, DOCUMENTS))
+                .mapToObj(id -> map("_id", String.valueOf(id), "_source", map("id", id), "sort", Collections.singletonList(id)))
+                .collect(Collectors.toList());
+        Map<String, Object> page = map("hits", map("total", DOCUMENTS, "hits", hits));
+        if (nextScroll != null) page.put("_scroll_id", String.valueOf(nextScroll));
+        return page;
+    }
+
+    private static Map<String, Object> parse(String json) throws IOException {
+        return JsonUtil.OBJECT_MAPPER.readValue(json, Map.class);
+    }
+
+    private static String read(InputStream in) throws IOException {
+        try (Scanner scanner = new Scanner(in, StandardCharsets.UTF_8.name()).useDelimiter("\\A")) {
+            return scanner.hasNext() ? scanner.next() : "";
+        }
+    }
+
+    private static List<Map<String, Object>> documents(int count) {
+        return IntStream.rangeClosed(1, count).mapToObj(id -> map("_id", id, "name", "doc" + id)).collect(Collectors.toList());
+    }
+
+    @Test
+    public void testBulk() {
+        TestUtil.testCall(db, "CALL apoc.es.bulk({host}, 'test-index', {documents}, {batchSize: 2, concurrency: 2})",
+                map("host", host, "documents", documents(DOCUMENTS)), row -> {
+                    Map<String, Object> value = (Map<String, Object>) row.get("value");
+                    assertEquals(3L, value.get("batches"));
+                    assertEquals(5L, value.get("documents"));
+                    assertEquals(0L, value.get("failed"));
+                    assertEquals(9L, value.get("took"));
+                    assertEquals(Collections.emptyList(), value.get("errors"));
+                });
+        assertEquals(DOCUMENTS, bulkLines.size());
+        Set<Object> ids = new HashSet<>();
+        for (Map<String, Object> line : bulkLines) {
+            Map<String, Object> source = (Map<String, Object>) line.get("source");
+            assertFalse(source.containsKey("_id"));
+            Object id = ((Map<String, Object>) ((Map<String, Object>) line.get("action")).get("index")).get("_id");
+            assertEquals("doc" + id, source.get("name"));
+            ids.add(id);
+        }
+        assertEquals(new HashSet<>(Arrays.asList("1", "2", "3", "4", "5")), ids);
+    }
+
+    @Test
+    public void testBulkWithFailedDocuments() {
+        List<Map<String, Object>> documents = documents(3);
+        documents.get(1).put("fail", true);
+        TestUtil.testCall(db, "CALL apoc.es.bulk({host}, 'test-index', {documents}, {type: 'test-type'})",
+                map("host", host, "documents", documents), row -> {
+                    Map<String, Object> value = (Map<String, Object>) row.get("value");
+                    assertEquals(1L, value.get("batches"));
+                    assertEquals(1L, value.get("failed"));
+                    assertEquals(Collections.singletonList("failed to parse"), value.get("errors"));
+                });
+    }
+
+    @Test
+    public void testScroll() {
+        TestUtil.testResult(db, "CALL apoc.es.scroll({host}, 'test-index', null, null, {query: {match_all: {}}}, {size: 2}) YIELD value RETURN value._source.id AS id",
+                map("host", host), result -> {
+                    List<Object> ids = result.stream().map(row -> row.get("id")).collect(Collectors.toList());
+                    assertEquals(Arrays.asList(1L, 2L, 3L, 4L, 5L), ids);
+                });
+        assertEquals(Collections.singletonList("3"), deletedScrolls);
+    }
+
+    @Test
+    public void testSearchAfter() {
+        TestUtil.testResult(db, "CALL apoc.es.searchAfter({host}, 'test-index', null, {sort: [{id: 'asc'}]}, {size: 2}) YIELD value RETURN value._id AS id",
+                map("host", host), result -> {
+                    List<Object> ids = result.stream().map(row -> row.get("id")).collect(Collectors.toList());
+                    assertEquals(Arrays.asList("1", "2", "3", "4", "5"), ids);
+                });
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void testSearchAfterNeedsSort() {
+        TestUtil.testCall(db, "CALL apoc.es.searchAfter({host}, 'test-index', null, {}, {})", map("host", host), row -> {});
+    }
+}
@@ -0,0 +1,137 @@
+package apoc.export.binary;
+
+import apoc.util.TestUtil;
+import org.apache.commons.lang.exception.ExceptionUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.factory.GraphDatabaseSettings;
+import org.neo4j.helpers.collection.Iterators;
+import org.neo4j.test.TestGraphDatabaseFactory;
+
+import java.io.File;
+import java.util.List;
+import java.util.Map;
+
+import static apoc.util.MapUtil.map;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ExportBinaryTest {
+
+    private static File directory = new File("target/import");
+
+    static { //noinspection ResultOfMethodCallIgnored
+        directory.mkdirs();
+    }
+
+    private GraphDatabaseService db;
+    private GraphDatabaseService copy;
+
+    @Before
+    public void setUp() throws Exception {
+        db = newDatabase();
+        copy = newDatabase();
+        db.execute("CREATE (f:User:Admin {name:'Adam',age:42,male:true,kids:['Sam','Anna','Grace'], born:localdatetime('2015185T19:32:24'), " +
+                "place:point({latitude: 13.1, longitude: 33.46789}), scores:[1.5,2.5], login:datetime('2018-10-30T12:50:35.556[Europe/Berlin]')})" +
+                "-[:KNOWS {since: 1993, bffSince: duration('P5M1.5D')}]->(b:User {name:'Jim',age:42,day:date('2018-10-29')}),(c:User {name:'Carl',age:12,at:time('125035.556+0100')})").close();
+        db.execute("UNWIND range(1,100) AS i CREATE (:Item {name:'item-'+i, i:i})-[:IN {pos:i}]->(:Bucket {name:'bucket-'+(i%7)})").close();
+    }
+
+    private GraphDatabaseService newDatabase() throws Exception {
+        GraphDatabaseService db = new TestGraphDatabaseFactory()
+                .newImpermanentDatabaseBuilder()
+                .setConfig(GraphDatabaseSettings.load_csv_file_url_root, directory.getAbsolutePath())
+                .setConfig("apoc.export.file.enabled", "true")
+                .setConfig("apoc.import.file.enabled", "true")
+                .newGraphDatabase();
+        TestUtil.registerProcedure(db, ExportBinary.class, ImportBinary.class);
+        return db;
+    }
+
+    @After
+    public void tearDown() {
+        db.shutdown();
+        copy.shutdown();
+    }
+
+    @Test
+    public void testExportAllAndImport() throws Exception {
+        String filename = "all.bin";
+        TestUtil.testCall(db, "CALL apoc.export.binary.all({file},{batchSize:7})", map("file", filename), (r) -> {
+            assertEquals(filename, r.get("file"));
+            assertEquals("binary", r.get("format"));
+            assertEquals(203L, r.get("nodes"));
+            assertEquals(101L, r.get("relationships"));
+        });
+        TestUtil.testCall(copy, "CALL apoc.import.binary({file})", map("file", filename), (r) -> {
+            assertEquals(203L, r.get("nodes"));
+            assertEquals(101L, r.get("relationships"));
+        });
+        assertSameGraph();
+    }
+
+    @Test
+    public void testExportQueryUncompressedAndImport() throws Exception {
+        String filename = "query.bin";
+        TestUtil.testCall(db, "CALL apoc.export.binary.query('MATCH (u:User)-[r:KNOWS]->(o) RETURN u,r,o',{file},{compression:'none'})", map("file", filename), (r) -> {
+            assertEquals(2L, r.get("nodes"));
+            assertEquals(1L, r.get("relationships"));
+        });
+        TestUtil.testCall(copy, "CALL apoc.import.binary({file},{idMapping:'offheap'})", map("file", filename), (r) -> {
+            assertEquals(2L, r.get("nodes"));
+            assertEquals(1L, r.get("relationships"));
+        });
+        TestUtil.testCall(copy, "MATCH (a:User:Admin)-[r:KNOWS]->(b:User) RETURN a.name AS a, b.day AS day, r.bffSince AS since", (r) -> {
+            assertEquals("Adam", r.get("a"));
+            assertEquals(graph(db, "MATCH (b:User {name:'Jim'}) RETURN b.day AS day").get(0).get("day"), r.get("day"));
+            assertEquals(graph(db, "MATCH ()-[r:KNOWS]->() RETURN r.bffSince AS since").get(0).get("since"), r.get("since"));
+        });
+    }
+
+    @Test
+    public void testExportWithGzipCompressionAndImport() throws Exception {
+        String filename = "gzip.bin";
+        TestUtil.testCall(db, "CALL apoc.export.binary.all({file},{compression:'gzip'})", map("file", filename), (r) -> assertEquals(203L, r.get("nodes")));
+        TestUtil.testCall(copy, "CALL apoc.import.binary({file})", map("file", filename), (r) -> assertEquals(203L, r.get("nodes")));
+        assertSameGraph();
+    }
+
+    @Test
+    public void testExportIncludesUncommittedChanges() throws Exception {
+        String filename = "uncommitted.bin";
+        TestUtil.testCall(db, "CREATE (:User {name:'New'})-[:KNOWS]->(:User {name:'Newer'}) WITH count(*) AS created " +
+                "CALL apoc.export.binary.all({file},{batchSize:7}) YIELD nodes, relationships RETURN nodes, relationships", map("file", filename), (r) -> {
+            assertEquals(205L, r.get("nodes"));
+            assertEquals(102L, r.get("relationships"));
+        });
+        TestUtil.testCall(copy, "CALL apoc.import.binary({file})", map("file", filename), (r) -> {
+            assertEquals(205L, r.get("nodes"));
+            assertEquals(102L, r.get("relationships"));
+        });
+        assertSameGraph();
+    }
+
+    @Test
+    public void testUnsupportedCompression() throws Exception {
+        try {
+            TestUtil.testCall(db, "CALL apoc.export.binary.all({file},{compression:'zstd'})", map("file", "zstd.bin"), (r) -> {});
+            fail("zstd should be rejected for binary snapshots");
+        } catch (RuntimeException e) {
+            assertTrue(ExceptionUtils.getRootCause(e).getMessage().contains("use 'gzip' or 'none'"));
+        }
+    }
+
+    private void assertSameGraph() {
+        String nodes = "MATCH (n) RETURN labels(n) AS labels, properties(n) AS properties ORDER BY n.name, n.i";
+        String rels = "MATCH (a)-[r]->(b) RETURN a.name AS a, type(r) AS type, properties(r) AS properties, b.name AS b ORDER BY a, b";
+        assertEquals(graph(db, nodes), graph(copy, nodes));
+        assertEquals(graph(db, rels), graph(copy, rels));
+    }
+
+    private static List<Map<String, Object>> graph(GraphDatabaseService db, String query) {
+        return Iterators.asList(db.execute(query));
+    }
+}
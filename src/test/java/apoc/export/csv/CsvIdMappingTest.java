@@ -0,0 +1,52 @@
+package apoc.export.csv;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class CsvIdMappingTest {
+
+    private static final int IDS = 100_000;
+
+    @Test
+    public void testStringIdsAreKeptAcrossGrowth() {
+        for (CsvIdMapping.Storage storage : CsvIdMapping.Storage.values()) {
+            try (CsvIdMapping ids = new CsvIdMapping(storage)) {
+                for (int i = 0; i < IDS; i++) {
+                    assertTrue(ids.put("space", "person-" + i, i));
+                }
+                assertFalse(ids.put("space", "person-42", 0));
+                for (int i = 0; i < IDS; i++) {
+                    assertEquals(i, ids.get("space", "person-" + i));
+                }
+                assertEquals(CsvIdMapping.NOT_FOUND, ids.get("space", "person-" + IDS));
+                assertEquals(CsvIdMapping.NOT_FOUND, ids.get("other", "person-1"));
+                assertEquals(IDS, ids.size());
+            }
+        }
+    }
+
+    @Test
+    public void testNumericAndStringIdsStayDifferent() {
+        try (CsvIdMapping ids = new CsvIdMapping(CsvIdMapping.Storage.HEAP)) {
+            assertTrue(ids.put("space", "1", 10));
+            assertTrue(ids.put("space", "01", 11));
+            assertTrue(ids.put("space", "-0", 12));
+            assertTrue(ids.put("space", "", 13));
+            assertTrue(ids.put("space", "a much longer id with more than four chars", 14));
+            assertEquals(10, ids.get("space", 1));
+            assertEquals(10, ids.get("space", "1"));
+            assertEquals(11, ids.get("space", "01"));
+            assertEquals(12, ids.get("space", "-0"));
+            assertEquals(13, ids.get("space", ""));
+            assertEquals(14, ids.get("space", "a much longer id with more than four chars"));
+            assertEquals(CsvIdMapping.NOT_FOUND, ids.get("space", "a much longer id with more than four char"));
+
+            ids.set("space", "01", 21);
+            assertEquals(21, ids.get("space", "01"));
+            assertEquals(5, ids.size());
+        }
+    }
+}
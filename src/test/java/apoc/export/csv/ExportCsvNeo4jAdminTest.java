@@ -148,6 +148,40 @@ public class ExportCsvNeo4jAdminTest {
         assertFileEquals(file,EXPECTED_NEO4J_ADMIN_IMPORT_HEADER_RELATIONSHIP_NEXT_DELIVERY + EXPECTED_NEO4J_ADMIN_IMPORT_RELATIONSHIP_NEXT_DELIVERY, "graph.relationships.NEXT_DELIVERY.csv");
     }
 
+    @Test
+    public void testExportAllNeo4jAdminCsvInSmallChunks() throws Exception {
+        String fileName = "chunked.csv";
+        File output = new File(directory, fileName);
+        // every chunk holds a single id, so rows of the same file come from different chunks
+        TestUtil.testCall(db, "CALL apoc.export.csv.all({fileName},{bulkImport: true, delim: ';', batchSize: 1, useOptimizations: {type: 'none'}})",
+                map("fileName", fileName), r -> {
+                    assertEquals(7L, r.get("nodes"));
+                    assertEquals(2L, r.get("relationships"));
+                    assertEquals(20L, r.get("properties"));
+                });
+
+        String file = output.getParent() + File.separator;
+        assertFileEquals(file, EXPECTED_NEO4J_ADMIN_IMPORT_HEADER_NODE_ADDRESS + EXPECTED_NEO4J_ADMIN_IMPORT_NODE_ADDRESS, "chunked.nodes.Address.csv");
+        assertFileEquals(file, EXPECTED_NEO4J_ADMIN_IMPORT_HEADER_NODE_ADDRESS1 + EXPECTED_NEO4J_ADMIN_IMPORT_NODE_ADDRESS1, "chunked.nodes.Address1.Address.csv");
+        assertFileEquals(file, EXPECTED_NEO4J_ADMIN_IMPORT_HEADER_NODE_USER + EXPECTED_NEO4J_ADMIN_IMPORT_NODE_USER, "chunked.nodes.User.csv");
+        assertFileEquals(file, EXPECTED_NEO4J_ADMIN_IMPORT_HEADER_NODE_USER1 + EXPECTED_NEO4J_ADMIN_IMPORT_NODE_USER1, "chunked.nodes.User1.User.csv");
+        assertFileEquals(file, EXPECTED_NEO4J_ADMIN_IMPORT_HEADER_TYPES_NODE + EXPECTED_NEO4J_ADMIN_IMPORT_TYPES_NODE, "chunked.nodes.Types.csv");
+        assertFileEquals(file, EXPECTED_NEO4J_ADMIN_IMPORT_HEADER_RELATIONSHIP_KNOWS + EXPECTED_NEO4J_ADMIN_IMPORT_RELATIONSHIP_KNOWS, "chunked.relationships.KNOWS.csv");
+        assertFileEquals(file, EXPECTED_NEO4J_ADMIN_IMPORT_HEADER_RELATIONSHIP_NEXT_DELIVERY + EXPECTED_NEO4J_ADMIN_IMPORT_RELATIONSHIP_NEXT_DELIVERY, "chunked.relationships.NEXT_DELIVERY.csv");
+    }
+
+    @Test
+    public void testExportNeo4jAdminCsvQuotesCells() throws Exception {
+        db.execute("MATCH (n) DETACH DELETE n").close();
+        long id = (long) db.execute("CREATE (n:Quoted {name:'a;b', note:'line\nbreak'}) RETURN id(n) AS id").next().get("id");
+        String fileName = "quoted.csv";
+        File output = new File(directory, fileName);
+        TestUtil.testCall(db, "CALL apoc.export.csv.all({fileName},{bulkImport: true, delim: ';'})", map("fileName", fileName), r -> assertEquals(1L, r.get("nodes")));
+
+        String file = output.getParent() + File.separator;
+        assertFileEquals(file, String.format(":ID;name;note;:LABEL%n%d;\"a;b\";\"line\nbreak\";Quoted%n", id), "quoted.nodes.Quoted.csv");
+    }
+
     private void assertFileEquals(String file, String expectedNeo4jAdminImportNodeProduct, String s) {
         try {
             assertEquals(expectedNeo4jAdminImportNodeProduct, FileUtils.readFileToString(new File(file + s), Charset.forName("UTF-8")));
@@ -8,16 +8,22 @@ import org.junit.Test;
 import org.neo4j.graphdb.GraphDatabaseService;
 import org.neo4j.graphdb.QueryExecutionException;
 import org.neo4j.graphdb.Result;
+import org.neo4j.helpers.collection.Iterators;
 import org.neo4j.internal.kernel.api.exceptions.KernelException;
 import org.neo4j.test.TestGraphDatabaseFactory;
 
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.util.AbstractMap;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
 
 import static apoc.util.MapUtil.map;
 import static org.junit.Assert.assertEquals;
@@ -443,4 +449,72 @@ public class ImportCsvTest {
         Assert.assertEquals(1L, resultId.next().get("id"));
     }
 
+    @Test
+    public void testNodesFromGzipFile() throws IOException {
+        try (OutputStream out = new GZIPOutputStream(new FileOutputStream("src/test/resources/csv-inputs/id.csv.gz"))) {
+            out.write(testCsvs.get("id").getBytes());
+        }
+
+        TestUtil.testCall(
+                db,
+                "CALL apoc.import.csv([{fileName: {file}, labels: ['Person']}], [], {config})",
+                map(
+                        "file", "file:/id.csv.gz",
+                        "config", map("delimiter", '|', "stringIds", false)
+                ),
+                (r) -> {
+                    assertEquals(2L, r.get("nodes"));
+                    assertEquals(0L, r.get("relationships"));
+                }
+        );
+
+        final Result resultName = db.execute("MATCH (n:Person) RETURN n.name AS name ORDER BY name");
+        Assert.assertEquals("Jane", resultName.next().get("name"));
+        Assert.assertEquals("John", resultName.next().get("name"));
+    }
+
+    @Test
+    public void testIdMappingOffHeapAndOnDisk() {
+        for (String idMapping : Arrays.asList("offheap", "disk")) {
+            db.execute("MATCH (n) DETACH DELETE n").close();
+            TestUtil.testCall(
+                    db,
+                    "CALL apoc.import.csv([{fileName: {personFile}, labels: ['Person']}, {fileName: {companyFile}, labels: ['Company']}, {fileName: {uniFile}, labels: ['University']}], " +
+                            "[{fileName: {relFile}, type: 'AFFILIATED_WITH'}], {config})",
+                    map(
+                            "personFile", "file:/custom-ids-idspaces-persons.csv",
+                            "companyFile", "file:/custom-ids-idspaces-companies.csv",
+                            "uniFile", "file:/custom-ids-idspaces-unis.csv",
+                            "relFile", "file:/custom-ids-idspaces-affiliated-with.csv",
+                            "config", map("idMapping", idMapping, "batchSize", 1, "parallelFiles", 4)
+                    ),
+                    (r) -> {
+                        assertEquals(4L, r.get("nodes"));
+                        assertEquals(2L, r.get("relationships"));
+                    }
+            );
+
+            List<String> pairs = Iterators.asList(db.execute("MATCH (p:Person)-[:AFFILIATED_WITH]->(org) RETURN p.name + ' ' + org.name AS pair ORDER BY pair").columnAs("pair"));
+            assertEquals(Arrays.asList("Jane Neo4j", "John TU Munich"), pairs);
+        }
+    }
+
+    @Test
+    public void testIdMappingGrowsAndHashesStringIds() {
+        try (CsvIdMapping mapping = new CsvIdMapping(CsvIdMapping.Storage.HEAP)) {
+            for (int i = 0; i < 100_000; i++) {
+                Assert.assertTrue(mapping.put("Person", "p" + i, i));
+                Assert.assertTrue(mapping.put("Number", String.valueOf(i), i * 2));
+            }
+            Assert.assertFalse(mapping.put("Person", "p42", 0));
+            Assert.assertTrue(mapping.put("Number", "042", 1));
+            assertEquals(200_001L, mapping.size());
+            assertEquals(42L, mapping.get("Person", "p42"));
+            assertEquals(84L, mapping.get("Number", "42"));
+            assertEquals(1L, mapping.get("Number", "042"));
+            assertEquals(CsvIdMapping.NOT_FOUND, mapping.get("Person", "42"));
+            assertEquals(CsvIdMapping.NOT_FOUND, mapping.get("Company", "p42"));
+        }
+    }
+
 }
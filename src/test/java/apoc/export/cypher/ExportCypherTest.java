@@ -2,6 +2,7 @@ package apoc.export.cypher;
 
 import apoc.graph.Graphs;
 import apoc.util.TestUtil;
+import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.exception.ExceptionUtils;
 import org.junit.After;
 import org.junit.Before;
@@ -15,9 +16,13 @@ import org.neo4j.graphdb.factory.GraphDatabaseSettings;
 import org.neo4j.test.TestGraphDatabaseFactory;
 
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
 import java.util.Map;
 import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
 
 import static apoc.export.cypher.ExportCypherTest.ExportCypherResults.EXPECTED_CLEAN_UP;
 import static apoc.export.cypher.ExportCypherTest.ExportCypherResults.EXPECTED_CLEAN_UP_EMPTY;
@@ -183,6 +188,34 @@ public class ExportCypherTest {
         assertEquals(EXPECTED_NEO4J_SHELL, readFile(fileName));
     }
 
+    @Test
+    public void testExportAllCypherGzip() throws Exception {
+        String fileName = "all.cypher";
+        TestUtil.testCall(db, "CALL apoc.export.cypher.all({fileName},{useOptimizations: { type: 'none'}, format: 'neo4j-shell', compression: 'gzip'})",
+                map("fileName", fileName),
+                (r) -> assertResults(fileName, r, "database"));
+        try (InputStream in = new GZIPInputStream(new FileInputStream(new File(directory, "all.cypher.gz")))) {
+            assertEquals(EXPECTED_NEO4J_SHELL, IOUtils.toString(in, Charset.defaultCharset()));
+        }
+    }
+
+    @Test
+    public void testExportAllCypherMaxFileSize() throws Exception {
+        String fileName = "split.cypher";
+        TestUtil.testCall(db, "CALL apoc.export.cypher.all({fileName},{useOptimizations: { type: 'none'}, format: 'neo4j-shell', maxFileSize: 100})",
+                map("fileName", fileName),
+                (r) -> assertResults(fileName, r, "database"));
+        StringBuilder statements = new StringBuilder();
+        int files = 0;
+        for (File file; (file = new File(directory, String.format("split.%05d.cypher", files))).exists(); files++) {
+            String part = readFile(file.getName());
+            assertTrue(part.endsWith("\n"));
+            statements.append(part);
+        }
+        assertTrue(files > 1);
+        assertEquals(EXPECTED_NEO4J_SHELL, statements.toString());
+    }
+
     private static String readFile(String fileName) throws FileNotFoundException {
         return TestUtil.readFileToString(new File(directory, fileName));
     }
@@ -161,6 +161,36 @@ public class ExportGraphMLTest {
         TestUtil.testCall(db, "MATCH  (c:Bar {age: 12, values: [1,2,3]}) RETURN COUNT(c) AS c", null, (r) -> assertEquals(1L, r.get("c")));
     }
 
+    @Test
+    public void testImportGraphMLInSmallBatchesWithEdgesBeforeNodes() throws Exception {
+        db.execute("MATCH (n) DETACH DELETE n").close();
+
+        StringBuilder graphml = new StringBuilder(HEADER + "<key id=\"weight\" for=\"edge\" attr.name=\"weight\" attr.type=\"long\"/>%n" + GRAPH);
+        for (int i = 0; i < 50; i++) {
+            graphml.append("<edge source=\"n" + i + "\" target=\"n" + ((i + 1) % 100) + "\" label=\"NEXT\"><data key=\"weight\">" + i + "</data></edge>%n");
+        }
+        for (int i = 0; i < 100; i++) {
+            graphml.append("<node id=\"n" + i + "\" labels=\":Item\"><data key=\"labels\">:Item</data><data key=\"pos\">" + i + "</data></node>%n");
+        }
+        for (int i = 50; i < 100; i++) {
+            graphml.append("<edge source=\"n" + i + "\" target=\"n" + ((i + 1) % 100) + "\" label=\"NEXT\"><data key=\"weight\">" + i + "</data></edge>%n");
+        }
+        graphml.append(FOOTER);
+
+        File output = new File(directory, "importBatches.graphml");
+        FileWriter fw = new FileWriter(output);
+        fw.write(String.format(graphml.toString())); fw.close();
+        TestUtil.testCall(db, "CALL apoc.import.graphml({file},{readLabels:true, batchSize:7})", map("file", output.getAbsolutePath()),
+                (r) -> {
+                    assertEquals(100L, r.get("nodes"));
+                    assertEquals(100L, r.get("relationships"));
+                    assertEquals(200L, r.get("properties"));
+                });
+
+        TestUtil.testCall(db, "MATCH (a:Item)-[r:NEXT]->(b:Item) WHERE toInteger(b.pos) = (toInteger(a.pos) + 1) % 100 AND r.weight = toInteger(a.pos) RETURN count(*) AS c",
+                null, (r) -> assertEquals(100L, r.get("c")));
+    }
+
     @Test(expected = QueryExecutionException.class)
     public void testImportGraphMLWithNoImportConfig() throws Exception {
         File output = new File(directory, "all.graphml");
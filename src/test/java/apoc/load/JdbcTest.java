@@ -1,6 +1,7 @@
 package apoc.load;
 
 import apoc.ApocConfiguration;
+import apoc.load.util.JdbcPools;
 import apoc.util.TestUtil;
 import apoc.util.Util;
 import org.apache.commons.lang.exception.ExceptionUtils;
@@ -50,6 +51,7 @@ public class JdbcTest extends AbstractJdbcTest {
 
     @After
     public void tearDown() throws SQLException {
+        JdbcPools.closeAll();
         db.shutdown();
         conn.close();
         try {
@@ -154,6 +156,18 @@ public class JdbcTest extends AbstractJdbcTest {
                 (row) -> assertEquals(Util.map("count", 1 ), row.get("row")));
     }
 
+    @Test
+    public void testLoadJdbcBatch() throws Exception {
+        testResult(db, "CALL apoc.load.jdbcBatch('derby','INSERT INTO PERSON (NAME, SURNAME) VALUES (?, ?)', [['Jane','Doe'],['Jim','Doe'],['Jack','Doe']], {batchSize:2})",
+                (r) -> {
+                    assertEquals(Util.map("batch", 0, "statements", 2, "count", 2), r.next().get("row"));
+                    assertEquals(Util.map("batch", 1, "statements", 1, "count", 1), r.next().get("row"));
+                    assertEquals(false, r.hasNext());
+                });
+        testCall(db, "CALL apoc.load.jdbc('derby','SELECT COUNT(*) AS C FROM PERSON WHERE SURNAME = ?', ['Doe'], {fetchSize:10})",
+                (row) -> assertEquals(3, ((Map) row.get("row")).get("C")));
+    }
+
     @Test
     public void testLoadJdbcUpdateParams() throws Exception {
         testCall(db, "CALL apoc.load.jdbcUpdate('jdbc:derby:derbyDB','UPDATE PERSON SET SURNAME = ? WHERE NAME = ?',['John','John'])",
@@ -5,16 +5,23 @@ import apoc.util.Util;
 import org.junit.After;
 import org.junit.Assume;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.neo4j.graphdb.GraphDatabaseService;
 import org.neo4j.graphdb.QueryExecutionException;
 import org.neo4j.graphdb.Result;
+import org.neo4j.helpers.collection.Iterators;
 import org.neo4j.test.TestGraphDatabaseFactory;
 import org.testcontainers.containers.GenericContainer;
 
+import java.io.File;
+import java.io.FileWriter;
+import java.io.PrintWriter;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 
 import static apoc.util.MapUtil.map;
@@ -27,10 +34,13 @@ public class LoadCsvTest {
 
     private GraphDatabaseService db;
 
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
     private GenericContainer httpServer;
 
     @Before public void setUp() throws Exception {
-        db = new TestGraphDatabaseFactory().newImpermanentDatabaseBuilder().setConfig("apoc.import.file.enabled","true").newGraphDatabase();
+        db = new TestGraphDatabaseFactory().newImpermanentDatabaseBuilder().setConfig("apoc.import.file.enabled","true").setConfig("apoc.export.file.enabled","true").newGraphDatabase();
         TestUtil.registerProcedure(db, LoadCsv.class);
     }
 
@@ -337,4 +347,45 @@ RETURN m.col_1,m.col_2,m.col_3
         testResult(db, "CALL apoc.load.csv({url}, {quoteChar: '\0'})", map("url",url.toString()),
                 (r) -> assertEquals(16018L, r.stream().count()));
     }
+
+    @Test public void testLoadCsvParallelMatchesSequential() throws Exception {
+        File file = temp.newFile("large.csv");
+        try (PrintWriter out = new PrintWriter(new FileWriter(file))) {
+            out.print("id,name,note\r\n");
+            for (int i = 0; i < 5000; i++) {
+                out.print(i + ",name " + i + "," + (i % 7 == 0 ? "\"multi\nline, \"\"quoted\"\"\"" : "plain") + (i % 3 == 0 ? "\r\n" : "\n"));
+            }
+        }
+        String url = file.toURI().toString();
+        for (Map<String, Object> config : asList(map(), map("skip", 1500L), map("skip", 2047L, "limit", 1100L), map("skip", 4999L), map("skip", 6000L))) {
+            Map<String, Object> parallel = new LinkedHashMap<>(config);
+            parallel.put("parallel", true);
+            List<Map<String, Object>> expected = rows(url, config);
+            List<Map<String, Object>> actual = rows(url, parallel);
+            assertEquals(expected.size(), actual.size());
+            assertEquals(expected, actual);
+        }
+        assertEquals(5000, rows(url, map("parallel", true)).size());
+        assertEquals(asList("5", "name 5", "plain"), rows(url, map("skip", 5L, "limit", 1L, "parallel", true)).get(0).get("list"));
+        assertEquals("multi\nline, \"quoted\"", ((Map) rows(url, map("skip", 7L, "limit", 1L, "parallel", true)).get(0).get("map")).get("note"));
+    }
+
+    @Test public void testLoadCsvParallelSavesIndex() throws Exception {
+        File file = temp.newFile("indexed.csv");
+        try (PrintWriter out = new PrintWriter(new FileWriter(file))) {
+            out.println("id,name");
+            for (int i = 0; i < 3000; i++) {
+                out.println(i + ",name " + i);
+            }
+        }
+        String url = file.toURI().toString();
+        assertEquals(asList("2500", "name 2500"), rows(url, map("skip", 2500L, "limit", 1L, "parallel", true)).get(0).get("list"));
+        assertFalse(new File(file.getPath() + CsvRecordIndex.SUFFIX).exists());
+        assertEquals(2500L, rows(url, map("skip", 2500L, "limit", 1L, "parallel", true, "saveIndex", true)).get(0).get("lineNo"));
+        assertTrue(new File(file.getPath() + CsvRecordIndex.SUFFIX).isFile());
+    }
+
+    private List<Map<String, Object>> rows(String url, Map<String, Object> config) {
+        return Iterators.asList(db.execute("CALL apoc.load.csv({url},{config})", map("url", url, "config", config)));
+    }
 }
@@ -248,6 +248,28 @@ public class XmlTest {
                 });
     }
 
+    @Test
+    public void testMalformedXmlNoFailOnError() {
+        testCall(db, "RETURN apoc.xml.parse('<catalog><book id=\"1\"><title>Neo4j</book>', '/', {failOnError:false}) AS result",
+                (r) -> assertEquals(Collections.emptyMap(), r.get("result")));
+        // the books before the error are returned, followed by an empty map
+        testResult(db, "CALL apoc.load.xml('file:src/test/resources/xml/malformed.xml', '/catalog/book', {failOnError:false}) YIELD value RETURN value",
+                (r) -> {
+                    List<Map<String, Object>> values = Iterators.asList(r.<Map<String, Object>>columnAs("value"));
+                    assertEquals(2, values.size());
+                    assertEquals("bk101", values.get(0).get("id"));
+                    assertEquals(Collections.emptyMap(), values.get(1));
+                });
+        testResult(db, "CALL apoc.load.xml('file:src/test/resources/xml/malformed.xml', '/', {failOnError:false}) YIELD value RETURN value",
+                (r) -> assertEquals(Collections.singletonList(Collections.emptyMap()), Iterators.asList(r.columnAs("value"))));
+        try {
+            testCall(db, "RETURN apoc.xml.parse('<catalog><book id=\"1\"><title>Neo4j</book>') AS result", (r) -> {});
+            fail("malformed xml should fail without failOnError:false");
+        } catch (RuntimeException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("Can't read XML"));
+        }
+    }
+
     @Test
     public void testLoadXmlWithNextWordRels() {
         testCall(db, "call apoc.xml.import('file:src/test/resources/xml/humboldt_soemmering01_1791.TEI-P5.xml', " +
@@ -427,4 +449,40 @@ public class XmlTest {
                 map("xmlString", xmlString),
                 (r) -> assertEquals(XML_XPATH_AS_NESTED_MAP, r.get("result")));
     }
+
+    @Test
+    public void testLoadXmlXpathStreamingMatchesDom() {
+        // '[true()]' is outside of the streamed subset, so the second query is evaluated on the DOM
+        for (String path : Arrays.asList("/catalog/book[@id='bk102']/author", "//book[genre='Computer']", "//book[2]",
+                "/catalog/*[title!='Midnight Rain'][3]", "//description", "/catalog/book[@id]/price", "//book[author='Corets, Eva'][2]/title")) {
+            for (boolean simple : Arrays.asList(false, true)) {
+                List<Object> streamed = Iterators.asList(db.execute("CALL apoc.load.xml('file:src/test/resources/xml/books.xml', {path}, {}, {simple})",
+                        map("path", path, "simple", simple)).columnAs("value"));
+                List<Object> dom = Iterators.asList(db.execute("CALL apoc.load.xml('file:src/test/resources/xml/books.xml', {path}, {}, {simple})",
+                        map("path", path + "[true()]", "simple", simple)).columnAs("value"));
+                assertFalse(path, streamed.isEmpty());
+                assertEquals(path, dom, streamed);
+            }
+        }
+    }
+
+    @Test
+    public void testParseWithXPathNestedMatchesInDocumentOrder() {
+        testCall(db, "RETURN apoc.xml.parse('<a><b id=\"1\"><b id=\"2\"/><c>x</c></b><b id=\"3\"><c>y</c></b></a>', '//b[c=\"x\"]') AS result",
+                (r) -> assertEquals("1", ((Map) r.get("result")).get("id")));
+    }
+
+    @Test
+    public void testLoadXmlWithDefaultNamespace() {
+        String url = "file:src/test/resources/xml/humboldt_soemmering01_1791.TEI-P5.xml";
+        testCall(db, "CALL apoc.load.xml({url})", map("url", url), (row) -> {
+            Map<String, Object> value = (Map<String, Object>) row.get("value");
+            assertEquals("TEI", value.get("_type"));
+            assertFalse(((List<Object>) value.get("_children")).isEmpty());
+        });
+        long streamed = Iterators.count(db.execute("CALL apoc.load.xml({url}, '//*')", map("url", url)));
+        long dom = Iterators.count(db.execute("CALL apoc.load.xml({url}, '//*[true()]')", map("url", url)));
+        assertTrue(streamed > 1);
+        assertEquals(dom, streamed);
+    }
 }
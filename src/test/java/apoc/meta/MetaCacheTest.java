@@ -0,0 +1,118 @@
+package apoc.meta;
+
+import apoc.util.TestUtil;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.helpers.collection.Iterators;
+import org.neo4j.test.TestGraphDatabaseFactory;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static apoc.util.MapUtil.map;
+import static apoc.util.TestUtil.testCall;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class MetaCacheTest {
+
+    private GraphDatabaseService db;
+
+    @Before
+    public void setUp() throws Exception {
+        db = new TestGraphDatabaseFactory().newImpermanentDatabaseBuilder()
+                .setConfig("apoc.meta.cache.enabled", "true")
+                .setConfig("apoc.meta.cache.refreshDelay", "0")
+                .newGraphDatabase();
+        TestUtil.registerProcedure(db, Meta.class);
+    }
+
+    @After
+    public void tearDown() {
+        db.shutdown();
+    }
+
+    private List<String> properties(String label) {
+        return Iterators.asList(db.execute("CALL apoc.meta.data({cached:true}) YIELD label, property, type WHERE label = {label} AND type <> 'RELATIONSHIP' RETURN property",
+                map("label", label)).columnAs("property"));
+    }
+
+    // waits until the background refresh has sampled the changes of all committed transactions
+    private void awaitRefresh() throws InterruptedException {
+        long timeout = System.currentTimeMillis() + 10_000;
+        while (true) {
+            List<Map<String, Object>> stats = Iterators.asList(db.execute("CALL apoc.meta.cache.stats()"));
+            if (stats.stream().allMatch(row -> row.get("transactions").equals(0L) && row.get("refreshScheduled").equals(false))) return;
+            assertTrue("the meta data cache wasn't refreshed: " + stats, System.currentTimeMillis() < timeout);
+            Thread.sleep(10);
+        }
+    }
+
+    @Test
+    public void testCachedMetaDataIsUpdatedByTransactions() throws Exception {
+        db.execute("CREATE (:Person {name:'Tom'})").close();
+        assertEquals(asList("name"), properties("Person"));
+
+        db.execute("CREATE (:Person {name:'Jim', born:1970})-[:KNOWS {since:2010}]->(:City {name:'Berlin'})").close();
+        awaitRefresh();
+        assertEquals(asList("name", "born"), properties("Person"));
+        assertEquals(asList("name"), properties("City"));
+        assertEquals(asList("since"), properties("KNOWS"));
+
+        db.execute("MATCH (p:Person {name:'Jim'}) REMOVE p.born").close();
+        awaitRefresh();
+        assertEquals(asList("name"), properties("Person"));
+        testCall(db, "CALL apoc.meta.cache.refresh()", (row) -> {
+            assertEquals(0L, row.get("transactions"));
+            assertEquals(0L, row.get("changedNodes"));
+            assertEquals(0L, row.get("removals"));
+        });
+    }
+
+    @Test
+    public void testCachedCountsAreNotInflatedByUpdates() throws Exception {
+        db.execute("UNWIND range(1, 3) AS id CREATE (:Person {id:id, name:'Tom'})").close();
+        String query = "CALL apoc.meta.data({config}) YIELD label, property, count, leftCount, rightCount RETURN * ORDER BY label, property";
+        Iterators.count(db.execute(query, map("config", map("cached", true))));
+        for (int i = 0; i < 5; i++) {
+            db.execute("MATCH (p:Person) SET p.name = 'Tom' + {i}", map("i", i)).close();
+        }
+        db.execute("MATCH (a:Person {id:1}), (b:Person {id:2}) CREATE (a)-[:KNOWS]->(b)").close();
+        awaitRefresh();
+        assertEquals(Iterators.asList(db.execute(query, map("config", map("cached", false)))),
+                Iterators.asList(db.execute(query, map("config", map("cached", true)))));
+    }
+
+    @Test
+    public void testCachedNodeTypeProperties() throws Exception {
+        db.execute("CREATE (:Movie {title:'Matrix'})").close();
+        TestUtil.testResult(db, "CALL apoc.meta.nodeTypeProperties({cached:true})", (r) -> {
+            List<Map<String, Object>> rows = Iterators.asList(r);
+            assertEquals(1, rows.size());
+            assertEquals("title", rows.get(0).get("propertyName"));
+        });
+        db.execute("MATCH (m:Movie) SET m.released = 1999").close();
+        awaitRefresh();
+        TestUtil.testResult(db, "CALL apoc.meta.nodeTypeProperties({cached:true})", (r) -> {
+            List<String> names = Iterators.asList(r).stream().map(row -> (String) row.get("propertyName")).collect(Collectors.toList());
+            assertTrue(names.contains("title"));
+            assertTrue(names.contains("released"));
+        });
+    }
+
+    @Test
+    public void testUncachedCallsDontUseTheCache() throws Exception {
+        db.execute("CREATE (:Person {name:'Tom'})").close();
+        TestUtil.testResult(db, "CALL apoc.meta.data()", (r) -> assertTrue(r.hasNext()));
+        TestUtil.testResult(db, "CALL apoc.meta.cache.stats()", (r) -> assertFalse(r.hasNext()));
+    }
+
+    private static List<String> asList(String... values) {
+        return Arrays.asList(values);
+    }
+}
@@ -866,6 +866,38 @@ public class MetaTest {
                 });
     }
 
+    @Test
+    public void testMetaDataConfidence() throws Exception {
+        db.execute("UNWIND [30, 40, '50', 60] AS age CREATE (:Person {name:'Tom', age:age})").close();
+        TestUtil.testResult(db, "CALL apoc.meta.data({sample:-1})",
+                (r) -> {
+                    Map<String, Object>  personNameProperty = r.next();
+                    Map<String, Object>  personAgeProperty = r.next();
+                    assertEquals("name", personNameProperty.get("property"));
+                    assertEquals("STRING", personNameProperty.get("type"));
+                    assertEquals(1.0, personNameProperty.get("confidence"));
+                    assertEquals("age", personAgeProperty.get("property"));
+                    assertEquals("INTEGER", personAgeProperty.get("type"));
+                    assertEquals(0.75, personAgeProperty.get("confidence"));
+                });
+    }
+
+    @Test
+    public void testMetaDataWithIdSampling() throws Exception {
+        db.execute("UNWIND range(1,2000) AS i CREATE (:Item {name:'item-'+i, value:CASE WHEN i % 10 = 0 THEN 'none' ELSE i END})-[:IN]->(:Bucket {name:'bucket'})").close();
+        TestUtil.testResult(db, "CALL apoc.meta.data({sample:200, idSamplingMinCount:1000, idRangeMinSize:100}) YIELD label, property, type, confidence WHERE label = 'Item' RETURN property, type, confidence",
+                (r) -> {
+                    Map<String, Map<String, Object>> properties = new HashMap<>();
+                    r.forEachRemaining(row -> properties.put((String) row.get("property"), row));
+                    assertEquals("RELATIONSHIP", properties.get("IN").get("type"));
+                    assertEquals("STRING", properties.get("name").get("type"));
+                    assertEquals(1.0, properties.get("name").get("confidence"));
+                    assertEquals("INTEGER", properties.get("value").get("type"));
+                    double confidence = (double) properties.get("value").get("confidence");
+                    assertEquals(true, confidence > 0.5 && confidence <= 1.0);
+                });
+    }
+
     @Test
     public void testSchemaWithSample() {
         db.execute("create constraint on (p:Person) assert p.name is unique").close();
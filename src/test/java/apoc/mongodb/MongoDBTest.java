@@ -125,7 +125,9 @@ public class MongoDBTest {
 
     @After
     public void after() {
+        // the clients are shared and keep their connections open, once they are closed
         // the connections active before must be equal to the connections active after
+        MongoDBClients.closeAll();
         long numConnectionsAfter = (long) getNumConnections().get("current");
         assertEquals(numConnections, numConnectionsAfter);
     }
@@ -276,6 +278,27 @@ public class MongoDBTest {
         });
     }
 
+    @Test
+    public void testBulk() throws Exception {
+        Map<String, Object> bulkParams = map("host", HOST, "db", "test", "collection", "bulk",
+                "documents", Arrays.asList(map("sku", 1, "name", "a"), map("sku", 2, "name", "b"), map("sku", 3, "name", "c")));
+        TestUtil.testCall(db, "CALL apoc.mongodb.bulk({host},{db},{collection},{documents},{keys:['sku'],batchSize:2})", bulkParams, r -> {
+            Map<String, Object> stats = (Map<String, Object>) r.get("value");
+            assertEquals(2L, stats.get("batches"));
+            assertEquals(3L, stats.get("upserted"));
+        });
+        bulkParams.put("documents", Arrays.asList(map("sku", 1, "name", "a2"), map("sku", 4, "name", "d")));
+        TestUtil.testCall(db, "CALL apoc.mongodb.bulk({host},{db},{collection},{documents},{keys:['sku']})", bulkParams, r -> {
+            Map<String, Object> stats = (Map<String, Object>) r.get("value");
+            assertEquals(1L, stats.get("matched"));
+            assertEquals(1L, stats.get("upserted"));
+        });
+        TestUtil.testCall(db, "CALL apoc.mongodb.count({host},{db},{collection},{})", bulkParams,
+                r -> assertEquals(4L, r.get("value")));
+        TestUtil.testCall(db, "CALL apoc.mongodb.first({host},{db},{collection},{sku:1})", bulkParams,
+                r -> assertEquals("a2", ((Map) r.get("value")).get("name")));
+    }
+
     @Test
     public void testDelete() throws Exception {
         TestUtil.testResult(db, "CALL apoc.mongodb.insert({host},{db},{collection},[{foo:'bar'}])", params, (r) -> {
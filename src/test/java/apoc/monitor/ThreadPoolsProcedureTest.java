@@ -0,0 +1,35 @@
+package apoc.monitor;
+
+import apoc.Pools;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static apoc.util.TestUtil.testResult;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ThreadPoolsProcedureTest extends MonitorTestCase {
+
+    @Override
+    Class procedureClass() {
+        return ThreadPools.class;
+    }
+
+    @Test
+    public void testListPools() throws Exception {
+        Pools.pool(Pools.CYPHER).submit(() -> 42).get();
+        testResult(db, "CALL apoc.monitor.pools()", (result) -> {
+            Map<String, Map<String, Object>> pools = new HashMap<>();
+            result.forEachRemaining(row -> pools.put((String) row.get("name"), row));
+            assertTrue(pools.containsKey("default"));
+            assertTrue(pools.containsKey("single"));
+            assertTrue(pools.containsKey("scheduled"));
+            Map<String, Object> cypher = pools.get(Pools.CYPHER);
+            assertEquals((long) Pools.getNoThreadsInPool(Pools.CYPHER), cypher.get("maxPoolSize"));
+            assertTrue((long) cypher.get("taskCount") >= 1L);
+            assertEquals(false, cypher.get("shutdown"));
+        });
+    }
+}
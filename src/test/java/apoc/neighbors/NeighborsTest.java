@@ -3,6 +3,10 @@ package apoc.neighbors;
 import apoc.util.TestUtil;
 import org.junit.*;
 import org.neo4j.graphdb.*;
+import org.neo4j.kernel.api.KernelTransaction;
+import org.neo4j.kernel.impl.core.ThreadToStatementContextBridge;
+import org.neo4j.kernel.internal.GraphDatabaseAPI;
+import org.roaringbitmap.longlong.Roaring64NavigableMap;
 
 import java.util.Arrays;
 import java.util.List;
@@ -173,4 +177,41 @@ public class NeighborsTest {
                         "RETURN number",
                 (row) -> assertEquals(1L, row.get("number")));
     }
+
+    private Roaring64NavigableMap expandInBatchesOfOne(Node start, String types, int hops) {
+        GraphDatabaseAPI api = (GraphDatabaseAPI) db;
+        KernelTransaction ktx = api.getDependencyResolver().resolveDependency(ThreadToStatementContextBridge.class).getKernelTransactionBoundToThisThread(true);
+        NeighborsExpander expander = new NeighborsExpander(api, ktx, types, 1);
+        Roaring64NavigableMap next = NeighborsExpander.bitmap(start.getId());
+        for (int i = 0; i < hops; i++) {
+            next = expander.expand(next);
+        }
+        return next;
+    }
+
+    @Test
+    public void getNeighborsWithBatchedFrontier() {
+        try (Transaction tx = db.beginTx()) {
+            Node first = db.findNodes(Label.label("First")).next();
+            // b at 1 hop, a and c at 2 hops, b and d at 3 hops
+            assertEquals(2L, expandInBatchesOfOne(first, "KNOWS", 2).getLongCardinality());
+            assertEquals(2L, expandInBatchesOfOne(first, "KNOWS>", 3).getLongCardinality());
+            tx.success();
+        }
+    }
+
+    @Test
+    public void getNeighborsWithBatchedFrontierSeesUncommittedChanges() {
+        try (Transaction tx = db.beginTx()) {
+            Node first = db.findNodes(Label.label("First")).next();
+            // the second hop is a frontier of several batches, each of the new nodes is only in this transaction
+            for (Node neighbor : db.findNodes(Label.label("Neighbor")).stream().collect(Collectors.toList())) {
+                neighbor.createRelationshipTo(db.createNode(), RelationshipType.withName("KNOWS"));
+            }
+            first.createRelationshipTo(db.findNode(Label.label("Neighbor"), "name", "c"), RelationshipType.withName("KNOWS"));
+            // b and c at 1 hop, a, c, d and the new nodes of b and c at 2 hops
+            assertEquals(5L, expandInBatchesOfOne(first, "KNOWS>", 2).getLongCardinality());
+            tx.success();
+        }
+    }
 }
@@ -0,0 +1,65 @@
+package apoc.periodic;
+
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+
+public class BatchSizerTest {
+
+    private static final long MS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    @Test
+    public void testFixedNeverChanges() {
+        BatchSizer sizer = BatchSizer.fixed(100, 4);
+        sizer.completed(100, 10_000 * MS, true);
+        sizer.completed(100, MS, false);
+        assertEquals(100, sizer.batchSize());
+        assertEquals(4, sizer.concurrency());
+        assertEquals(1L, sizer.toMap().get("conflicts"));
+    }
+
+    @Test
+    public void testShrinksSlowBatches() {
+        BatchSizer sizer = new BatchSizer(1000, 4, true, 100, 10, 10000);
+        sizer.completed(1000, 400 * MS, false);
+        assertEquals(500, sizer.batchSize());
+        sizer.completed(500, 100 * MS, false);
+        assertEquals(500, sizer.batchSize());
+    }
+
+    @Test
+    public void testGrowsFastBatchesUpToMax() {
+        BatchSizer sizer = new BatchSizer(1000, 4, true, 100, 10, 3000);
+        sizer.completed(1000, 10 * MS, false);
+        assertEquals(2000, sizer.batchSize());
+        sizer.completed(2000, 10 * MS, false);
+        assertEquals(3000, sizer.batchSize());
+    }
+
+    @Test
+    public void testBacksOffOnConflicts() {
+        BatchSizer sizer = new BatchSizer(1000, 8, true, 100, 100, 10000);
+        sizer.completed(1000, 100 * MS, true);
+        assertEquals(500, sizer.batchSize());
+        assertEquals(4, sizer.concurrency());
+        sizer.completed(500, 100 * MS, true);
+        sizer.completed(250, 100 * MS, true);
+        assertEquals(125, sizer.batchSize());
+        assertEquals(1, sizer.concurrency());
+        sizer.completed(100, 100 * MS, false);
+        assertEquals(2, sizer.concurrency());
+        assertEquals(3L, sizer.toMap().get("conflicts"));
+    }
+
+    @Test
+    public void testDefaultMaxOfHugeBatchSizeDoesNotOverflow() {
+        BatchSizer sizer = BatchSizer.from(Collections.<String, Object>singletonMap("adaptive", true), Integer.MAX_VALUE / 2, 4);
+        assertEquals((long) Integer.MAX_VALUE, sizer.toMap().get("maxBatchSize"));
+        // a fast batch doubles the size, which the overflowed default used to cap at the initial size
+        sizer.completed(Integer.MAX_VALUE / 2, MS, false);
+        assertEquals(Integer.MAX_VALUE / 2 * 2, sizer.batchSize());
+    }
+}
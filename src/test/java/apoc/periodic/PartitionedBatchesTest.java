@@ -0,0 +1,38 @@
+package apoc.periodic;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static apoc.util.Util.map;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class PartitionedBatchesTest {
+
+    @Test
+    public void testRowsWithSameKeyShareALane() {
+        List<Map<String, Object>> rows = new ArrayList<>();
+        for (long i = 0; i < 1000; i++) {
+            rows.add(map("key", i % 17, "value", i));
+        }
+        PartitionedBatches batches = new PartitionedBatches(rows.iterator(), "key", 4);
+        Map<Object, Integer> laneOfKey = new HashMap<>();
+        int total = 0;
+        while (batches.hasNext()) {
+            List<Map<String, Object>> batch = batches.next(10);
+            assertTrue(batch.size() <= 10);
+            for (Map<String, Object> row : batch) {
+                Integer previous = laneOfKey.put(row.get("key"), batches.lane());
+                if (previous != null) assertEquals(previous.intValue(), batches.lane());
+            }
+            total += batch.size();
+        }
+        assertEquals(1000, total);
+        assertFalse(batches.hasNext());
+    }
+}
@@ -314,6 +314,61 @@ System.out.println("call list" + db.execute(callList).resultAsString());
         );
     }
 
+    @Test
+    public void testIterateAdaptive() throws Exception {
+        db.execute("UNWIND range(1,1000) AS x CREATE (:Person{name:'Person_'+x})").close();
+
+        testResult(db, "CALL apoc.periodic.iterate('match (p:Person) return p', 'SET p.lastname =p.name REMOVE p.name', {batchSize:10,parallel:true,adaptive:true,maxBatchSize:100})", result -> {
+            Map<String, Object> row = Iterators.single(result);
+            assertEquals(1000L, row.get("total"));
+            assertEquals(0L, row.get("failedBatches"));
+            Map<String, Object> adaptive = (Map<String, Object>) row.get("adaptive");
+            assertEquals(true, adaptive.get("enabled"));
+            assertEquals(10L, adaptive.get("batchSize"));
+            long finalBatchSize = (long) adaptive.get("finalBatchSize");
+            assertTrue(finalBatchSize >= 1 && finalBatchSize <= 100);
+            assertEquals(0L, adaptive.get("conflicts"));
+        });
+
+        testCall(db,
+                "MATCH (p:Person) where p.lastname is not null return count(p) as count",
+                row -> assertEquals(1000L, row.get("count"))
+        );
+    }
+
+    @Test
+    public void testIterateNotAdaptiveByDefault() throws Exception {
+        testResult(db, "CALL apoc.periodic.iterate('UNWIND range(1,100) AS x RETURN x', 'CREATE (:Foo {x:x})', {batchSize:10})", result -> {
+            Map<String, Object> row = Iterators.single(result);
+            assertEquals(10L, row.get("batches"));
+            Map<String, Object> adaptive = (Map<String, Object>) row.get("adaptive");
+            assertEquals(false, adaptive.get("enabled"));
+            assertEquals(10L, adaptive.get("finalBatchSize"));
+        });
+    }
+
+    @Test
+    public void testIteratePartitionBy() throws Exception {
+        db.execute("UNWIND range(0,9) AS x CREATE (:Hub{id:x})").close();
+
+        testResult(db, "CALL apoc.periodic.iterate('UNWIND range(1,1000) AS x MATCH (h:Hub {id: x % 10}) RETURN h, x', 'CREATE (h)-[:HAS]->(:Leaf {id:x})', {batchSize:10,parallel:true,partitionBy:'h',partitions:4})", result -> {
+            Map<String, Object> row = Iterators.single(result);
+            assertEquals(1000L, row.get("total"));
+            assertEquals(0L, row.get("failedBatches"));
+            assertEquals(0L, row.get("failedOperations"));
+        });
+
+        testCall(db,
+                "MATCH (:Hub)-[r:HAS]->(:Leaf) return count(r) as count",
+                row -> assertEquals(1000L, row.get("count"))
+        );
+    }
+
+    @Test(expected = QueryExecutionException.class)
+    public void testIteratePartitionByUnknownColumn() throws Exception {
+        testCall(db, "CALL apoc.periodic.iterate('UNWIND range(1,10) AS x RETURN x', 'CREATE (:Foo {x:x})', {partitionBy:'y'})", row -> fail());
+    }
+
     @Test
     public void testIteratePrefix() throws Exception {
         db.execute("UNWIND range(1,100) AS x CREATE (:Person{name:'Person_'+x})").close();
@@ -11,7 +11,9 @@ import org.neo4j.test.TestGraphDatabaseFactory;
 import java.util.Map;
 
 import static org.junit.Assert.assertEquals;
+import static java.util.Arrays.asList;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 import static org.neo4j.helpers.collection.MapUtil.map;
 
 /**
@@ -228,4 +230,66 @@ public class TriggerTest {
 
 
 
+
+    @Test
+    public void testAsyncTriggerCoalescesTransactions() throws Exception {
+        db.execute("CREATE (:Counter {count:0, batches:0})").close();
+        Trigger.TriggerHandler.add("async-count","MATCH (c:Counter) SET c.count = c.count + size({createdNodes}), c.batches = c.batches + 1, c.txs = size({transactionIds})", map("phase","async"));
+        for (int i = 0; i < 20; i++) {
+            db.execute("CREATE (:Item)").close();
+        }
+        long deadline = System.currentTimeMillis() + 10_000;
+        long count = 0;
+        while (count < 20 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+            count = (Long) Iterators.single(db.execute("MATCH (c:Counter) RETURN c.count AS count").columnAs("count"));
+        }
+        assertEquals(20L, count);
+        TestUtil.testCall(db, "MATCH (c:Counter) RETURN c.batches AS batches", (row) -> assertTrue((Long) row.get("batches") <= 20L));
+        TestUtil.testCall(db, "CALL apoc.trigger.asyncStats()", (row) -> {
+            Map<String, Object> stats = (Map<String, Object>) row.get("value");
+            assertTrue((Long) stats.get("queued") >= 20L);
+            assertEquals(0L, stats.get("dropped"));
+        });
+    }
+
+    @Test
+    public void testCoalesce() throws Exception {
+        Map<String, Object> first = map("transactionId", 1L, "commitTime", 10L, "createdNodes", asList("a", "b"), "createdRelationships", asList(),
+                "deletedNodes", asList(), "deletedRelationships", asList(), "assignedLabels", map("Person", asList("a")), "removedLabels", map(),
+                "assignedNodeProperties", map(), "removedNodeProperties", map(), "assignedRelationshipProperties", map(), "removedRelationshipProperties", map());
+        Map<String, Object> second = map("transactionId", 2L, "commitTime", 20L, "createdNodes", asList("c"), "createdRelationships", asList(),
+                "deletedNodes", asList("b"), "deletedRelationships", asList(), "assignedLabels", map("Person", asList("c")), "removedLabels", map(),
+                "assignedNodeProperties", map(), "removedNodeProperties", map(), "assignedRelationshipProperties", map(), "removedRelationshipProperties", map());
+        Map<String, Object> params = AsyncTriggers.coalesce(asList(first, second));
+        assertEquals(asList("a", "c"), params.get("createdNodes"));
+        assertEquals(asList("b"), params.get("deletedNodes"));
+        assertEquals(map("Person", asList("a", "c")), params.get("assignedLabels"));
+        assertEquals(asList(1L, 2L), params.get("transactionIds"));
+        assertEquals(2L, params.get("transactionId"));
+        assertEquals(20L, params.get("commitTime"));
+    }
+
+    @Test
+    public void testSelectorLabels() throws Exception {
+        db.execute("CREATE (:Counter {count:0})").close();
+        Trigger.TriggerHandler.add("count-persons","MATCH (c:Counter) SET c.count = c.count + 1", map("phase","before","labels",asList("Person")));
+        db.execute("CREATE (:Other)").close();
+        db.execute("CREATE (:Other {name:'foo'})").close();
+        TestUtil.testCall(db, "MATCH (c:Counter) RETURN c.count as count", (row) -> assertEquals(0L, row.get("count")));
+        db.execute("CREATE (:Person)").close();
+        db.execute("MATCH (p:Person) SET p.name = 'John'").close();
+        TestUtil.testCall(db, "MATCH (c:Counter) RETURN c.count as count", (row) -> assertEquals(2L, row.get("count")));
+    }
+
+    @Test
+    public void testSelectorTypesAndPropertyKeys() throws Exception {
+        db.execute("CREATE (:Counter {count:0}), (:A), (:B)").close();
+        Trigger.TriggerHandler.add("count-knows-since","MATCH (c:Counter) SET c.count = c.count + 1", map("phase","before","types",asList("KNOWS"),"propertyKeys",asList("since")));
+        db.execute("MATCH (a:A),(b:B) CREATE (a)-[:LIKES {since:2010}]->(b)").close();
+        db.execute("MATCH (a:A),(b:B) CREATE (a)-[:KNOWS]->(b)").close();
+        TestUtil.testCall(db, "MATCH (c:Counter) RETURN c.count as count", (row) -> assertEquals(0L, row.get("count")));
+        db.execute("MATCH (:A)-[r:KNOWS]->(:B) SET r.since = 2012").close();
+        TestUtil.testCall(db, "MATCH (c:Counter) RETURN c.count as count", (row) -> assertEquals(1L, row.get("count")));
+    }
 }
@@ -0,0 +1,111 @@
+package apoc.ttl;
+
+import apoc.date.Date;
+import apoc.util.TestUtil;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.neo4j.graphdb.Label;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.helpers.collection.Iterators;
+import org.neo4j.kernel.internal.GraphDatabaseAPI;
+import org.neo4j.logging.NullLog;
+import org.neo4j.scheduler.JobScheduler;
+import org.neo4j.test.TestGraphDatabaseFactory;
+
+import static org.junit.Assert.*;
+
+public class TTLLifeCycleTest {
+
+    private GraphDatabaseAPI db;
+    private TTLLifeCycle ttl;
+
+    @Before
+    public void setUp() throws Exception {
+        db = (GraphDatabaseAPI) new TestGraphDatabaseFactory()
+                .newImpermanentDatabaseBuilder()
+                .setConfig("apoc.ttl.enabled", "true")
+                .setConfig("apoc.ttl.schedule", "3600")
+                .setConfig("apoc.ttl.limit", "2")
+                .setConfig("apoc.ttl.concurrency", "2")
+                .setConfig("apoc.ttl.relationship_batch_size", "5")
+                .newGraphDatabase();
+        TestUtil.registerProcedure(db, Date.class, TTL.class);
+        db.execute("CREATE INDEX ON :TTL(ttl)").close();
+        ttl = new TTLLifeCycle(db.getDependencyResolver().resolveDependency(JobScheduler.class), db, NullLog.getInstance());
+        ttl.start();
+    }
+
+    @After
+    public void tearDown() {
+        ttl.stop();
+        db.shutdown();
+    }
+
+    @Test
+    public void testExpireBacklogInOneRun() throws Exception {
+        db.execute("UNWIND range(1,11) AS id CREATE (:TTL:Session {id:id, ttl: timestamp() - 1000})").close();
+        db.execute("CREATE (:TTL:Session {id:0, ttl: timestamp() + 100000})").close();
+        ttl.expire();
+        assertEquals(1L, count("MATCH (n:Session) RETURN count(*) AS c"));
+        TestUtil.testCall(db, "CALL apoc.ttl.stats()", (r) -> {
+            assertEquals(true, r.get("enabled"));
+            assertEquals(11L, r.get("nodesDeleted"));
+            assertEquals(0L, r.get("backlogNodes"));
+            assertEquals(1L, r.get("runs"));
+        });
+    }
+
+    @Test
+    public void testExpireDenseNode() throws Exception {
+        db.execute("CREATE (d:TTL:Dense {ttl: timestamp() - 1000}) WITH d UNWIND range(1,23) AS id CREATE (d)-[:R]->(:Other {id:id})").close();
+        ttl.expire();
+        assertEquals(0L, count("MATCH (n:Dense) RETURN count(*) AS c"));
+        assertEquals(23L, count("MATCH (n:Other) RETURN count(*) AS c"));
+        assertEquals(0L, count("MATCH ()-[r:R]->() RETURN count(*) AS c"));
+        TestUtil.testCall(db, "CALL apoc.ttl.stats()", (r) -> assertEquals(23L, r.get("relationshipsDeleted")));
+    }
+
+    @Test
+    public void testExpireRelationships() throws Exception {
+        db.execute("CREATE (a:Person)-[r1:VISITED]->(b:Page), (a)-[r2:VISITED]->(b), (a)-[r3:VISITED]->(b) " +
+                "WITH r1, r2, r3 CALL apoc.date.expireRelationshipIn(r1, -1, 's') CALL apoc.date.expireRelationshipIn(r2, -2, 's') " +
+                "CALL apoc.date.expireRelationshipIn(r3, 1, 'h') RETURN count(*)").close();
+        TestUtil.testCall(db, "MATCH ()-[r:VISITED]->() RETURN count(r.ttl) AS c", (r) -> assertEquals(3L, r.get("c")));
+        ttl.expire();
+        assertEquals(1L, count("MATCH ()-[r:VISITED]->() RETURN count(*) AS c"));
+        assertEquals(2L, count("MATCH (n) RETURN count(*) AS c"));
+        TestUtil.testCall(db, "CALL apoc.ttl.stats()", (r) -> assertEquals(0L, r.get("backlogRelationships")));
+    }
+
+    @Test
+    public void testExtendedRelationshipTtlStaysIndexed() throws Exception {
+        db.execute("CREATE (a:Person)-[r:VISITED]->(b:Page) WITH r CALL apoc.date.expireRelationshipIn(r, -1, 's') RETURN count(*)").close();
+        db.execute("MATCH ()-[r:VISITED]->() SET r.ttl = timestamp() + 100000").close();
+        ttl.expire();
+        assertEquals(1L, count("MATCH ()-[r:VISITED]->() RETURN count(*) AS c"));
+        TestUtil.testCall(db, "CALL apoc.ttl.stats()", (r) -> assertEquals(0L, r.get("backlogRelationships")));
+
+        db.execute("MATCH ()-[r:VISITED]->() WITH r CALL apoc.date.expireRelationshipIn(r, -1, 's') RETURN count(*)").close();
+        ttl.expire();
+        assertEquals(0L, count("MATCH ()-[r:VISITED]->() RETURN count(*) AS c"));
+    }
+
+    @Test
+    public void testExtendedTtlIsKept() throws Exception {
+        db.execute("CREATE (:TTL:Session {ttl: timestamp() + 100000})").close();
+        ttl.expire();
+        try (Transaction tx = db.beginTx()) {
+            assertEquals(1, Iterators.count(db.findNodes(Label.label("Session"))));
+            tx.success();
+        }
+    }
+
+    private long count(String query) {
+        try (Transaction tx = db.beginTx()) {
+            long count = (Long) db.execute(query).columnAs("c").next();
+            tx.success();
+            return count;
+        }
+    }
+}
@@ -72,4 +72,40 @@ public class WarmupTest {
             assertEquals(6L, r.get("indexPages"));
         });
     }
+
+    @Test
+    public void testWarmupWithConfig() throws Exception {
+        TestUtil.testCall(db, "CALL apoc.warmup.runWithConfig({labels:['Foo'], types:['KNOWS'], loadProperties:true, batchSize:1})", r -> {
+            assertEquals(2L, r.get("nodes"));
+            assertEquals(2L, r.get("relationships"));
+            assertEquals(4L, r.get("properties"));
+            assertEquals(false, r.get("transactionWasTerminated"));
+        });
+    }
+
+    @Test
+    public void testWarmupWithConfigIndexes() throws Exception {
+        TestUtil.testCall(db, "CALL apoc.warmup.runWithConfig({indexes:[':Foo(foo)']})", r -> {
+            assertEquals(0L, r.get("nodes"));
+            assertEquals(2L, r.get("indexEntries"));
+        });
+    }
+
+    @Test
+    public void testWarmupWithConfigCompositeIndexes() throws Exception {
+        db.execute("CREATE INDEX ON :Bar(a, b)").close();
+        db.execute("CALL db.awaitIndexes()").close();
+        db.execute("CREATE (:Bar {a:1, b:1}), (:Bar {a:2, b:2}), (:Bar {a:3})").close();
+        TestUtil.testCall(db, "CALL apoc.warmup.runWithConfig({indexes:[':Bar(a,b)']})", r -> {
+            assertEquals(2L, r.get("indexEntries"));
+        });
+    }
+
+    @Test
+    public void testWarmupWithConfigTypesOnly() throws Exception {
+        TestUtil.testCall(db, "CALL apoc.warmup.runWithConfig({types:['KNOWS'], pagesPerTask:1})", r -> {
+            assertEquals(0L, r.get("nodes"));
+            assertEquals(true, (long) r.get("pagesLoaded") >= 0);
+        });
+    }
 }